@@ -0,0 +1,30 @@
+package org.folio.shared.index.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH with results written as JSON to jmh-result.json, unless
+ * result options are given. All other arguments are passed to JMH.
+ */
+public class Main {
+
+  private Main() { }
+
+  /**
+   * Main program.
+   * @param args JMH arguments
+   * @throws Exception JMH failure
+   */
+  public static void main(String[] args) throws Exception {
+    List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+    if (!jmhArgs.contains("-rf")) {
+      jmhArgs.addAll(0, List.of("-rf", "json"));
+    }
+    if (!jmhArgs.contains("-rff")) {
+      jmhArgs.addAll(0, List.of("-rff", "jmh-result.json"));
+    }
+    org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+  }
+}
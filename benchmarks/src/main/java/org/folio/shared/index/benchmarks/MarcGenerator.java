@@ -0,0 +1,236 @@
+package org.folio.shared.index.benchmarks;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic, reproducible MARC records.
+ *
+ * <p>Bibliographic content is derived from a work number only, so that records for the same
+ * work generated for different libraries share title, ISBN, authors, etc. Local fields
+ * (001, 999) depend on the local identifier.
+ */
+public class MarcGenerator {
+
+  private static final String[] WORDS = {
+      "history", "introduction", "principles", "theory", "practice", "modern", "european",
+      "american", "science", "art", "music", "economics", "politics", "language", "children",
+      "world", "war", "peace", "society", "culture", "medicine", "health", "philosophy",
+      "religion", "law", "education", "computer", "programming", "mathematics", "physics",
+      "chemistry", "biology", "ecology", "climate", "ocean", "river", "city", "village",
+      "garden", "kitchen", "journey", "letters", "poems", "stories", "essays", "handbook",
+      "guide", "atlas", "dictionary", "encyclopedia", "of", "the", "and", "in", "for", "on",
+      "a", "to", "with", "from", "études", "über", "geschichte", "københavn", "señor",
+      "dvořák", "łódź", "révolution", "Ελλάδα", "русский"
+  };
+
+  private static final String[] SURNAMES = {
+      "Smith", "Jensen", "Müller", "García", "Nielsen", "Rossi", "Dubois", "Novák", "Kowalski",
+      "Hansen", "Johnson", "Brown", "Larsen", "Schmidt", "Moreau", "Andersson", "Ødegaard"
+  };
+
+  private static final String[] FORENAMES = {
+      "Anna", "Peter", "Maria", "Lars", "Sophie", "John", "Eva", "Jürgen", "Inés", "Pierre",
+      "Kirsten", "Tomás", "Helle", "Mikkel", "Åse"
+  };
+
+  private static final String[] PLACES = {
+      "New York", "London", "Copenhagen", "Berlin", "Paris", "Oxford", "Aarhus", "Chicago"
+  };
+
+  private static final String[] PUBLISHERS = {
+      "Penguin Books", "Oxford University Press", "Gyldendal", "Springer", "Routledge",
+      "Wiley", "Cambridge University Press", "Suhrkamp"
+  };
+
+  private static final String[] EDITIONS = {
+      "1st ed.", "2nd ed.", "3rd edition", "Rev. ed.", "New ed."
+  };
+
+  private static final String[] INSTANCE_TYPES = {
+      "6312d172-f0cf-40f6-b27d-9fa8feaf332f", // text
+      "497b5090-3da2-486c-b57f-de5bb3c2e26d", // notated music
+      "3be24c14-3551-4180-9292-26a786649c8b", // performed music
+  };
+
+  private static final String PERSONAL_NAME_TYPE = "2b94c631-fca9-4892-a730-03ee529ffe2a";
+
+  private final long seed;
+  private final int subjects;
+
+  /**
+   * Create generator.
+   * @param seed seed; same seed gives same records
+   * @param subjects number of subject and added entry fields in each record; controls size
+   */
+  public MarcGenerator(long seed, int subjects) {
+    this.seed = seed;
+    this.subjects = subjects;
+  }
+
+  static class Work {
+    String title;
+    String subtitle;
+    String isbn;
+    String author;
+    String edition;
+    String place;
+    String publisher;
+    String year;
+    String pages;
+    String instanceTypeId;
+    List<String> subjects = new ArrayList<>();
+    List<String> addedAuthors = new ArrayList<>();
+  }
+
+  Work work(int no) {
+    Random random = new Random(seed * 1_000_003L + no);
+    Work work = new Work();
+    work.title = capitalize(words(random, 2 + random.nextInt(6)));
+    work.subtitle = random.nextInt(3) == 0 ? words(random, 2 + random.nextInt(4)) : null;
+    work.isbn = isbn13(random);
+    work.author = person(random);
+    work.edition = random.nextInt(4) == 0 ? pick(random, EDITIONS) : null;
+    work.place = pick(random, PLACES);
+    work.publisher = pick(random, PUBLISHERS);
+    work.year = Integer.toString(1950 + random.nextInt(72));
+    work.pages = (50 + random.nextInt(900)) + " p.";
+    work.instanceTypeId = pick(random, INSTANCE_TYPES);
+    for (int i = 0; i < subjects; i++) {
+      work.subjects.add(capitalize(words(random, 1 + random.nextInt(3))));
+      if (i % 4 == 0) {
+        work.addedAuthors.add(person(random));
+      }
+    }
+    return work;
+  }
+
+  /**
+   * Generate MARC-in-JSON record.
+   * @param no work number
+   * @param localId local identifier (001)
+   * @return MARC-in-JSON record
+   */
+  public JsonObject marc(int no, String localId) {
+    Work work = work(no);
+    JsonArray fields = new JsonArray();
+    fields.add(new JsonObject().put("001", localId));
+    fields.add(new JsonObject().put("005", "20220301120000.0"));
+    fields.add(new JsonObject()
+        .put("008", "220301s" + work.year + "    xxu           000 0 eng d"));
+    fields.add(dataField("020", " ", " ", "a", work.isbn + " (pbk.)"));
+    fields.add(dataField("100", "1", " ", "a", work.author, "e", "author."));
+    JsonObject title = dataField("245", "1", "0", "a", work.title
+        + (work.subtitle == null ? " /" : " :"));
+    if (work.subtitle != null) {
+      subfields(title, "245").add(new JsonObject().put("b", work.subtitle + " /"));
+    }
+    subfields(title, "245").add(new JsonObject().put("c", work.author + "."));
+    fields.add(title);
+    if (work.edition != null) {
+      fields.add(dataField("250", " ", " ", "a", work.edition));
+    }
+    fields.add(dataField("264", " ", "1", "a", work.place + " :", "b", work.publisher + ",",
+        "c", work.year + "."));
+    fields.add(dataField("300", " ", " ", "a", work.pages + " :", "b", "ill. ;", "c", "24 cm"));
+    for (String subject : work.subjects) {
+      fields.add(dataField("650", " ", "0", "a", subject + ".", "2", "lcsh"));
+    }
+    for (String added : work.addedAuthors) {
+      fields.add(dataField("700", "1", " ", "a", added, "e", "editor."));
+    }
+    fields.add(dataField("999", " ", " ", "l", localId, "b", "copy 1", "c", "main"));
+    return new JsonObject()
+        .put("leader", "00914nam  2200337   450 ")
+        .put("fields", fields);
+  }
+
+  /**
+   * Generate inventory instance as produced by the marc2inventory stylesheet.
+   * @param no work number
+   * @return inventory instance
+   */
+  public JsonObject instance(int no) {
+    Work work = work(no);
+    JsonArray contributors = new JsonArray();
+    contributors.add(new JsonObject()
+        .put("name", work.author)
+        .put("contributorNameTypeId", PERSONAL_NAME_TYPE));
+    for (String added : work.addedAuthors) {
+      contributors.add(new JsonObject()
+          .put("name", added)
+          .put("contributorNameTypeId", PERSONAL_NAME_TYPE));
+    }
+    JsonObject instance = new JsonObject()
+        .put("title", work.title + (work.subtitle == null ? "" : " : " + work.subtitle))
+        .put("instanceTypeId", work.instanceTypeId)
+        .put("identifiers", new JsonArray().add(new JsonObject()
+            .put("value", work.isbn + " (pbk.)")))
+        .put("isbn", new JsonArray().add(work.isbn))
+        .put("contributors", contributors)
+        .put("publication", new JsonArray().add(new JsonObject()
+            .put("place", work.place)
+            .put("publisher", work.publisher)
+            .put("dateOfPublication", work.year)))
+        .put("physicalDescriptions", new JsonArray().add(work.pages + " : ill. ; 24 cm"));
+    if (work.edition != null) {
+      instance.put("editions", new JsonArray().add(work.edition));
+    }
+    return instance;
+  }
+
+  static JsonObject dataField(String tag, String ind1, String ind2, String... codeValues) {
+    JsonArray subfields = new JsonArray();
+    for (int i = 0; i < codeValues.length; i += 2) {
+      subfields.add(new JsonObject().put(codeValues[i], codeValues[i + 1]));
+    }
+    return new JsonObject().put(tag, new JsonObject()
+        .put("ind1", ind1)
+        .put("ind2", ind2)
+        .put("subfields", subfields));
+  }
+
+  static JsonArray subfields(JsonObject field, String tag) {
+    return field.getJsonObject(tag).getJsonArray("subfields");
+  }
+
+  static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  static String words(Random random, int count) {
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        s.append(' ');
+      }
+      s.append(pick(random, WORDS));
+    }
+    return s.toString();
+  }
+
+  static String capitalize(String s) {
+    return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+  }
+
+  static String person(Random random) {
+    int born = 1900 + random.nextInt(90);
+    return pick(random, SURNAMES) + ", " + pick(random, FORENAMES) + ", " + born + "-";
+  }
+
+  static String isbn13(Random random) {
+    StringBuilder s = new StringBuilder(random.nextBoolean() ? "978" : "979");
+    for (int i = 0; i < 9; i++) {
+      s.append((char) ('0' + random.nextInt(10)));
+    }
+    int sum = 0;
+    for (int i = 0; i < 12; i++) {
+      sum += (s.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+    }
+    s.append((char) ('0' + (10 - sum % 10) % 10));
+    return s.toString();
+  }
+}
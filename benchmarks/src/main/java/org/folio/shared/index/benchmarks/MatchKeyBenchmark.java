@@ -0,0 +1,176 @@
+package org.folio.shared.index.benchmarks;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.folio.shared.index.api.MatchKey;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.folio.shared.index.matchkey.MatchKeyRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchKeyBenchmark {
+
+  @Param({"2", "40"})
+  int subjects;
+
+  JsonObject marc;
+  JsonObject instance;
+  MatchKeyExtractor marcMethod;
+  MatchKeyExtractor inventoryMethod;
+  MatchKeyExtractor isbnMethod;
+  MatchKeyExtractor minHashMethod;
+  List<MatchKeyExtractor> configs;
+  List<JsonObject> instances = new ArrayList<>();
+
+  /**
+   * Prepare records and match key methods.
+   */
+  @Setup
+  public void setup() {
+    MarcGenerator generator = new MarcGenerator(1, subjects);
+    marc = generator.marc(1, "L1");
+    instance = generator.instance(1);
+    for (int i = 0; i < 100; i++) {
+      JsonObject inst = generator.instance(i);
+      if (i % 4 == 0) {
+        // match key object as produced by some stylesheets
+        inst.put("matchKey", new JsonObject()
+            .put("title", inst.getString("title"))
+            .put("remainder-of-title", ": a selection")
+            .put("medium", "[electronic resource]")
+            .put("name-of-part-section-of-work", "Part " + i)
+            .put("number-of-part-section-of-work", "Vol. " + i)
+            .put("inclusive-dates", "1900-1950"));
+      }
+      instances.add(inst);
+    }
+    marcMethod = MatchKeyMethod.get("jsonpath").compile(new JsonObject()
+        .put("marc", "$.fields.*.020.subfields.*.a"));
+    inventoryMethod = MatchKeyMethod.get("jsonpath").compile(new JsonObject()
+        .put("inventory", "$.isbn[*]"));
+    isbnMethod = MatchKeyMethod.get("isbn").compile(new JsonObject());
+    minHashMethod = MatchKeyMethod.get("minhash").compile(new JsonObject());
+    // a typical tenant setup of several configurations on the same record
+    configs = List.of(
+        marcMethod,
+        MatchKeyMethod.get("jsonpath").compile(new JsonObject()
+            .put("marc", "$.fields.*.001")),
+        MatchKeyMethod.get("jsonpath").compile(new JsonObject()
+            .put("compound", new JsonArray()
+                .add(new JsonObject().put("inventory", "$.title"))
+                .add(new JsonObject().put("inventory", "$.publication[*].dateOfPublication")))),
+        isbnMethod,
+        MatchKeyMethod.get("issn").compile(new JsonObject()));
+  }
+
+  /**
+   * Several configurations, each given the payloads; every configuration parses and
+   * traverses the record on its own.
+   * @return keys
+   */
+  @Benchmark
+  public Object configsSeparate() {
+    Set<String> keys = new HashSet<>();
+    for (MatchKeyExtractor config : configs) {
+      config.getKeys(marc, instance, keys);
+    }
+    return keys;
+  }
+
+  /**
+   * Several configurations sharing one record: parsed and traversed once.
+   * @return keys
+   */
+  @Benchmark
+  public Object configsShared() {
+    Set<String> keys = new HashSet<>();
+    MatchKeyRecord matchKeyRecord = new MatchKeyRecord(marc, instance);
+    for (MatchKeyExtractor config : configs) {
+      config.getKeys(matchKeyRecord, keys);
+    }
+    return keys;
+  }
+
+  /**
+   * Match key from MARC with JSONPath.
+   * @return keys
+   */
+  @Benchmark
+  public Object jsonPathMarc() {
+    Set<String> keys = new HashSet<>();
+    marcMethod.getKeys(marc, instance, keys);
+    return keys;
+  }
+
+  /**
+   * Match key from inventory with JSONPath.
+   * @return keys
+   */
+  @Benchmark
+  public Object jsonPathInventory() {
+    Set<String> keys = new HashSet<>();
+    inventoryMethod.getKeys(marc, instance, keys);
+    return keys;
+  }
+
+  /**
+   * Normalized ISBN-13 from MARC 020.
+   * @return keys
+   */
+  @Benchmark
+  public Object isbnMarc() {
+    Set<String> keys = new HashSet<>();
+    isbnMethod.getKeys(marc, instance, keys);
+    return keys;
+  }
+
+  /**
+   * MinHash band keys with default parameters.
+   * @return keys
+   */
+  @Benchmark
+  public Object minHash() {
+    Set<String> keys = new HashSet<>();
+    minHashMethod.getKeys(marc, instance, keys);
+    return keys;
+  }
+
+  @Benchmark
+  public Object matchKeyConstruction() {
+    return new MatchKey(instance).getKey();
+  }
+
+  /**
+   * GoldRush match key for 100 different instances, a quarter with match key object.
+   * @return last key
+   */
+  @Benchmark
+  public Object matchKeyCorpus() {
+    String key = null;
+    for (JsonObject inst : instances) {
+      key = new MatchKey(inst).getKey();
+    }
+    return key;
+  }
+}
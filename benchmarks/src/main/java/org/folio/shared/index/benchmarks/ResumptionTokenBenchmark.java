@@ -0,0 +1,49 @@
+package org.folio.shared.index.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.folio.shared.index.api.ResumptionToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResumptionTokenBenchmark {
+
+  ResumptionToken token;
+  String coded;
+
+  /**
+   * Prepare token.
+   */
+  @Setup
+  public void setup() {
+    String s = LocalDateTime.of(2022, 2, 1, 12, 30, 15, 123456000)
+        + " 2022-03-01T10:00:00Z isbn";
+    coded = Base64.getEncoder().encodeToString(s.getBytes());
+    token = new ResumptionToken(coded);
+  }
+
+  @Benchmark
+  public Object encode() {
+    return token.encode();
+  }
+
+  @Benchmark
+  public Object decode() {
+    return new ResumptionToken(coded);
+  }
+}
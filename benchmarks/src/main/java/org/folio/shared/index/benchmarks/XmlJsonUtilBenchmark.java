@@ -0,0 +1,109 @@
+package org.folio.shared.index.benchmarks;
+
+import io.vertx.core.json.JsonObject;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.folio.shared.index.util.XmlJsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlJsonUtilBenchmark {
+
+  /** Stylesheets as used for ingest in README. */
+  static final String[] STYLESHEETS = {
+      "xsl/marc2inventory-instance.xsl",
+      "xsl/holdings-items-cst.xsl",
+      "xsl/library-codes-cst.xsl",
+  };
+
+  @Param({"2", "40"})
+  int subjects;
+
+  JsonObject marcJson;
+  String marcXml;
+  String inventoryXml;
+  List<Transformer> transformers;
+
+  static List<Transformer> transformers(String... stylesheets) throws Exception {
+    TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    List<Transformer> transformers = new ArrayList<>();
+    for (String stylesheet : stylesheets) {
+      URL url = XmlJsonUtilBenchmark.class.getClassLoader().getResource(stylesheet);
+      if (url == null) {
+        throw new IllegalStateException("Stylesheet not found: " + stylesheet);
+      }
+      transformers.add(transformerFactory.newTransformer(new StreamSource(url.toString())));
+    }
+    return transformers;
+  }
+
+  static String transform(String xml, List<Transformer> transformers) throws Exception {
+    for (Transformer transformer : transformers) {
+      StreamResult result = new StreamResult(new StringWriter());
+      transformer.transform(new StreamSource(new StringReader(xml)), result);
+      xml = result.getWriter().toString();
+    }
+    return xml;
+  }
+
+  /**
+   * Prepare records.
+   * @throws Exception stylesheet or XML problem
+   */
+  @Setup
+  public void setup() throws Exception {
+    MarcGenerator generator = new MarcGenerator(1, subjects);
+    marcJson = generator.marc(1, "L1");
+    marcXml = XmlJsonUtil.convertJsonToMarcXml(marcJson);
+    transformers = transformers(STYLESHEETS);
+    inventoryXml = transform(marcXml, transformers);
+  }
+
+  @Benchmark
+  public Object convertMarcXmlToJson() throws Exception {
+    return XmlJsonUtil.convertMarcXmlToJson(marcXml);
+  }
+
+  @Benchmark
+  public Object convertJsonToMarcXml() {
+    return XmlJsonUtil.convertJsonToMarcXml(marcJson);
+  }
+
+  @Benchmark
+  public Object inventoryXmlToJson() throws Exception {
+    return XmlJsonUtil.inventoryXmlToJson(inventoryXml);
+  }
+
+  @Benchmark
+  public Object encodeXmlText() {
+    return XmlJsonUtil.encodeXmlText(marcXml);
+  }
+
+  @Benchmark
+  public Object createIngestRecord() throws Exception {
+    return XmlJsonUtil.createIngestRecord(marcXml, transformers);
+  }
+}
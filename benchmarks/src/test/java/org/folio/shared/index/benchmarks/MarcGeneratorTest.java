@@ -0,0 +1,51 @@
+package org.folio.shared.index.benchmarks;
+
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import javax.xml.transform.Transformer;
+import org.folio.shared.index.api.MatchKey;
+import org.folio.shared.index.util.XmlJsonUtil;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MarcGeneratorTest {
+
+  @Test
+  public void sameWorkSameContent() {
+    MarcGenerator generator = new MarcGenerator(1, 10);
+    JsonObject lib1 = generator.marc(7, "lib1");
+    JsonObject lib2 = generator.marc(7, "lib2");
+    assertThat(lib1.getJsonArray("fields").getJsonObject(4),
+        is(lib2.getJsonArray("fields").getJsonObject(4)));
+    assertThat(lib1.getJsonArray("fields").getJsonObject(0),
+        is(not(lib2.getJsonArray("fields").getJsonObject(0))));
+    assertThat(generator.marc(8, "lib1"), is(not(lib1)));
+    assertThat(new MarcGenerator(1, 10).marc(7, "lib1"), is(lib1));
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    JsonObject marc = new MarcGenerator(2, 40).marc(1, "L1");
+    String marcXml = XmlJsonUtil.convertJsonToMarcXml(marc);
+    assertThat(XmlJsonUtil.convertMarcXmlToJson(marcXml), is(marc));
+  }
+
+  @Test
+  public void createIngestRecord() throws Exception {
+    JsonObject marc = new MarcGenerator(3, 2).marc(1, "L1");
+    List<Transformer> transformers =
+        XmlJsonUtilBenchmark.transformers(XmlJsonUtilBenchmark.STYLESHEETS);
+    JsonObject ingest = XmlJsonUtil.createIngestRecord(
+        XmlJsonUtil.convertJsonToMarcXml(marc), transformers);
+    assertThat(ingest.getString("localId"), is("L1"));
+  }
+
+  @Test
+  public void matchKey() {
+    JsonObject instance = new MarcGenerator(4, 2).instance(1);
+    assertThat(new MatchKey(instance).getKey().isEmpty(), is(false));
+  }
+}
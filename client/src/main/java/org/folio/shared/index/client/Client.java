@@ -4,6 +4,8 @@ import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
@@ -15,6 +17,7 @@ import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -43,6 +46,7 @@ public class Client {
   int currentOffset;
   int limit;
   boolean echo = false;
+  boolean compress = false;
   Integer localSequence = 0;
   WebClient webClient;
   Vertx vertx;
@@ -88,6 +92,18 @@ public class Client {
     this.echo = true;
   }
 
+  public void setCompress() {
+    this.compress = true;
+  }
+
+  static Buffer gzip(Buffer buffer) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(buffer.getBytes());
+    }
+    return Buffer.buffer(out.toByteArray());
+  }
+
   private void incrementSequence() {
     ++localSequence;
     if (!echo && (localSequence % 1000) == 0) {
@@ -217,6 +233,23 @@ public class Client {
     if (echo) {
       System.out.println(request);
       vertx.runOnContext(x -> sendChunk(reader, promise));
+    } else if (compress) {
+      Buffer body;
+      try {
+        body = gzip(request.toBuffer());
+      } catch (IOException e) {
+        promise.fail(e);
+        return;
+      }
+      webClient.putAbs(headers.get(XOkapiHeaders.URL) + "/shared-index/records")
+          .putHeaders(headers)
+          .putHeader(HttpHeaders.CONTENT_TYPE.toString(), "application/json")
+          .putHeader(HttpHeaders.CONTENT_ENCODING.toString(), "gzip")
+          .expect(ResponsePredicate.SC_OK)
+          .expect(ResponsePredicate.JSON)
+          .sendBuffer(body)
+          .onFailure(promise::fail)
+          .onSuccess(x -> sendChunk(reader, promise));
     } else {
       webClient.putAbs(headers.get(XOkapiHeaders.URL) + "/shared-index/records")
           .putHeaders(headers)
@@ -384,6 +417,7 @@ public class Client {
               System.out.println(" --limit int         (defaults to 0 - no limit)");
               System.out.println(" --xsl file          (xslt transform for inventory payload)");
               System.out.println(" --echo              (only output result)");
+              System.out.println(" --compress          (gzip request bodies)");
               System.out.println(" --init");
               System.out.println(" --purge");
               break;
@@ -406,6 +440,9 @@ public class Client {
             case "echo":
               client.setEcho();
               break;
+            case "compress":
+              client.setCompress();
+              break;
             case "xsl":
               arg = getArgument(args, ++i);
               future = future.compose(x -> client.setXslt(arg));
@@ -2,6 +2,7 @@ package org.folio.shared.index.client;
 
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,7 +15,8 @@ public class Main {
    */
   public static void main(String[] args) {
     Vertx vertx = Vertx.vertx();
-    WebClient webClient = WebClient.create(vertx);
+    WebClient webClient = WebClient.create(vertx,
+        new WebClientOptions().setTryUseCompression(true));
     Client.exec(vertx, webClient, args)
         .eventually(x -> {
           webClient.close();
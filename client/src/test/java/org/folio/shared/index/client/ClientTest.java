@@ -11,7 +11,10 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.handler.BodyHandler;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -175,6 +178,56 @@ public class ClientTest {
         }));
   }
 
+  @Test
+  public void sendMarcRecFileCompressed(TestContext context) {
+    HttpServerOptions so = new HttpServerOptions()
+        .setHandle100ContinueAutomatically(true);
+
+    JsonArray requests = new JsonArray();
+
+    HttpServer httpServer = vertx.createHttpServer(so);
+    Router router = Router.router(vertx);
+    router.put("/shared-index/records")
+        .handler(BodyHandler.create())
+        .handler(c -> {
+          context.assertEquals("gzip", c.request().getHeader("Content-Encoding"));
+          try (GZIPInputStream gzip = new GZIPInputStream(
+              new ByteArrayInputStream(c.getBody().getBytes()))) {
+            requests.add(new JsonObject(new String(gzip.readAllBytes())));
+          } catch (IOException e) {
+            context.fail(e);
+          }
+          c.response().setStatusCode(200);
+          c.response().putHeader("Content-Type", "application/json");
+          c.response().end("{}");
+        });
+
+    httpServer.requestHandler(router);
+    Future<Void> future = httpServer.listen(PORT).mapEmpty();
+
+    UUID sourceId = UUID.randomUUID();
+    String [] args = {
+        "--chunk", "2",
+        "--compress",
+        "--source", sourceId.toString(),
+        "--xsl", "../xsl/marc2inventory-instance.xsl",
+        "src/test/resources/marc3.marc"
+    };
+    Client client = new Client(vertx, webClient, "http://localhost:" + PORT, null, "testlib");
+    future = future.compose(x -> Client.exec(client, args));
+
+    future.eventually(x -> httpServer.close())
+        .onComplete(context.asyncAssertSuccess(res -> {
+          context.assertEquals(2, requests.size());
+          JsonObject r = requests.getJsonObject(0);
+          context.assertEquals(sourceId.toString(), r.getString("sourceId"));
+          context.assertEquals(2, r.getJsonArray("records").size());
+          context.assertEquals("   73209622 //r823", r.getJsonArray("records").getJsonObject(0).getString("localId"));
+          r = requests.getJsonObject(1);
+          context.assertEquals(1, r.getJsonArray("records").size());
+        }));
+  }
+
   @Test
   public void sendMarcXmlRecords(TestContext context) {
     HttpServerOptions so = new HttpServerOptions()
@@ -0,0 +1,400 @@
+package org.folio.shared.index.loadtest;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.pgclient.PgConnectOptions;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.GenericCompositeFuture;
+import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.shared.index.MainVerticle;
+import org.folio.shared.index.benchmarks.MarcGenerator;
+import org.folio.tlib.postgres.TenantPgPool;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * End-to-end load test. Runs the module in process against Postgres, ingests records from a
+ * number of synthetic libraries and harvests the result.
+ *
+ * <p>Stages: ingest (PUT /shared-index/records), initialize (match key recalculation),
+ * clusters (paging through GET /shared-index/clusters) and oai (ListRecords with resumption
+ * tokens). For each stage throughput, latency percentiles and Postgres statement counts are
+ * reported.
+ */
+public class LoadTest {
+  private static final Logger log = LogManager.getLogger(LoadTest.class);
+
+  static final String TENANT = "loadtest";
+  static final String MATCH_KEY_ID = "isbn";
+  static final String POSTGRES_IMAGE = "postgres:12-alpine";
+  static final Pattern OAI_RECORD = Pattern.compile("<record>");
+  static final Pattern OAI_TOKEN = Pattern.compile("<resumptionToken>([^<]*)</resumptionToken>");
+
+  int libraries = 5;
+  int records = 1000;
+  double overlap = 0.5;
+  int concurrency = 4;
+  int chunk = 100;
+  int subjects = 5;
+  int port = 9240;
+  int instances = 1;
+  long seed = 1;
+  String report;
+
+  Vertx vertx;
+  WebClient webClient;
+  PgStatements pgStatements;
+  final List<StageResult> results = new ArrayList<>();
+
+  /**
+   * Main program.
+   * @param args command line arguments
+   * @throws Exception failure
+   */
+  public static void main(String[] args) throws Exception {
+    LoadTest loadTest = new LoadTest();
+    if (!loadTest.parseArgs(args)) {
+      return;
+    }
+    loadTest.run();
+  }
+
+  boolean parseArgs(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (!arg.startsWith("--") || arg.equals("--help")) {
+        usage();
+        return false;
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg.substring(2)) {
+        case "libraries":
+          libraries = Integer.parseInt(value);
+          break;
+        case "records":
+          records = Integer.parseInt(value);
+          break;
+        case "overlap":
+          overlap = Double.parseDouble(value);
+          break;
+        case "concurrency":
+          concurrency = Integer.parseInt(value);
+          break;
+        case "chunk":
+          chunk = Integer.parseInt(value);
+          break;
+        case "subjects":
+          subjects = Integer.parseInt(value);
+          break;
+        case "port":
+          port = Integer.parseInt(value);
+          break;
+        case "instances":
+          instances = Integer.parseInt(value);
+          break;
+        case "seed":
+          seed = Long.parseLong(value);
+          break;
+        case "report":
+          report = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Bad option: " + arg);
+      }
+    }
+    return true;
+  }
+
+  static void usage() {
+    System.out.println("[options]");
+    System.out.println(" --libraries n       (number of libraries; default 5)");
+    System.out.println(" --records n         (records per library; default 1000)");
+    System.out.println(" --overlap f         (fraction of records shared with other libraries;"
+        + " default 0.5)");
+    System.out.println(" --concurrency n     (requests in flight; default 4)");
+    System.out.println(" --chunk n           (records per request/page; default 100)");
+    System.out.println(" --subjects n        (subject fields per record; default 5)");
+    System.out.println(" --instances n       (server verticle instances; default 1)");
+    System.out.println(" --port n            (module port; default 9240)");
+    System.out.println(" --seed n            (random seed; default 1)");
+    System.out.println(" --report file       (write JSON report)");
+    System.out.println("Postgres is started with Testcontainers unless DB_HOST is set.");
+  }
+
+  static <T> T await(Future<T> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get();
+  }
+
+  static PgConnectOptions connectOptionsFromEnv() {
+    return new PgConnectOptions()
+        .setHost(System.getenv("DB_HOST"))
+        .setPort(Integer.parseInt(System.getenv().getOrDefault("DB_PORT", "5432")))
+        .setUser(System.getenv().getOrDefault("DB_USERNAME", "postgres"))
+        .setPassword(System.getenv().getOrDefault("DB_PASSWORD", ""))
+        .setDatabase(System.getenv().getOrDefault("DB_DATABASE", "postgres"));
+  }
+
+  void run() throws Exception {
+    PostgreSQLContainer<?> container = null;
+    PgConnectOptions connectOptions;
+    if (System.getenv("DB_HOST") != null) {
+      connectOptions = connectOptionsFromEnv();
+    } else {
+      container = new PostgreSQLContainer<>(POSTGRES_IMAGE)
+          .withCommand("postgres", "-c", "shared_preload_libraries=pg_stat_statements",
+              "-c", "fsync=off");
+      container.start();
+      connectOptions = new PgConnectOptions()
+          .setHost(container.getHost())
+          .setPort(container.getFirstMappedPort())
+          .setUser(container.getUsername())
+          .setPassword(container.getPassword())
+          .setDatabase(container.getDatabaseName());
+      TenantPgPool.setDefaultConnectOptions(connectOptions);
+    }
+    vertx = Vertx.vertx();
+    try {
+      webClient = WebClient.create(vertx);
+      pgStatements = new PgStatements(vertx, connectOptions);
+      await(pgStatements.init());
+      await(vertx.deployVerticle(new MainVerticle(), new DeploymentOptions()
+          .setConfig(new JsonObject()
+              .put("port", Integer.toString(port))
+              .put("instances", Integer.toString(instances)))));
+      await(tenantInit(new JsonObject().put("module_from", "mod-shared-index-1.0.0")
+          .put("purge", true)).recover(e -> Future.succeededFuture()));
+      await(tenantInit(new JsonObject().put("module_to", "mod-shared-index-1.0.0")));
+      await(request(HttpMethod.POST, "/shared-index/config/matchkeys",
+          new JsonObject()
+              .put("id", MATCH_KEY_ID)
+              .put("method", "jsonpath")
+              .put("params", new JsonObject().put("inventory", "$.isbn[*]"))
+              .put("update", "ingest")
+              .toBuffer(), 201));
+
+      stage("ingest", this::ingest);
+      stage("initialize", this::initialize);
+      stage("clusters", this::clusters);
+      stage("oai", result -> oaiPage(result, "/shared-index/oai?verb=ListRecords"
+          + "&metadataPrefix=marcxml&set=" + MATCH_KEY_ID + "&list-limit=" + chunk));
+      writeReport();
+    } finally {
+      await(vertx.close());
+      if (container != null) {
+        container.stop();
+      }
+    }
+  }
+
+  void stage(String name, Function<StageResult, Future<Void>> function) throws Exception {
+    StageResult result = new StageResult(name);
+    log.info("Stage {}", name);
+    await(pgStatements.reset());
+    result.start();
+    await(function.apply(result).onComplete(x -> result.end()));
+    await(pgStatements.collect(result));
+    results.add(result);
+  }
+
+  Future<HttpResponse<Buffer>> request(HttpMethod method, String uri, Buffer body,
+      int expectedStatus) {
+    HttpRequest<Buffer> request = webClient.request(method, port, "localhost", uri)
+        .putHeader(XOkapiHeaders.TENANT, TENANT)
+        .putHeader("Content-Type", "application/json");
+    return (body == null ? request.send() : request.sendBuffer(body))
+        .map(response -> {
+          if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(method + " " + uri + " returned "
+                + response.statusCode() + ": " + response.bodyAsString());
+          }
+          return response;
+        });
+  }
+
+  Future<HttpResponse<Buffer>> timedRequest(StageResult result, HttpMethod method, String uri,
+      Buffer body, long recordCount) {
+    long start = System.nanoTime();
+    return request(method, uri, body, 200)
+        .onSuccess(x -> result.add(System.nanoTime() - start, recordCount));
+  }
+
+  Future<Void> tenantInit(JsonObject tenantAttributes) {
+    return request(HttpMethod.POST, "/_/tenant", tenantAttributes.toBuffer(), 201)
+        .compose(response -> request(HttpMethod.GET,
+            response.getHeader("Location") + "?wait=600000", null, 200))
+        .map(response -> {
+          String error = response.bodyAsJsonObject().getString("error");
+          if (error != null) {
+            throw new IllegalStateException(error);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Run tasks with at most concurrency tasks in progress.
+   * @param tasks tasks; consumed
+   * @return async result
+   */
+  Future<Void> runConcurrently(Queue<Supplier<Future<Void>>> tasks) {
+    List<Future<Void>> workers = new ArrayList<>();
+    for (int i = 0; i < concurrency; i++) {
+      workers.add(worker(tasks));
+    }
+    return GenericCompositeFuture.all(workers).mapEmpty();
+  }
+
+  static Future<Void> worker(Queue<Supplier<Future<Void>>> tasks) {
+    Supplier<Future<Void>> task = tasks.poll();
+    if (task == null) {
+      return Future.succeededFuture();
+    }
+    return task.get().compose(x -> worker(tasks));
+  }
+
+  /**
+   * Work number for record in library. A fraction "overlap" of the records of each library are
+   * drawn from a pool of works shared by all libraries; the rest are unique to the library.
+   */
+  int workNumber(Random random, int library, int recordNo) {
+    if (random.nextDouble() < overlap) {
+      return random.nextInt(records);
+    }
+    return (library + 1) * records + recordNo;
+  }
+
+  Future<Void> ingest(StageResult result) {
+    MarcGenerator generator = new MarcGenerator(seed, subjects);
+    Queue<Supplier<Future<Void>>> tasks = new ConcurrentLinkedQueue<>();
+    for (int library = 0; library < libraries; library++) {
+      Random random = new Random(seed + library);
+      String sourceId = UUID.nameUUIDFromBytes(("library" + library).getBytes()).toString();
+      JsonArray batch = new JsonArray();
+      for (int i = 0; i < records; i++) {
+        int work = workNumber(random, library, i);
+        String localId = "l" + library + "-" + i;
+        batch.add(new JsonObject()
+            .put("localId", localId)
+            .put("marcPayload", generator.marc(work, localId))
+            .put("inventoryPayload", generator.instance(work)));
+        if (batch.size() == chunk || i == records - 1) {
+          Buffer body = new JsonObject()
+              .put("sourceId", sourceId)
+              .put("records", batch)
+              .toBuffer();
+          int size = batch.size();
+          tasks.add(() -> timedRequest(result, HttpMethod.PUT, "/shared-index/records", body,
+              size).mapEmpty());
+          batch = new JsonArray();
+        }
+      }
+    }
+    log.info("Ingesting {} records in {} requests", libraries * records, tasks.size());
+    return runConcurrently(tasks);
+  }
+
+  Future<Void> initialize(StageResult result) {
+    long start = System.nanoTime();
+    return request(HttpMethod.PUT,
+        "/shared-index/config/matchkeys/" + MATCH_KEY_ID + "/initialize", null, 200)
+        .map(response -> {
+          result.add(System.nanoTime() - start, response.bodyAsJsonObject().getLong("count"));
+          return null;
+        });
+  }
+
+  String clustersUri(int offset) {
+    return "/shared-index/clusters?matchkeyid=" + MATCH_KEY_ID
+        + "&offset=" + offset + "&limit=" + chunk;
+  }
+
+  Future<Void> clusters(StageResult result) {
+    return request(HttpMethod.GET, clustersUri(0), null, 200)
+        .compose(first -> {
+          JsonObject body = first.bodyAsJsonObject();
+          int total = body.getJsonObject("resultInfo").getInteger("totalRecords");
+          Queue<Supplier<Future<Void>>> tasks = new ConcurrentLinkedQueue<>();
+          for (int offset = 0; offset < total; offset += chunk) {
+            int pageSize = Math.min(chunk, total - offset);
+            String uri = clustersUri(offset);
+            tasks.add(() -> timedRequest(result, HttpMethod.GET, uri, null, pageSize)
+                .mapEmpty());
+          }
+          log.info("Fetching {} clusters in {} pages", total, tasks.size());
+          return runConcurrently(tasks);
+        });
+  }
+
+  Future<Void> oaiPage(StageResult result, String uri) {
+    long start = System.nanoTime();
+    return request(HttpMethod.GET, uri, null, 200)
+        .compose(response -> {
+          String body = response.bodyAsString();
+          long count = 0;
+          Matcher recordMatcher = OAI_RECORD.matcher(body);
+          while (recordMatcher.find()) {
+            count++;
+          }
+          result.add(System.nanoTime() - start, count);
+          Matcher tokenMatcher = OAI_TOKEN.matcher(body);
+          if (!tokenMatcher.find()) {
+            return Future.succeededFuture();
+          }
+          return oaiPage(result, "/shared-index/oai?verb=ListRecords&list-limit=" + chunk
+              + "&resumptionToken="
+              + URLEncoder.encode(tokenMatcher.group(1), StandardCharsets.UTF_8));
+        });
+  }
+
+  void writeReport() throws IOException {
+    System.out.println("libraries=" + libraries + " records=" + records + " overlap=" + overlap
+        + " concurrency=" + concurrency + " chunk=" + chunk);
+    System.out.println("statements column: "
+        + (pgStatements.isStatementsAvailable() ? "pg_stat_statements calls"
+        : "committed transactions"));
+    System.out.println(StageResult.header());
+    JsonArray stages = new JsonArray();
+    for (StageResult result : results) {
+      System.out.println(result);
+      stages.add(result.toJson());
+    }
+    if (report != null) {
+      JsonObject json = new JsonObject()
+          .put("libraries", libraries)
+          .put("records", records)
+          .put("overlap", overlap)
+          .put("concurrency", concurrency)
+          .put("chunk", chunk)
+          .put("subjects", subjects)
+          .put("instances", instances)
+          .put("stages", stages);
+      Files.writeString(Path.of(report), json.encodePrettily());
+    }
+  }
+}
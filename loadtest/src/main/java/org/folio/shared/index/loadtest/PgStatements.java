@@ -0,0 +1,110 @@
+package org.folio.shared.index.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Postgres statement counts per stage from pg_stat_statements. If that extension is not
+ * available, the number of committed transactions from pg_stat_database is used instead.
+ */
+public class PgStatements {
+  private static final Logger log = LogManager.getLogger(PgStatements.class);
+
+  private final PgPool pool;
+  private boolean statementsAvailable;
+  private long transactions;
+
+  public PgStatements(Vertx vertx, PgConnectOptions connectOptions) {
+    pool = PgPool.pool(vertx, connectOptions, new PoolOptions().setMaxSize(1));
+  }
+
+  /**
+   * Check whether pg_stat_statements can be used.
+   * @return async result
+   */
+  public Future<Void> init() {
+    return pool.query("CREATE EXTENSION IF NOT EXISTS pg_stat_statements").execute()
+        .compose(x -> pool.query("SELECT pg_stat_statements_reset()").execute())
+        .map(x -> {
+          statementsAvailable = true;
+          return (Void) null;
+        })
+        .otherwise(e -> {
+          log.warn("pg_stat_statements not available, counting transactions: {}",
+              e.getMessage());
+          return null;
+        });
+  }
+
+  public boolean isStatementsAvailable() {
+    return statementsAvailable;
+  }
+
+  /**
+   * Start counting for a stage.
+   * @return async result
+   */
+  public Future<Void> reset() {
+    if (statementsAvailable) {
+      return pool.query("SELECT pg_stat_statements_reset()").execute().mapEmpty();
+    }
+    return committedTransactions().map(count -> {
+      transactions = count;
+      return null;
+    });
+  }
+
+  /**
+   * Count statements since reset and store them in stage result.
+   * @param result stage result to update
+   * @return async result
+   */
+  public Future<Void> collect(StageResult result) {
+    if (!statementsAvailable) {
+      return committedTransactions().map(count -> {
+        result.setStatements(count - transactions, new JsonArray());
+        return null;
+      });
+    }
+    // exclude the reset call itself
+    return pool.query("SELECT calls, query FROM pg_stat_statements"
+            + " WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database())"
+            + " AND query NOT LIKE '%pg_stat_statements%'"
+            + " ORDER BY calls DESC")
+        .execute()
+        .map(rowSet -> {
+          long total = 0;
+          JsonArray top = new JsonArray();
+          for (Row row : rowSet) {
+            total += row.getLong("calls");
+            if (top.size() < 5) {
+              top.add(new JsonObject()
+                  .put("calls", row.getLong("calls"))
+                  .put("query", row.getString("query")));
+            }
+          }
+          result.setStatements(total, top);
+          return null;
+        });
+  }
+
+  Future<Long> committedTransactions() {
+    // statistics are collected asynchronously; force a fresh snapshot
+    return pool.query("SELECT pg_stat_clear_snapshot()").execute()
+        .compose(x -> pool.query("SELECT xact_commit FROM pg_stat_database"
+            + " WHERE datname = current_database()").execute())
+        .map(rowSet -> rowSet.iterator().next().getLong("xact_commit"));
+  }
+
+  public Future<Void> close() {
+    return pool.close();
+  }
+}
@@ -0,0 +1,117 @@
+package org.folio.shared.index.loadtest;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput, latency and database statistics for one load test stage.
+ */
+public class StageResult {
+  private final String name;
+  private final List<Long> latencies = new ArrayList<>();
+  private long records;
+  private long elapsed;
+  private long start;
+  private Long statements;
+  private JsonArray topStatements = new JsonArray();
+
+  public StageResult(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  void start() {
+    start = System.nanoTime();
+  }
+
+  void end() {
+    elapsed = System.nanoTime() - start;
+  }
+
+  /**
+   * Record one request.
+   * @param latency request latency in nanoseconds
+   * @param records number of records handled by request
+   */
+  synchronized void add(long latency, long records) {
+    latencies.add(latency);
+    this.records += records;
+  }
+
+  void setStatements(Long statements, JsonArray topStatements) {
+    this.statements = statements;
+    this.topStatements = topStatements;
+  }
+
+  public synchronized long getRequests() {
+    return latencies.size();
+  }
+
+  public synchronized long getRecords() {
+    return records;
+  }
+
+  /**
+   * Records per second over the whole stage.
+   * @return throughput; 0 if nothing was measured
+   */
+  public synchronized double getThroughput() {
+    return elapsed == 0 ? 0.0 : records * 1e9 / elapsed;
+  }
+
+  /**
+   * Request latency percentile by nearest rank.
+   * @param percentile in range 0 - 100
+   * @return latency in milliseconds; 0 if no requests
+   */
+  public synchronized double getLatency(double percentile) {
+    if (latencies.isEmpty()) {
+      return 0.0;
+    }
+    List<Long> sorted = new ArrayList<>(latencies);
+    Collections.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+    long nanos = sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * Statistics as JSON.
+   * @return JSON object
+   */
+  public synchronized JsonObject toJson() {
+    JsonObject json = new JsonObject()
+        .put("stage", name)
+        .put("requests", latencies.size())
+        .put("records", records)
+        .put("elapsedMs", elapsed / 1000000L)
+        .put("recordsPerSecond", getThroughput())
+        .put("p50Ms", getLatency(50))
+        .put("p99Ms", getLatency(99));
+    if (statements != null) {
+      json.put("statements", statements);
+      json.put("statementsPerRecord", records == 0 ? 0.0 : statements / (double) records);
+      json.put("topStatements", topStatements);
+    }
+    return json;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%-12s %8d %9d %9.1f %9.1f %9.1f %10s", name, latencies.size(), records,
+        getThroughput(), getLatency(50), getLatency(99),
+        statements == null ? "-" : statements.toString());
+  }
+
+  static String header() {
+    return String.format("%-12s %8s %9s %9s %9s %9s %10s", "stage", "requests", "records",
+        "rec/s", "p50 ms", "p99 ms", "statements");
+  }
+}
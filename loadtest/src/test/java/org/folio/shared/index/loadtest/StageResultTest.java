@@ -0,0 +1,65 @@
+package org.folio.shared.index.loadtest;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class StageResultTest {
+
+  @Test
+  public void empty() {
+    StageResult result = new StageResult("empty");
+    assertThat(result.getName(), is("empty"));
+    assertThat(result.getRequests(), is(0L));
+    assertThat(result.getRecords(), is(0L));
+    assertThat(result.getThroughput(), is(0.0));
+    assertThat(result.getLatency(50), is(0.0));
+    assertThat(result.toJson().containsKey("statements"), is(false));
+  }
+
+  @Test
+  public void percentiles() {
+    StageResult result = new StageResult("ingest");
+    for (int i = 100; i >= 1; i--) {
+      result.add(TimeUnit.MILLISECONDS.toNanos(i), 10);
+    }
+    assertThat(result.getRequests(), is(100L));
+    assertThat(result.getRecords(), is(1000L));
+    assertThat(result.getLatency(0), is(1.0));
+    assertThat(result.getLatency(50), is(50.0));
+    assertThat(result.getLatency(99), is(99.0));
+    assertThat(result.getLatency(100), is(100.0));
+  }
+
+  @Test
+  public void singleRequest() {
+    StageResult result = new StageResult("initialize");
+    result.add(TimeUnit.MICROSECONDS.toNanos(1500), 3);
+    assertThat(result.getLatency(50), is(1.5));
+    assertThat(result.getLatency(99), is(1.5));
+  }
+
+  @Test
+  public void throughputAndJson() throws InterruptedException {
+    StageResult result = new StageResult("oai");
+    result.start();
+    result.add(1000L, 20);
+    Thread.sleep(5);
+    result.end();
+    assertTrue(result.getThroughput() > 0.0);
+    result.setStatements(40L, new JsonArray().add(new JsonObject().put("calls", 40)));
+    JsonObject json = result.toJson();
+    assertThat(json.getString("stage"), is("oai"));
+    assertThat(json.getLong("records"), is(20L));
+    assertThat(json.getLong("statements"), is(40L));
+    assertThat(json.getDouble("statementsPerRecord"), is(2.0));
+    assertThat(json.getJsonArray("topStatements").size(), is(1));
+    assertThat(result.toString().startsWith("oai"), is(true));
+    assertThat(StageResult.header().startsWith("stage"), is(true));
+  }
+}
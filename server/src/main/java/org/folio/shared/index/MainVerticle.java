@@ -1,16 +1,15 @@
 package org.folio.shared.index;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Promise;
-import io.vertx.core.http.HttpServerOptions;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.Config;
 import org.folio.okapi.common.ModuleVersionReporter;
-import org.folio.shared.index.api.SharedIndexService;
-import org.folio.tlib.RouterCreator;
-import org.folio.tlib.api.HealthApi;
-import org.folio.tlib.api.Tenant2Api;
+import org.folio.shared.index.storage.Storage;
 import org.folio.tlib.postgres.TenantPgPool;
 
 public class MainVerticle extends AbstractVerticle {
@@ -24,24 +23,35 @@ public class MainVerticle extends AbstractVerticle {
 
     final int port = Integer.parseInt(
         Config.getSysConf("http.port", "port", "8081", config()));
-    log.info("Listening on port {}", port);
+    // one server verticle per core by default; each runs on its own event loop
+    final int instances = Integer.parseInt(
+        Config.getSysConf("http.instances", "instances",
+            Integer.toString(Runtime.getRuntime().availableProcessors()), config()));
+    log.info("Listening on port {} with {} instances", port, instances);
+    Storage.configureCaches(config());
+    Storage.configureChanges(config());
 
-    SharedIndexService sharedIndexService = new SharedIndexService(vertx);
-
-    RouterCreator[] routerCreators = {
-        sharedIndexService,
-        new Tenant2Api(sharedIndexService),
-        new HealthApi(),
-    };
-
-    RouterCreator.mountAll(vertx, routerCreators)
-        .compose(router -> {
-          HttpServerOptions so = new HttpServerOptions()
-              .setHandle100ContinueAutomatically(true);
-          return vertx.createHttpServer(so)
-              .requestHandler(router)
-              .listen(port).mapEmpty();
-        })
+    DeploymentOptions deploymentOptions = new DeploymentOptions()
+        .setConfig(config())
+        .setInstances(instances);
+    vertx.deployVerticle(ServerVerticle::new, deploymentOptions)
         .onComplete(x -> promise.handle(x.mapEmpty()));
+
+    final long compactInterval = Long.parseLong(
+        Config.getSysConf("cluster.compact.interval", "clusterCompactInterval", "60000",
+            config()));
+    final int compactBatch = Integer.parseInt(
+        Config.getSysConf("cluster.compact.batch", "clusterCompactBatch", "1000", config()));
+    final Duration retention = Storage.getClusterRetention(config());
+    if (compactInterval > 0) {
+      // merges only redirect clusters; move their rows and prune them in the background
+      AtomicBoolean running = new AtomicBoolean();
+      vertx.setPeriodic(compactInterval, id -> {
+        if (running.compareAndSet(false, true)) {
+          Storage.compactAllClusters(compactBatch, retention)
+              .onComplete(x -> running.set(false));
+        }
+      });
+    }
   }
 }
@@ -0,0 +1,53 @@
+package org.folio.shared.index;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServerOptions;
+import org.folio.okapi.common.Config;
+import org.folio.shared.index.api.MetricsApi;
+import org.folio.shared.index.api.SharedIndexService;
+import org.folio.tlib.RouterCreator;
+import org.folio.tlib.api.HealthApi;
+import org.folio.tlib.api.Tenant2Api;
+
+/**
+ * HTTP server verticle. Deployed in multiple instances by {@link MainVerticle}; all
+ * instances listen on the same port and Vert.x distributes connections between them.
+ */
+public class ServerVerticle extends AbstractVerticle {
+
+  @Override
+  public void start(Promise<Void> promise) {
+    final int port = Integer.parseInt(
+        Config.getSysConf("http.port", "port", "8081", config()));
+    final boolean compression = Boolean.parseBoolean(
+        Config.getSysConf("http.compression", "compression", "true", config()));
+    final int compressionLevel = Integer.parseInt(
+        Config.getSysConf("http.compression.level", "compressionLevel", "6", config()));
+
+    SharedIndexService sharedIndexService = new SharedIndexService(vertx);
+
+    RouterCreator[] routerCreators = {
+        sharedIndexService,
+        new Tenant2Api(sharedIndexService),
+        new HealthApi(),
+        new MetricsApi(),
+    };
+
+    RouterCreator.mountAll(vertx, routerCreators)
+        .compose(router -> {
+          // gzip/deflate for responses as negotiated by Accept-Encoding, and for
+          // request bodies as given by Content-Encoding. Chunked responses are
+          // compressed as they are streamed.
+          HttpServerOptions so = new HttpServerOptions()
+              .setHandle100ContinueAutomatically(true)
+              .setCompressionSupported(compression)
+              .setCompressionLevel(compressionLevel)
+              .setDecompressionSupported(true);
+          return vertx.createHttpServer(so)
+              .requestHandler(router)
+              .listen(port).mapEmpty();
+        })
+        .onComplete(x -> promise.handle(x.mapEmpty()));
+  }
+}
@@ -5,23 +5,74 @@ import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import java.text.Normalizer;
-import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.function.Function;
 
 
 public class MatchKey {
 
-  private final Logger logger = LoggerFactory.getLogger("reshare-index");
+  private static final Logger logger = LoggerFactory.getLogger("reshare-index");
+
+  /**
+   * Parts of the match key, in the order they appear in the key.
+   */
+  public enum Component {
+    TITLE("title", m -> get70chars(m.hasMatchKeyObject(m.candidateInstance)
+        ? m.getInstanceMatchKeyValue(TITLE_PROPERTY) + " "
+        + m.getInstanceMatchKeyValue("remainder-of-title")
+        : m.getTitle())),
+    MEDIUM("medium", m -> m.hasMatchKeyObject(m.candidateInstance)
+        ? get5chars(m.getInstanceMatchKeyValue("medium")) : ""),
+    DATE_OF_PUBLICATION("dateOfPublication", MatchKey::getDateOfPublication),
+    PHYSICAL_DESCRIPTION("physicalDescription", MatchKey::getPhysicalDescription),
+    EDITION("edition", MatchKey::getEdition),
+    PUBLISHER("publisher", MatchKey::getPublisher),
+    TYPE_OF("typeOf", MatchKey::getTypeOf),
+    TITLE_PART("titlePart", MatchKey::getTitlePart),
+    TITLE_NUMBER("titleNumber", MatchKey::getTitleNumber),
+    AUTHOR("author", MatchKey::getAuthor),
+    TITLE_DATES("titleDates", MatchKey::getTitleDates),
+    GOV_DOC_NUMBER("govDocNumber", MatchKey::getGovDocNumber),
+    FORMAT_CHAR("formatChar", MatchKey::getFormatChar);
+
+    private final String id;
+    private final Function<MatchKey, String> value;
+
+    Component(String id, Function<MatchKey, String> value) {
+      this.id = id;
+      this.value = value;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * Get component from its identifier.
+     * @param id identifier such as "title" or "dateOfPublication"
+     * @return component or NULL if not found
+     */
+    public static Component fromId(String id) {
+      for (Component component : values()) {
+        if (component.id.equals(id)) {
+          return component;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final Component[] COMPONENTS = Component.values();
 
   private final JsonObject candidateInstance;
+  private final Set<Component> components;
   private final String matchkee;
   private static final Map<String, String> typeOfMap;
   private static final String MATCH_KEY = "matchKey";
-  private static final String TITLE = "title";
+  private static final String TITLE_PROPERTY = "title";
 
   private static final String PERSONAL_NAME_TYPE  = "2b94c631-fca9-4892-a730-03ee529ffe2a";
   private static final String CORPORATE_NAME_TYPE = "2e48e713-17f3-4c13-a9f8-23845bb210aa";
@@ -49,7 +100,17 @@ public class MatchKey {
    * Doc.
    */
   public MatchKey(JsonObject candidateInstance) {
+    this(candidateInstance, EnumSet.allOf(Component.class));
+  }
+
+  /**
+   * Create match key with some components only.
+   * @param candidateInstance inventory instance
+   * @param components components to include
+   */
+  public MatchKey(JsonObject candidateInstance, Set<Component> components) {
     this.candidateInstance = candidateInstance;
+    this.components = components;
     matchkee = buildMatchKey();
   }
 
@@ -66,30 +127,18 @@ public class MatchKey {
       // use provided match key if any
       key.append(candidateInstance.getString(MATCH_KEY));
     } else {
-      if (hasMatchKeyObject(candidateInstance)) {
-        // build match key from match key object's properties
-        String title = getInstanceMatchKeyValue(TITLE) + " "
-                + getInstanceMatchKeyValue("remainder-of-title");
-        key.append(get70chars(title))
-                .append(get5chars(getInstanceMatchKeyValue("medium")));
-      } else {
-        // build match key from plain Instance properties
-        key.append(get70chars(getTitle()));
+      // title and medium from match key object's properties if present,
+      // otherwise from plain Instance properties
+      for (Component component : COMPONENTS) {
+        if (components.contains(component)) {
+          key.append(component.value.apply(this));
+        }
       }
-      key.append(getDateOfPublication())
-              .append(getPhysicalDescription())
-              .append(getEdition())
-              .append(getPublisher())
-              .append(getTypeOf())
-              .append(getTitlePart())
-              .append(getTitleNumber())
-              .append(getAuthor())
-              .append(getTitleDates())
-              .append(getGovDocNumber())
-              .append(getFormatChar());
-    }
-    keyStr = key.toString().trim().replace(" ", "_");
-    logger.debug("Match key is:" + keyStr);
+    }
+    keyStr = key.toString().trim().replace(' ', '_');
+    if (logger.isDebugEnabled()) {
+      logger.debug("Match key is:" + keyStr);
+    }
     return keyStr;
   }
 
@@ -98,8 +147,8 @@ public class MatchKey {
    */
   private String getTitle() {
     String title = "";
-    if (candidateInstance.containsKey(TITLE)) {
-      title = candidateInstance.getString(TITLE);
+    if (candidateInstance.containsKey(TITLE_PROPERTY)) {
+      title = candidateInstance.getString(TITLE_PROPERTY);
       title = unaccent(title);
       title = stripTrimLowercase(title);
     }
@@ -110,77 +159,293 @@ public class MatchKey {
    * Doc.
    */
   private static String get70chars(String input) {
-    String output = "";
-    if (input != null && input.length() < 70) {
-      output = String.format("%-70s", input).replace(" ", "_");
-    } else if (input != null) {
-      output = input.substring(0,45);
-      String[] rest = input.substring(45).split("[ ]+");
-      for (int i = 0; i < rest.length; i++) {
-        if (output.length() < 70) {
-          output = output + (rest[i].length() > 0 ? rest[i].substring(0,1) : "");
-        }
+    if (input == null) {
+      return "";
+    }
+    if (input.length() < 70) {
+      return pad(input, 70);
+    }
+    // first 45 characters, then initial letter of each following word
+    StringBuilder output = new StringBuilder(70).append(input, 0, 45);
+    for (int i = 45; i < input.length() && output.length() < 70; i++) {
+      char c = input.charAt(i);
+      if (c != ' ' && (i == 45 || input.charAt(i - 1) == ' ')) {
+        output.append(c);
       }
-      if (output.length() < 70) {
-        output = String.format("%-70s", output).replace(" ", "_");
+    }
+    if (output.length() < 70) {
+      return pad(output, 70);
+    }
+    return output.toString();
+  }
+
+  /**
+   * Left-justify in field of given width with space replaced by underscore.
+   *
+   * <p>Same as {@code String.format("%-" + width + "s", s).replace(" ", "_")}.
+   */
+  static String pad(CharSequence s, int width) {
+    StringBuilder output = new StringBuilder(Math.max(width, s.length()));
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      output.append(c == ' ' ? '_' : c);
+    }
+    while (output.length() < width) {
+      output.append('_');
+    }
+    return output.toString();
+  }
+
+  // actions of STRIP_ACTION; KEEP is the default for characters not listed
+  private static final byte KEEP = 0;
+  private static final byte REMOVE = 1;
+  private static final byte AMPERSAND = 2;
+  private static final byte BLANK = 3;
+
+  /**
+   * What {@link #stripTrimLowercase(CharSequence)} does with each ASCII character.
+   */
+  private static final byte[] STRIP_ACTION = new byte[128];
+
+  static {
+    for (char c : "'{}".toCharArray()) {
+      STRIP_ACTION[c] = REMOVE;
+    }
+    STRIP_ACTION['&'] = AMPERSAND;
+    for (char c : "#*$@<>[]\"\\,.?:()=^~|;`-".toCharArray()) {
+      STRIP_ACTION[c] = BLANK;
+    }
+  }
+
+  private static final char COPYRIGHT = '©';
+
+  /**
+   * Length of leading article to be skipped.
+   *
+   * <p>Same as removing, in turn, {@code ^[aA][ ]+}, {@code ^[aA]n[ ]+}, {@code ^[tT]he[ ]+}.
+   */
+  private static int skipArticles(CharSequence input) {
+    int pos = skipArticle(input, 0, "a");
+    pos = skipArticle(input, pos, "an");
+    return skipArticle(input, pos, "the");
+  }
+
+  private static int skipArticle(CharSequence input, int pos, String article) {
+    int i = pos;
+    if (i >= input.length() || Character.toLowerCase(input.charAt(i)) != article.charAt(0)
+        || input.charAt(i) > 'z') {
+      return pos;
+    }
+    for (i++; i < pos + article.length(); i++) {
+      if (i >= input.length() || input.charAt(i) != article.charAt(i - pos)) {
+        return pos;
       }
     }
-    return output;
+    if (i >= input.length() || input.charAt(i) != ' ') {
+      return pos;
+    }
+    while (i < input.length() && input.charAt(i) == ' ') {
+      i++;
+    }
+    return i;
   }
 
   /**
-   * Doc.
+   * Remove leading article, quotes and braces, replace ampersand with "and" and punctuation
+   * with blank, then trim and lower-case.
+   *
+   * <p>Single pass over the input with a lookup table per character; same result as
+   * the regular expression replacements it replaces.
    */
-  private static String stripTrimLowercase(String input) {
-    String output = null;
-    if (input != null) {
-      input = input.replaceFirst("^[aA][ ]+", "");
-      input = input.replaceFirst("^[aA]n[ ]+", "");
-      input = input.replaceFirst("^[tT]he[ ]+", "");
-      input = input.replaceAll("['{}]", "");
-      input = input.replace("&", "and");
-      output = input.replaceAll("[#*$@<>\\[\\]\"\\\\,.?:()=^~|©;`-]", " ").trim().toLowerCase();
+  private static String stripTrimLowercase(CharSequence input) {
+    if (input == null) {
+      return null;
     }
-    return output;
+    StringBuilder output = new StringBuilder(input.length() + 8);
+    boolean nonAscii = false;
+    int end = 0; // length of output up to and including last non-blank
+    for (int i = skipArticles(input); i < input.length(); i++) {
+      char c = input.charAt(i);
+      byte action = c < 128 ? STRIP_ACTION[c] : c == COPYRIGHT ? BLANK : KEEP;
+      switch (action) {
+        case REMOVE:
+          break;
+        case AMPERSAND:
+          output.append("and");
+          end = output.length();
+          break;
+        case BLANK:
+          if (output.length() > 0) {
+            output.append(' ');
+          }
+          break;
+        default:
+          if (c <= ' ' && output.length() == 0) {
+            break; // trim leading
+          }
+          if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+          } else if (c >= 128) {
+            nonAscii = true;
+          }
+          output.append(c);
+          if (c > ' ') {
+            end = output.length();
+          }
+      }
+    }
+    output.setLength(end);
+    String result = output.toString();
+    return nonAscii ? result.toLowerCase() : result;
   }
 
+  // table values beside ASCII characters
+  private static final char FOLD_UNKNOWN = 0;
+  private static final char FOLD_REMOVE = 128;
+  private static final char FOLD_SLOW = 129;
+
   /**
-   * Doc.
+   * ASCII residue of the canonical decomposition of each non-ASCII character, filled in
+   * on first use. Races are harmless as every thread computes the same value.
+   */
+  private static final char[] FOLD = new char[65536];
+
+  private static char fold(char c) {
+    char f = FOLD[c];
+    if (f == FOLD_UNKNOWN) {
+      f = FOLD_REMOVE;
+      if (!Character.isSurrogate(c)) {
+        String residue = asciiOnly(Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD));
+        if (residue.length() == 1) {
+          f = residue.charAt(0);
+        } else if (residue.length() > 1) {
+          f = FOLD_SLOW;
+        }
+      }
+      FOLD[c] = f;
+    }
+    return f;
+  }
+
+  private static String asciiOnly(String s) {
+    StringBuilder output = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) < 128) {
+        output.append(s.charAt(i));
+      }
+    }
+    return output.toString();
+  }
+
+  /**
+   * Remove diacritics and other non-ASCII characters.
+   *
+   * <p>Same as NFD normalization followed by removal of non-ASCII characters, but
+   * the decomposition is looked up per character and input that is ASCII already is
+   * returned as is.
    */
   private static String unaccent(String str) {
-    return (str == null ? str :
-            Normalizer.normalize(str, Normalizer.Form.NFD)
-                    .replaceAll("[^\\p{ASCII}]", ""));
+    if (str == null) {
+      return null;
+    }
+    int i = 0;
+    while (i < str.length() && str.charAt(i) < 128) {
+      i++;
+    }
+    if (i == str.length()) {
+      return str;
+    }
+    StringBuilder output = new StringBuilder(str.length()).append(str, 0, i);
+    for (; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < 128) {
+        output.append(c);
+        continue;
+      }
+      char f = fold(c);
+      if (f == FOLD_SLOW) {
+        output.append(asciiOnly(Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)));
+      } else if (f != FOLD_REMOVE) {
+        output.append(f);
+      }
+    }
+    return output.toString();
   }
 
+  private static final int DIGIT = 1;
+  private static final int ALPHA = 2;
+
   /**
-   * Doc.
+   * Leftmost run of at least count characters of given class.
+   *
+   * <p>Same as group 1 of {@code .*?(\p{class}{count}).*} with {@code matches()}: no match
+   * if input has a line terminator (which {@code .} does not match).
+   * @param input string
+   * @param classes ALPHA, DIGIT or both
+   * @param count length of run
+   * @return start of run; -1 if none
+   */
+  private static int findRun(String input, int classes, int count) {
+    int run = 0;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (isLineTerminator(c)) {
+        return -1;
+      }
+      run = (charClass(c) & classes) != 0 ? run + 1 : 0;
+      if (run == count) {
+        int start = i + 1 - count;
+        // rest of string must be matched by .*
+        for (i++; i < input.length(); i++) {
+          if (isLineTerminator(input.charAt(i))) {
+            return -1;
+          }
+        }
+        return start;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static int charClass(char c) {
+    if (c >= '0' && c <= '9') {
+      return DIGIT;
+    }
+    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+      return ALPHA;
+    }
+    return 0;
+  }
+
+  /**
+   * First of runs of decreasing length, in order of priority.
+   * @param input string
+   * @param lengths pairs of character classes and run length
+   * @return first run found; empty string if none
    */
-  private static final List<Pattern> CONTIGUOUS_CHARS_REGEXS =
-          Arrays.asList(
-                  Pattern.compile(".*?(\\p{Alnum}{5}).*"),
-                  Pattern.compile(".*?(\\p{Alnum}{4}).*"),
-                  Pattern.compile(".*?(\\p{Alnum}{3}).*"),
-                  Pattern.compile(".*?(\\p{Alnum}{2}).*"),
-                  Pattern.compile(".*?(\\p{Alnum}{1}).*")
-          );
+  private static String firstRun(String input, int... lengths) {
+    for (int i = 0; i < lengths.length; i += 2) {
+      int start = findRun(input, lengths[i], lengths[i + 1]);
+      if (start >= 0) {
+        return input.substring(start, start + lengths[i + 1]);
+      }
+    }
+    return "";
+  }
 
   /**
    * Doc.
    */
   protected static String get5chars(String input) {
     if (input == null) {
-      return String.format("%-5s", "").replace(" ", "_");
+      return "_____";
     } else {
-      String output = "";
-      for (Pattern p : CONTIGUOUS_CHARS_REGEXS) {
-        Matcher m = p.matcher(input);
-        if (m.matches()) {
-          output = m.group(1);
-          break;
-        }
-      }
-      return String.format("%-5s", output).replace(" ", "_");
+      int alnum = ALPHA | DIGIT;
+      return pad(firstRun(input, alnum, 5, alnum, 4, alnum, 3, alnum, 2, alnum, 1), 5);
     }
   }
 
@@ -278,16 +543,24 @@ public class MatchKey {
   }
 
   protected String makeDateDigits(String date) {
-    Pattern pattern = Pattern.compile("(\\d\\d\\d\\d)");
-    Matcher matcher = pattern.matcher(date);
-    String latestMatch = null;
-    while (matcher.find()) {
-      latestMatch = matcher.group(1);
+    // last of the non-overlapping 4 digit sequences, scanning from the left
+    int latestMatch = -1;
+    int run = 0;
+    for (int i = 0; i < date.length(); i++) {
+      char c = date.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++run == 4) {
+          latestMatch = i - 3;
+          run = 0;
+        }
+      } else {
+        run = 0;
+      }
     }
-    if (latestMatch == null) {
+    if (latestMatch == -1) {
       return "0000";
     }
-    return latestMatch;
+    return date.substring(latestMatch, latestMatch + 4);
   }
 
   protected String lookupTypeOf(String instanceTypeId) {
@@ -304,7 +577,7 @@ public class MatchKey {
       titlePart = stripTrimLowercase(titlePart);
       titlePart = unaccent(titlePart);
     }
-    return String.format("%-30s", titlePart).replace(" ", "_");
+    return pad(titlePart, 30);
   }
 
   protected String makeGovDocNumber(String number) {
@@ -335,7 +608,7 @@ public class MatchKey {
     } else {
       titleNumber = unaccent(titleNumber);
     }
-    return String.format("%-10s", titleNumber).replace(" ", "_");
+    return pad(titleNumber, 10);
   }
 
   protected String makeAuthor(String author) {
@@ -345,7 +618,7 @@ public class MatchKey {
       author = stripTrimLowercase(author);
       unaccent(author);
     }
-    return String.format("%-20s", author).replace(" ", "_");
+    return pad(author, 20);
   }
 
   protected String makeTitleDates(String dates) {
@@ -354,11 +627,9 @@ public class MatchKey {
     } else {
       dates = stripTrimLowercase(dates);
     }
-    return String.format("%-15s", dates).replace(" ", "_");
+    return pad(dates, 15);
   }
 
-  private static final Pattern PAGINATION_REGEX = Pattern.compile(".*?(\\d{1,4}).*");
-
   /**
    * Gets first occurring physical description.
    * @return one physical description (empty string if none found)
@@ -369,28 +640,24 @@ public class MatchKey {
     if (physicalDescriptions != null && !physicalDescriptions.getList().isEmpty()) {
       String physicalDescriptionSource = physicalDescriptions.getList().get(0).toString();
       physicalDescriptionSource = unaccent(physicalDescriptionSource);
-      Matcher m = PAGINATION_REGEX.matcher(physicalDescriptionSource);
-      if (m.matches()) {
-        physicalDescription = m.group(1);
+      // up to 4 digits of first number
+      int start = findRun(physicalDescriptionSource, DIGIT, 1);
+      if (start >= 0) {
+        int end = start + 1;
+        while (end < start + 4 && end < physicalDescriptionSource.length()
+            && charClass(physicalDescriptionSource.charAt(end)) == DIGIT) {
+          end++;
+        }
+        physicalDescription = physicalDescriptionSource.substring(start, end);
       }
     }
-    return String.format("%-4s", physicalDescription).replace(" ", "_");
+    return pad(physicalDescription, 4);
   }
 
 
   // In order of priority,
   // pick first occuring 3, else 2, else 1 contiguous digits,
   // else first 3, else 2, else 1 contiguous characters
-  private static final List<Pattern> EDITION_REGEXS =
-          Arrays.asList(
-                  Pattern.compile(".*?(\\d{3}).*"),
-                  Pattern.compile(".*?(\\d{2}).*"),
-                  Pattern.compile(".*?(\\d{1}).*"),
-                  Pattern.compile(".*?(\\p{Alpha}{3}).*"),
-                  Pattern.compile(".*?(\\p{Alpha}{2}).*"),
-                  Pattern.compile(".*?(\\p{Alpha}{1}).*")
-          );
-
   /**
    * Doc.
    */
@@ -400,16 +667,9 @@ public class MatchKey {
     if (editions != null && !editions.getList().isEmpty()) {
       String editionSource = editions.getList().get(0).toString();
       editionSource = unaccent(editionSource);
-      Matcher m;
-      for (Pattern p : EDITION_REGEXS) {
-        m = p.matcher(editionSource);
-        if (m.matches()) {
-          edition = m.group(1);
-          break;
-        }
-      }
+      edition = firstRun(editionSource, DIGIT, 3, DIGIT, 2, DIGIT, 1, ALPHA, 3, ALPHA, 2, ALPHA, 1);
     }
-    return String.format("%-3s", edition).replace(" ", "_");
+    return pad(edition, 3);
   }
 
   /**
@@ -429,7 +689,7 @@ public class MatchKey {
     if (publisher == null) {
       publisher = "";
     }
-    publisher = String.format("%-10s", publisher).replace(" ", "_");
+    publisher = pad(publisher, 10);
     return publisher;
   }
 
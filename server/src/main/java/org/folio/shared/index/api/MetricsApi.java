@@ -0,0 +1,24 @@
+package org.folio.shared.index.api;
+
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import org.folio.shared.index.metrics.SharedIndexMetrics;
+import org.folio.tlib.RouterCreator;
+
+/**
+ * Prometheus scrape endpoint: GET /admin/metrics.
+ */
+public class MetricsApi implements RouterCreator {
+
+  @Override
+  public Future<Router> createRouter(Vertx vertx) {
+    Router router = Router.router(vertx);
+    router.get("/admin/metrics").handler(ctx ->
+        ctx.response()
+            .putHeader("Content-Type", TextFormat.CONTENT_TYPE_004)
+            .end(SharedIndexMetrics.getRegistry().scrape()));
+    return Future.succeededFuture(router);
+  }
+}
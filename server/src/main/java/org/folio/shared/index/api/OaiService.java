@@ -3,6 +3,7 @@ package org.folio.shared.index.api;
 import static org.folio.shared.index.api.Util.parseFrom;
 import static org.folio.shared.index.api.Util.parseUntil;
 
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.Future;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
@@ -51,19 +52,21 @@ public final class OaiService {
   }
 
   static void oaiHeader(RoutingContext ctx) {
-    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     HttpServerResponse response = ctx.response();
     response.setChunked(true);
     response.setStatusCode(200);
     response.putHeader("Content-Type", "text/xml");
-    response.write(OAI_HEADER);
-    response.write("  <responseDate>" + Instant.now() + "</responseDate>\n");
-    response.write("  <request");
+    // written in one go: each write is a separately flushed chunk when compressing
+    StringBuilder s = new StringBuilder(OAI_HEADER);
+    s.append("  <responseDate>" + Instant.now() + "</responseDate>\n");
+    s.append("  <request");
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String verb = Util.getParameterString(params.queryParameter("verb"));
     if (verb != null) {
-      response.write(" verb=\"" + XmlJsonUtil.encodeXmlText(verb) + "\"");
+      s.append(" verb=\"" + XmlJsonUtil.encodeXmlText(verb) + "\"");
     }
-    response.write(">" + XmlJsonUtil.encodeXmlText(ctx.request().absoluteURI()) + "</request>\n");
+    s.append(">" + XmlJsonUtil.encodeXmlText(ctx.request().absoluteURI()) + "</request>\n");
+    response.write(s.toString());
   }
 
   static void oaiFooter(RoutingContext ctx) {
@@ -134,7 +137,10 @@ public final class OaiService {
         config.getString("adminEmail", "admin@mail.unspecified")));
     response.write("</adminEmail>\n");
     response.write("    <earliestDatestamp>2020-01-01T00:00:00Z</earliestDatestamp>\n");
-    response.write("    <deletedRecord>persistent</deletedRecord>\n");
+    // merged clusters are reported as deleted until pruned after retention
+    response.write("    <deletedRecord>"
+        + (Storage.getClusterRetention(config) == null ? "persistent" : "transient")
+        + "</deletedRecord>\n");
     response.write("    <granularity>YYYY-MM-DDThh:mm:ssZ</granularity>\n");
     response.write("  </Identify>\n");
     oaiFooter(ctx);
@@ -151,7 +157,7 @@ public final class OaiService {
     String until = token != null
         ? token.getUntil() : Util.getParameterString(params.queryParameter("until"));
     Integer limit = params.queryParameter("list-limit").getInteger();
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     return storage.selectMatchKeyConfig(set).compose(conf -> {
       if (conf == null) {
         throw OaiException.badArgument("set \"" + set + "\" not found");
@@ -176,7 +182,7 @@ public final class OaiService {
       }
       ResumptionToken resumptionToken = new ResumptionToken(conf.getString("id"), until);
       sqlQuery.append(" ORDER BY datestamp");
-      return storage.getPool().getConnection().compose(conn ->
+      return storage.getConnection().compose(conn ->
           listRecordsResponse(ctx, storage, conn, sqlQuery.toString(), Tuple.from(tupleList),
               limit, withMetadata, resumptionToken)
       );
@@ -245,18 +251,20 @@ public final class OaiService {
 
   static Future<String> getXmlRecordMetadata(Storage storage, SqlConnection conn, UUID clusterId,
       List<String> matchValues) {
-    String q = "SELECT * FROM " + storage.getBibRecordTable()
+    String q = "SELECT marc_payload, local_id, source_id FROM " + storage.getBibRecordTable()
         + " LEFT JOIN " + storage.getClusterRecordTable() + " ON record_id = id "
-        + " WHERE cluster_id = $1";
+        + " WHERE cluster_id IN (" + storage.getClusterMembersSql("$1") + ")";
     return conn.preparedQuery(q)
         .execute(Tuple.of(clusterId))
-        .map(rowSet -> getMetadata(rowSet, clusterId, matchValues));
+        // combining and converting to MARCXML is CPU bound; keep it off the event loop
+        .compose(rowSet -> storage.getVertx().executeBlocking(promise ->
+            promise.complete(getMetadata(rowSet, clusterId, matchValues)), false));
   }
 
   static Future<List<String>> getClusterValues(Storage storage, SqlConnection conn,
       UUID clusterId) {
     return conn.preparedQuery("SELECT match_value FROM " + storage.getClusterValuesTable()
-            + " WHERE cluster_id = $1")
+            + " WHERE cluster_id IN (" + storage.getClusterMembersSql("$1") + ")")
         .execute(Tuple.of(clusterId))
         .map(rowSet -> {
           List<String> values = new ArrayList<>();
@@ -309,6 +317,7 @@ public final class OaiService {
           AtomicInteger cnt = new AtomicInteger();
           stream.handler(row -> {
             stream.pause();
+            final Timer.Sample paused = Timer.start();
             if (cnt.get() == 0) {
               oaiHeader(ctx);
               response.write("  <" + elem + ">\n");
@@ -326,9 +335,13 @@ public final class OaiService {
             cnt.incrementAndGet();
             getXmlRecord(storage, conn, row.getUUID("cluster_id"), datestamp,
                 row.getString("match_key_config_id"), withMetadata)
-                .onSuccess(xmlRecord ->
-                    response.write(xmlRecord).onComplete(x -> stream.resume())
-                )
+                .onSuccess(xmlRecord -> {
+                  storage.getMetrics().getOaiRecords().increment();
+                  response.write(xmlRecord).onComplete(x -> {
+                    paused.stop(storage.getMetrics().getStreamPauseTimer());
+                    stream.resume();
+                  });
+                })
                 .onFailure(e -> {
                   log.info("failure {}", e.getMessage(), e);
                   stream.close();
@@ -352,28 +365,30 @@ public final class OaiService {
       throw OaiException.badArgument("missing identifier");
     }
     UUID clusterId = decodeOaiIdentifier(identifier);
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     String sqlQuery = "SELECT * FROM " + storage.getClusterMetaTable() + " WHERE cluster_id = $1";
-    return storage.getPool()
-        .withConnection(conn -> conn.preparedQuery(sqlQuery)
-            .execute(Tuple.of(clusterId))
-            .compose(res -> {
-              RowIterator<Row> iterator = res.iterator();
-              if (!iterator.hasNext()) {
-                throw OaiException.idDoesNotExist(identifier);
-              }
-              Row row = iterator.next();
-              return getXmlRecord(storage, conn,
-                  row.getUUID("cluster_id"), row.getLocalDateTime("datestamp"),
-                  row.getString("match_key_config_id"), true)
-                  .map(xmlRecord -> {
-                    oaiHeader(ctx);
-                    ctx.response().write("  <GetRecord>\n");
-                    ctx.response().write(xmlRecord);
-                    ctx.response().write("  </GetRecord>\n");
-                    oaiFooter(ctx);
-                    return null;
-                  });
-            }));
+    return storage
+        .getCachedResponse(clusterId, "oai", () -> storage.withConnection(conn ->
+            conn.preparedQuery(sqlQuery)
+                .execute(Tuple.of(clusterId))
+                .compose(res -> {
+                  RowIterator<Row> iterator = res.iterator();
+                  if (!iterator.hasNext()) {
+                    throw OaiException.idDoesNotExist(identifier);
+                  }
+                  Row row = iterator.next();
+                  return getXmlRecord(storage, conn,
+                      row.getUUID("cluster_id"), row.getLocalDateTime("datestamp"),
+                      row.getString("match_key_config_id"), true);
+                })))
+        .map(xmlRecord -> {
+          storage.getMetrics().getOaiRecords().increment();
+          oaiHeader(ctx);
+          ctx.response().write("  <GetRecord>\n");
+          ctx.response().write(xmlRecord);
+          ctx.response().write("  </GetRecord>\n");
+          oaiFooter(ctx);
+          return null;
+        });
   }
 }
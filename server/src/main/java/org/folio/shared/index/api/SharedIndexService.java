@@ -2,6 +2,7 @@ package org.folio.shared.index.api;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -10,30 +11,49 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.openapi.RouterBuilder;
 import io.vertx.ext.web.validation.RequestParameters;
 import io.vertx.ext.web.validation.ValidationHandler;
+import io.vertx.pgclient.PgException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.Config;
 import org.folio.okapi.common.HttpResponse;
 import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.folio.shared.index.metrics.SharedIndexMetrics;
+import org.folio.shared.index.storage.ChangeCursor;
+import org.folio.shared.index.storage.ClusterFields;
+import org.folio.shared.index.storage.Facets;
+import org.folio.shared.index.storage.RecordFields;
+import org.folio.shared.index.storage.SearchField;
 import org.folio.shared.index.storage.Storage;
 import org.folio.tlib.RouterCreator;
 import org.folio.tlib.TenantInitHooks;
 import org.folio.tlib.postgres.PgCqlField;
 import org.folio.tlib.postgres.PgCqlQuery;
+import org.folio.tlib.util.TenantUtil;
 
 public class SharedIndexService implements RouterCreator, TenantInitHooks {
 
   private static final Logger log = LogManager.getLogger(SharedIndexService.class);
+  // SQLSTATE unique_violation: an identifier that is in use already
+  private static final String UNIQUE_VIOLATION = "23505";
   final Vertx vertx;
+  final Set<String> uncompressedOperations = new HashSet<>();
 
   public SharedIndexService(Vertx vertx) {
     this.vertx = vertx;
   }
 
   Future<Void> putGlobalRecords(RoutingContext ctx) {
-    Storage storage = new Storage(ctx);
-    return storage.updateGlobalRecords(ctx.getBodyAsJson()).onSuccess(res -> {
+    Storage storage = Storage.get(ctx);
+    // body already parsed by the OpenAPI validation; avoid decoding it again
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    return storage.updateGlobalRecords(params.body().getJsonObject()).onSuccess(res -> {
       JsonArray ar = new JsonArray();
       // global ids and match keys here ...
       HttpResponse.responseJson(ctx, 200).end(ar.encode());
@@ -47,7 +67,7 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
     return pgCqlQuery;
   }
 
-  static PgCqlQuery getPqCqlQueryForRecords() {
+  static PgCqlQuery getPqCqlQueryForRecords(List<SearchField> searchFields) {
     PgCqlQuery pgCqlQuery = createPgCqlQuery();
     pgCqlQuery.addField(
         new PgCqlField("id", PgCqlField.Type.UUID));
@@ -57,43 +77,67 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
         new PgCqlField("local_id", "localId", PgCqlField.Type.TEXT));
     pgCqlQuery.addField(
         new PgCqlField("source_id", "sourceId", PgCqlField.Type.UUID));
+    // configured search fields; their expressions match the expression indexes
+    for (SearchField searchField : searchFields) {
+      pgCqlQuery.addField(
+          new PgCqlField(searchField.getSql(), searchField.getId(), PgCqlField.Type.TEXT));
+    }
     return pgCqlQuery;
   }
 
   Future<Void> deleteGlobalRecords(RoutingContext ctx) {
-    PgCqlQuery pgCqlQuery = getPqCqlQueryForRecords();
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String query = Util.getQueryParameter(params);
     if (query == null) {
       failHandler(400, ctx, "Must specify query for delete records");
       return Future.succeededFuture();
     }
-    pgCqlQuery.parse(query);
-    Storage storage = new Storage(ctx);
-    return storage.deleteGlobalRecords(pgCqlQuery.getWhereClause())
-        .onSuccess(x -> ctx.response().setStatusCode(204).end());
+    Storage storage = Storage.get(ctx);
+    return storage.getSearchFieldList().compose(searchFields -> {
+      PgCqlQuery pgCqlQuery = getPqCqlQueryForRecords(searchFields);
+      pgCqlQuery.parse(query);
+      return storage.deleteGlobalRecords(pgCqlQuery.getWhereClause())
+          .onSuccess(x -> ctx.response().setStatusCode(204).end());
+    });
   }
 
   Future<Void> getGlobalRecords(RoutingContext ctx) {
-    PgCqlQuery pgCqlQuery = getPqCqlQueryForRecords();
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
-    pgCqlQuery.parse(Util.getQueryParameter(params));
-    Storage storage = new Storage(ctx);
-    return storage.getGlobalRecords(ctx, pgCqlQuery.getWhereClause(),
-        pgCqlQuery.getOrderByClause());
+    RecordFields fields = RecordFields.parse(Util.getFieldsParameter(params));
+    Facets facets = Facets.parse(Util.getFacetsParameter(params), Storage.RECORD_FACETS);
+    Storage storage = Storage.get(ctx);
+    return storage.getSearchFieldList().compose(searchFields -> {
+      PgCqlQuery pgCqlQuery = getPqCqlQueryForRecords(searchFields);
+      pgCqlQuery.parse(Util.getQueryParameter(params));
+      return storage.getGlobalRecords(ctx, pgCqlQuery.getWhereClause(),
+          pgCqlQuery.getOrderByClause(), fields, facets, Util.getKeywordsParameter(params));
+    });
+  }
+
+  Future<Void> exportGlobalRecords(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    RecordFields fields = RecordFields.parse(Util.getFieldsParameter(params));
+    Storage storage = Storage.get(ctx);
+    return storage.getSearchFieldList().compose(searchFields -> {
+      PgCqlQuery pgCqlQuery = getPqCqlQueryForRecords(searchFields);
+      pgCqlQuery.parse(Util.getQueryParameter(params));
+      return storage.exportGlobalRecords(ctx, pgCqlQuery.getWhereClause(),
+          pgCqlQuery.getOrderByClause(), fields);
+    });
   }
 
   Future<Void> getGlobalRecord(RoutingContext ctx) {
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String id = Util.getParameterString(params.pathParameter("globalId"));
-    Storage storage = new Storage(ctx);
-    return storage.getGlobalRecord(id)
+    RecordFields fields = RecordFields.parse(Util.getFieldsParameter(params));
+    Storage storage = Storage.get(ctx);
+    return storage.getGlobalRecord(UUID.fromString(id), fields)
         .onSuccess(res -> {
           if (res == null) {
             HttpResponse.responseError(ctx, 404, id);
             return;
           }
-          HttpResponse.responseJson(ctx, 200).end(res.encode());
+          HttpResponse.responseJson(ctx, 200).end(res);
         })
         .mapEmpty();
   }
@@ -107,48 +151,104 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
     pgCqlQuery.addField(
         new PgCqlField("match_value", "matchValue", PgCqlField.Type.TEXT));
     pgCqlQuery.addField(
-        new PgCqlField("cluster_records.cluster_id", "clusterId", PgCqlField.Type.UUID));
+        new PgCqlField(Storage.CLUSTER_ID_RESOLVED, "clusterId", PgCqlField.Type.UUID));
 
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     pgCqlQuery.parse(Util.getQueryParameter(params));
     String matchKeyId = Util.getParameterString(params.queryParameter("matchkeyid"));
-    Storage storage = new Storage(ctx);
+    ClusterFields fields = ClusterFields.parse(Util.getFieldsParameter(params));
+    Storage storage = Storage.get(ctx);
     return storage.selectMatchKeyConfig(matchKeyId).compose(conf -> {
       if (conf == null) {
         matchKeyNotFound(ctx, matchKeyId);
         return Future.succeededFuture();
       }
-      return storage.getClusters(ctx, matchKeyId,
-          pgCqlQuery.getWhereClause(), pgCqlQuery.getOrderByClause());
+      return storage.getClusters(ctx, matchKeyId, pgCqlQuery.getWhereClause(),
+          pgCqlQuery.getOrderByClause(), fields, Util.getKeywordsParameter(params));
     });
   }
 
   Future<Void> getCluster(RoutingContext ctx) {
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String id = Util.getParameterString(params.pathParameter("clusterId"));
-    Storage storage = new Storage(ctx);
-    return storage.getClusterById(UUID.fromString(id))
+    ClusterFields fields = ClusterFields.parse(Util.getFieldsParameter(params));
+    Storage storage = Storage.get(ctx);
+    return storage.getClusterById(UUID.fromString(id), fields)
         .onSuccess(res -> {
-          if (res.getJsonArray("records").isEmpty()) {
+          if (res == null) {
             HttpResponse.responseError(ctx, 404, id);
             return;
           }
-          HttpResponse.responseJson(ctx, 200).end(res.encode());
+          HttpResponse.responseJson(ctx, 200).end(res);
         })
         .mapEmpty();
   }
 
+  Future<Void> getClusterChanges(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    String matchKeyId = Util.getParameterString(params.queryParameter("matchkeyid"));
+    String cursor = Util.getParameterString(params.queryParameter("cursor"));
+    ChangeCursor changeCursor = cursor != null ? new ChangeCursor(cursor) : null;
+    int limit = params.queryParameter("limit").getInteger();
+    long wait = params.queryParameter("wait").getInteger() * 1000L;
+    Storage storage = Storage.get(ctx);
+    return storage.selectMatchKeyConfig(matchKeyId).compose(conf -> {
+      if (conf == null) {
+        matchKeyNotFound(ctx, matchKeyId);
+        return Future.succeededFuture();
+      }
+      return storage.getClusterChanges(matchKeyId, changeCursor, limit, wait)
+          .onSuccess(res -> HttpResponse.responseJson(ctx, 200).end(res.encode()))
+          .mapEmpty();
+    });
+  }
+
+  Future<Void> lookupGlobalRecords(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    RecordFields fields = RecordFields.parse(Util.getFieldsParameter(params));
+    JsonObject request = params.body().getJsonObject();
+    List<UUID> globalIds = new ArrayList<>();
+    for (Object id : request.getJsonArray("globalIds", new JsonArray())) {
+      globalIds.add(UUID.fromString((String) id));
+    }
+    List<UUID> sourceIds = new ArrayList<>();
+    List<String> localIds = new ArrayList<>();
+    for (Object o : request.getJsonArray("localIds", new JsonArray())) {
+      JsonObject localId = (JsonObject) o;
+      sourceIds.add(UUID.fromString(localId.getString("sourceId")));
+      localIds.add(localId.getString("localId"));
+    }
+    Storage storage = Storage.get(ctx);
+    return storage.lookupGlobalRecords(globalIds, sourceIds, localIds, fields)
+        .onSuccess(res -> HttpResponse.responseJson(ctx, 200).end(res))
+        .mapEmpty();
+  }
+
+  Future<Void> lookupClusters(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    ClusterFields fields = ClusterFields.parse(Util.getFieldsParameter(params));
+    List<UUID> clusterIds = new ArrayList<>();
+    for (Object id : params.body().getJsonObject().getJsonArray("clusterIds")) {
+      clusterIds.add(UUID.fromString((String) id));
+    }
+    Storage storage = Storage.get(ctx);
+    return storage.lookupClusters(clusterIds, fields)
+        .onSuccess(res -> HttpResponse.responseJson(ctx, 200).end(res))
+        .mapEmpty();
+  }
 
   static String getMethod(JsonObject config) {
     String method = config.getString("method");
     if (MatchKeyMethod.get(method) == null) {
       throw new IllegalArgumentException("Non-existing method '" + method + "'");
     }
+    // reject bad parameters now rather than when records are ingested
+    Storage.compileMatchKeyConfig(method, config.getJsonObject("params"));
     return method;
   }
 
   Future<Void> postConfigMatchKey(RoutingContext ctx) {
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     JsonObject request = ctx.getBodyAsJson();
     String id = request.getString("id");
     String method = getMethod(request);
@@ -164,7 +264,7 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
   Future<Void> getConfigMatchKey(RoutingContext ctx) {
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String id = Util.getParameterString(params.pathParameter("id"));
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     return storage.selectMatchKeyConfig(id)
         .onSuccess(res -> {
           if (res == null) {
@@ -177,7 +277,7 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
   }
 
   Future<Void> putConfigMatchKey(RoutingContext ctx) {
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     JsonObject request = ctx.getBodyAsJson();
     String id = request.getString("id");
     String method = getMethod(request);
@@ -197,7 +297,7 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
   Future<Void> deleteConfigMatchKey(RoutingContext ctx) {
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String id = Util.getParameterString(params.pathParameter("id"));
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     return storage.deleteMatchKeyConfig(id)
         .onSuccess(res -> {
           if (Boolean.FALSE.equals(res)) {
@@ -218,17 +318,77 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
 
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     pgCqlQuery.parse(Util.getQueryParameter(params));
+    Facets facets = Facets.parse(Util.getFacetsParameter(params), Storage.MATCH_KEY_FACETS);
 
-    Storage storage = new Storage(ctx);
+    Storage storage = Storage.get(ctx);
     return storage.getMatchKeyConfigs(ctx, pgCqlQuery.getWhereClause(),
+        pgCqlQuery.getOrderByClause(), facets);
+  }
+
+  Future<Void> postConfigSearchField(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    JsonObject request = params.body().getJsonObject();
+    SearchField searchField = SearchField.fromJson(request);
+    Storage storage = Storage.get(ctx);
+    return storage.insertSearchField(searchField).onSuccess(res ->
+        HttpResponse.responseJson(ctx, 201)
+            .putHeader("Location", ctx.request().absoluteURI() + "/" + searchField.getId())
+            .end(searchField.toJson().encode())
+    );
+  }
+
+  Future<Void> getConfigSearchField(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    String id = Util.getParameterString(params.pathParameter("id"));
+    Storage storage = Storage.get(ctx);
+    return storage.selectSearchField(id)
+        .onSuccess(res -> {
+          if (res == null) {
+            HttpResponse.responseError(ctx, 404, "Search field " + id + " not found");
+            return;
+          }
+          HttpResponse.responseJson(ctx, 200).end(res.toJson().encode());
+        })
+        .mapEmpty();
+  }
+
+  Future<Void> deleteConfigSearchField(RoutingContext ctx) {
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    String id = Util.getParameterString(params.pathParameter("id"));
+    Storage storage = Storage.get(ctx);
+    return storage.deleteSearchField(id)
+        .onSuccess(res -> {
+          if (Boolean.FALSE.equals(res)) {
+            HttpResponse.responseError(ctx, 404, "Search field " + id + " not found");
+            return;
+          }
+          ctx.response().setStatusCode(204).end();
+        })
+        .mapEmpty();
+  }
+
+  Future<Void> getConfigSearchFields(RoutingContext ctx) {
+    PgCqlQuery pgCqlQuery = createPgCqlQuery();
+    pgCqlQuery.addField(
+        new PgCqlField("id", PgCqlField.Type.TEXT));
+    pgCqlQuery.addField(
+        new PgCqlField("payload", PgCqlField.Type.TEXT));
+
+    RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
+    pgCqlQuery.parse(Util.getQueryParameter(params));
+
+    Storage storage = Storage.get(ctx);
+    return storage.getSearchFields(ctx, pgCqlQuery.getWhereClause(),
         pgCqlQuery.getOrderByClause());
   }
 
   Future<Void> initializeMatchKey(RoutingContext ctx) {
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     String id = Util.getParameterString(params.pathParameter("id"));
-    Storage storage = new Storage(ctx);
-    return storage.initializeMatchKey(id)
+    Boolean bulk = params.queryParameter("bulk").getBoolean();
+    Storage storage = Storage.get(ctx);
+    return (Boolean.TRUE.equals(bulk)
+        ? storage.reclusterMatchKey(id) : storage.initializeMatchKey(id))
         .onSuccess(res -> {
           if (res == null) {
             matchKeyNotFound(ctx, id);
@@ -242,11 +402,22 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
   static void failHandler(RoutingContext ctx) {
     Throwable t = ctx.failure();
     // both semantic errors and syntax errors are from same pile ... Choosing 400 over 422.
-    int statusCode = t.getClass().getName().startsWith("io.vertx.ext.web.validation") ? 400 : 500;
+    int statusCode = t.getClass().getName().startsWith("io.vertx.ext.web.validation")
+        || isUniqueViolation(t) ? 400 : 500;
     failHandler(statusCode, ctx, t.getMessage());
   }
 
+  static boolean isUniqueViolation(Throwable t) {
+    return t instanceof PgException && UNIQUE_VIOLATION.equals(((PgException) t).getCode());
+  }
+
   static void failHandler(int statusCode, RoutingContext ctx, Throwable e) {
+    if (isUniqueViolation(e)) {
+      // client error, such as a duplicate identifier; no stack trace
+      log.info(e.getMessage());
+      failHandler(400, ctx, e.getMessage());
+      return;
+    }
     log.error(e.getMessage(), e);
     failHandler(statusCode, ctx, e.getMessage());
   }
@@ -266,9 +437,19 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
 
   private void add(RouterBuilder routerBuilder, String operationId,
       Function<RoutingContext, Future<Void>> function) {
+    boolean uncompressed = uncompressedOperations.contains(operationId);
     routerBuilder
         .operation(operationId)
         .handler(ctx -> {
+          if (uncompressed) {
+            // identity encoding makes the server skip compression for this response
+            ctx.response().putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+          }
+          ctx.addBodyEndHandler(x -> {
+            String tenant = TenantUtil.tenant(ctx);
+            SharedIndexMetrics.responseBytes(Storage.isInitialized(tenant) ? tenant : null,
+                operationId).record(ctx.response().bytesWritten());
+          });
           try {
             function.apply(ctx)
                 .onFailure(cause -> failHandler(400, ctx, cause));
@@ -280,20 +461,35 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
 
   @Override
   public Future<Router> createRouter(Vertx vertx) {
+    // operationIds, separated by comma, for which responses are never compressed
+    String exclude = Config.getSysConf("http.compression.exclude", "compressionExclude", "",
+        vertx.getOrCreateContext().config());
+    Arrays.stream(exclude.split(","))
+        .map(String::trim)
+        .filter(x -> !x.isEmpty())
+        .forEach(uncompressedOperations::add);
     return RouterBuilder.create(vertx, "openapi/shared-index-1.0.yaml")
         .map(routerBuilder -> {
           add(routerBuilder, "putGlobalRecords", this::putGlobalRecords);
           add(routerBuilder, "getGlobalRecords", this::getGlobalRecords);
           add(routerBuilder, "deleteGlobalRecords", this::deleteGlobalRecords);
           add(routerBuilder, "getGlobalRecord", this::getGlobalRecord);
+          add(routerBuilder, "exportGlobalRecords", this::exportGlobalRecords);
           add(routerBuilder, "postConfigMatchKey", this::postConfigMatchKey);
           add(routerBuilder, "getConfigMatchKey", this::getConfigMatchKey);
           add(routerBuilder, "putConfigMatchKey", this::putConfigMatchKey);
           add(routerBuilder, "deleteConfigMatchKey", this::deleteConfigMatchKey);
           add(routerBuilder, "getConfigMatchKeys", this::getConfigMatchKeys);
           add(routerBuilder, "initializeMatchKey", this::initializeMatchKey);
+          add(routerBuilder, "postConfigSearchField", this::postConfigSearchField);
+          add(routerBuilder, "getConfigSearchFields", this::getConfigSearchFields);
+          add(routerBuilder, "getConfigSearchField", this::getConfigSearchField);
+          add(routerBuilder, "deleteConfigSearchField", this::deleteConfigSearchField);
           add(routerBuilder, "getClusters", this::getClusters);
           add(routerBuilder, "getCluster", this::getCluster);
+          add(routerBuilder, "getClusterChanges", this::getClusterChanges);
+          add(routerBuilder, "lookupGlobalRecords", this::lookupGlobalRecords);
+          add(routerBuilder, "lookupClusters", this::lookupClusters);
           add(routerBuilder, "oaiService", OaiService::get);
           return routerBuilder.createRouter();
         });
@@ -304,7 +500,8 @@ public class SharedIndexService implements RouterCreator, TenantInitHooks {
     if (!tenantAttributes.containsKey("module_to")) {
       return Future.succeededFuture(); // doing nothing for disable
     }
-    Storage storage = new Storage(vertx, tenant);
+    // fresh storage for the tenant; caches of earlier incarnations are dropped
+    Storage storage = Storage.create(vertx, tenant);
     return storage.init();
   }
 }
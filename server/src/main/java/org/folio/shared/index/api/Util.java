@@ -20,6 +20,20 @@ public final class Util {
     return Util.getParameterString(params.queryParameter("query"));
   }
 
+  static String getFieldsParameter(RequestParameters params) {
+    return Util.getParameterString(params.queryParameter("fields"));
+  }
+
+  static String getFacetsParameter(RequestParameters params) {
+    return Util.getParameterString(params.queryParameter("facets"));
+  }
+
+  // full-text search; NULL if omitted or blank
+  static String getKeywordsParameter(RequestParameters params) {
+    String keywords = Util.getParameterString(params.queryParameter("keywords"));
+    return keywords == null || keywords.isBlank() ? null : keywords;
+  }
+
   /**
    * Parse ISO time.
    * @param s time string
@@ -0,0 +1,69 @@
+package org.folio.shared.index.matchkey;
+
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiled match key method: produces match keys for records.
+ *
+ * <p>Implementations must be immutable and thread safe.
+ */
+public interface MatchKeyExtractor {
+
+  /**
+   * Generate match keys.
+   * @param marcPayload MARC payload
+   * @param inventoryPayload inventory payload
+   * @param keys resulting keys (unmodified if no keys were generated).
+   */
+  void getKeys(JsonObject marcPayload, JsonObject inventoryPayload, Collection<String> keys);
+
+  /**
+   * Generate match keys for a record shared by all match key configurations.
+   *
+   * <p>Methods that look up MARC fields or evaluate JSONPath should override this and use
+   * the record's field index and parsed payloads.
+   * @param matchKeyRecord record
+   * @param keys resulting keys (unmodified if no keys were generated).
+   */
+  default void getKeys(MatchKeyRecord matchKeyRecord, Collection<String> keys) {
+    getKeys(matchKeyRecord.getMarcPayload(), matchKeyRecord.getInventoryPayload(), keys);
+  }
+
+  /**
+   * Generate match keys for many records.
+   * @param marcPayloads MARC payload for each record
+   * @param inventoryPayloads inventory payload for each record; same size as marcPayloads
+   * @return keys for each record, in same order as payloads
+   */
+  default List<Set<String>> getKeys(List<JsonObject> marcPayloads,
+      List<JsonObject> inventoryPayloads) {
+
+    List<MatchKeyRecord> records = new ArrayList<>(marcPayloads.size());
+    for (int i = 0; i < marcPayloads.size(); i++) {
+      records.add(new MatchKeyRecord(marcPayloads.get(i), inventoryPayloads.get(i)));
+    }
+    return getKeys(records);
+  }
+
+  /**
+   * Generate match keys for many records.
+   *
+   * <p>Methods that can share work between records should override this.
+   * @param matchKeyRecords records
+   * @return keys for each record, in same order as records
+   */
+  default List<Set<String>> getKeys(List<MatchKeyRecord> matchKeyRecords) {
+    List<Set<String>> keys = new ArrayList<>(matchKeyRecords.size());
+    for (MatchKeyRecord matchKeyRecord : matchKeyRecords) {
+      Set<String> recordKeys = new HashSet<>();
+      getKeys(matchKeyRecord, recordKeys);
+      keys.add(recordKeys);
+    }
+    return keys;
+  }
+}
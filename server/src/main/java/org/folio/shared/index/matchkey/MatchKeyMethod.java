@@ -1,9 +1,15 @@
 package org.folio.shared.index.matchkey;
 
 import io.vertx.core.json.JsonObject;
-import java.util.Collection;
-import org.folio.shared.index.matchkey.impl.MatchKeyJsonPath;
 
+/**
+ * Match key method.
+ *
+ * <p>Implementations are discovered with {@link java.util.ServiceLoader}; they must be
+ * listed in {@code META-INF/services/org.folio.shared.index.matchkey.MatchKeyMethod}.
+ * A method is stateless; {@link #compile(JsonObject)} turns a configuration into
+ * an immutable {@link MatchKeyExtractor} that may be shared between threads.
+ */
 public interface MatchKeyMethod {
 
   /**
@@ -12,19 +18,20 @@ public interface MatchKeyMethod {
    * @return method or NULL if not found
    */
   static MatchKeyMethod get(String method) {
-    if ("jsonpath".equals(method)) {
-      return new MatchKeyJsonPath();
-    }
-    return null;
+    return MatchKeyMethodRegistry.get(method);
   }
 
-  void configure(JsonObject configuration);
+  /**
+   * Get name of method as used in match key configurations.
+   * @return method name, such as "jsonpath"
+   */
+  String getName();
 
   /**
-   * Generate match keys.
-   * @param marcPayload MARC payload
-   * @param inventoryPayload inventory payload
-   * @param keys resulting keys (unmodified if no keys were generated).
+   * Compile match key configuration.
+   * @param configuration method specific parameters ("params" of match key configuration)
+   * @return key extractor
+   * @throws MatchKeyException if configuration is invalid
    */
-  void getKeys(JsonObject marcPayload, JsonObject inventoryPayload, Collection<String> keys);
+  MatchKeyExtractor compile(JsonObject configuration);
 }
@@ -0,0 +1,37 @@
+package org.folio.shared.index.matchkey;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Match key methods found by {@link ServiceLoader}, by name.
+ */
+final class MatchKeyMethodRegistry {
+  private static final Logger log = LogManager.getLogger(MatchKeyMethodRegistry.class);
+
+  private static final Map<String, MatchKeyMethod> METHODS = load();
+
+  private MatchKeyMethodRegistry() { }
+
+  private static Map<String, MatchKeyMethod> load() {
+    Map<String, MatchKeyMethod> methods = new TreeMap<>();
+    for (MatchKeyMethod method
+        : ServiceLoader.load(MatchKeyMethod.class, MatchKeyMethod.class.getClassLoader())) {
+      MatchKeyMethod existing = methods.putIfAbsent(method.getName(), method);
+      if (existing != null) {
+        log.warn("Match key method {} of {} ignored; already provided by {}",
+            method.getName(), method.getClass().getName(), existing.getClass().getName());
+      }
+    }
+    log.info("Match key methods: {}", methods.keySet());
+    return Collections.unmodifiableMap(methods);
+  }
+
+  static MatchKeyMethod get(String method) {
+    return method == null ? null : METHODS.get(method);
+  }
+}
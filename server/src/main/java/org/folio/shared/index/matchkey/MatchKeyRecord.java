@@ -0,0 +1,106 @@
+package org.folio.shared.index.matchkey;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.ReadContext;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A record that match keys are generated for.
+ *
+ * <p>Work that match key methods have in common is done once per record and shared by all
+ * match key configurations: the MARC fields array is traversed once to index fields by tag,
+ * and each payload is parsed for JSONPath evaluation at most once. Everything is computed
+ * on first use.
+ *
+ * <p>Not thread safe: an instance is meant to be used by one thread that evaluates all
+ * match key configurations for the record.
+ */
+public final class MatchKeyRecord {
+
+  private final JsonObject marcPayload;
+  private final JsonObject inventoryPayload;
+  private Map<String, List<Object>> marcFields;
+  private ReadContext marcContext;
+  private ReadContext inventoryContext;
+
+  /**
+   * Create record.
+   * @param marcPayload MARC payload; may be NULL
+   * @param inventoryPayload inventory payload; may be NULL
+   */
+  public MatchKeyRecord(JsonObject marcPayload, JsonObject inventoryPayload) {
+    this.marcPayload = marcPayload;
+    this.inventoryPayload = inventoryPayload;
+  }
+
+  public JsonObject getMarcPayload() {
+    return marcPayload;
+  }
+
+  public JsonObject getInventoryPayload() {
+    return inventoryPayload;
+  }
+
+  /**
+   * Get MARC fields with a tag.
+   *
+   * <p>Both MARC-in-JSON with an array of fields and the variant with an object of fields
+   * are supported.
+   * @param tag MARC tag such as "020"
+   * @return field values in record order: JsonObject for data fields, String for control
+   *     fields; empty list if there are none
+   */
+  public List<Object> getMarcFields(String tag) {
+    if (marcFields == null) {
+      marcFields = indexFields(marcPayload);
+    }
+    return marcFields.getOrDefault(tag, Collections.emptyList());
+  }
+
+  static Map<String, List<Object>> indexFields(JsonObject marcPayload) {
+    Object fields = marcPayload == null ? null : marcPayload.getValue("fields");
+    Map<String, List<Object>> index = new HashMap<>();
+    if (fields instanceof JsonArray) {
+      JsonArray array = (JsonArray) fields;
+      for (int i = 0; i < array.size(); i++) {
+        Object field = array.getValue(i);
+        if (field instanceof JsonObject) {
+          ((JsonObject) field).forEach(e ->
+              index.computeIfAbsent(e.getKey(), k -> new ArrayList<>(1)).add(e.getValue()));
+        }
+      }
+    } else if (fields instanceof JsonObject) {
+      ((JsonObject) fields).forEach(e -> index.put(e.getKey(),
+          Collections.singletonList(e.getValue())));
+    }
+    return index;
+  }
+
+  /**
+   * Get MARC payload for JSONPath evaluation.
+   * @return parsed MARC payload; NULL if there is no MARC payload
+   */
+  public ReadContext getMarcContext() {
+    if (marcContext == null && marcPayload != null) {
+      marcContext = JsonPath.parse(marcPayload.encode());
+    }
+    return marcContext;
+  }
+
+  /**
+   * Get inventory payload for JSONPath evaluation.
+   * @return parsed inventory payload; NULL if there is no inventory payload
+   */
+  public ReadContext getInventoryContext() {
+    if (inventoryContext == null && inventoryPayload != null) {
+      inventoryContext = JsonPath.parse(inventoryPayload.encode());
+    }
+    return inventoryContext;
+  }
+}
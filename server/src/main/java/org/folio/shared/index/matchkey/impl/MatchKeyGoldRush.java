@@ -0,0 +1,67 @@
+package org.folio.shared.index.matchkey.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.folio.shared.index.api.MatchKey;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.shared.index.matchkey.MatchKeyMethod;
+
+/**
+ * GoldRush style match key built from the inventory payload.
+ *
+ * <p>Parameter "components" is an optional array of components to include, such as
+ * "title", "dateOfPublication", "publisher"; all components are included if omitted.
+ */
+public class MatchKeyGoldRush implements MatchKeyMethod {
+
+  @Override
+  public String getName() {
+    return "goldrush";
+  }
+
+  @Override
+  public MatchKeyExtractor compile(JsonObject configuration) {
+    JsonArray ids = configuration.getJsonArray("components");
+    if (ids == null) {
+      return new Extractor(EnumSet.allOf(MatchKey.Component.class));
+    }
+    if (ids.isEmpty()) {
+      throw new MatchKeyException("goldrush: \"components\" must not be empty");
+    }
+    Set<MatchKey.Component> components = EnumSet.noneOf(MatchKey.Component.class);
+    for (int i = 0; i < ids.size(); i++) {
+      String id = ids.getString(i);
+      MatchKey.Component component = MatchKey.Component.fromId(id);
+      if (component == null) {
+        throw new MatchKeyException("goldrush: unknown component \"" + id + "\"");
+      }
+      components.add(component);
+    }
+    return new Extractor(components);
+  }
+
+  static final class Extractor implements MatchKeyExtractor {
+    private final Set<MatchKey.Component> components;
+
+    Extractor(Set<MatchKey.Component> components) {
+      this.components = Collections.unmodifiableSet(components);
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      if (inventoryPayload == null) {
+        return;
+      }
+      String key = new MatchKey(inventoryPayload, components).getKey();
+      if (!key.isEmpty()) {
+        keys.add(key);
+      }
+    }
+  }
+}
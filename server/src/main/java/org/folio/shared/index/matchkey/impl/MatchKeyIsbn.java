@@ -0,0 +1,12 @@
+package org.folio.shared.index.matchkey.impl;
+
+/**
+ * ISBN-10 and ISBN-13 from MARC 020 or inventory identifiers, as ISBN-13.
+ */
+public class MatchKeyIsbn extends MatchKeyStandardNumber {
+
+  public MatchKeyIsbn() {
+    super("isbn", "020", "8261054f-be78-422d-bd51-4ed9f33c3422", "ISBN",
+        StandardNumber::isbn13);
+  }
+}
@@ -0,0 +1,12 @@
+package org.folio.shared.index.matchkey.impl;
+
+/**
+ * ISSN from MARC 022 or inventory identifiers, as NNNN-NNNC.
+ */
+public class MatchKeyIssn extends MatchKeyStandardNumber {
+
+  public MatchKeyIssn() {
+    super("issn", "022", "913300b2-03ed-469a-8179-c1092c991227", "ISSN",
+        StandardNumber::issn);
+  }
+}
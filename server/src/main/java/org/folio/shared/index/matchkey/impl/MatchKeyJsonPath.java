@@ -3,55 +3,184 @@ package org.folio.shared.index.matchkey.impl;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 import com.jayway.jsonpath.ReadContext;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
 import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.folio.shared.index.matchkey.MatchKeyRecord;
 
+/**
+ * Match keys by JSONPath expressions.
+ *
+ * <p>Parameters "marc" and "inventory" are each an expression or an array of expressions
+ * evaluated against the MARC and inventory payload respectively. The keys are the union of
+ * the values of all expressions.
+ *
+ * <p>Alternatively parameter "compound" is an array of parts, each an object with one of
+ * "marc" or "inventory" expression. Keys are made by joining a value of each part with
+ * "separator" (default blank), for all combinations of values. A record gets no compound
+ * key if one of the parts has no value.
+ */
 public class MatchKeyJsonPath implements MatchKeyMethod {
 
-  JsonPath jsonPathMarc;
-  JsonPath jsonPathInventory;
+  @Override
+  public String getName() {
+    return "jsonpath";
+  }
 
   @Override
-  public void configure(JsonObject configuration) {
-    String expr = configuration.getString("marc");
-    if (expr != null) {
-      jsonPathMarc = JsonPath.compile(expr);
+  public MatchKeyExtractor compile(JsonObject configuration) {
+    JsonArray compound = configuration.getJsonArray("compound");
+    if (compound != null) {
+      if (configuration.containsKey("marc") || configuration.containsKey("inventory")) {
+        throw new MatchKeyException(
+            "jsonpath: \"compound\" can not be combined with \"marc\" or \"inventory\"");
+      }
+      if (compound.isEmpty()) {
+        throw new MatchKeyException("jsonpath: \"compound\" must not be empty");
+      }
+      List<Path> parts = new ArrayList<>(compound.size());
+      for (int i = 0; i < compound.size(); i++) {
+        Object part = compound.getValue(i);
+        List<Path> paths = part instanceof JsonObject ? paths((JsonObject) part) : List.of();
+        if (paths.size() != 1) {
+          throw new MatchKeyException(
+              "jsonpath: \"compound\" part must have one of \"marc\" or \"inventory\"");
+        }
+        parts.add(paths.get(0));
+      }
+      return new CompoundExtractor(parts, configuration.getString("separator", " "));
+    }
+    List<Path> paths = paths(configuration);
+    if (paths.isEmpty()) {
+      throw new MatchKeyException("jsonpath: either \"marc\" or \"inventory\" must be given");
+    }
+    return new Extractor(paths);
+  }
+
+  static List<Path> paths(JsonObject configuration) {
+    List<Path> paths = new ArrayList<>();
+    addPaths(configuration, "marc", true, paths);
+    addPaths(configuration, "inventory", false, paths);
+    return paths;
+  }
+
+  static void addPaths(JsonObject configuration, String name, boolean marc, List<Path> paths) {
+    Object value = configuration.getValue(name);
+    if (value == null) {
       return;
     }
-    expr = configuration.getString("inventory");
-    if (expr != null) {
-      jsonPathInventory = JsonPath.compile(expr);
+    if (value instanceof String) {
+      paths.add(new Path(JsonPath.compile((String) value), marc));
       return;
     }
-    throw new MatchKeyException("jsonpath: either \"marc\" or \"inventory\" must be given");
+    if (value instanceof JsonArray && !((JsonArray) value).isEmpty()
+        && ((JsonArray) value).stream().allMatch(String.class::isInstance)) {
+      for (Object expr : (JsonArray) value) {
+        paths.add(new Path(JsonPath.compile((String) expr), marc));
+      }
+      return;
+    }
+    throw new MatchKeyException("jsonpath: \"" + name
+        + "\" must be a string or a non-empty array of strings");
   }
 
-  @Override
-  public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
-      Collection<String> keys) {
-    JsonPath p = jsonPathMarc != null ? jsonPathMarc : jsonPathInventory;
-    JsonObject d = jsonPathMarc != null ? marcPayload : inventoryPayload;
-    if (p == null) {
-      throw new MatchKeyException("Not configured");
-    }
-    ReadContext ctx = JsonPath.parse(d.encode());
-    try {
-      Object o = ctx.read(p);
-      if (o instanceof String) {
-        keys.add((String) o);
-      } else if (o instanceof List) {
-        for (Object m : (List) o) {
-          if (!(m instanceof String)) {
-            return;
+  static final class Path {
+    private final JsonPath jsonPath;
+    private final boolean marc;
+
+    Path(JsonPath jsonPath, boolean marc) {
+      this.jsonPath = jsonPath;
+      this.marc = marc;
+    }
+
+    /**
+     * Add string values of expression.
+     *
+     * <p>Nothing is added if the expression is not found or if any value is not a string.
+     */
+    void read(MatchKeyRecord matchKeyRecord, Collection<String> keys) {
+      ReadContext ctx = marc ? matchKeyRecord.getMarcContext()
+          : matchKeyRecord.getInventoryContext();
+      if (ctx == null) {
+        return;
+      }
+      try {
+        Object o = ctx.read(jsonPath);
+        if (o instanceof String) {
+          keys.add((String) o);
+        } else if (o instanceof List) {
+          for (Object m : (List<?>) o) {
+            if (!(m instanceof String)) {
+              return;
+            }
+          }
+          for (Object m : (List<?>) o) {
+            keys.add((String) m);
+          }
+        }
+      } catch (PathNotFoundException e) {
+        // ignored.. no keys added
+      }
+    }
+  }
+
+  static final class Extractor implements MatchKeyExtractor {
+    private final List<Path> paths;
+
+    Extractor(List<Path> paths) {
+      this.paths = List.copyOf(paths);
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      getKeys(new MatchKeyRecord(marcPayload, inventoryPayload), keys);
+    }
+
+    @Override
+    public void getKeys(MatchKeyRecord matchKeyRecord, Collection<String> keys) {
+      for (Path path : paths) {
+        path.read(matchKeyRecord, keys);
+      }
+    }
+  }
+
+  static final class CompoundExtractor implements MatchKeyExtractor {
+    private final List<Path> parts;
+    private final String separator;
+
+    CompoundExtractor(List<Path> parts, String separator) {
+      this.parts = List.copyOf(parts);
+      this.separator = separator;
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      getKeys(new MatchKeyRecord(marcPayload, inventoryPayload), keys);
+    }
+
+    @Override
+    public void getKeys(MatchKeyRecord matchKeyRecord, Collection<String> keys) {
+      List<String> combined = new ArrayList<>();
+      parts.get(0).read(matchKeyRecord, combined);
+      for (int i = 1; i < parts.size() && !combined.isEmpty(); i++) {
+        List<String> values = new ArrayList<>();
+        parts.get(i).read(matchKeyRecord, values);
+        List<String> next = new ArrayList<>(combined.size() * values.size());
+        for (String prefix : combined) {
+          for (String value : values) {
+            next.add(prefix + separator + value);
           }
         }
-        keys.addAll((List<String>) o);
+        combined = next;
       }
-    } catch (PathNotFoundException e) {
-      // ignored.. no keys added
+      keys.addAll(combined);
     }
   }
 }
@@ -0,0 +1,250 @@
+package org.folio.shared.index.matchkey.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.folio.shared.index.api.MatchKey;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.shared.index.matchkey.MatchKeyMethod;
+
+/**
+ * Approximate match keys by MinHash and locality-sensitive hashing.
+ *
+ * <p>The normalized components of the GoldRush match key (default title, author and date
+ * of publication) are split into character shingles. A MinHash signature of
+ * bands &times; rows values is computed and each band is hashed into one key. Two records
+ * share at least one key, and so end up in the same cluster, with a probability that rises
+ * steeply around the similarity threshold (1/bands)^(1/rows).
+ *
+ * <p>Parameters, all optional:
+ * <ul>
+ *   <li>"components": array of match key components; default title, author,
+ *   dateOfPublication</li>
+ *   <li>"shingle": shingle length in characters; default 3</li>
+ *   <li>"bands": number of bands, which is also the number of keys for a record; default 8</li>
+ *   <li>"rows": rows per band; mutually exclusive with "threshold"</li>
+ *   <li>"threshold": Jaccard similarity where matching becomes likely; rows are derived from
+ *   it and bands; default 0.8</li>
+ * </ul>
+ */
+public class MatchKeyMinHash implements MatchKeyMethod {
+
+  static final int MAX_BANDS = 32;
+  static final int MAX_ROWS = 16;
+  static final int MAX_SHINGLE = 10;
+  static final int DEFAULT_BANDS = 8;
+  static final int DEFAULT_SHINGLE = 3;
+  static final double DEFAULT_THRESHOLD = 0.8;
+  static final Set<MatchKey.Component> TITLE_ONLY =
+      Collections.unmodifiableSet(EnumSet.of(MatchKey.Component.TITLE));
+
+  @Override
+  public String getName() {
+    return "minhash";
+  }
+
+  @Override
+  public MatchKeyExtractor compile(JsonObject configuration) {
+    Set<MatchKey.Component> components = components(configuration.getJsonArray("components"));
+    int shingle = intParam(configuration, "shingle", DEFAULT_SHINGLE, MAX_SHINGLE);
+    int bands = intParam(configuration, "bands", DEFAULT_BANDS, MAX_BANDS);
+    int rows;
+    if (configuration.containsKey("rows")) {
+      if (configuration.containsKey("threshold")) {
+        throw new MatchKeyException("minhash: \"rows\" and \"threshold\" are mutually exclusive");
+      }
+      rows = intParam(configuration, "rows", 0, MAX_ROWS);
+    } else {
+      Number threshold = numberParam(configuration, "threshold");
+      rows = rows(bands, threshold == null ? DEFAULT_THRESHOLD : threshold.doubleValue());
+    }
+    return new Extractor(components, shingle, bands, rows);
+  }
+
+  static Set<MatchKey.Component> components(JsonArray ids) {
+    if (ids == null) {
+      return EnumSet.of(MatchKey.Component.TITLE, MatchKey.Component.AUTHOR,
+          MatchKey.Component.DATE_OF_PUBLICATION);
+    }
+    if (ids.isEmpty()) {
+      throw new MatchKeyException("minhash: \"components\" must not be empty");
+    }
+    Set<MatchKey.Component> components = EnumSet.noneOf(MatchKey.Component.class);
+    for (int i = 0; i < ids.size(); i++) {
+      String id = ids.getString(i);
+      MatchKey.Component component = MatchKey.Component.fromId(id);
+      if (component == null) {
+        throw new MatchKeyException("minhash: unknown component \"" + id + "\"");
+      }
+      components.add(component);
+    }
+    return components;
+  }
+
+  static Number numberParam(JsonObject configuration, String name) {
+    Object value = configuration.getValue(name);
+    if (value != null && !(value instanceof Number)) {
+      throw new MatchKeyException("minhash: \"" + name + "\" must be a number");
+    }
+    return (Number) value;
+  }
+
+  static int intParam(JsonObject configuration, String name, int def, int max) {
+    Number value = numberParam(configuration, name);
+    if (value == null) {
+      return def;
+    }
+    int v = value.intValue();
+    if (v != value.doubleValue() || v < 1 || v > max) {
+      throw new MatchKeyException("minhash: \"" + name + "\" must be an integer in range 1-"
+          + max);
+    }
+    return v;
+  }
+
+  /**
+   * Rows per band for which the LSH threshold (1/bands)^(1/rows) is closest to threshold.
+   * @param bands number of bands
+   * @param threshold wanted similarity threshold, exclusive 0 and 1
+   * @return rows per band
+   */
+  static int rows(int bands, double threshold) {
+    if (!(threshold > 0.0 && threshold < 1.0)) {
+      throw new MatchKeyException("minhash: \"threshold\" must be between 0 and 1");
+    }
+    long rows = Math.round(Math.log(bands) / -Math.log(threshold));
+    return (int) Math.max(1, Math.min(MAX_ROWS, rows));
+  }
+
+  static final class Extractor implements MatchKeyExtractor {
+    private final Set<MatchKey.Component> components;
+    private final Set<MatchKey.Component> others;
+    private final int shingle;
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+
+    Extractor(Set<MatchKey.Component> components, int shingle, int bands, int rows) {
+      this.components = Collections.unmodifiableSet(components);
+      Set<MatchKey.Component> rest = EnumSet.copyOf(components);
+      rest.remove(MatchKey.Component.TITLE);
+      this.others = Collections.unmodifiableSet(rest);
+      this.shingle = shingle;
+      this.bands = bands;
+      this.rows = rows;
+      // fixed seeds: keys must be the same on every node and after restart
+      seeds = new long[bands * rows];
+      long s = 0x5DEECE66DL;
+      for (int i = 0; i < seeds.length; i++) {
+        s += 0x9E3779B97F4A7C15L;
+        seeds[i] = mix(s);
+      }
+    }
+
+    int getBands() {
+      return bands;
+    }
+
+    int getRows() {
+      return rows;
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      if (inventoryPayload == null) {
+        return;
+      }
+      String text = text(inventoryPayload);
+      if (text.isEmpty()) {
+        return;
+      }
+      long[] signature = signature(text);
+      for (int b = 0; b < bands; b++) {
+        long h = b;
+        for (int r = 0; r < rows; r++) {
+          h = mix(h * 31 + signature[b * rows + r]);
+        }
+        keys.add(b + ":" + Long.toHexString(h));
+      }
+    }
+
+    /**
+     * Normalized text of the configured components.
+     *
+     * <p>Components such as date of publication have placeholder values when missing. To
+     * avoid that records without a title get the same keys, the text is empty if the title
+     * is a component and it is empty.
+     * @param inventoryPayload inventory instance
+     * @return text; empty for no keys
+     */
+    String text(JsonObject inventoryPayload) {
+      if (!components.contains(MatchKey.Component.TITLE)) {
+        return normalize(new MatchKey(inventoryPayload, components).getKey());
+      }
+      String title = normalize(new MatchKey(inventoryPayload, TITLE_ONLY).getKey());
+      if (title.isEmpty() || others.isEmpty()) {
+        return title;
+      }
+      String rest = normalize(new MatchKey(inventoryPayload, others).getKey());
+      return rest.isEmpty() ? title : title + " " + rest;
+    }
+
+    long[] signature(String text) {
+      long[] signature = new long[seeds.length];
+      Arrays.fill(signature, Long.MAX_VALUE);
+      int last = Math.max(0, text.length() - shingle);
+      for (int i = 0; i <= last; i++) {
+        long h = 0;
+        int end = Math.min(text.length(), i + shingle);
+        for (int j = i; j < end; j++) {
+          h = h * 1_000_003L + text.charAt(j);
+        }
+        for (int k = 0; k < seeds.length; k++) {
+          long v = mix(h ^ seeds[k]);
+          if (v < signature[k]) {
+            signature[k] = v;
+          }
+        }
+      }
+      return signature;
+    }
+  }
+
+  /**
+   * Turn the underscore padding of a GoldRush key into single blanks.
+   * @param key GoldRush style key
+   * @return text with words separated by one blank
+   */
+  static String normalize(String key) {
+    StringBuilder s = new StringBuilder(key.length());
+    boolean blank = true;
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == '_' || c == ' ') {
+        blank = true;
+      } else {
+        if (blank && s.length() > 0) {
+          s.append(' ');
+        }
+        blank = false;
+        s.append(c);
+      }
+    }
+    return s.toString();
+  }
+
+  /**
+   * 64-bit finalizer of SplitMix64.
+   */
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,155 @@
+package org.folio.shared.index.matchkey.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Collection;
+import java.util.function.Function;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.folio.shared.index.matchkey.MatchKeyRecord;
+
+/**
+ * Match keys from standard numbers such as ISBN, normalized and validated.
+ *
+ * <p>Parameters:
+ * <ul>
+ *   <li>"source": "marc" (default) for subfields of the MARC field of the number,
+ *   "inventory" for identifiers of the inventory payload</li>
+ *   <li>"subfields": MARC subfield codes, default "a"</li>
+ *   <li>"identifierTypeId": inventory identifier type; identifiers with this type or with
+ *   identifierTypeDeref of the name of the number are used</li>
+ * </ul>
+ */
+abstract class MatchKeyStandardNumber implements MatchKeyMethod {
+
+  private final String name;
+  private final String tag;
+  private final String identifierTypeId;
+  private final String identifierTypeName;
+  private final Function<CharSequence, String> normalizer;
+
+  MatchKeyStandardNumber(String name, String tag, String identifierTypeId,
+      String identifierTypeName, Function<CharSequence, String> normalizer) {
+    this.name = name;
+    this.tag = tag;
+    this.identifierTypeId = identifierTypeId;
+    this.identifierTypeName = identifierTypeName;
+    this.normalizer = normalizer;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public MatchKeyExtractor compile(JsonObject configuration) {
+    String source = configuration.getString("source", "marc");
+    switch (source) {
+      case "marc":
+        String subfields = configuration.getString("subfields", "a");
+        if (subfields.isEmpty()) {
+          throw new MatchKeyException(name + ": \"subfields\" must not be empty");
+        }
+        return new MarcExtractor(tag, subfields, normalizer);
+      case "inventory":
+        return new InventoryExtractor(configuration.getString("identifierTypeId",
+            identifierTypeId), identifierTypeName, normalizer);
+      default:
+        throw new MatchKeyException(name + ": \"source\" must be \"marc\" or \"inventory\"");
+    }
+  }
+
+  static void addKey(Function<CharSequence, String> normalizer, Object value,
+      Collection<String> keys) {
+    if (value instanceof String) {
+      String key = normalizer.apply((String) value);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+  }
+
+  static final class MarcExtractor implements MatchKeyExtractor {
+    private final String tag;
+    private final String subfields;
+    private final Function<CharSequence, String> normalizer;
+
+    MarcExtractor(String tag, String subfields, Function<CharSequence, String> normalizer) {
+      this.tag = tag;
+      this.subfields = subfields;
+      this.normalizer = normalizer;
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      getKeys(new MatchKeyRecord(marcPayload, inventoryPayload), keys);
+    }
+
+    @Override
+    public void getKeys(MatchKeyRecord matchKeyRecord, Collection<String> keys) {
+      for (Object field : matchKeyRecord.getMarcFields(tag)) {
+        addField(field, keys);
+      }
+    }
+
+    void addField(Object field, Collection<String> keys) {
+      if (!(field instanceof JsonObject)) {
+        return;
+      }
+      JsonArray array = ((JsonObject) field).getJsonArray("subfields");
+      if (array == null) {
+        return;
+      }
+      for (int i = 0; i < array.size(); i++) {
+        Object subfield = array.getValue(i);
+        if (subfield instanceof JsonObject) {
+          JsonObject s = (JsonObject) subfield;
+          for (String code : s.fieldNames()) {
+            if (code.length() == 1 && subfields.indexOf(code.charAt(0)) >= 0) {
+              addKey(normalizer, s.getValue(code), keys);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  static final class InventoryExtractor implements MatchKeyExtractor {
+    private final String identifierTypeId;
+    private final String identifierTypeName;
+    private final Function<CharSequence, String> normalizer;
+
+    InventoryExtractor(String identifierTypeId, String identifierTypeName,
+        Function<CharSequence, String> normalizer) {
+      this.identifierTypeId = identifierTypeId;
+      this.identifierTypeName = identifierTypeName;
+      this.normalizer = normalizer;
+    }
+
+    @Override
+    public void getKeys(JsonObject marcPayload, JsonObject inventoryPayload,
+        Collection<String> keys) {
+      if (inventoryPayload == null) {
+        return;
+      }
+      Object identifiers = inventoryPayload.getValue("identifiers");
+      if (!(identifiers instanceof JsonArray)) {
+        return;
+      }
+      JsonArray array = (JsonArray) identifiers;
+      for (int i = 0; i < array.size(); i++) {
+        Object identifier = array.getValue(i);
+        if (identifier instanceof JsonObject) {
+          JsonObject o = (JsonObject) identifier;
+          if (identifierTypeId.equals(o.getValue("identifierTypeId"))
+              || identifierTypeName.equals(o.getValue("identifierTypeDeref"))) {
+            addKey(normalizer, o.getValue("value"), keys);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package org.folio.shared.index.matchkey.impl;
+
+/**
+ * Validation and normalization of ISBN and ISSN.
+ *
+ * <p>Values are scanned character by character: the number starts at the first digit and
+ * may contain hyphens or blanks between digits; anything that follows, such as
+ * "(pbk.)", is ignored.
+ */
+final class StandardNumber {
+
+  private StandardNumber() { }
+
+  /**
+   * Extract digits of number.
+   * @param value string with number, such as "0-19-852663-6 (pbk.)"
+   * @param max maximum number of digits
+   * @param checkX position at which 'X' is accepted as final check character
+   * @return digits, with 'X' as 10, followed by number of digits at index max;
+   *     null if more than max digits
+   */
+  static int[] digits(CharSequence value, int max, int checkX) {
+    int[] digits = new int[max + 1];
+    int count = 0;
+    int i = 0;
+    while (i < value.length() && !isDigit(value.charAt(i))) {
+      i++;
+    }
+    for (; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (isDigit(c)) {
+        digits[count++] = c - '0';
+      } else if ((c == 'X' || c == 'x') && count == checkX - 1) {
+        digits[count++] = 10;
+        break;
+      } else if ((c != '-' && c != ' ') || i + 1 == value.length()
+          || !isDigitOrX(value.charAt(i + 1))) {
+        break;
+      }
+      if (count > max) {
+        return null;
+      }
+    }
+    digits[max] = count;
+    return digits;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isDigitOrX(char c) {
+    return isDigit(c) || c == 'X' || c == 'x';
+  }
+
+  /**
+   * Normalize ISBN-10 or ISBN-13 to ISBN-13.
+   * @param value string with ISBN, possibly hyphenated and with qualifier
+   * @return 13 digits; null if not a valid ISBN
+   */
+  static String isbn13(CharSequence value) {
+    int[] digits = digits(value, 13, 10);
+    if (digits == null) {
+      return null;
+    }
+    int count = digits[13];
+    if (count == 10) {
+      int sum = 0;
+      for (int i = 0; i < 10; i++) {
+        sum += (10 - i) * digits[i];
+      }
+      if (sum % 11 != 0) {
+        return null;
+      }
+      // 978 prefix and new check digit
+      char[] isbn = new char[13];
+      isbn[0] = '9';
+      isbn[1] = '7';
+      isbn[2] = '8';
+      for (int i = 0; i < 9; i++) {
+        isbn[i + 3] = (char) ('0' + digits[i]);
+      }
+      sum = 0;
+      for (int i = 0; i < 12; i++) {
+        sum += (isbn[i] - '0') * (i % 2 == 0 ? 1 : 3);
+      }
+      isbn[12] = (char) ('0' + (10 - sum % 10) % 10);
+      return new String(isbn);
+    }
+    if (count == 13 && digits[0] == 9 && digits[1] == 7 && (digits[2] == 8 || digits[2] == 9)) {
+      int sum = 0;
+      for (int i = 0; i < 13; i++) {
+        sum += digits[i] * (i % 2 == 0 ? 1 : 3);
+      }
+      if (sum % 10 != 0) {
+        return null;
+      }
+      char[] isbn = new char[13];
+      for (int i = 0; i < 13; i++) {
+        isbn[i] = (char) ('0' + digits[i]);
+      }
+      return new String(isbn);
+    }
+    return null;
+  }
+
+  /**
+   * Normalize ISSN to NNNN-NNNC form.
+   * @param value string with ISSN, possibly with qualifier
+   * @return ISSN with hyphen and upper case X; null if not a valid ISSN
+   */
+  static String issn(CharSequence value) {
+    int[] digits = digits(value, 8, 8);
+    if (digits == null || digits[8] != 8) {
+      return null;
+    }
+    int sum = 0;
+    for (int i = 0; i < 8; i++) {
+      sum += (8 - i) * digits[i];
+    }
+    if (sum % 11 != 0) {
+      return null;
+    }
+    char[] issn = new char[9];
+    for (int i = 0, j = 0; i < 8; i++, j++) {
+      if (i == 4) {
+        issn[j++] = '-';
+      }
+      issn[j] = digits[i] == 10 ? 'X' : (char) ('0' + digits[i]);
+    }
+    return new String(issn);
+  }
+}
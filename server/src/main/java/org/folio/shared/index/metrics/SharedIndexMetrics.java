@@ -0,0 +1,67 @@
+package org.folio.shared.index.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.Future;
+import java.util.function.Supplier;
+
+/**
+ * Process wide meter registry with Prometheus exposition.
+ */
+public final class SharedIndexMetrics {
+  public static final String TENANT_TAG = "tenant";
+  // tag of tenants that are not initialized, as the tenant header is given by the client
+  public static final String UNKNOWN_TENANT = "unknown";
+
+  private static final PrometheusMeterRegistry registry =
+      new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+  static {
+    new ClassLoaderMetrics().bindTo(registry);
+    new JvmMemoryMetrics().bindTo(registry);
+    new JvmGcMetrics().bindTo(registry);
+    new JvmThreadMetrics().bindTo(registry);
+    new ProcessorMetrics().bindTo(registry);
+  }
+
+  private SharedIndexMetrics() { }
+
+  public static PrometheusMeterRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Record elapsed time of asynchronous operation.
+   * @param timer where to record
+   * @param supplier operation
+   * @param <T> result type
+   * @return result of operation
+   */
+  public static <T> Future<T> time(Timer timer, Supplier<Future<T>> supplier) {
+    Timer.Sample sample = Timer.start();
+    return supplier.get().onComplete(x -> sample.stop(timer));
+  }
+
+  /**
+   * Response size distribution.
+   * @param tenant tenant; null if unknown or not initialized, as the tenant header is
+   *     given by the client and must not create meters at will
+   * @param operationId OpenAPI operationId
+   * @return summary for tenant and operation
+   */
+  public static DistributionSummary responseBytes(String tenant, String operationId) {
+    return DistributionSummary.builder("sharedindex.http.response.bytes")
+        .description("Size of response bodies before compression")
+        .baseUnit("bytes")
+        .tag(TENANT_TAG, tenant == null ? UNKNOWN_TENANT : tenant)
+        .tag("operation", operationId)
+        .register(registry);
+  }
+}
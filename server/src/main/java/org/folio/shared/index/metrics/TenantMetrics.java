@@ -0,0 +1,168 @@
+package org.folio.shared.index.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for one tenant.
+ */
+public class TenantMetrics {
+  private final Counter recordsUpserted;
+  private final Counter recordsDeleted;
+  private final Counter ingestRetries;
+  private final Counter clusterMerges;
+  private final Counter clusterSplits;
+  private final Counter clustersCompacted;
+  private final Counter clustersPruned;
+  private final Counter oaiRecords;
+  private final Counter cacheHits;
+  private final Counter cacheMisses;
+  private final Counter cacheEvictions;
+  private final Timer upsertBibRecordTimer;
+  private final Timer updateClusterValuesTimer;
+  private final Timer mergeClustersTimer;
+  private final Timer poolWaitTimer;
+  private final Timer streamPauseTimer;
+
+  /**
+   * Create or look up meters for tenant.
+   * @param registry meter registry
+   * @param tenant tenant; NULL if not initialized, so that the tenant header given by the
+   *     client does not create meters at will
+   */
+  public TenantMetrics(MeterRegistry registry, String tenant) {
+    String tag = tenant == null ? SharedIndexMetrics.UNKNOWN_TENANT : tenant;
+    recordsUpserted = ingested(registry, tag, "upsert");
+    recordsDeleted = ingested(registry, tag, "delete");
+    ingestRetries = Counter.builder("sharedindex.ingest.retries")
+        .description("Record transactions retried after a failure")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    clusterMerges = Counter.builder("sharedindex.cluster.merges")
+        .description("Clusters merged into another cluster")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    clusterSplits = Counter.builder("sharedindex.cluster.splits")
+        .description("Clusters split off a cluster whose records are no longer connected")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    clustersCompacted = Counter.builder("sharedindex.cluster.compacted")
+        .description("Merged clusters whose values and records were moved by compaction")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    clustersPruned = Counter.builder("sharedindex.cluster.pruned")
+        .description("Merged clusters removed after retention")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    oaiRecords = Counter.builder("sharedindex.oai.records")
+        .description("Records returned by OAI-PMH")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    cacheHits = cacheGets(registry, tag, "hit");
+    cacheMisses = cacheGets(registry, tag, "miss");
+    cacheEvictions = Counter.builder("sharedindex.cache.evictions")
+        .description("Records and clusters evicted from the response cache to make room")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    upsertBibRecordTimer = stage(registry, tag, "upsertBibRecord");
+    updateClusterValuesTimer = stage(registry, tag, "updateClusterValues");
+    mergeClustersTimer = stage(registry, tag, "mergeClusters");
+    poolWaitTimer = Timer.builder("sharedindex.pool.wait")
+        .description("Time waiting for a database connection")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+    streamPauseTimer = Timer.builder("sharedindex.stream.pause")
+        .description("Time a database row stream is paused while a row is handled")
+        .tag(SharedIndexMetrics.TENANT_TAG, tag)
+        .register(registry);
+  }
+
+  private static Counter ingested(MeterRegistry registry, String tenant, String operation) {
+    return Counter.builder("sharedindex.records.ingested")
+        .description("Records ingested")
+        .tag(SharedIndexMetrics.TENANT_TAG, tenant)
+        .tag("operation", operation)
+        .register(registry);
+  }
+
+  private static Counter cacheGets(MeterRegistry registry, String tenant, String result) {
+    return Counter.builder("sharedindex.cache.gets")
+        .description("Record and cluster responses looked up in the response cache")
+        .tag(SharedIndexMetrics.TENANT_TAG, tenant)
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private static Timer stage(MeterRegistry registry, String tenant, String stage) {
+    return Timer.builder("sharedindex.ingest.stage")
+        .description("Latency of ingest stages; upsertBibRecord includes the other stages")
+        .tag(SharedIndexMetrics.TENANT_TAG, tenant)
+        .tag("stage", stage)
+        .register(registry);
+  }
+
+  public Counter getRecordsUpserted() {
+    return recordsUpserted;
+  }
+
+  public Counter getRecordsDeleted() {
+    return recordsDeleted;
+  }
+
+  public Counter getIngestRetries() {
+    return ingestRetries;
+  }
+
+  public Counter getClusterMerges() {
+    return clusterMerges;
+  }
+
+  public Counter getClusterSplits() {
+    return clusterSplits;
+  }
+
+  public Counter getClustersCompacted() {
+    return clustersCompacted;
+  }
+
+  public Counter getClustersPruned() {
+    return clustersPruned;
+  }
+
+  public Counter getOaiRecords() {
+    return oaiRecords;
+  }
+
+  public Counter getCacheHits() {
+    return cacheHits;
+  }
+
+  public Counter getCacheMisses() {
+    return cacheMisses;
+  }
+
+  public Counter getCacheEvictions() {
+    return cacheEvictions;
+  }
+
+  public Timer getUpsertBibRecordTimer() {
+    return upsertBibRecordTimer;
+  }
+
+  public Timer getUpdateClusterValuesTimer() {
+    return updateClusterValuesTimer;
+  }
+
+  public Timer getMergeClustersTimer() {
+    return mergeClustersTimer;
+  }
+
+  public Timer getPoolWaitTimer() {
+    return poolWaitTimer;
+  }
+
+  public Timer getStreamPauseTimer() {
+    return streamPauseTimer;
+  }
+}
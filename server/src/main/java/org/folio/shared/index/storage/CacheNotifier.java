@@ -0,0 +1,313 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgConnection;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.tlib.postgres.TenantPgPool;
+
+/**
+ * Keeps the caches of tenants in step across module instances.
+ *
+ * <p>Changes are published with pg_notify on a channel per tenant, named after the tenant
+ * schema, and every instance LISTENs on the channels of its tenants with one connection of
+ * the pool, receiving its own changes too. A payload is a comma separated list of tokens:
+ * {@link #MATCH_KEY_CONFIGS}, {@link #SEARCH_FIELDS}, {@link #ALL} or the identifier of a
+ * changed record or cluster. Tokens are collected for {@link #delay} milliseconds before
+ * they are sent and before they are handled, so that a burst of changes costs a few
+ * notifications; when more than {@link #maxTokens} are collected for a channel, identifiers
+ * are replaced by {@link #ALL}. Notifications are lost while the listening connection is
+ * down, so all caches are flushed when it is lost and again once it is back.
+ */
+final class CacheNotifier {
+  static final String MATCH_KEY_CONFIGS = "m";
+  static final String SEARCH_FIELDS = "s";
+  static final String ALL = "*";
+  static final List<String> FLUSH = List.of(MATCH_KEY_CONFIGS, SEARCH_FIELDS, ALL);
+  // NOTIFY payloads must be shorter than 8000 bytes
+  static final int MAX_PAYLOAD = 7900;
+  static long delay = 20L; // milliseconds
+  // tokens sent at most per channel and delay; more identifiers are sent as ALL
+  static int maxTokens = 100;
+  // first delay before connecting again; doubled on each failure up to maxReconnectDelay
+  static long reconnectDelay = 1000L; // milliseconds
+  static long maxReconnectDelay = 60000L; // milliseconds
+
+  private static final Logger log = LogManager.getLogger(CacheNotifier.class);
+
+  private final Vertx vertx;
+  private final TenantPgPool pool;
+  private final Map<String, Consumer<Collection<String>>> handlers = new HashMap<>();
+  private final Map<String, Set<String>> outgoing = new HashMap<>();
+  private final Map<String, Set<String>> incoming = new HashMap<>();
+  private boolean sendScheduled;
+  private boolean handleScheduled;
+  private Future<PgConnection> connecting;
+  private PgConnection connection;
+  private long retryDelay = reconnectDelay;
+  private boolean closed;
+
+  /**
+   * Create notifier; nothing is sent or received until {@link #listen}.
+   * @param vertx Vert.x handle
+   * @param pool pool to take the listening connection from and to notify with; the pool is
+   *     shared by all tenants, so any tenant's pool will do
+   */
+  CacheNotifier(Vertx vertx, TenantPgPool pool) {
+    this.vertx = vertx;
+    this.pool = pool;
+  }
+
+  /**
+   * Start publishing and receiving changes of a tenant.
+   * @param channel channel of tenant
+   * @param handler called with tokens received; tokens of {@link #FLUSH} when all caches
+   *     must be dropped
+   * @return async result; succeeds when listening, fails if the first attempt failed, in
+   *     which case it is tried again later
+   */
+  Future<Void> listen(String channel, Consumer<Collection<String>> handler) {
+    synchronized (this) {
+      if (closed) {
+        return Future.succeededFuture();
+      }
+      handlers.put(channel, handler);
+    }
+    return connect()
+        .compose(conn -> conn.query(listenSql(channel)).execute())
+        // changes may have been missed before
+        .onSuccess(x -> handler.accept(FLUSH))
+        .mapEmpty();
+  }
+
+  /**
+   * Stop receiving changes of a tenant.
+   * @param channel channel of tenant
+   * @param handler handler given to {@link #listen}; nothing is done if another handler has
+   *     replaced it
+   */
+  void unlisten(String channel, Consumer<Collection<String>> handler) {
+    PgConnection conn;
+    synchronized (this) {
+      if (!handlers.remove(channel, handler)) {
+        return;
+      }
+      conn = connection;
+    }
+    if (conn != null) {
+      conn.query("UNLISTEN \"" + channel + "\"").execute()
+          .onFailure(e -> log.warn("UNLISTEN {} failed: {}", channel, e.getMessage()));
+    }
+  }
+
+  private static String listenSql(String channel) {
+    return "LISTEN \"" + channel + "\"";
+  }
+
+  private synchronized Future<PgConnection> connect() {
+    if (connecting != null) {
+      return connecting;
+    }
+    Future<PgConnection> future = pool.getConnection()
+        .map(PgConnection::cast)
+        .compose(conn -> listenAll(conn).onFailure(e -> release(conn)));
+    connecting = future;
+    return future
+        .onSuccess(conn -> {
+          List<Consumer<Collection<String>>> flush;
+          synchronized (this) {
+            if (closed) {
+              release(conn);
+              return;
+            }
+            connection = conn;
+            retryDelay = reconnectDelay;
+            flush = new ArrayList<>(handlers.values());
+          }
+          conn.notificationHandler(notification ->
+              received(notification.getChannel(), notification.getPayload()));
+          conn.closeHandler(x -> lost(conn));
+          // changes may have been missed before
+          flush.forEach(handler -> handler.accept(FLUSH));
+        })
+        .onFailure(e -> {
+          log.warn("LISTEN failed: {}", e.getMessage());
+          synchronized (this) {
+            if (connecting == future) {
+              connecting = null;
+            }
+          }
+          retry();
+        });
+  }
+
+  private Future<PgConnection> listenAll(PgConnection conn) {
+    List<String> channels;
+    synchronized (this) {
+      channels = new ArrayList<>(handlers.keySet());
+    }
+    Future<Void> future = Future.succeededFuture();
+    for (String channel : channels) {
+      future = future.compose(x -> conn.query(listenSql(channel)).execute().mapEmpty());
+    }
+    return future.map(conn);
+  }
+
+  private void lost(PgConnection conn) {
+    List<Consumer<Collection<String>>> flush;
+    synchronized (this) {
+      if (connection != conn) {
+        return;
+      }
+      connection = null;
+      connecting = null;
+      if (closed) {
+        return;
+      }
+      flush = new ArrayList<>(handlers.values());
+    }
+    log.warn("LISTEN connection lost");
+    flush.forEach(handler -> handler.accept(FLUSH));
+    retry();
+  }
+
+  private synchronized void retry() {
+    vertx.setTimer(retryDelay, id -> {
+      synchronized (this) {
+        if (closed || handlers.isEmpty()) {
+          return;
+        }
+      }
+      connect();
+    });
+    retryDelay = Math.min(retryDelay * 2, maxReconnectDelay);
+  }
+
+  /**
+   * Stop receiving changes of all tenants.
+   */
+  void close() {
+    PgConnection conn;
+    synchronized (this) {
+      closed = true;
+      handlers.clear();
+      conn = connection;
+      connection = null;
+      connecting = null;
+    }
+    if (conn != null) {
+      release(conn);
+    }
+  }
+
+  // the connection goes back to the pool, so stop listening first
+  private static void release(PgConnection conn) {
+    conn.query("UNLISTEN *").execute().onComplete(x -> conn.close());
+  }
+
+  /**
+   * Publish change of a tenant to all module instances.
+   * @param channel channel of tenant
+   * @param token change
+   */
+  void publish(String channel, String token) {
+    publish(channel, List.of(token));
+  }
+
+  /**
+   * Publish changes of a tenant to all module instances.
+   * @param channel channel of tenant
+   * @param tokens changes
+   */
+  synchronized void publish(String channel, Collection<String> tokens) {
+    if (handlers.isEmpty() || tokens.isEmpty()) {
+      return;
+    }
+    Set<String> pending = outgoing.computeIfAbsent(channel, x -> new LinkedHashSet<>());
+    pending.addAll(tokens);
+    if (pending.size() > maxTokens) {
+      // one token instead of a notification per changed record or cluster
+      pending.retainAll(FLUSH);
+      pending.add(ALL);
+    }
+    if (!sendScheduled) {
+      sendScheduled = true;
+      vertx.setTimer(delay, id -> send());
+    }
+  }
+
+  private void send() {
+    List<Tuple> tuples = new ArrayList<>();
+    synchronized (this) {
+      outgoing.forEach((channel, tokens) -> {
+        for (String payload : payloads(tokens)) {
+          tuples.add(Tuple.of(channel, payload));
+        }
+      });
+      outgoing.clear();
+      sendScheduled = false;
+    }
+    pool.preparedQuery("SELECT pg_notify($1, $2)")
+        .executeBatch(tuples)
+        .onFailure(e -> log.warn("NOTIFY failed: {}", e.getMessage()));
+  }
+
+  /**
+   * Join tokens into payloads that are short enough for NOTIFY.
+   * @param tokens changes
+   * @return payloads
+   */
+  static List<String> payloads(Collection<String> tokens) {
+    List<String> payloads = new ArrayList<>();
+    StringBuilder payload = new StringBuilder();
+    for (String token : tokens) {
+      if (payload.length() > 0 && payload.length() + 1 + token.length() > MAX_PAYLOAD) {
+        payloads.add(payload.toString());
+        payload.setLength(0);
+      }
+      payload.append(payload.length() == 0 ? "" : ",").append(token);
+    }
+    if (payload.length() > 0) {
+      payloads.add(payload.toString());
+    }
+    return payloads;
+  }
+
+  private void received(String channel, String payload) {
+    synchronized (this) {
+      incoming.computeIfAbsent(channel, x -> new LinkedHashSet<>())
+          .addAll(Arrays.asList(payload.split(",")));
+      if (handleScheduled) {
+        return;
+      }
+      handleScheduled = true;
+    }
+    vertx.setTimer(delay, id -> {
+      Map<String, Consumer<Collection<String>>> handling = new HashMap<>();
+      Map<String, List<String>> tokens = new HashMap<>();
+      synchronized (this) {
+        incoming.forEach((ch, set) -> {
+          Consumer<Collection<String>> handler = handlers.get(ch);
+          if (handler != null) {
+            handling.put(ch, handler);
+            tokens.put(ch, new ArrayList<>(set));
+          }
+        });
+        incoming.clear();
+        handleScheduled = false;
+      }
+      handling.forEach((ch, handler) -> handler.accept(tokens.get(ch)));
+    });
+  }
+}
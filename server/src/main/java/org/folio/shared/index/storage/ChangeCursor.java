@@ -0,0 +1,66 @@
+package org.folio.shared.index.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the change feed of clusters: datestamp and identifier of the last cluster
+ * returned.
+ */
+public class ChangeCursor {
+  private final LocalDateTime datestamp;
+  private final UUID clusterId;
+
+  /**
+   * Create cursor after cluster.
+   * @param datestamp datestamp of cluster
+   * @param clusterId cluster identifier
+   */
+  public ChangeCursor(LocalDateTime datestamp, UUID clusterId) {
+    this.datestamp = datestamp;
+    this.clusterId = clusterId;
+  }
+
+  /**
+   * Create cursor from coded string.
+   * @param coded coded string as returned by {@link #encode()}
+   */
+  public ChangeCursor(String coded) {
+    String s;
+    try {
+      s = new String(Base64.getUrlDecoder().decode(coded), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Bad cursor");
+    }
+    int i = s.indexOf(' ');
+    if (i == -1) {
+      throw new IllegalArgumentException("Bad cursor");
+    }
+    try {
+      datestamp = LocalDateTime.parse(s.substring(0, i));
+      clusterId = UUID.fromString(s.substring(i + 1));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Bad cursor");
+    }
+  }
+
+  /**
+   * Return encoded cursor value.
+   * @return value safe for use in URI
+   */
+  public String encode() {
+    String s = datestamp + " " + clusterId;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public LocalDateTime getDatestamp() {
+    return datestamp;
+  }
+
+  public UUID getClusterId() {
+    return clusterId;
+  }
+}
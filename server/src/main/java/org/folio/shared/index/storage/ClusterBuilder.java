@@ -0,0 +1,222 @@
+package org.folio.shared.index.storage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Clusters records of one match key configuration in memory.
+ *
+ * <p>Records are numbered in the order they are added, and record and cluster identifiers
+ * are kept as pairs of longs in primitive arrays, so that the memory needed is a few
+ * dozen bytes per record plus the match values. Records sharing a match value end up in
+ * the same cluster; a record without match values is a cluster of its own.
+ *
+ * <p>A cluster keeps the identifier of the old cluster of one of its records if possible,
+ * so that re-clustering with an unchanged match key configuration yields the same
+ * clusters. A cluster is changed unless it has the same records as the old cluster it is
+ * named after, and an old cluster is removed if no cluster is named after it. Not thread
+ * safe.
+ */
+final class ClusterBuilder {
+  private final UnionFind unionFind = new UnionFind(1024);
+  private final Map<String, Integer> valueRecord = new HashMap<>();
+  private long[] recordIds = new long[2048];
+  private long[] oldClusterIds = new long[2048];
+  private String[][] recordValues = new String[1024][];
+  private long[] clusterIds;
+  private String[] values;
+  private int[] valueRecords;
+  private int[] clusterRecords;
+  private BitSet changedClusters;
+  private long[] removedClusterIds;
+
+  /**
+   * Add record.
+   * @param recordId record identifier
+   * @param oldClusterId cluster of record before; NULL if none
+   * @param keys match values of record
+   */
+  void add(UUID recordId, UUID oldClusterId, Collection<String> keys) {
+    int no = unionFind.add();
+    if (2 * no == recordIds.length) {
+      recordIds = Arrays.copyOf(recordIds, recordIds.length * 2);
+      oldClusterIds = Arrays.copyOf(oldClusterIds, oldClusterIds.length * 2);
+      recordValues = Arrays.copyOf(recordValues, recordValues.length * 2);
+    }
+    put(recordIds, no, recordId);
+    put(oldClusterIds, no, oldClusterId);
+    String[] recordKeys = new String[keys.size()];
+    int i = 0;
+    for (String key : keys) {
+      Integer other = valueRecord.putIfAbsent(key, no);
+      if (other != null) {
+        unionFind.union(no, other);
+      }
+      recordKeys[i++] = key;
+    }
+    recordValues[no] = recordKeys;
+  }
+
+  /**
+   * Assign cluster identifiers once all records are added.
+   */
+  void build() {
+    int size = unionFind.size();
+    clusterIds = new long[2 * size];
+    Set<UUID> used = new HashSet<>();
+    Map<UUID, Integer> oldSizes = new HashMap<>();
+    int clusters = 0;
+    for (int no = 0; no < size; no++) {
+      int root = unionFind.find(no);
+      UUID old = get(oldClusterIds, no);
+      if (old != null) {
+        oldSizes.merge(old, 1, Integer::sum);
+      }
+      if (old != null && get(clusterIds, root) == null && used.add(old)) {
+        put(clusterIds, root, old);
+      }
+      if (root == no) {
+        clusters++;
+      }
+    }
+    clusterRecords = new int[clusters];
+    clusters = 0;
+    for (int no = 0; no < size; no++) {
+      if (unionFind.find(no) == no) {
+        if (get(clusterIds, no) == null) {
+          put(clusterIds, no, UUID.randomUUID());
+        }
+        clusterRecords[clusters++] = no;
+      }
+    }
+    changedClusters = new BitSet(clusters);
+    for (int cluster = 0; cluster < clusters; cluster++) {
+      int root = clusterRecords[cluster];
+      if (oldSizes.getOrDefault(get(clusterIds, root), 0) != unionFind.setSize(root)) {
+        changedClusters.set(cluster);
+      }
+    }
+    if (changedClusters.cardinality() < clusters) {
+      // same size; changed if a record came from another cluster
+      int[] rootCluster = new int[size];
+      for (int cluster = 0; cluster < clusters; cluster++) {
+        rootCluster[clusterRecords[cluster]] = cluster;
+      }
+      for (int no = 0; no < size; no++) {
+        int root = unionFind.find(no);
+        if (!sameId(oldClusterIds, no, clusterIds, root)) {
+          changedClusters.set(rootCluster[root]);
+        }
+      }
+    }
+    oldSizes.keySet().removeAll(used);
+    removedClusterIds = new long[2 * oldSizes.size()];
+    int removed = 0;
+    for (UUID id : oldSizes.keySet()) {
+      put(removedClusterIds, removed++, id);
+    }
+    values = new String[valueRecord.size()];
+    valueRecords = new int[valueRecord.size()];
+    int i = 0;
+    for (Map.Entry<String, Integer> entry : valueRecord.entrySet()) {
+      values[i] = entry.getKey();
+      valueRecords[i++] = entry.getValue();
+    }
+    valueRecord.clear();
+  }
+
+  /**
+   * Number of records added.
+   */
+  int getRecordCount() {
+    return unionFind.size();
+  }
+
+  UUID getRecordId(int no) {
+    return get(recordIds, no);
+  }
+
+  String[] getRecordValues(int no) {
+    return recordValues[no];
+  }
+
+  /**
+   * Cluster of a record, available after {@link #build()}.
+   * @param no record number
+   * @return cluster identifier
+   */
+  UUID getRecordCluster(int no) {
+    return get(clusterIds, unionFind.find(no));
+  }
+
+  /**
+   * Number of clusters, available after {@link #build()}.
+   */
+  int getClusterCount() {
+    return clusterRecords.length;
+  }
+
+  UUID getClusterId(int cluster) {
+    return get(clusterIds, clusterRecords[cluster]);
+  }
+
+  /**
+   * Whether a cluster is new or has other records than before, available after
+   * {@link #build()}.
+   * @param cluster cluster number
+   * @return true if changed
+   */
+  boolean isClusterChanged(int cluster) {
+    return changedClusters.get(cluster);
+  }
+
+  /**
+   * Number of old clusters that no cluster is named after, available after
+   * {@link #build()}.
+   */
+  int getRemovedClusterCount() {
+    return removedClusterIds.length / 2;
+  }
+
+  UUID getRemovedClusterId(int removed) {
+    return get(removedClusterIds, removed);
+  }
+
+  /**
+   * Number of distinct match values, available after {@link #build()}.
+   */
+  int getValueCount() {
+    return values.length;
+  }
+
+  String getValue(int value) {
+    return values[value];
+  }
+
+  UUID getValueCluster(int value) {
+    return getRecordCluster(valueRecords[value]);
+  }
+
+  private static void put(long[] ids, int no, UUID id) {
+    if (id != null) {
+      ids[2 * no] = id.getMostSignificantBits();
+      ids[2 * no + 1] = id.getLeastSignificantBits();
+    }
+  }
+
+  private static boolean sameId(long[] ids1, int no1, long[] ids2, int no2) {
+    return ids1[2 * no1] == ids2[2 * no2] && ids1[2 * no1 + 1] == ids2[2 * no2 + 1];
+  }
+
+  private static UUID get(long[] ids, int no) {
+    long msb = ids[2 * no];
+    long lsb = ids[2 * no + 1];
+    return msb == 0L && lsb == 0L ? null : new UUID(msb, lsb);
+  }
+}
@@ -0,0 +1,103 @@
+package org.folio.shared.index.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fields of a cluster to return.
+ *
+ * <p>Fields are clusterId, datestamp, matchValues and records. Fields of records are
+ * selected with a records prefix, such as records.localId; see {@link RecordFields}.
+ * Records are not read at all if no record fields are selected.
+ */
+public final class ClusterFields {
+  public static final ClusterFields ALL = parse(null);
+
+  private final boolean clusterId;
+  private final boolean datestamp;
+  private final boolean matchValues;
+  private final RecordFields records;
+
+  private ClusterFields(boolean clusterId, boolean datestamp, boolean matchValues,
+      RecordFields records) {
+    this.clusterId = clusterId;
+    this.datestamp = datestamp;
+    this.matchValues = matchValues;
+    this.records = records;
+  }
+
+  /**
+   * Parse fields parameter.
+   * @param fields comma separated list of fields; NULL or empty for all fields
+   * @return fields
+   * @throws IllegalArgumentException for unsupported fields
+   */
+  public static ClusterFields parse(String fields) {
+    if (fields == null || fields.isBlank()) {
+      return new ClusterFields(true, true, true, RecordFields.ALL);
+    }
+    boolean clusterId = false;
+    boolean datestamp = false;
+    boolean matchValues = false;
+    boolean allRecords = false;
+    List<String> recordFields = new ArrayList<>();
+    for (String field : fields.split(",")) {
+      field = field.trim();
+      switch (field) {
+        case "clusterId":
+          clusterId = true;
+          break;
+        case "datestamp":
+          datestamp = true;
+          break;
+        case "matchValues":
+          matchValues = true;
+          break;
+        case "records":
+          allRecords = true;
+          break;
+        default:
+          if (!field.startsWith("records.")) {
+            throw new IllegalArgumentException("Unsupported field: " + field);
+          }
+          recordFields.add(field.substring("records.".length()));
+      }
+    }
+    RecordFields records = null;
+    if (allRecords) {
+      records = RecordFields.ALL;
+    } else if (!recordFields.isEmpty()) {
+      records = RecordFields.parse(String.join(",", recordFields));
+    }
+    return new ClusterFields(clusterId, datestamp, matchValues, records);
+  }
+
+  boolean hasClusterId() {
+    return clusterId;
+  }
+
+  boolean hasDatestamp() {
+    return datestamp;
+  }
+
+  boolean hasMatchValues() {
+    return matchValues;
+  }
+
+  /**
+   * Selected fields as text; fields with equal keys give equal clusters.
+   */
+  String getKey() {
+    return (clusterId ? "clusterId," : "") + (datestamp ? "datestamp," : "")
+        + (matchValues ? "matchValues," : "")
+        + (records != null ? "records(" + records.getKey() + ")" : "");
+  }
+
+  /**
+   * Record fields.
+   * @return fields of records; NULL if records are not returned
+   */
+  RecordFields getRecords() {
+    return records;
+  }
+}
@@ -0,0 +1,152 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facets of a result set.
+ *
+ * <p>The total count and all facets are computed by one query that groups the result set
+ * by GROUPING SETS, so that facets cost no extra scans of the result set. A facet is given
+ * as name or name:limit, where limit is the maximum number of values returned for the
+ * facet; the values with the highest counts are returned. NULL values are not counted.
+ */
+public final class Facets {
+  public static final Facets NONE = new Facets(Collections.emptyList());
+  static final int DEFAULT_LIMIT = 5;
+
+  private final List<Facet> list;
+
+  private static final class Facet {
+    final String name;
+    final String expression;
+    final int limit;
+
+    Facet(String name, String expression, int limit) {
+      this.name = name;
+      this.expression = expression;
+      this.limit = limit;
+    }
+  }
+
+  private Facets(List<Facet> list) {
+    this.list = list;
+  }
+
+  /**
+   * Parse facets parameter.
+   * @param facets comma separated list of facets; NULL or empty for no facets
+   * @param supported SQL expression for each supported facet name
+   * @return facets
+   * @throws IllegalArgumentException for unsupported facets or bad limits
+   */
+  public static Facets parse(String facets, Map<String, String> supported) {
+    if (facets == null || facets.isBlank()) {
+      return NONE;
+    }
+    Map<String, Facet> map = new LinkedHashMap<>();
+    for (String facet : facets.split(",")) {
+      facet = facet.trim();
+      String name = facet;
+      int limit = DEFAULT_LIMIT;
+      int colon = facet.indexOf(':');
+      if (colon != -1) {
+        name = facet.substring(0, colon);
+        try {
+          limit = Integer.parseInt(facet.substring(colon + 1));
+        } catch (NumberFormatException e) {
+          limit = -1;
+        }
+        if (limit < 0) {
+          throw new IllegalArgumentException("Bad facet limit: " + facet);
+        }
+      }
+      String expression = supported.get(name);
+      if (expression == null) {
+        throw new IllegalArgumentException("Unsupported facet: " + name);
+      }
+      map.put(name, new Facet(name, expression, limit));
+    }
+    return new Facets(new ArrayList<>(map.values()));
+  }
+
+  boolean isEmpty() {
+    return list.isEmpty();
+  }
+
+  /**
+   * SQL query for total count and facets.
+   * @param distinct expression counted distinct; NULL to count rows
+   * @param from SQL FROM clause, including WHERE clause if any
+   * @return SQL query
+   */
+  String getCountSql(String distinct, String from) {
+    String count = "COUNT(" + (distinct != null ? "DISTINCT " + distinct : "*") + ")";
+    if (list.isEmpty()) {
+      return "SELECT " + count + " FROM " + from;
+    }
+    StringBuilder columns = new StringBuilder(count);
+    StringBuilder sets = new StringBuilder("()");
+    for (int i = 0; i < list.size(); i++) {
+      String expression = list.get(i).expression;
+      columns.append(", GROUPING(").append(expression).append("), (")
+          .append(expression).append(")::text");
+      sets.append(", (").append(expression).append(")");
+    }
+    return "SELECT " + columns + " FROM " + from + " GROUP BY GROUPING SETS (" + sets + ")";
+  }
+
+  /**
+   * Result info with total count and facets from result of {@link #getCountSql}.
+   * @param rowSet count query result
+   * @return resultInfo with totalRecords and facets
+   */
+  JsonObject getResultInfo(RowSet<Row> rowSet) {
+    int count = 0;
+    List<List<JsonObject>> values = new ArrayList<>(list.size());
+    for (int i = 0; i < list.size(); i++) {
+      values.add(new ArrayList<>());
+    }
+    for (Row row : rowSet) {
+      int facet = -1;
+      for (int i = 0; i < list.size(); i++) {
+        if (row.getInteger(1 + 2 * i) == 0) {
+          facet = i;
+        }
+      }
+      if (facet == -1) {
+        count = row.getInteger(0);
+      } else {
+        String value = row.getString(2 + 2 * facet);
+        if (value != null) {
+          values.get(facet).add(new JsonObject()
+              .put("value", value)
+              .put("count", row.getInteger(0)));
+        }
+      }
+    }
+    JsonArray facetArray = new JsonArray();
+    for (int i = 0; i < list.size(); i++) {
+      Facet facet = list.get(i);
+      List<JsonObject> facetValues = values.get(i);
+      facetValues.sort((a, b) -> {
+        int c = Integer.compare(b.getInteger("count"), a.getInteger("count"));
+        return c != 0 ? c : a.getString("value").compareTo(b.getString("value"));
+      });
+      facetArray.add(new JsonObject()
+          .put("type", facet.name)
+          .put("facetValues", new JsonArray(new ArrayList<>(
+              facetValues.subList(0, Math.min(facet.limit, facetValues.size()))))));
+    }
+    return new JsonObject()
+        .put("totalRecords", count)
+        .put("facets", facetArray);
+  }
+}
@@ -0,0 +1,126 @@
+package org.folio.shared.index.storage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Fields of a global record to return.
+ *
+ * <p>Fields are globalId, localId, sourceId, marcPayload and inventoryPayload. A payload may
+ * be limited to some of its top-level properties with a path, such as inventoryPayload.isbn.
+ * The record is built as JSON text by the database from the selected columns only, so that
+ * payloads that are not asked for are never read. A payload limited to some properties is
+ * still read in full, including from TOAST, by jsonb_each; only the response is smaller.
+ */
+public final class RecordFields {
+  private static final Pattern PROPERTY = Pattern.compile("[A-Za-z0-9_]+");
+  private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+  static {
+    COLUMNS.put("globalId", "id");
+    COLUMNS.put("localId", "local_id");
+    COLUMNS.put("sourceId", "source_id");
+    COLUMNS.put("marcPayload", "marc_payload");
+    COLUMNS.put("inventoryPayload", "inventory_payload");
+  }
+
+  public static final RecordFields ALL = parse(null);
+
+  // selected fields; each with payload properties, or empty list for the whole field
+  private final Map<String, List<String>> fields = new LinkedHashMap<>();
+  private final String jsonSql;
+  private final String key;
+
+  private RecordFields(List<String> list) {
+    for (String field : list) {
+      int dot = field.indexOf('.');
+      String name = dot == -1 ? field : field.substring(0, dot);
+      if (!COLUMNS.containsKey(name)) {
+        throw new IllegalArgumentException("Unsupported field: " + field);
+      }
+      List<String> properties = fields.computeIfAbsent(name, k -> new ArrayList<>());
+      if (dot == -1) {
+        properties.clear();
+        properties.add(null); // whole field
+        continue;
+      }
+      String property = field.substring(dot + 1);
+      if (!name.endsWith("Payload") || !PROPERTY.matcher(property).matches()) {
+        throw new IllegalArgumentException("Unsupported field: " + field);
+      }
+      if (!properties.contains(null)) {
+        properties.add(property);
+      }
+    }
+    jsonSql = createJsonSql();
+    key = createKey();
+  }
+
+  /**
+   * Parse fields parameter.
+   * @param fields comma separated list of fields; NULL or empty for all fields
+   * @return fields
+   * @throws IllegalArgumentException for unsupported fields
+   */
+  public static RecordFields parse(String fields) {
+    List<String> list = new ArrayList<>();
+    if (fields == null || fields.isBlank()) {
+      list.addAll(COLUMNS.keySet());
+    } else {
+      for (String field : fields.split(",")) {
+        list.add(field.trim());
+      }
+    }
+    return new RecordFields(list);
+  }
+
+  private String createJsonSql() {
+    StringBuilder sql = new StringBuilder("('{}'::jsonb");
+    fields.forEach((name, properties) -> {
+      String column = COLUMNS.get(name);
+      String value = column;
+      if (!properties.contains(null)) {
+        StringBuilder keys = new StringBuilder();
+        for (String property : properties) {
+          keys.append(keys.length() == 0 ? "'" : ", '").append(property).append("'");
+        }
+        // NULL when none of the properties are present
+        value = "(SELECT jsonb_object_agg(key, value) FROM jsonb_each(" + column + ")"
+            + " WHERE key IN (" + keys + "))";
+      }
+      // fields that are NULL are omitted
+      sql.append(" || CASE WHEN ").append(value).append(" IS NULL THEN '{}'::jsonb")
+          .append(" ELSE jsonb_build_object('").append(name).append("', ").append(value)
+          .append(") END");
+    });
+    return sql.append(")::text").toString();
+  }
+
+  private String createKey() {
+    StringBuilder sb = new StringBuilder();
+    fields.forEach((name, properties) -> {
+      for (String property : properties) {
+        sb.append(sb.length() == 0 ? "" : ",").append(name)
+            .append(property == null ? "" : "." + property);
+      }
+    });
+    return sb.toString();
+  }
+
+  /**
+   * Selected fields as text; fields with equal keys give equal records.
+   */
+  String getKey() {
+    return key;
+  }
+
+  /**
+   * SQL expression with the selected fields of a bib_record row as JSON text.
+   */
+  String getJsonSql() {
+    return jsonSql;
+  }
+}
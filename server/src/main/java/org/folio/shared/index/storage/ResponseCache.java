@@ -0,0 +1,203 @@
+package org.folio.shared.index.storage;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of rendered responses by record or cluster identifier.
+ *
+ * <p>Each identifier holds responses for any number of variants, such as different fields
+ * of a cluster; they are cached, invalidated and evicted together. The cache is limited by
+ * number of identifiers and by weight, which is the total length of the responses.
+ *
+ * <p>Eviction is segmented LRU: new identifiers enter a probation segment and move to a
+ * protected segment, which holds up to 80% of the weight, when hit again. Identifiers are
+ * evicted from probation first, so that a burst of identifiers looked up once does not
+ * flush the frequently used ones.
+ *
+ * <p>A response must only be put if the identifier was not invalidated while it was
+ * computed: take a {@link #stamp} before and pass it to {@link #put}. Thread safe.
+ */
+final class ResponseCache {
+  private static final int STRIPES = 1024;
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final long maxProtectedWeight;
+  private final long ttl;
+  private final Counter evictions;
+  private final LongSupplier clock;
+  private final LinkedHashMap<UUID, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<UUID, Entry> protectedSegment =
+      new LinkedHashMap<>(16, 0.75f, true);
+  // invalidation counts by hash of identifier
+  private final long[] stripes = new long[STRIPES];
+  private long weight;
+  private long protectedWeight;
+
+  private static final class Entry {
+    final Map<String, String> responses = new HashMap<>();
+    final long expiry;
+    long weight;
+
+    Entry(long expiry) {
+      this.expiry = expiry;
+    }
+  }
+
+  /**
+   * Create cache.
+   * @param maxEntries maximum number of identifiers
+   * @param maxWeight maximum total length of responses
+   * @param ttl milliseconds a response is kept; 0 or less disables the cache
+   * @param evictions counter of identifiers evicted to make room
+   * @param clock current time in milliseconds
+   */
+  ResponseCache(int maxEntries, long maxWeight, long ttl, Counter evictions,
+      LongSupplier clock) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.maxProtectedWeight = maxWeight / 5 * 4;
+    this.ttl = ttl;
+    this.evictions = evictions;
+    this.clock = clock;
+  }
+
+  /**
+   * Get cached response.
+   * @param id record or cluster identifier
+   * @param variant variant of response
+   * @return response; NULL if not cached
+   */
+  synchronized String get(UUID id, String variant) {
+    Entry entry = protectedSegment.get(id);
+    if (entry == null) {
+      entry = probation.get(id);
+      if (entry == null) {
+        return null;
+      }
+      String response = entry.responses.get(variant);
+      if (response != null && clock.getAsLong() < entry.expiry) {
+        // hit again: promote
+        probation.remove(id);
+        protectedSegment.put(id, entry);
+        protectedWeight += entry.weight;
+        demote();
+      }
+    }
+    if (clock.getAsLong() >= entry.expiry) {
+      remove(id);
+      return null;
+    }
+    return entry.responses.get(variant);
+  }
+
+  /**
+   * Stamp of identifier to pass to {@link #put}.
+   */
+  synchronized long stamp(UUID id) {
+    return stripes[stripe(id)];
+  }
+
+  /**
+   * Cache response unless identifier was invalidated since stamp was taken.
+   * @param id record or cluster identifier
+   * @param variant variant of response
+   * @param response response to cache
+   * @param stamp {@link #stamp} of identifier taken before response was computed
+   */
+  synchronized void put(UUID id, String variant, String response, long stamp) {
+    if (ttl <= 0 || stamp != stripes[stripe(id)] || response.length() > maxWeight) {
+      return;
+    }
+    boolean isProtected = true;
+    Entry entry = protectedSegment.get(id);
+    if (entry == null) {
+      isProtected = false;
+      entry = probation.get(id);
+    }
+    if (entry == null) {
+      entry = new Entry(clock.getAsLong() + ttl);
+      probation.put(id, entry);
+    }
+    String old = entry.responses.put(variant, response);
+    long delta = response.length() - (old == null ? 0L : old.length());
+    entry.weight += delta;
+    weight += delta;
+    if (isProtected) {
+      protectedWeight += delta;
+      demote();
+    }
+    evict();
+  }
+
+  /**
+   * Drop cached responses of identifier.
+   * @param id record or cluster identifier
+   */
+  synchronized void invalidate(UUID id) {
+    stripes[stripe(id)]++;
+    remove(id);
+  }
+
+  /**
+   * Drop all cached responses.
+   */
+  synchronized void invalidateAll() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i]++;
+    }
+    probation.clear();
+    protectedSegment.clear();
+    weight = 0;
+    protectedWeight = 0;
+  }
+
+  synchronized int size() {
+    return probation.size() + protectedSegment.size();
+  }
+
+  synchronized long weight() {
+    return weight;
+  }
+
+  private static int stripe(UUID id) {
+    return (id.hashCode() & Integer.MAX_VALUE) % STRIPES;
+  }
+
+  private void remove(UUID id) {
+    Entry entry = probation.remove(id);
+    if (entry == null) {
+      entry = protectedSegment.remove(id);
+      if (entry == null) {
+        return;
+      }
+      protectedWeight -= entry.weight;
+    }
+    weight -= entry.weight;
+  }
+
+  // move least recently used protected identifiers back to probation
+  private void demote() {
+    Iterator<Map.Entry<UUID, Entry>> iterator = protectedSegment.entrySet().iterator();
+    while (protectedWeight > maxProtectedWeight && iterator.hasNext()) {
+      Map.Entry<UUID, Entry> eldest = iterator.next();
+      iterator.remove();
+      protectedWeight -= eldest.getValue().weight;
+      probation.put(eldest.getKey(), eldest.getValue());
+    }
+  }
+
+  private void evict() {
+    while (weight > maxWeight || size() > maxEntries) {
+      LinkedHashMap<UUID, Entry> segment = probation.isEmpty() ? protectedSegment : probation;
+      remove(segment.keySet().iterator().next());
+      evictions.increment();
+    }
+  }
+}
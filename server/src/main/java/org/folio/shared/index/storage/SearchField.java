@@ -0,0 +1,83 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.json.JsonObject;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * CQL index of global records for a value of a payload.
+ *
+ * <p>The value is given by a path of property names, such as instance.title, into the
+ * inventory or MARC payload. The value must be a string or number; an object or array is
+ * compared as JSON text. Each search field has an expression index on bib_record, so that
+ * queries on it are served by index scans.
+ */
+public final class SearchField {
+  private static final Pattern ID = Pattern.compile("[A-Za-z][A-Za-z0-9]{0,39}");
+  private static final Pattern PATH = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+  // CQL indexes of records that are always there
+  private static final Set<String> RESERVED = Set.of("id", "globalId", "localId", "sourceId");
+
+  private final String id;
+  private final String payload;
+  private final String path;
+
+  SearchField(String id, String payload, String path) {
+    if (id == null || !ID.matcher(id).matches() || RESERVED.contains(id)) {
+      throw new IllegalArgumentException("Bad search field id: " + id);
+    }
+    if (!"inventory".equals(payload) && !"marc".equals(payload)) {
+      throw new IllegalArgumentException("Bad search field payload: " + payload);
+    }
+    if (path == null || !PATH.matcher(path).matches()) {
+      throw new IllegalArgumentException("Bad search field path: " + path);
+    }
+    this.id = id;
+    this.payload = payload;
+    this.path = path;
+  }
+
+  /**
+   * Create search field from its JSON representation.
+   * @param json search field with id, payload and path
+   * @return search field
+   * @throws IllegalArgumentException if properties are missing or invalid
+   */
+  public static SearchField fromJson(JsonObject json) {
+    return new SearchField(json.getString("id"), json.getString("payload"),
+        json.getString("path"));
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+        .put("id", id)
+        .put("payload", payload)
+        .put("path", path);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * SQL expression for the value of a bib_record row; also the expression of the index.
+   */
+  public String getSql() {
+    return "(" + payload + "_payload #>> '{" + path.replace('.', ',') + "}')";
+  }
+
+  /**
+   * Name of index, without schema.
+   */
+  String getIndexName() {
+    return "\"bib_record_search_" + id + "_idx\"";
+  }
+}
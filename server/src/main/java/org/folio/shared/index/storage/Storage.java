@@ -1,8 +1,10 @@
 package org.folio.shared.index.storage;
 
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
@@ -14,23 +16,42 @@ import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.RowStream;
 import io.vertx.sqlclient.SqlConnection;
 import io.vertx.sqlclient.Tuple;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.Config;
 import org.folio.okapi.common.GenericCompositeFuture;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
 import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.folio.shared.index.matchkey.MatchKeyRecord;
+import org.folio.shared.index.metrics.SharedIndexMetrics;
+import org.folio.shared.index.metrics.TenantMetrics;
 import org.folio.tlib.postgres.TenantPgPool;
 import org.folio.tlib.util.TenantUtil;
 
@@ -40,36 +61,460 @@ public class Storage {
   private static final Logger log = LogManager.getLogger(Storage.class);
 
   private static final String CREATE_IF_NO_EXISTS = "CREATE TABLE IF NOT EXISTS ";
+  /**
+   * Cluster of a cluster_records row, following the redirect of a merged cluster.
+   */
+  public static final String CLUSTER_ID_RESOLVED =
+      "COALESCE(cluster_meta.merged_into, cluster_records.cluster_id)";
+  /**
+   * Facets of global records.
+   */
+  public static final Map<String, String> RECORD_FACETS = Map.of(
+      "sourceId", "source_id",
+      "instanceTypeId", "inventory_payload->'instance'->>'instanceTypeId'");
+  /**
+   * Facets of match key configurations.
+   */
+  public static final Map<String, String> MATCH_KEY_FACETS = Map.of(
+      "method", "method",
+      "update", "update");
+  final Vertx vertx;
+  final String tenant;
   final TenantPgPool pool;
+  final TenantMetrics metrics;
   final String bibRecordTable;
   final String matchKeyConfigTable;
   final String clusterRecordTable;
   final String clusterValueTable;
   final String clusterMetaTable;
+  final String searchFieldTable;
+  final String upsertBibRecordSql;
+  final String deleteBibRecordMetaSql;
+  final String deleteBibRecordSql;
+  final String selectBibRecordClustersSql;
+  final String selectRecordClusterSql;
+  final String selectMatchKeyConfigsSql;
   static int sqlStreamFetchSize = 50;
+  static int bulkFetchSize = 1000;
+  static int bulkBatchSize = 1000;
+  // match key configs and search fields may be changed by other module instances;
+  // refresh after this
+  static long matchKeyConfigsTtl = 10000L; // milliseconds
+  // counts and facets may be changed by other module instances; recount after this
+  static long resultInfoTtl = 5000L; // milliseconds
+  private static final int RESULT_INFO_CACHE_SIZE = 1000;
+  // rendered records and clusters
+  static int responseCacheEntries = 10000;
+  static long responseCacheWeight = 64L * 1024 * 1024; // characters
+  static long responseCacheTtl = 10000L; // milliseconds
+  // announce changes to other module instances, so they need not wait for the TTLs above
+  static boolean cacheNotify = true;
+  // cluster changes are in the change feed when this old, and older than the start of
+  // any transaction in progress that writes cluster_meta of the tenant, so that transactions
+  // that took the datestamp earlier have committed; also covers clock differences between
+  // module instances and database
+  static long changesDelay = 2000L; // milliseconds
+  // change feed waiters check again after this, should a notification be lost
+  static long changesRecheck = 5000L; // milliseconds
+
+  private static final Map<String, Storage> storages = new ConcurrentHashMap<>();
+  // one listening connection per process for all tenants
+  private static final Map<Vertx, CacheNotifier> cacheNotifiers = new ConcurrentHashMap<>();
+  // tenants whose schema exists
+  private static final Set<String> initializedTenants = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong matchKeyConfigsGeneration = new AtomicLong();
+  private volatile Map<String, MatchKeyExtractor> matchKeyExtractors;
+  private volatile long matchKeyConfigsExpiry;
+  private final AtomicLong searchFieldsGeneration = new AtomicLong();
+  private volatile List<SearchField> searchFields;
+  private volatile long searchFieldsExpiry;
+  private volatile boolean fulltextBackfilled;
+  private final AtomicBoolean fulltextBackfilling = new AtomicBoolean();
+  private final AtomicLong resultInfoGeneration = new AtomicLong();
+  private final Map<String, CachedResultInfo> resultInfoCache = new ConcurrentHashMap<>();
+  private final ResponseCache responseCache;
+  private final CacheNotifier cacheNotifier;
+  private final Consumer<Collection<String>> changeHandler = this::applyChanges;
+  // change feed requests waiting for changes
+  private final Set<Promise<Boolean>> changeWaiters = ConcurrentHashMap.newKeySet();
+  // records and clusters changed by each transaction in progress
+  private final Map<SqlConnection, Set<UUID>> transactionChanges = new ConcurrentHashMap<>();
+
+  private static final class CachedResultInfo {
+    final long expiry;
+    final JsonObject resultInfo;
+
+    CachedResultInfo(long expiry, JsonObject resultInfo) {
+      this.expiry = expiry;
+      this.resultInfo = resultInfo;
+    }
+  }
 
   /**
-   * Create storage service for tenant.
+   * Create storage service for tenant; metrics name the tenant once it is initialized.
    * @param vertx Vert.x hande
    * @param tenant tenant
    */
   public Storage(Vertx vertx, String tenant) {
+    this(vertx, tenant, isInitialized(tenant));
+  }
+
+  /**
+   * Create storage service for tenant.
+   * @param vertx Vert.x hande
+   * @param tenant tenant
+   * @param known whether tenant is named in metrics; otherwise it is tagged unknown
+   */
+  private Storage(Vertx vertx, String tenant, boolean known) {
+    this.vertx = vertx;
+    this.tenant = tenant;
     this.pool = TenantPgPool.pool(vertx, tenant);
+    this.metrics = new TenantMetrics(SharedIndexMetrics.getRegistry(), known ? tenant : null);
+    this.responseCache = new ResponseCache(responseCacheEntries, responseCacheWeight,
+        responseCacheTtl, metrics.getCacheEvictions(), System::currentTimeMillis);
+    this.cacheNotifier = cacheNotifiers.computeIfAbsent(vertx, v -> new CacheNotifier(v, pool));
     this.bibRecordTable = pool.getSchema() + ".bib_record";
     this.matchKeyConfigTable = pool.getSchema() + ".match_key_config";
     this.clusterRecordTable = pool.getSchema() + ".cluster_records";
     this.clusterValueTable = pool.getSchema() + ".cluster_values";
     this.clusterMetaTable = pool.getSchema() + ".cluster_meta";
+    this.searchFieldTable = pool.getSchema() + ".search_field";
+    this.upsertBibRecordSql = "INSERT INTO " + bibRecordTable
+        + " (id, local_id, source_id, marc_payload, inventory_payload, fulltext)"
+        + " VALUES ($1, $2, $3, $4, $5, " + fulltextSql("$5::jsonb") + ")"
+        + " ON CONFLICT (local_id, source_id) DO UPDATE "
+        + " SET marc_payload = $4, inventory_payload = $5, fulltext = EXCLUDED.fulltext"
+        + " RETURNING id";
+    this.deleteBibRecordMetaSql = "UPDATE " + clusterMetaTable + " AS m"
+        + " SET datestamp = $3"
+        + " FROM " + bibRecordTable + ", " + clusterRecordTable + " AS r"
+        + " LEFT JOIN " + clusterMetaTable + " AS x ON x.cluster_id = r.cluster_id"
+        + " WHERE m.cluster_id = COALESCE(x.merged_into, r.cluster_id) AND r.record_id = id"
+        + " AND local_id = $1 AND source_id = $2";
+    this.deleteBibRecordSql = "DELETE FROM " + bibRecordTable
+        + " WHERE local_id = $1 AND source_id = $2 RETURNING id";
+    this.selectBibRecordClustersSql = "SELECT COALESCE(m.merged_into, r.cluster_id)"
+        + " AS cluster_id, r.match_key_config_id"
+        + " FROM " + bibRecordTable + " JOIN " + clusterRecordTable + " AS r ON r.record_id = id"
+        + " LEFT JOIN " + clusterMetaTable + " AS m ON m.cluster_id = r.cluster_id"
+        + " WHERE local_id = $1 AND source_id = $2";
+    this.selectRecordClusterSql = "SELECT COALESCE(m.merged_into, r.cluster_id)"
+        + " AS cluster_id, r.match_values FROM " + clusterRecordTable + " AS r"
+        + " LEFT JOIN " + clusterMetaTable + " AS m ON m.cluster_id = r.cluster_id"
+        + " WHERE r.record_id = $1 AND r.match_key_config_id = $2";
+    this.selectMatchKeyConfigsSql = "SELECT * FROM " + matchKeyConfigTable;
+  }
+
+  /**
+   * Get storage for tenant.
+   *
+   * <p>Storage is shared by all requests and verticle instances for a tenant, so that
+   * it can hold per-tenant caches. It is created on first use once the schema of the tenant
+   * is known to exist. The tenant is given by the client, so for other tenants a storage
+   * without caches is returned and nothing is kept.
+   * @param vertx Vert.x handle
+   * @param tenant tenant
+   * @return storage for tenant
+   */
+  public static Storage get(Vertx vertx, String tenant) {
+    Storage storage = storages.get(tenant);
+    if (storage != null && storage.vertx == vertx) {
+      return storage;
+    }
+    if (!isInitialized(tenant)) {
+      Storage unregistered = new Storage(vertx, tenant);
+      // another module instance may have initialized the tenant
+      unregistered.checkInitialized();
+      return unregistered;
+    }
+    return storages.compute(tenant, (t, old) -> {
+      if (old != null && old.vertx == vertx) {
+        return old;
+      }
+      if (old != null) {
+        old.close();
+      }
+      return new Storage(vertx, t).start();
+    });
   }
 
-  public Storage(RoutingContext routingContext) {
-    this(routingContext.vertx(), TenantUtil.tenant(routingContext));
+  /**
+   * Whether tenant has been initialized, as far as this process has seen.
+   *
+   * <p>The tenant of a request is given by the client, so only initialized tenants are
+   * named in metrics.
+   * @param tenant tenant; NULL for none
+   * @return true if the schema of the tenant exists
+   */
+  public static boolean isInitialized(String tenant) {
+    return tenant != null && initializedTenants.contains(tenant);
+  }
+
+  private void checkInitialized() {
+    pool.preparedQuery("SELECT 1 FROM pg_namespace WHERE nspname = $1")
+        .execute(Tuple.of(pool.getSchema()))
+        .onSuccess(rowSet -> {
+          if (rowSet.size() > 0) {
+            initializedTenants.add(tenant);
+          }
+        })
+        .onFailure(e -> log.warn("Checking schema of tenant {} failed: {}", tenant,
+            e.getMessage()));
+  }
+
+  public static Storage get(RoutingContext routingContext) {
+    return get(routingContext.vertx(), TenantUtil.tenant(routingContext));
+  }
+
+  /**
+   * Compact clusters of all initialized tenants that storage has been used for in this
+   * process.
+   *
+   * <p>Tenants are handled one at a time; a failure for one tenant is logged and does not
+   * stop the others. A full-text backfill that was interrupted, such as by a restart, is
+   * resumed first.
+   * @param batchSize maximum number of merged clusters handled in one transaction
+   * @param retention how long merged clusters are kept; NULL to keep them forever
+   * @return async result
+   */
+  public static Future<Void> compactAllClusters(int batchSize, Duration retention) {
+    Future<Void> future = Future.succeededFuture();
+    for (Map.Entry<String, Storage> entry : storages.entrySet()) {
+      if (!isInitialized(entry.getKey())) {
+        continue;
+      }
+      future = future.compose(x -> entry.getValue().backfillFulltext().otherwiseEmpty())
+          .compose(x -> entry.getValue().compactClusters(batchSize, retention)
+          .onSuccess(res -> {
+            if (res.getInteger("compacted") > 0 || res.getInteger("pruned") > 0) {
+              log.info("Clusters compacted for tenant {}: {}", entry.getKey(), res.encode());
+            }
+          })
+          .otherwise(e -> {
+            log.warn("Cluster compaction failed for tenant {}: {}", entry.getKey(),
+                e.getMessage(), e);
+            return null;
+          })
+          .mapEmpty());
+    }
+    return future;
+  }
+
+  /**
+   * Get retention of merged clusters from configuration.
+   * @param config verticle configuration; system property cluster.retention takes precedence
+   *     over clusterRetention
+   * @return retention; NULL if merged clusters are kept forever
+   */
+  public static Duration getClusterRetention(JsonObject config) {
+    String retention = Config.getSysConf("cluster.retention", "clusterRetention", "", config);
+    return retention.isEmpty() ? null : Duration.ofSeconds(Long.parseLong(retention));
+  }
+
+  /**
+   * Configure caches of storage created from now on.
+   * @param config verticle configuration; system properties cache.entries, cache.weight,
+   *     cache.ttl and cache.notify take precedence over cacheEntries, cacheWeight, cacheTtl
+   *     and cacheNotify
+   */
+  public static void configureCaches(JsonObject config) {
+    responseCacheEntries = Integer.parseInt(Config.getSysConf("cache.entries", "cacheEntries",
+        Integer.toString(responseCacheEntries), config));
+    responseCacheWeight = Long.parseLong(Config.getSysConf("cache.weight", "cacheWeight",
+        Long.toString(responseCacheWeight), config));
+    responseCacheTtl = Long.parseLong(Config.getSysConf("cache.ttl", "cacheTtl",
+        Long.toString(responseCacheTtl), config));
+    cacheNotify = Boolean.parseBoolean(Config.getSysConf("cache.notify", "cacheNotify",
+        Boolean.toString(cacheNotify), config));
+  }
+
+  /**
+   * Configure change feed.
+   * @param config verticle configuration; system property changes.delay takes precedence
+   *     over changesDelay
+   */
+  public static void configureChanges(JsonObject config) {
+    changesDelay = Long.parseLong(Config.getSysConf("changes.delay", "changesDelay",
+        Long.toString(changesDelay), config));
+  }
+
+  /**
+   * Create new storage for tenant, replacing existing one and its caches.
+   *
+   * <p>Changes of other module instances are received once {@link #init()} has succeeded.
+   * @param vertx Vert.x handle
+   * @param tenant tenant
+   * @return storage for tenant
+   */
+  public static Storage create(Vertx vertx, String tenant) {
+    // tenant init is called by Okapi, not by clients
+    Storage storage = new Storage(vertx, tenant, true);
+    Storage old = storages.put(tenant, storage);
+    if (old != null) {
+      old.close();
+    }
+    return storage;
+  }
+
+  private Storage start() {
+    if (cacheNotify) {
+      listen();
+    }
+    return this;
+  }
+
+  /**
+   * Start receiving changes of other module instances.
+   * @return async result; succeeds when listening
+   */
+  Future<Void> listen() {
+    return cacheNotifier.listen(pool.getSchema(), changeHandler);
+  }
+
+  /**
+   * Stop receiving changes of other module instances.
+   */
+  void close() {
+    cacheNotifier.unlisten(pool.getSchema(), changeHandler);
+  }
+
+  public Vertx getVertx() {
+    return vertx;
   }
 
   public TenantPgPool getPool() {
     return pool;
   }
 
+  public TenantMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get connection from pool, recording the time waited for it.
+   * @return async result with connection
+   */
+  public Future<SqlConnection> getConnection() {
+    Timer.Sample sample = Timer.start();
+    return pool.getConnection().onSuccess(x -> sample.stop(metrics.getPoolWaitTimer()));
+  }
+
+  /**
+   * Run function with connection from pool, recording the time waited for it.
+   * @param function to run; connection is closed when returned future completes
+   * @param <T> result type
+   * @return async result
+   */
+  public <T> Future<T> withConnection(Function<SqlConnection, Future<T>> function) {
+    Timer.Sample sample = Timer.start();
+    return pool.withConnection(conn -> {
+      sample.stop(metrics.getPoolWaitTimer());
+      return function.apply(conn);
+    });
+  }
+
+  <T> Future<T> withTransaction(Function<SqlConnection, Future<T>> function) {
+    Timer.Sample sample = Timer.start();
+    Set<UUID> changes = ConcurrentHashMap.newKeySet();
+    return pool.withTransaction(conn -> {
+      sample.stop(metrics.getPoolWaitTimer()); // includes BEGIN
+      transactionChanges.put(conn, changes);
+      return function.apply(conn).onComplete(x -> transactionChanges.remove(conn));
+    })
+        // again after commit, as responses read meanwhile were from before the transaction
+        .onComplete(x -> {
+          List<String> tokens = new ArrayList<>(changes.size());
+          changes.forEach(id -> {
+            responseCache.invalidate(id);
+            tokens.add(id.toString());
+          });
+          cacheNotifier.publish(pool.getSchema(), tokens);
+        });
+  }
+
+  /**
+   * Drop cached responses of a record or cluster that has been changed.
+   *
+   * <p>If the change is part of a transaction, they are dropped again when it completes,
+   * and other module instances are told then.
+   * @param conn connection of the change
+   * @param id record or cluster identifier
+   */
+  void invalidateResponses(SqlConnection conn, UUID id) {
+    responseCache.invalidate(id);
+    Set<UUID> changes = transactionChanges.get(conn);
+    if (changes != null) {
+      changes.add(id);
+    } else {
+      cacheNotifier.publish(pool.getSchema(), id.toString());
+    }
+  }
+
+  /**
+   * Drop all cached record and cluster responses, here and in other module instances.
+   */
+  void invalidateResponses() {
+    responseCache.invalidateAll();
+    cacheNotifier.publish(pool.getSchema(), CacheNotifier.ALL);
+  }
+
+  /**
+   * Apply changes announced by {@link CacheNotifier}, possibly from this module instance.
+   * @param tokens changes
+   */
+  void applyChanges(Collection<String> tokens) {
+    boolean dataChanged = false;
+    for (String token : tokens) {
+      switch (token) {
+        case CacheNotifier.MATCH_KEY_CONFIGS:
+          dropMatchKeyConfigs();
+          break;
+        case CacheNotifier.SEARCH_FIELDS:
+          dropSearchFields();
+          break;
+        case CacheNotifier.ALL:
+          responseCache.invalidateAll();
+          dataChanged = true;
+          break;
+        default:
+          try {
+            responseCache.invalidate(UUID.fromString(token));
+            dataChanged = true;
+          } catch (IllegalArgumentException e) {
+            log.warn("Ignoring cache change {}", token);
+          }
+      }
+    }
+    if (dataChanged) {
+      invalidateResultInfo();
+      changeWaiters.forEach(waiter -> waiter.tryComplete(true));
+    }
+  }
+
+  /**
+   * Get record or cluster response from cache, computing it on a miss.
+   * @param id record or cluster identifier
+   * @param variant variant of response, such as the fields of it
+   * @param supplier computes response; NULL result is not cached
+   * @return async result with response
+   */
+  public Future<String> getCachedResponse(UUID id, String variant,
+      Supplier<Future<String>> supplier) {
+    String response = responseCache.get(id, variant);
+    if (response != null) {
+      metrics.getCacheHits().increment();
+      return Future.succeededFuture(response);
+    }
+    metrics.getCacheMisses().increment();
+    long stamp = responseCache.stamp(id);
+    return supplier.get().onSuccess(res -> {
+      if (res != null) {
+        responseCache.put(id, variant, res, stamp);
+      }
+    });
+  }
+
   public String getClusterMetaTable() {
     return clusterMetaTable;
   }
@@ -86,12 +531,78 @@ public class Storage {
     return clusterValueTable;
   }
 
+  /**
+   * SQL query for the clusters that make up a cluster.
+   *
+   * <p>A merge only redirects the merged clusters to the cluster they were merged into;
+   * cluster_values and cluster_records rows of merged clusters are moved later by
+   * {@link #compactClusters(int, Duration)}. Rows with any of the returned cluster
+   * identifiers belong to the cluster. None are returned if the cluster was merged into
+   * another.
+   * @param param SQL parameter with cluster identifier, such as "$1"
+   * @return SQL query returning cluster_id
+   */
+  public String getClusterMembersSql(String param) {
+    return "SELECT cluster_id FROM " + clusterMetaTable
+        + " WHERE (cluster_id = " + param + " AND merged_into IS NULL)"
+        + " OR merged_into = " + param;
+  }
+
+  /**
+   * SQL expression for the full-text document of a record.
+   *
+   * <p>Words of the title of the instance in the inventory payload have weight A, names of
+   * contributors weight B and subjects weight C, so that title matches rank highest. The
+   * simple configuration is used, as records are in many languages; words are lowercased
+   * but not stemmed.
+   * @param payload SQL expression with the inventory payload
+   * @return tsvector expression; empty, not NULL, if there is no payload
+   */
+  static String fulltextSql(String payload) {
+    return "setweight(to_tsvector('simple', COALESCE(" + payload
+        + " #>> '{instance,title}', '')), 'A')"
+        + " || setweight(" + fulltextStringsSql(payload, "contributors", "name") + ", 'B')"
+        + " || setweight(" + fulltextStringsSql(payload, "subjects", "value") + ", 'C')";
+  }
+
+  // strings of an instance array property, given as strings or objects with a property
+  private static String fulltextStringsSql(String payload, String array, String property) {
+    return "jsonb_to_tsvector('simple', COALESCE("
+        + "jsonb_path_query_array(" + payload + ", '$.instance." + array
+        + "[*] ? (@.type() == \"string\")')"
+        + " || jsonb_path_query_array(" + payload + ", '$.instance." + array + "[*]."
+        + property + "'), '[]'), '[\"string\"]')";
+  }
+
+  /**
+   * SQL condition for records with a full-text document matching keywords.
+   * @param param SQL parameter with the keywords, such as "$1"
+   * @return SQL condition on bib_record
+   */
+  static String fulltextMatchSql(String param) {
+    return "fulltext @@ " + fulltextQuerySql(param);
+  }
+
+  /**
+   * SQL expression for the rank of a bib_record row for keywords; higher is better.
+   * @param param SQL parameter with the keywords, such as "$1"
+   * @return SQL expression
+   */
+  static String fulltextRankSql(String param) {
+    return "ts_rank(fulltext, " + fulltextQuerySql(param) + ")";
+  }
+
+  // keywords in web search syntax: words are ANDed; "phrase", or and -word are supported
+  private static String fulltextQuerySql(String param) {
+    return "websearch_to_tsquery('simple', " + param + ")";
+  }
+
   /**
    * Prepares storage with tables, etc.
    * @return async result.
    */
   public Future<Void> init() {
-    return pool.execute(List.of(
+    return pool.execute(Stream.of(List.of(
             "SET search_path TO " + pool.getSchema(),
             CREATE_IF_NO_EXISTS + bibRecordTable
                 + "(id uuid NOT NULL PRIMARY KEY,"
@@ -107,37 +618,131 @@ public class Storage {
                 + " method VARCHAR, "
                 + " update VARCHAR, "
                 + " params JSONB)",
-            CREATE_IF_NO_EXISTS + clusterMetaTable
-                + "(cluster_id uuid NOT NULL PRIMARY KEY,"
-                + " match_key_config_id VARCHAR NOT NULL,"
-                + " datestamp TIMESTAMP,"
-                + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
-                + " ON DELETE CASCADE)",
-            "CREATE INDEX IF NOT EXISTS cluster_meta_datestamp_idx ON "
-                + clusterMetaTable + "(datestamp)",
-            CREATE_IF_NO_EXISTS + clusterRecordTable
-                + "(record_id uuid NOT NULL,"
-                + " match_key_config_id VARCHAR NOT NULL,"
-                + " cluster_id uuid NOT NULL,"
-                + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
-                + " ON DELETE CASCADE,"
-                + " FOREIGN KEY(record_id) REFERENCES " + bibRecordTable + " ON DELETE CASCADE)",
-            "CREATE UNIQUE INDEX IF NOT EXISTS cluster_record_record_matchkey_idx ON "
-                + clusterRecordTable + "(record_id, match_key_config_id)",
-            "CREATE INDEX IF NOT EXISTS cluster_record_cluster_idx ON "
-                + clusterRecordTable + "(cluster_id)",
-            CREATE_IF_NO_EXISTS + clusterValueTable
-                + "(cluster_id uuid NOT NULL,"
-                + " match_key_config_id VARCHAR NOT NULL,"
-                + " match_value VARCHAR NOT NULL,"
-                + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
-                + " ON DELETE CASCADE)",
-            "CREATE UNIQUE INDEX IF NOT EXISTS cluster_value_value_idx ON "
-                + clusterValueTable + "(match_key_config_id, match_value)",
-            "CREATE INDEX IF NOT EXISTS cluster_value_cluster_idx ON "
-                + clusterValueTable + "(cluster_id)"
-        )
-    ).mapEmpty();
+            CREATE_IF_NO_EXISTS + searchFieldTable
+                + "(id VARCHAR NOT NULL PRIMARY KEY,"
+                + " payload VARCHAR NOT NULL,"
+                + " path VARCHAR NOT NULL)"),
+            createClusterTablesSql(),
+            // columns added after the tables were first created
+            List.of(
+                // cluster this cluster was merged into; NULL for a live cluster
+                "ALTER TABLE " + clusterMetaTable + " ADD COLUMN IF NOT EXISTS merged_into uuid",
+                // match values of the record; NULL for records clustered before they were kept
+                "ALTER TABLE " + clusterRecordTable
+                    + " ADD COLUMN IF NOT EXISTS match_values VARCHAR[]",
+                // full-text document of the record; filled in for existing records by
+                // backfillFulltext
+                "ALTER TABLE " + bibRecordTable + " ADD COLUMN IF NOT EXISTS fulltext tsvector",
+                "CREATE INDEX IF NOT EXISTS bib_record_fulltext_idx ON " + bibRecordTable
+                    + " USING GIN (fulltext)"),
+            createClusterIndexesSql()
+        ).flatMap(List::stream).collect(Collectors.toList())
+    ).onSuccess(x -> {
+      initializedTenants.add(tenant);
+      start();
+      backfillFulltext(); // in the background
+    }).onFailure(e -> {
+      if (storages.remove(tenant, this)) {
+        close();
+      }
+    }).mapEmpty();
+  }
+
+  /**
+   * Fill in full-text documents of records stored before they were kept.
+   *
+   * <p>Records are updated in batches of {@link #bulkBatchSize}, each a statement of its
+   * own, so that neither tenant init nor ingest waits for a rewrite of the whole table.
+   * Records are found by keywords once their batch is done. Does nothing if already done or
+   * running in this process.
+   * @return async result
+   */
+  public Future<Void> backfillFulltext() {
+    if (fulltextBackfilled || !fulltextBackfilling.compareAndSet(false, true)) {
+      return Future.succeededFuture();
+    }
+    return backfillFulltext(null, 0)
+        .onSuccess(x -> fulltextBackfilled = true)
+        .onFailure(e -> log.warn("Full-text backfill for tenant {} failed: {}", tenant,
+            e.getMessage()))
+        .onComplete(x -> fulltextBackfilling.set(false));
+  }
+
+  private Future<Void> backfillFulltext(UUID after, long total) {
+    String q = "WITH u AS (UPDATE " + bibRecordTable + " AS b"
+        + " SET fulltext = " + fulltextSql("b.inventory_payload")
+        + " FROM (SELECT id FROM " + bibRecordTable + " WHERE fulltext IS NULL"
+        + (after == null ? "" : " AND id > $1")
+        + " ORDER BY id LIMIT " + bulkBatchSize + ") AS n"
+        + " WHERE b.id = n.id RETURNING b.id)"
+        + " SELECT max(id) AS last, count(*) AS updated FROM u";
+    return pool.preparedQuery(q)
+        .execute(after == null ? Tuple.tuple() : Tuple.of(after))
+        .compose(rowSet -> {
+          Row row = rowSet.iterator().next();
+          long updated = row.getLong("updated");
+          if (updated == 0) {
+            if (total > 0) {
+              log.info("Full-text documents filled in for {} records of tenant {}", total,
+                  tenant);
+            }
+            return Future.succeededFuture();
+          }
+          // ids in database order, so each batch continues where the last one ended
+          return backfillFulltext(row.getUUID("last"), total + updated);
+        });
+  }
+
+  /**
+   * SQL to create cluster tables.
+   * @return SQL statements
+   */
+  List<String> createClusterTablesSql() {
+    return List.of(
+        CREATE_IF_NO_EXISTS + clusterMetaTable
+            + "(cluster_id uuid NOT NULL PRIMARY KEY,"
+            + " match_key_config_id VARCHAR NOT NULL,"
+            + " datestamp TIMESTAMP,"
+            + " merged_into uuid,"
+            + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
+            + " ON DELETE CASCADE)",
+        CREATE_IF_NO_EXISTS + clusterRecordTable
+            + "(record_id uuid NOT NULL,"
+            + " match_key_config_id VARCHAR NOT NULL,"
+            + " cluster_id uuid NOT NULL,"
+            + " match_values VARCHAR[],"
+            + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
+            + " ON DELETE CASCADE,"
+            + " FOREIGN KEY(record_id) REFERENCES " + bibRecordTable + " ON DELETE CASCADE)",
+        CREATE_IF_NO_EXISTS + clusterValueTable
+            + "(cluster_id uuid NOT NULL,"
+            + " match_key_config_id VARCHAR NOT NULL,"
+            + " match_value VARCHAR NOT NULL,"
+            + " FOREIGN KEY(match_key_config_id) REFERENCES " + matchKeyConfigTable
+            + " ON DELETE CASCADE)");
+  }
+
+  /**
+   * SQL to create indexes of cluster tables.
+   * @return SQL statements
+   */
+  List<String> createClusterIndexesSql() {
+    return List.of(
+        "CREATE INDEX IF NOT EXISTS cluster_meta_datestamp_idx ON "
+            + clusterMetaTable + "(datestamp)",
+        "CREATE INDEX IF NOT EXISTS cluster_meta_merged_into_idx ON "
+            + clusterMetaTable + "(merged_into)",
+        // change feed
+        "CREATE INDEX IF NOT EXISTS cluster_meta_changes_idx ON "
+            + clusterMetaTable + "(match_key_config_id, datestamp, cluster_id)",
+        "CREATE UNIQUE INDEX IF NOT EXISTS cluster_record_record_matchkey_idx ON "
+            + clusterRecordTable + "(record_id, match_key_config_id)",
+        "CREATE INDEX IF NOT EXISTS cluster_record_cluster_idx ON "
+            + clusterRecordTable + "(cluster_id)",
+        "CREATE UNIQUE INDEX IF NOT EXISTS cluster_value_value_idx ON "
+            + clusterValueTable + "(match_key_config_id, match_value)",
+        "CREATE INDEX IF NOT EXISTS cluster_value_cluster_idx ON "
+            + clusterValueTable + "(cluster_id)");
   }
 
   Future<Void> upsertBibRecord(
@@ -146,54 +751,62 @@ public class Storage {
       UUID sourceId,
       JsonObject marcPayload,
       JsonObject inventoryPayload,
-      JsonArray matchKeyConfigs) {
-
-    return conn.preparedQuery(
-            "INSERT INTO " + bibRecordTable
-                + " (id, local_id, source_id, marc_payload, inventory_payload)"
-                + " VALUES ($1, $2, $3, $4, $5)"
-                + " ON CONFLICT (local_id, source_id) DO UPDATE "
-                + " SET marc_payload = $4, inventory_payload = $5"
-                + " RETURNING id"
-        )
-        .execute(
-            Tuple.of(UUID.randomUUID(), localIdentifier, sourceId, marcPayload, inventoryPayload)
-        )
-        .map(rowSet -> rowSet.iterator().next().getUUID("id"))
-        .compose(id -> updateMatchKeyValues(conn, id, marcPayload, inventoryPayload,
-            matchKeyConfigs))
-        .mapEmpty();
+      Map<String, Collection<String>> matchKeyValues) {
+
+    return SharedIndexMetrics.time(metrics.getUpsertBibRecordTimer(), () ->
+        conn.preparedQuery(upsertBibRecordSql)
+            .execute(
+                Tuple.of(UUID.randomUUID(), localIdentifier, sourceId, marcPayload,
+                    inventoryPayload)
+            )
+            .map(rowSet -> rowSet.iterator().next().getUUID("id"))
+            .compose(id -> {
+              invalidateResponses(conn, id);
+              return updateMatchKeyValues(conn, id, matchKeyValues);
+            })
+            .mapEmpty());
   }
 
   Future<Void> deleteBibRecord(SqlConnection conn, String localIdentifier, UUID sourceId) {
-    String q = "UPDATE " + clusterMetaTable + " AS m"
-        + " SET datestamp = $3"
-        + " FROM " + bibRecordTable + ", " + clusterRecordTable + " AS r"
-        + " WHERE m.cluster_id = r.cluster_id AND r.record_id = id"
-        + " AND local_id = $1 AND source_id = $2";
-    return conn.preparedQuery(q)
-        .execute(Tuple.of(localIdentifier, sourceId, LocalDateTime.now(ZoneOffset.UTC)))
-        .compose(x -> conn.preparedQuery("DELETE FROM " + bibRecordTable
-                + " WHERE local_id = $1 AND source_id = $2")
+    return conn.preparedQuery(selectBibRecordClustersSql)
         .execute(Tuple.of(localIdentifier, sourceId))
-        .mapEmpty());
+        .compose(clusters -> conn.preparedQuery(deleteBibRecordMetaSql)
+            .execute(Tuple.of(localIdentifier, sourceId, LocalDateTime.now(ZoneOffset.UTC)))
+            .compose(x -> conn.preparedQuery(deleteBibRecordSql)
+                .execute(Tuple.of(localIdentifier, sourceId)))
+            .compose(deleted -> {
+              deleted.forEach(row -> invalidateResponses(conn, row.getUUID("id")));
+              // clusters the record was part of may no longer hold together
+              Future<Void> future = Future.succeededFuture();
+              for (Row row : clusters) {
+                UUID clusterId = row.getUUID("cluster_id");
+                invalidateResponses(conn, clusterId);
+                String matchKeyConfigId = row.getString("match_key_config_id");
+                future = future.compose(y -> maintainCluster(conn, clusterId, matchKeyConfigId));
+              }
+              return future;
+            }));
   }
 
   Future<Void> upsertGlobalRecord(UUID sourceId, JsonObject globalRecord,
-      JsonArray matchKeyConfigs) {
+      Map<String, Collection<String>> matchKeyValues) {
 
-    return pool.withTransaction(conn ->
-            upsertGlobalRecord(conn, sourceId, globalRecord, matchKeyConfigs))
+    return withTransaction(conn ->
+            upsertGlobalRecord(conn, sourceId, globalRecord, matchKeyValues))
         // addValuesToCluster may fail if for same new match key for parallel operations
         // we recover just once for that. 2nd will find the new value for the one that
         // succeeded.
-        .recover(x ->
-            pool.withTransaction(conn ->
-                upsertGlobalRecord(conn, sourceId, globalRecord, matchKeyConfigs)));
+        .recover(x -> {
+          metrics.getIngestRetries().increment();
+          return withTransaction(conn ->
+              upsertGlobalRecord(conn, sourceId, globalRecord, matchKeyValues));
+        })
+        .onSuccess(x -> (matchKeyValues == null
+            ? metrics.getRecordsDeleted() : metrics.getRecordsUpserted()).increment());
   }
 
   Future<Void> upsertGlobalRecord(SqlConnection conn, UUID sourceId,
-      JsonObject globalRecord, JsonArray matchKeyConfigs) {
+      JsonObject globalRecord, Map<String, Collection<String>> matchKeyValues) {
 
     final String localIdentifier = globalRecord.getString("localId");
     if (Boolean.TRUE.equals(globalRecord.getBoolean("delete"))) {
@@ -202,37 +815,109 @@ public class Storage {
     final JsonObject marcPayload = globalRecord.getJsonObject("marcPayload");
     final JsonObject inventoryPayload = globalRecord.getJsonObject("inventoryPayload");
     return upsertBibRecord(conn, localIdentifier, sourceId, marcPayload, inventoryPayload,
-        matchKeyConfigs);
+        matchKeyValues);
   }
 
-  Future<Void> updateMatchKeyValues(SqlConnection conn, UUID globalId,
-      JsonObject marcPayload, JsonObject inventoryPayload, JsonArray matchKeyConfigs) {
-    List<Future<Void>> futures = new ArrayList<>(matchKeyConfigs.size());
+  /**
+   * Compile match key configuration.
+   * @param method match key method name
+   * @param params match key method parameters
+   * @return key extractor
+   * @throws MatchKeyException for unknown match key method or bad parameters
+   */
+  public static MatchKeyExtractor compileMatchKeyConfig(String method, JsonObject params) {
+    MatchKeyMethod matchKeyMethod = MatchKeyMethod.get(method);
+    if (matchKeyMethod == null) {
+      throw new MatchKeyException("Unknown match key method: " + method);
+    }
+    return matchKeyMethod.compile(params == null ? new JsonObject() : params);
+  }
+
+  /**
+   * Compile match key configurations that are updated on ingest.
+   * @param matchKeyConfigs match key configurations
+   * @return key extractor for each match key config identifier; configurations with
+   *     update "manual" are omitted
+   * @throws MatchKeyException for unknown match key method or bad parameters
+   */
+  static Map<String, MatchKeyExtractor> compileMatchKeyConfigs(JsonArray matchKeyConfigs) {
+    Map<String, MatchKeyExtractor> extractors = new LinkedHashMap<>();
     for (int i = 0; i < matchKeyConfigs.size(); i++) {
       JsonObject matchKeyConfig = matchKeyConfigs.getJsonObject(i);
-      futures.add(updateMatchKeyValues(conn, globalId, marcPayload,
-          inventoryPayload, matchKeyConfig));
+      if ("manual".equals(matchKeyConfig.getString("update"))) {
+        continue;
+      }
+      extractors.put(matchKeyConfig.getString("id"), compileMatchKeyConfig(
+          matchKeyConfig.getString("method"), matchKeyConfig.getJsonObject("params")));
     }
-    return GenericCompositeFuture.all(futures).mapEmpty();
+    return Collections.unmodifiableMap(extractors);
   }
 
-  Future<Void> updateMatchKeyValues(SqlConnection conn, UUID globalId,
-      JsonObject marcPayload, JsonObject inventoryPayload, JsonObject matchKeyConfig) {
+  /**
+   * Compute match key values for a record.
+   *
+   * <p>The record is traversed and parsed once for all match key configurations.
+   * This is CPU bound and does not touch storage, so it may be called from a worker thread.
+   * @param marcPayload MARC payload
+   * @param inventoryPayload inventory payload
+   * @param extractors key extractor for each match key config identifier
+   * @return match key values for each match key config identifier
+   */
+  static Map<String, Collection<String>> getMatchKeyValues(JsonObject marcPayload,
+      JsonObject inventoryPayload, Map<String, MatchKeyExtractor> extractors) {
+
+    MatchKeyRecord matchKeyRecord = new MatchKeyRecord(marcPayload, inventoryPayload);
+    Map<String, Collection<String>> matchKeyValues = new HashMap<>();
+    extractors.forEach((id, extractor) -> {
+      Set<String> keys = new HashSet<>();
+      extractor.getKeys(matchKeyRecord, keys);
+      matchKeyValues.put(id, keys);
+    });
+    return matchKeyValues;
+  }
 
-    String update = matchKeyConfig.getString("update");
-    if ("manual".equals(update)) {
-      return Future.succeededFuture();
-    }
-    String methodName = matchKeyConfig.getString("method");
-    MatchKeyMethod method = MatchKeyMethod.get(methodName);
-    if (method == null) {
-      return Future.failedFuture("Unknown match key method: " + methodName);
+  /**
+   * Compute match key values for ingest records.
+   *
+   * <p>Each extractor is given all records at once. Each record is traversed and parsed
+   * once for all match key configurations. This is CPU bound and does not touch storage,
+   * so it may be called from a worker thread.
+   * @param records ingest records
+   * @param extractors key extractor for each match key config identifier
+   * @return match key values for each record; NULL for records to be deleted
+   */
+  static List<Map<String, Collection<String>>> getMatchKeyValues(JsonArray records,
+      Map<String, MatchKeyExtractor> extractors) {
+
+    List<Map<String, Collection<String>>> matchKeyValues = new ArrayList<>(records.size());
+    List<Integer> upserts = new ArrayList<>(records.size());
+    List<MatchKeyRecord> matchKeyRecords = new ArrayList<>(records.size());
+    for (int i = 0; i < records.size(); i++) {
+      JsonObject globalRecord = records.getJsonObject(i);
+      if (Boolean.TRUE.equals(globalRecord.getBoolean("delete"))) {
+        matchKeyValues.add(null);
+        continue;
+      }
+      matchKeyValues.add(new HashMap<>());
+      upserts.add(i);
+      matchKeyRecords.add(new MatchKeyRecord(globalRecord.getJsonObject("marcPayload"),
+          globalRecord.getJsonObject("inventoryPayload")));
     }
-    method.configure(matchKeyConfig.getJsonObject("params"));
-    Set<String> keys = new HashSet<>();
-    method.getKeys(marcPayload, inventoryPayload, keys);
-    String matchKeyConfigId = matchKeyConfig.getString("id");
-    return updateMatchKeyValues(conn, globalId, matchKeyConfigId, keys);
+    extractors.forEach((id, extractor) -> {
+      List<Set<String>> keys = extractor.getKeys(matchKeyRecords);
+      for (int j = 0; j < upserts.size(); j++) {
+        matchKeyValues.get(upserts.get(j)).put(id, keys.get(j));
+      }
+    });
+    return matchKeyValues;
+  }
+
+  Future<Void> updateMatchKeyValues(SqlConnection conn, UUID globalId,
+      Map<String, Collection<String>> matchKeyValues) {
+    List<Future<Void>> futures = new ArrayList<>(matchKeyValues.size());
+    matchKeyValues.forEach((matchKeyConfigId, keys) ->
+        futures.add(updateMatchKeyValues(conn, globalId, matchKeyConfigId, keys)));
+    return GenericCompositeFuture.all(futures).mapEmpty();
   }
 
   Future<Void> updateMatchKeyValues(SqlConnection conn, UUID globalId,
@@ -244,12 +929,66 @@ public class Storage {
   Future<Set<UUID>> updateClusterValues(SqlConnection conn, UUID newClusterId,
       String matchKeyConfigId, Collection<String> keys) {
 
-    Set<UUID> clustersFound = new HashSet<>();
+    return SharedIndexMetrics.time(metrics.getUpdateClusterValuesTimer(), () ->
+        lookupClusterValues(conn, newClusterId, matchKeyConfigId, keys));
+  }
+
+  /**
+   * Find clusters with any of the match values of a record, and add the values not found to
+   * the first of them; to a new cluster if none is found.
+   *
+   * <p>The clusters found are locked before values are added, as a concurrent split of them
+   * may move or remove the values found. The lookup is then done again, and tried once
+   * more if it finds clusters that were not locked.
+   * @param conn connection in transaction
+   * @param newClusterId cluster that values are added to if none is found
+   * @param matchKeyConfigId match key config
+   * @param keys match values of record
+   * @return async result with live clusters found; empty if none
+   */
+  Future<Set<UUID>> lookupClusterValues(SqlConnection conn, UUID newClusterId,
+      String matchKeyConfigId, Collection<String> keys) {
+
     if (keys.isEmpty()) {
-      return Future.succeededFuture(clustersFound);
+      return Future.succeededFuture(new HashSet<>());
     }
-    StringBuilder q = new StringBuilder("SELECT cluster_id, match_value FROM " + clusterValueTable
-        + " WHERE match_key_config_id = $1 AND (");
+    return selectClusterValues(conn, matchKeyConfigId, keys).compose(found -> {
+      if (found.isEmpty()) {
+        return addValuesToCluster(conn, newClusterId, matchKeyConfigId, keys, Set.of())
+            .map(x -> new HashSet<>());
+      }
+      return lockClusters(conn, new HashSet<>(found.values()))
+          .compose(live -> selectClusterValues(conn, matchKeyConfigId, keys)
+              .compose(again -> {
+                Set<UUID> clustersFound = new HashSet<>(again.values());
+                if (!live.values().containsAll(clustersFound)) {
+                  // split meanwhile
+                  return lookupClusterValues(conn, newClusterId, matchKeyConfigId, keys);
+                }
+                UUID clusterId = clustersFound.isEmpty()
+                    ? newClusterId : clustersFound.iterator().next();
+                return addValuesToCluster(conn, clusterId, matchKeyConfigId, keys,
+                    again.keySet())
+                    .map(clustersFound);
+              }));
+    });
+  }
+
+  /**
+   * Find clusters with match values.
+   * @param conn connection
+   * @param matchKeyConfigId match key config
+   * @param keys match values; not empty
+   * @return async result with live cluster of each match value found
+   */
+  Future<Map<String, UUID>> selectClusterValues(SqlConnection conn, String matchKeyConfigId,
+      Collection<String> keys) {
+
+    // resolve clusters merged into others; redirects are kept one level deep
+    StringBuilder q = new StringBuilder("SELECT COALESCE(m.merged_into, v.cluster_id)"
+        + " AS cluster_id, match_value FROM " + clusterValueTable + " AS v"
+        + " LEFT JOIN " + clusterMetaTable + " AS m ON m.cluster_id = v.cluster_id"
+        + " WHERE v.match_key_config_id = $1 AND (");
     List<Object> tupleList = new ArrayList<>();
     tupleList.add(matchKeyConfigId);
     int no = 2;
@@ -261,29 +1000,44 @@ public class Storage {
       tupleList.add(key);
     }
     q.append(")");
-    Set<String> foundKeys = new HashSet<>();
     return conn.preparedQuery(q.toString())
         .execute(Tuple.from(tupleList))
         .map(rowSet -> {
-          rowSet.forEach(row -> {
-            foundKeys.add(row.getString("match_value"));
-            clustersFound.add(row.getUUID("cluster_id"));
-          });
-          if (clustersFound.isEmpty()) {
-            return newClusterId;
-          } else {
-            return clustersFound.iterator().next();
-          }
-        })
-        .compose(clusterId ->
-            addValuesToCluster(conn, clusterId, matchKeyConfigId, keys, foundKeys)
-        )
-        .map(clustersFound);
+          Map<String, UUID> found = new HashMap<>();
+          rowSet.forEach(row ->
+              found.put(row.getString("match_value"), row.getUUID("cluster_id")));
+          return found;
+        });
   }
 
   Future<Void> updateClusterForRecord(SqlConnection conn, UUID globalId,
       String matchKeyConfigId, Collection<String> keys) {
 
+    return conn.preparedQuery(selectRecordClusterSql)
+        .execute(Tuple.of(globalId, matchKeyConfigId))
+        .compose(rowSet -> {
+          RowIterator<Row> iterator = rowSet.iterator();
+          Row old = iterator.hasNext() ? iterator.next() : null;
+          return assignClusterForRecord(conn, globalId, matchKeyConfigId, keys)
+              .compose(clusterId -> {
+                if (old == null) {
+                  return Future.succeededFuture();
+                }
+                UUID oldClusterId = old.getUUID("cluster_id");
+                String[] oldKeys = old.getArrayOfStrings("match_values");
+                if (clusterId.equals(oldClusterId) && oldKeys != null
+                    && new HashSet<>(keys).equals(new HashSet<>(Arrays.asList(oldKeys)))) {
+                  return Future.succeededFuture(); // no change
+                }
+                // the record left the cluster or changed its values in it
+                return maintainCluster(conn, oldClusterId, matchKeyConfigId);
+              });
+        });
+  }
+
+  Future<UUID> assignClusterForRecord(SqlConnection conn, UUID globalId,
+      String matchKeyConfigId, Collection<String> keys) {
+
     UUID newClusterId = UUID.randomUUID();
     return updateClusterValues(conn, newClusterId, matchKeyConfigId, keys)
         .compose(clustersFound -> {
@@ -291,23 +1045,171 @@ public class Storage {
           if (!iterator.hasNext()) {
             return createCluster(conn, newClusterId, matchKeyConfigId); // create new cluster
           }
-          UUID clusterId = iterator.next();
-          return updateCluster(conn, clusterId).compose(c -> {
-            if (!iterator.hasNext()) {
-              return Future.succeededFuture(clusterId); // exactly one already
-            }
-            // multiple clusters: merge remaining with this one
-            return mergeClusters(conn, clusterId, iterator).map(clusterId);
-          });
+          // merge any others into the first one; if a concurrent ingest has merged the
+          // first one meanwhile, the record goes to the cluster it was merged into
+          return mergeClusters(conn, iterator.next(), iterator)
+              .compose(clusterId -> updateCluster(conn, clusterId).map(clusterId));
         })
         .compose(clusterId ->
             conn.preparedQuery("INSERT INTO " + clusterRecordTable
-                    + " (record_id, match_key_config_id, cluster_id) VALUES ($1, $2, $3)"
+                    + " (record_id, match_key_config_id, cluster_id, match_values)"
+                    + " VALUES ($1, $2, $3, $4)"
                     + " ON CONFLICT (record_id, match_key_config_id)"
-                    + " DO UPDATE SET record_id = $1, match_key_config_id = $2, cluster_id = $3")
-                .execute(Tuple.of(globalId, matchKeyConfigId, clusterId))
-        )
-        .mapEmpty();
+                    + " DO UPDATE SET record_id = $1, match_key_config_id = $2, cluster_id = $3,"
+                    + " match_values = $4")
+                .execute(Tuple.of(globalId, matchKeyConfigId, clusterId,
+                    keys.toArray(new String[0])))
+                .map(clusterId)
+        );
+  }
+
+  /**
+   * Remove match values of a cluster that are no longer backed by a member record, and
+   * split the cluster if its members are no longer connected by match values.
+   *
+   * <p>The cluster_meta row of the cluster is locked first, so that an ingest that adds a
+   * record to the cluster waits, and so does another split of it. Only the rows of the
+   * cluster are read. Match values of member records clustered before match values were
+   * kept are computed from their payloads and stored. The largest group of connected
+   * records keeps the cluster identifier; each other group gets a new cluster.
+   * @param conn connection in transaction
+   * @param clusterId cluster that lost a record or had record match values changed
+   * @param matchKeyConfigId match key config of cluster
+   * @return async result
+   */
+  Future<Void> maintainCluster(SqlConnection conn, UUID clusterId, String matchKeyConfigId) {
+    return lockClusters(conn, Set.of(clusterId)).compose(live -> {
+      UUID liveId = live.get(clusterId);
+      return selectRecordMatchValues(conn, liveId, matchKeyConfigId)
+          .compose(recordValues -> splitCluster(conn, liveId, matchKeyConfigId, recordValues));
+    });
+  }
+
+  /**
+   * Get match values of each member record of a cluster, computing those not kept.
+   * @param conn connection
+   * @param clusterId live cluster
+   * @param matchKeyConfigId match key config of cluster
+   * @return async result with match values by record identifier
+   */
+  Future<Map<UUID, String[]>> selectRecordMatchValues(SqlConnection conn, UUID clusterId,
+      String matchKeyConfigId) {
+    // payloads are read only for records without match values
+    return conn.preparedQuery("SELECT r.record_id, r.match_values,"
+            + " CASE WHEN r.match_values IS NULL THEN b.marc_payload END AS marc_payload,"
+            + " CASE WHEN r.match_values IS NULL THEN b.inventory_payload END"
+            + " AS inventory_payload"
+            + " FROM " + clusterRecordTable + " AS r"
+            + " JOIN " + bibRecordTable + " AS b ON b.id = r.record_id"
+            + " WHERE r.match_key_config_id = $2"
+            + " AND r.cluster_id IN (" + getClusterMembersSql("$1") + ")")
+        .execute(Tuple.of(clusterId, matchKeyConfigId))
+        .compose(rowSet -> {
+          Map<UUID, String[]> recordValues = new LinkedHashMap<>();
+          List<UUID> missingIds = new ArrayList<>();
+          List<JsonObject> marcPayloads = new ArrayList<>();
+          List<JsonObject> inventoryPayloads = new ArrayList<>();
+          for (Row row : rowSet) {
+            UUID recordId = row.getUUID("record_id");
+            String[] values = row.getArrayOfStrings("match_values");
+            recordValues.put(recordId, values);
+            if (values == null) {
+              missingIds.add(recordId);
+              marcPayloads.add(row.getJsonObject("marc_payload"));
+              inventoryPayloads.add(row.getJsonObject("inventory_payload"));
+            }
+          }
+          if (missingIds.isEmpty()) {
+            return Future.succeededFuture(recordValues);
+          }
+          return selectMatchKeyConfig(matchKeyConfigId)
+              .compose(conf -> {
+                if (conf == null) {
+                  return Future.failedFuture("MatchKey " + matchKeyConfigId + " not found");
+                }
+                MatchKeyExtractor extractor = compileMatchKeyConfig(conf.getString("method"),
+                    conf.getJsonObject("params"));
+                // CPU bound
+                return vertx.<List<Set<String>>>executeBlocking(promise ->
+                    promise.complete(extractor.getKeys(marcPayloads, inventoryPayloads)),
+                    false);
+              })
+              .compose(keys -> {
+                List<Tuple> tuples = new ArrayList<>(missingIds.size());
+                for (int i = 0; i < missingIds.size(); i++) {
+                  String[] values = keys.get(i).toArray(new String[0]);
+                  recordValues.put(missingIds.get(i), values);
+                  tuples.add(Tuple.of(missingIds.get(i), matchKeyConfigId, values));
+                }
+                // keep them, so that this is done once
+                return conn.preparedQuery("UPDATE " + clusterRecordTable
+                        + " SET match_values = $3"
+                        + " WHERE record_id = $1 AND match_key_config_id = $2")
+                    .executeBatch(tuples);
+              })
+              .map(recordValues);
+        });
+  }
+
+  private Future<Void> splitCluster(SqlConnection conn, UUID clusterId,
+      String matchKeyConfigId, Map<UUID, String[]> recordValues) {
+    List<UUID> recordIds = new ArrayList<>();
+    UnionFind unionFind = new UnionFind(recordValues.size());
+    Map<String, Integer> valueRecord = new HashMap<>();
+    for (Map.Entry<UUID, String[]> recordEntry : recordValues.entrySet()) {
+      int no = unionFind.add();
+      recordIds.add(recordEntry.getKey());
+      for (String value : recordEntry.getValue()) {
+        Integer other = valueRecord.putIfAbsent(value, no);
+        if (other != null) {
+          unionFind.union(no, other);
+        }
+      }
+    }
+    Future<Void> future = conn.preparedQuery("DELETE FROM " + clusterValueTable
+            + " WHERE match_key_config_id = $2"
+            + " AND cluster_id IN (" + getClusterMembersSql("$1") + ")"
+            + " AND NOT match_value = ANY($3)")
+        .execute(Tuple.of(clusterId, matchKeyConfigId,
+            valueRecord.keySet().toArray(new String[0])))
+        .compose(x -> updateCluster(conn, clusterId));
+    Map<Integer, List<UUID>> groupRecords = new HashMap<>();
+    Map<Integer, List<String>> groupValues = new HashMap<>();
+    int largest = -1;
+    for (int no = 0; no < unionFind.size(); no++) {
+      int root = unionFind.find(no);
+      groupRecords.computeIfAbsent(root, k -> new ArrayList<>()).add(recordIds.get(no));
+      if (largest == -1 || unionFind.setSize(root) > unionFind.setSize(largest)) {
+        largest = root;
+      }
+    }
+    if (groupRecords.size() <= 1) {
+      return future;
+    }
+    valueRecord.forEach((value, no) -> groupValues
+        .computeIfAbsent(unionFind.find(no), k -> new ArrayList<>()).add(value));
+    metrics.getClusterSplits().increment(groupRecords.size() - 1.0);
+    for (Map.Entry<Integer, List<UUID>> entry : groupRecords.entrySet()) {
+      if (entry.getKey() == largest) {
+        continue;
+      }
+      UUID newClusterId = UUID.randomUUID();
+      Tuple tuple = Tuple.of(newClusterId, matchKeyConfigId,
+          entry.getValue().toArray(new UUID[0]),
+          groupValues.getOrDefault(entry.getKey(), List.of()).toArray(new String[0]));
+      future = future
+          .compose(x -> createCluster(conn, newClusterId, matchKeyConfigId))
+          .compose(x -> conn.preparedQuery("UPDATE " + clusterRecordTable
+                  + " SET cluster_id = $1"
+                  + " WHERE match_key_config_id = $2 AND record_id = ANY($3)")
+              .execute(tuple))
+          .compose(x -> conn.preparedQuery("UPDATE " + clusterValueTable
+                  + " SET cluster_id = $1"
+                  + " WHERE match_key_config_id = $2 AND match_value = ANY($4)")
+              .execute(tuple))
+          .mapEmpty();
+    }
+    return future;
   }
 
   Future<Void> addValuesToCluster(SqlConnection conn, UUID clusterId, String matchKeyConfigId,
@@ -337,38 +1239,209 @@ public class Storage {
         .mapEmpty();
   }
 
-  Future<UUID> createCluster(SqlConnection conn, UUID clusterId, String matchKeyConfigId) {
-    return conn.preparedQuery("INSERT INTO " + clusterMetaTable
-            + " (cluster_id, datestamp, match_key_config_id) VALUES ($1, $2, $3)")
-        .execute(Tuple.of(clusterId, LocalDateTime.now(ZoneOffset.UTC), matchKeyConfigId))
-        .map(clusterId);
+  Future<UUID> createCluster(SqlConnection conn, UUID clusterId, String matchKeyConfigId) {
+    return conn.preparedQuery("INSERT INTO " + clusterMetaTable
+            + " (cluster_id, datestamp, match_key_config_id) VALUES ($1, $2, $3)")
+        .execute(Tuple.of(clusterId, LocalDateTime.now(ZoneOffset.UTC), matchKeyConfigId))
+        .map(clusterId);
+  }
+
+  Future<Void> updateCluster(SqlConnection conn, UUID clusterId) {
+    return conn.preparedQuery("UPDATE " + clusterMetaTable
+            + " SET datestamp = $2 WHERE cluster_id = $1")
+        .execute(Tuple.of(clusterId, LocalDateTime.now(ZoneOffset.UTC)))
+        .onComplete(x -> invalidateResponses(conn, clusterId))
+        .mapEmpty();
+  }
+
+  /**
+   * Merge clusters into one.
+   *
+   * <p>Merged clusters are redirected to the cluster they are merged into, and so are
+   * clusters that were earlier merged into them, so that a redirect always points to a
+   * live cluster. The merged clusters get a new datestamp, so that OAI-PMH reports them
+   * as deleted. Their cluster_values and cluster_records rows are moved later by
+   * {@link #compactClusters(int, Duration)}.
+   *
+   * <p>The cluster_meta rows are locked first, and clusters that a concurrent transaction
+   * has merged meanwhile are replaced by the clusters they were merged into. Otherwise
+   * merges of B into A and of A into C committed at the same time would leave B redirected
+   * to A, which is no longer live.
+   * @param conn connection
+   * @param clusterId cluster to merge into
+   * @param iterator clusters to merge; may be empty
+   * @return async result with the live cluster that the clusters were merged into; this is
+   *     clusterId unless that was merged into another cluster meanwhile
+   */
+  Future<UUID> mergeClusters(SqlConnection conn, UUID clusterId, Iterator<UUID> iterator) {
+    Set<UUID> clusters = new HashSet<>();
+    clusters.add(clusterId);
+    iterator.forEachRemaining(clusters::add);
+    return lockClusters(conn, clusters).compose(live -> {
+      UUID target = live.get(clusterId);
+      Set<UUID> merged = new HashSet<>(live.values());
+      merged.remove(target);
+      if (merged.isEmpty()) {
+        return Future.succeededFuture(target);
+      }
+      metrics.getClusterMerges().increment(merged.size());
+      return SharedIndexMetrics.time(metrics.getMergeClustersTimer(), () ->
+          conn.preparedQuery("UPDATE " + clusterMetaTable + " SET merged_into = $1,"
+                  + " datestamp = CASE WHEN cluster_id = ANY($2) THEN $3 ELSE datestamp END"
+                  + " WHERE cluster_id = ANY($2) OR merged_into = ANY($2)")
+              .execute(Tuple.of(target, merged.toArray(new UUID[0]),
+                  LocalDateTime.now(ZoneOffset.UTC)))
+              .onComplete(x -> {
+                invalidateResponses(conn, target);
+                merged.forEach(id -> invalidateResponses(conn, id));
+              })
+              .map(target));
+    });
+  }
+
+  /**
+   * Lock cluster_meta rows of clusters, and of the clusters they were merged into, until
+   * the end of the transaction.
+   *
+   * <p>Rows are locked in identifier order, so that transactions merging overlapping
+   * clusters wait for each other rather than deadlock.
+   * @param conn connection in transaction
+   * @param clusters clusters to lock
+   * @return async result with the live cluster of each cluster
+   */
+  Future<Map<UUID, UUID>> lockClusters(SqlConnection conn, Set<UUID> clusters) {
+    return conn.preparedQuery("SELECT cluster_id, merged_into FROM " + clusterMetaTable
+            + " WHERE cluster_id = ANY($1) ORDER BY cluster_id FOR UPDATE")
+        .execute(Tuple.of(clusters.toArray(new UUID[0])))
+        .compose(rowSet -> {
+          Map<UUID, UUID> redirects = new HashMap<>();
+          for (Row row : rowSet) {
+            UUID mergedInto = row.getUUID("merged_into");
+            if (mergedInto != null) {
+              redirects.put(row.getUUID("cluster_id"), mergedInto);
+            }
+          }
+          Set<UUID> targets = new HashSet<>(clusters);
+          targets.addAll(redirects.values());
+          if (targets.size() > clusters.size()) {
+            // lock clusters merged into as well; their redirects are then stable
+            return lockClusters(conn, targets);
+          }
+          Map<UUID, UUID> live = new HashMap<>();
+          for (UUID id : clusters) {
+            UUID cluster = id;
+            // follow chains left from before merges locked, bounded in case of a cycle
+            for (int i = 0; i < clusters.size() && redirects.containsKey(cluster); i++) {
+              cluster = redirects.get(cluster);
+            }
+            live.put(id, cluster);
+          }
+          return Future.succeededFuture(live);
+        });
+  }
+
+  /**
+   * Move cluster_values and cluster_records rows of merged clusters to the cluster they were
+   * merged into, and remove old merged clusters.
+   *
+   * <p>Work is done in transactions of at most batchSize merged clusters each, so that
+   * ingest is not blocked for long. Merged clusters are kept in cluster_meta, so that
+   * OAI-PMH can report them as deleted, until their datestamp is older than retention.
+   * @param batchSize maximum number of merged clusters handled in one transaction
+   * @param retention how long merged clusters are kept; NULL to keep them forever
+   * @return async result with statistics: "compacted" merged clusters moved, "pruned"
+   *     merged clusters removed
+   */
+  public Future<JsonObject> compactClusters(int batchSize, Duration retention) {
+    JsonObject result = new JsonObject().put("compacted", 0).put("pruned", 0);
+    return flattenRedirects()
+        .compose(x -> compactClusterBatches(batchSize, result))
+        .compose(x -> {
+          if (retention == null) {
+            return Future.succeededFuture();
+          }
+          return pruneClusters(batchSize, LocalDateTime.now(ZoneOffset.UTC).minus(retention),
+              result);
+        })
+        .map(result);
+  }
+
+  /**
+   * Make redirects to merged clusters point to live clusters.
+   *
+   * <p>Merges lock the clusters involved and keep redirects one level deep, but chains may
+   * be left from before they did.
+   */
+  Future<Void> flattenRedirects() {
+    return pool.query("UPDATE " + clusterMetaTable + " AS c SET merged_into = p.merged_into"
+            + " FROM " + clusterMetaTable + " AS p"
+            + " WHERE c.merged_into = p.cluster_id AND p.merged_into IS NOT NULL")
+        .execute()
+        .compose(rowSet -> rowSet.rowCount() == 0
+            ? Future.succeededFuture() : flattenRedirects());
   }
 
-  Future<Void> updateCluster(SqlConnection conn, UUID clusterId) {
-    return conn.preparedQuery("UPDATE " + clusterMetaTable
-            + " SET datestamp = $2 WHERE cluster_id = $1")
-        .execute(Tuple.of(clusterId, LocalDateTime.now(ZoneOffset.UTC)))
-        .mapEmpty();
+  Future<Void> compactClusterBatches(int batchSize, JsonObject result) {
+    String selectBatch = "SELECT cluster_id, merged_into FROM " + clusterMetaTable + " AS m"
+        + " WHERE merged_into IS NOT NULL"
+        + " AND (EXISTS (SELECT 1 FROM " + clusterValueTable + " AS v"
+        + " WHERE v.cluster_id = m.cluster_id)"
+        + " OR EXISTS (SELECT 1 FROM " + clusterRecordTable + " AS r"
+        + " WHERE r.cluster_id = m.cluster_id))"
+        + " LIMIT " + batchSize;
+    String moveSet = " AS t SET cluster_id = m.merged_into FROM " + clusterMetaTable + " AS m"
+        + " WHERE t.cluster_id = m.cluster_id AND m.merged_into IS NOT NULL"
+        + " AND m.cluster_id = ANY($1)";
+    return withTransaction(conn -> conn.query(selectBatch).execute()
+        .compose(rowSet -> {
+          List<UUID> batch = new ArrayList<>();
+          rowSet.forEach(row -> batch.add(row.getUUID("cluster_id")));
+          if (batch.isEmpty()) {
+            return Future.succeededFuture(0);
+          }
+          Tuple tuple = Tuple.of(batch.toArray(new UUID[0]));
+          return conn.preparedQuery("UPDATE " + clusterValueTable + moveSet).execute(tuple)
+              .compose(x -> conn.preparedQuery("UPDATE " + clusterRecordTable + moveSet)
+                  .execute(tuple))
+              .map(batch.size());
+        }))
+        .compose(count -> {
+          if (count == 0) {
+            return Future.succeededFuture();
+          }
+          result.put("compacted", result.getInteger("compacted") + count);
+          metrics.getClustersCompacted().increment(count);
+          return compactClusterBatches(batchSize, result);
+        });
   }
 
-  Future<Void> mergeClusters(SqlConnection conn, UUID clusterId, Iterator<UUID> iterator) {
-    StringBuilder setClause = new StringBuilder(" SET cluster_id = $1 WHERE ");
-    List<UUID> tupleList = new ArrayList<>();
-    tupleList.add(clusterId); // $1
-    for (int no = 2; iterator.hasNext(); no++) {
-      tupleList.add(iterator.next());
-      if (no > 2) {
-        setClause.append(" OR ");
-      }
-      setClause.append("cluster_id = $");
-      setClause.append(no);
-    }
-    return conn.preparedQuery("UPDATE " + clusterValueTable + setClause)
-        .execute(Tuple.from(tupleList))
-        .compose(x -> conn.preparedQuery("UPDATE " + clusterRecordTable + setClause)
-            .execute(Tuple.from(tupleList)))
-        .mapEmpty();
-    // clusterMetaTable entries not removed. These are "delete items"
+  Future<Void> pruneClusters(int batchSize, LocalDateTime before, JsonObject result) {
+    return pool.preparedQuery("DELETE FROM " + clusterMetaTable + " WHERE cluster_id IN"
+            + " (SELECT cluster_id FROM " + clusterMetaTable + " AS m"
+            + " WHERE merged_into IS NOT NULL AND datestamp < $1"
+            + " AND NOT EXISTS (SELECT 1 FROM " + clusterValueTable + " AS v"
+            + " WHERE v.cluster_id = m.cluster_id)"
+            + " AND NOT EXISTS (SELECT 1 FROM " + clusterRecordTable + " AS r"
+            + " WHERE r.cluster_id = m.cluster_id)"
+            + " LIMIT " + batchSize + ") RETURNING cluster_id")
+        .execute(Tuple.of(before))
+        .compose(rowSet -> {
+          // cached as deleted by OAI-PMH
+          List<String> tokens = new ArrayList<>();
+          rowSet.forEach(row -> {
+            UUID clusterId = row.getUUID("cluster_id");
+            responseCache.invalidate(clusterId);
+            tokens.add(clusterId.toString());
+          });
+          cacheNotifier.publish(pool.getSchema(), tokens);
+          int count = rowSet.rowCount();
+          if (count == 0) {
+            return Future.succeededFuture();
+          }
+          result.put("pruned", result.getInteger("pruned") + count);
+          metrics.getClustersPruned().increment(count);
+          return pruneClusters(batchSize, before, result);
+        });
   }
 
   /**
@@ -380,20 +1453,49 @@ public class Storage {
     UUID sourceId = UUID.fromString(request.getString("sourceId"));
     JsonArray records = request.getJsonArray("records");
 
-    return pool.withConnection(conn ->
-        getAvailableMatchConfigs(conn).compose(matchKeyConfigs -> {
-              List<Future<Void>> futures = new ArrayList<>(records.size());
-              for (int i = 0; i < records.size(); i++) {
-                JsonObject globalRecord = records.getJsonObject(i);
-                futures.add(upsertGlobalRecord(sourceId, globalRecord, matchKeyConfigs));
-              }
-              return GenericCompositeFuture.all(futures).mapEmpty();
+    return getMatchKeyExtractors()
+        // match key computation is CPU bound, so do it on a worker thread; unordered
+        // so that concurrent ingest requests are computed in parallel.
+        .compose(extractors -> vertx.<List<Map<String, Collection<String>>>>executeBlocking(
+            promise -> promise.complete(getMatchKeyValues(records, extractors)), false))
+        .compose(matchKeyValues -> {
+          List<Future<Void>> futures = new ArrayList<>(records.size());
+          for (int i = 0; i < records.size(); i++) {
+            JsonObject globalRecord = records.getJsonObject(i);
+            futures.add(upsertGlobalRecord(sourceId, globalRecord, matchKeyValues.get(i)));
+          }
+          return GenericCompositeFuture.all(futures).<Void>mapEmpty()
+              .onComplete(x -> invalidateResultInfo());
+        });
+  }
+
+  /**
+   * Get compiled match key configs that are updated on ingest, cached for
+   * {@link #matchKeyConfigsTtl} milliseconds.
+   * @return async result with key extractor for each match key config identifier
+   */
+  Future<Map<String, MatchKeyExtractor>> getMatchKeyExtractors() {
+    Map<String, MatchKeyExtractor> extractors = matchKeyExtractors;
+    if (extractors != null && System.currentTimeMillis() < matchKeyConfigsExpiry) {
+      return Future.succeededFuture(extractors);
+    }
+    long generation = matchKeyConfigsGeneration.get();
+    long expiry = System.currentTimeMillis() + matchKeyConfigsTtl;
+    return withConnection(this::getAvailableMatchConfigs)
+        .map(Storage::compileMatchKeyConfigs)
+        .onSuccess(res -> {
+          synchronized (this) {
+            // do not cache if configs were changed while reading them
+            if (generation == matchKeyConfigsGeneration.get()) {
+              matchKeyConfigsExpiry = expiry;
+              matchKeyExtractors = res;
             }
-        ));
+          }
+        });
   }
 
   Future<JsonArray> getAvailableMatchConfigs(SqlConnection conn) {
-    return conn.query("SELECT * FROM " + matchKeyConfigTable)
+    return conn.query(selectMatchKeyConfigsSql)
         .execute()
         .map(res -> {
           JsonArray matchConfigs = new JsonArray();
@@ -408,13 +1510,15 @@ public class Storage {
         });
   }
 
-  static JsonObject handleRecord(Row row) {
-    return new JsonObject()
-        .put("globalId", row.getUUID("id"))
-        .put("localId", row.getString("local_id"))
-        .put("sourceId", row.getUUID("source_id"))
-        .put("inventoryPayload", row.getJsonObject("inventory_payload"))
-        .put("marcPayload", row.getJsonObject("marc_payload"));
+  void invalidateMatchKeyConfigs() {
+    dropMatchKeyConfigs();
+    cacheNotifier.publish(pool.getSchema(), CacheNotifier.MATCH_KEY_CONFIGS);
+  }
+
+  private synchronized void dropMatchKeyConfigs() {
+    matchKeyConfigsGeneration.incrementAndGet();
+    matchKeyExtractors = null;
+    invalidateResultInfo();
   }
 
   /**
@@ -426,7 +1530,8 @@ public class Storage {
     String q = "UPDATE " + clusterMetaTable + " AS m"
         + " SET datestamp = $1"
         + " FROM " + bibRecordTable + ", " + clusterRecordTable + " AS r"
-        + " WHERE m.cluster_id = r.cluster_id AND r.record_id = id";
+        + " LEFT JOIN " + clusterMetaTable + " AS x ON x.cluster_id = r.cluster_id"
+        + " WHERE m.cluster_id = COALESCE(x.merged_into, r.cluster_id) AND r.record_id = id";
     if (sqlWhere != null) {
       q = q + " AND " + sqlWhere;
     }
@@ -439,6 +1544,10 @@ public class Storage {
           }
           return pool.query("DELETE FROM " + from).execute();
         })
+        .onComplete(x -> {
+          invalidateResultInfo();
+          invalidateResponses();
+        })
         .mapEmpty();
   }
 
@@ -447,92 +1556,484 @@ public class Storage {
    * @param ctx routing context
    * @param sqlWhere SQL WHERE clause
    * @param sqlOrderBy the SQL ORDER BY clause
+   * @param fields fields of records to return
+   * @param facets facets of records; see {@link #RECORD_FACETS}
+   * @param keywords full-text search; NULL for none. Records are ranked by relevance
+   *     unless sqlOrderBy is given
    * @return async result
    */
-  public Future<Void> getGlobalRecords(RoutingContext ctx, String sqlWhere, String sqlOrderBy) {
+  public Future<Void> getGlobalRecords(RoutingContext ctx, String sqlWhere, String sqlOrderBy,
+      RecordFields fields, Facets facets, String keywords) {
     String from = bibRecordTable;
+    Tuple tuple = Tuple.tuple();
+    if (keywords != null) {
+      sqlWhere = fulltextMatchSql("$1") + (sqlWhere != null ? " AND (" + sqlWhere + ")" : "");
+      if (sqlOrderBy == null) {
+        sqlOrderBy = fulltextRankSql("$1") + " DESC, id";
+      }
+      tuple.addString(keywords);
+    }
     if (sqlWhere != null) {
       from = from + " WHERE " + sqlWhere;
     }
-    return streamResult(ctx, null, from, sqlOrderBy, "items",
-        row -> Future.succeededFuture(handleRecord(row)));
+    // records are JSON text built by the database; payloads are never decoded
+    return streamResult(ctx, null, null, fields.getJsonSql() + " AS record", tuple,
+        from, facets, sqlOrderBy, "items",
+        row -> Future.succeededFuture(row.getString("record")));
+  }
+
+  /**
+   * Export global records as newline delimited JSON.
+   *
+   * <p>Each line is a record as returned by {@link #getGlobalRecords}, built as text by the
+   * database and written to the response as is. Rows are read with a cursor, and reading
+   * is paused while the response write queue is full.
+   * @param ctx routing context
+   * @param sqlWhere SQL WHERE clause; NULL for all records
+   * @param sqlOrderBy SQL ORDER BY clause; NULL for no particular order
+   * @param fields fields of records to return
+   * @return async result
+   */
+  public Future<Void> exportGlobalRecords(RoutingContext ctx, String sqlWhere,
+      String sqlOrderBy, RecordFields fields) {
+    String query = "SELECT " + fields.getJsonSql() + " FROM " + bibRecordTable
+        + (sqlWhere == null ? "" : " WHERE " + sqlWhere)
+        + (sqlOrderBy == null ? "" : " ORDER BY " + sqlOrderBy);
+    log.debug("query={}", query);
+    return getConnection()
+        .compose(sqlConnection -> streamLines(ctx, sqlConnection, query, Tuple.tuple())
+            .onFailure(x -> sqlConnection.close()));
+  }
+
+  Future<Void> streamLines(RoutingContext ctx, SqlConnection sqlConnection, String query,
+      Tuple tuple) {
+
+    return sqlConnection.prepare(query)
+        .compose(pq ->
+            sqlConnection.begin().compose(tx -> {
+              HttpServerResponse response = ctx.response();
+              response.setChunked(true);
+              response.putHeader("Content-Type", "application/x-ndjson");
+              RowStream<Row> stream = pq.createStream(bulkFetchSize, tuple);
+              AtomicBoolean done = new AtomicBoolean();
+              Runnable finish = () -> {
+                if (done.compareAndSet(false, true)) {
+                  tx.commit().eventually(y -> sqlConnection.close());
+                }
+              };
+              response.closeHandler(x -> {
+                stream.close();
+                finish.run();
+              });
+              stream.handler(row -> {
+                response.write(row.getString(0) + "\n");
+                if (response.writeQueueFull()) {
+                  stream.pause();
+                  response.drainHandler(x -> stream.resume());
+                }
+              });
+              stream.endHandler(end -> {
+                response.end();
+                finish.run();
+              });
+              stream.exceptionHandler(e -> {
+                log.error("stream error {}", e.getMessage(), e);
+                // headers are sent; closing the connection tells the client output is cut
+                response.reset();
+                finish.run();
+              });
+              return Future.succeededFuture();
+            })
+        );
   }
 
   /**
    * Get cluster by cluster identifier.
+   *
+   * <p>A cluster merged into another is resolved to the cluster it was merged into, as
+   * cluster lists do. Its response is cached under that cluster only, as changes are told to
+   * the live cluster.
    * @param clusterId cluster identifier
-   * @return cluster object; null if not found
+   * @param fields fields of cluster to return
+   * @return cluster as JSON text; null if not found
    */
-  public Future<JsonObject> getClusterById(UUID clusterId) {
-    return pool.withConnection(connection -> getClusterById(connection, clusterId));
+  public Future<String> getClusterById(UUID clusterId, ClusterFields fields) {
+    AtomicReference<UUID> mergedInto = new AtomicReference<>();
+    return getCachedResponse(clusterId, fields.getKey(), () ->
+        withConnection(connection -> connection.preparedQuery("SELECT merged_into FROM "
+                + clusterMetaTable + " WHERE cluster_id = $1")
+            .execute(Tuple.of(clusterId))
+            .compose(rowSet -> {
+              RowIterator<Row> iterator = rowSet.iterator();
+              mergedInto.set(iterator.hasNext() ? iterator.next().getUUID("merged_into") : null);
+              if (mergedInto.get() != null) {
+                return Future.succeededFuture(); // not cached
+              }
+              return getClusterById(connection, clusterId, fields);
+            })))
+        .compose(res -> mergedInto.get() == null
+            ? Future.succeededFuture(res) : getClusterById(mergedInto.get(), fields));
   }
 
-  Future<JsonObject> getClusterById(SqlConnection connection, UUID clusterId) {
-    // get all records part of cluster and join with cluster_meta to get datestamp
-    return connection.preparedQuery("SELECT * FROM " + bibRecordTable
-            + " LEFT JOIN " + clusterRecordTable + " ON id = record_id"
-            + " LEFT JOIN " + clusterMetaTable + " ON "
-            + clusterMetaTable + ".cluster_id = " + clusterRecordTable + ".cluster_id"
-            + " WHERE " + clusterRecordTable + ".cluster_id = $1")
+  Future<String> getClusterById(SqlConnection connection, UUID clusterId,
+      ClusterFields fields) {
+    // get all records part of cluster, including those of clusters merged into it;
+    // records are JSON text from the database and are copied into the response as is.
+    // If records are not returned, only find out whether the cluster has any.
+    RecordFields recordFields = fields.getRecords();
+    String datestampSql = "(SELECT datestamp FROM " + clusterMetaTable
+        + " WHERE cluster_id = $1) AS datestamp";
+    String q = recordFields == null
+        ? "SELECT " + datestampSql + " FROM " + clusterRecordTable
+            + " WHERE cluster_id IN (" + getClusterMembersSql("$1") + ") LIMIT 1"
+        : "SELECT " + recordFields.getJsonSql() + " AS record, " + datestampSql
+            + " FROM " + bibRecordTable
+            + " JOIN " + clusterRecordTable + " ON id = record_id"
+            + " WHERE " + clusterRecordTable + ".cluster_id IN ("
+            + getClusterMembersSql("$1") + ")";
+    return connection.preparedQuery(q)
         .execute(Tuple.of(clusterId))
+        .compose(rowSet -> {
+          if (rowSet.size() == 0) {
+            return Future.succeededFuture();
+          }
+          LocalDateTime datestamp = rowSet.iterator().next().getLocalDateTime("datestamp");
+          List<String> records = new ArrayList<>(rowSet.size());
+          if (recordFields != null) {
+            rowSet.forEach(row -> records.add(row.getString("record")));
+          }
+          if (!fields.hasMatchValues()) {
+            return Future.succeededFuture(
+                encodeCluster(clusterId, fields, datestamp, records, null));
+          }
+          return connection.preparedQuery("SELECT match_value FROM " + clusterValueTable
+                  + " WHERE cluster_id IN (" + getClusterMembersSql("$1") + ")")
+              .execute(Tuple.of(clusterId))
+              .map(values -> {
+                JsonArray matchValues = new JsonArray();
+                values.forEach(row -> matchValues.add(row.getString("match_value")));
+                return encodeCluster(clusterId, fields, datestamp, records, matchValues);
+              });
+        });
+  }
+
+  static String encodeCluster(UUID clusterId, ClusterFields fields, LocalDateTime datestamp,
+      List<String> records, JsonArray matchValues) {
+    StringBuilder cluster = new StringBuilder("{");
+    String sep = "";
+    if (fields.hasClusterId()) {
+      cluster.append("\"clusterId\":\"").append(clusterId).append('"');
+      sep = ",";
+    }
+    if (fields.hasDatestamp()) {
+      cluster.append(sep).append("\"datestamp\":\"")
+          .append(datestamp.atZone(ZoneOffset.UTC)).append('"');
+      sep = ",";
+    }
+    if (matchValues != null) {
+      cluster.append(sep).append("\"matchValues\":").append(matchValues.encode());
+      sep = ",";
+    }
+    if (fields.getRecords() != null) {
+      cluster.append(sep).append("\"records\":[");
+      sep = "";
+      for (String record : records) {
+        cluster.append(sep).append(record);
+        sep = ",";
+      }
+      cluster.append(']');
+    }
+    return cluster.append('}').toString();
+  }
+
+  /**
+   * Look up clusters by identifiers.
+   *
+   * <p>One query finds the records of all clusters, including those of clusters merged into
+   * them, and one more finds their match values if asked for. An identifier of a cluster
+   * that has been merged into another is resolved to that cluster, as for listings.
+   * @param clusterIds cluster identifiers
+   * @param fields fields of clusters to return
+   * @return clusters as JSON text with property items; clusters that are not found are
+   *     omitted; otherwise in the order of clusterIds
+   */
+  public Future<String> lookupClusters(List<UUID> clusterIds, ClusterFields fields) {
+    RecordFields recordFields = fields.getRecords();
+    // resolved clusters with ordinal n, and the clusters whose records they hold
+    String members = "WITH q AS (SELECT i.n,"
+        + " COALESCE(m.merged_into, i.cluster_id) AS cluster_id"
+        + " FROM unnest($1::uuid[]) WITH ORDINALITY AS i(cluster_id, n)"
+        + " LEFT JOIN " + clusterMetaTable + " AS m ON m.cluster_id = i.cluster_id),"
+        + " members AS (SELECT q.n, q.cluster_id AS resolved, m.cluster_id FROM q"
+        + " JOIN " + clusterMetaTable + " AS m"
+        + " ON m.cluster_id = q.cluster_id AND m.merged_into IS NULL"
+        + " UNION ALL SELECT q.n, q.cluster_id AS resolved, m.cluster_id FROM q"
+        + " JOIN " + clusterMetaTable + " AS m ON m.merged_into = q.cluster_id)";
+    String datestampSql = "(SELECT datestamp FROM " + clusterMetaTable
+        + " WHERE cluster_id = members.resolved) AS datestamp";
+    String q = members + " SELECT members.n, members.resolved, " + datestampSql
+        + (recordFields != null ? ", " + recordFields.getJsonSql() + " AS record" : "")
+        + " FROM members JOIN " + clusterRecordTable + " AS r"
+        + " ON r.cluster_id = members.cluster_id"
+        + (recordFields != null ? " JOIN " + bibRecordTable + " ON id = r.record_id" : "")
+        + " ORDER BY members.n";
+    Tuple tuple = Tuple.of(clusterIds.toArray(new UUID[0]));
+    return withConnection(connection -> connection.preparedQuery(q).execute(tuple)
+        .compose(rowSet -> {
+          Map<Long, UUID> resolved = new LinkedHashMap<>();
+          Map<Long, LocalDateTime> datestamps = new HashMap<>();
+          Map<Long, List<String>> records = new HashMap<>();
+          rowSet.forEach(row -> {
+            Long n = row.getLong("n");
+            resolved.put(n, row.getUUID("resolved"));
+            datestamps.put(n, row.getLocalDateTime("datestamp"));
+            if (recordFields != null) {
+              records.computeIfAbsent(n, k -> new ArrayList<>()).add(row.getString("record"));
+            }
+          });
+          if (!fields.hasMatchValues() || resolved.isEmpty()) {
+            return Future.succeededFuture(
+                encodeClusters(resolved, fields, datestamps, records, null));
+          }
+          return connection.preparedQuery(members + " SELECT members.n, v.match_value"
+                  + " FROM members JOIN " + clusterValueTable + " AS v"
+                  + " ON v.cluster_id = members.cluster_id")
+              .execute(tuple)
+              .map(values -> {
+                Map<Long, JsonArray> matchValues = new HashMap<>();
+                values.forEach(row -> matchValues
+                    .computeIfAbsent(row.getLong("n"), k -> new JsonArray())
+                    .add(row.getString("match_value")));
+                return encodeClusters(resolved, fields, datestamps, records, matchValues);
+              });
+        }));
+  }
+
+  private static String encodeClusters(Map<Long, UUID> resolved, ClusterFields fields,
+      Map<Long, LocalDateTime> datestamps, Map<Long, List<String>> records,
+      Map<Long, JsonArray> matchValues) {
+    StringBuilder items = new StringBuilder("{\"items\":[");
+    String sep = "";
+    // clusters with records only, in the order requested
+    for (Map.Entry<Long, UUID> entry : resolved.entrySet()) {
+      Long n = entry.getKey();
+      items.append(sep).append(encodeCluster(entry.getValue(), fields,
+          datestamps.get(n), records.getOrDefault(n, Collections.emptyList()),
+          matchValues == null ? null : matchValues.getOrDefault(n, new JsonArray())));
+      sep = ",";
+    }
+    return items.append("]}").toString();
+  }
+
+  /**
+   * Get clusters of match key config changed after cursor, oldest change first.
+   *
+   * <p>A cluster changed several times is returned once, with its latest datestamp. Changes
+   * are returned once they are {@link #changesDelay} milliseconds older than both now and
+   * the start of the oldest transaction in progress that writes cluster_meta of the tenant.
+   * If there are none, wait for changes, announced by {@link CacheNotifier}, up to wait
+   * milliseconds; changes that arrive meanwhile are returned together.
+   * @param matchKeyConfigId match key config identifier
+   * @param cursor position after which to return changes; NULL for all clusters
+   * @param limit maximum number of clusters returned
+   * @param wait maximum milliseconds to wait for changes
+   * @return async result with items and cursor for next call; cursor is absent if no
+   *     clusters were returned and none was given
+   */
+  public Future<JsonObject> getClusterChanges(String matchKeyConfigId, ChangeCursor cursor,
+      int limit, long wait) {
+    return getClusterChanges(matchKeyConfigId, cursor, limit,
+        System.currentTimeMillis() + wait, false);
+  }
+
+  private Future<JsonObject> getClusterChanges(String matchKeyConfigId, ChangeCursor cursor,
+      int limit, long deadline, boolean notified) {
+    long remaining = deadline - System.currentTimeMillis();
+    Future<Void> future = Future.succeededFuture();
+    if (notified && remaining > 0) {
+      // a change is in the feed once it is changesDelay old; collect others meanwhile
+      Promise<Void> promise = Promise.promise();
+      vertx.setTimer(Math.min(changesDelay, remaining), id -> promise.complete());
+      future = promise.future();
+    }
+    return future
+        .compose(x -> selectClusterChanges(matchKeyConfigId, cursor, limit))
+        .compose(res -> {
+          long left = deadline - System.currentTimeMillis();
+          if (!res.getJsonArray("items").isEmpty() || left <= 0) {
+            return Future.succeededFuture(res);
+          }
+          return waitForChanges(Math.min(left, changesRecheck))
+              .compose(woken -> getClusterChanges(matchKeyConfigId, cursor, limit, deadline,
+                  woken));
+        });
+  }
+
+  private Future<Boolean> waitForChanges(long timeout) {
+    Promise<Boolean> promise = Promise.promise();
+    changeWaiters.add(promise);
+    long timer = vertx.setTimer(timeout, id -> promise.tryComplete(false));
+    return promise.future().onComplete(x -> {
+      changeWaiters.remove(promise);
+      vertx.cancelTimer(timer);
+    });
+  }
+
+  Future<JsonObject> selectClusterChanges(String matchKeyConfigId, ChangeCursor cursor,
+      int limit) {
+    List<Object> tupleList = new ArrayList<>(List.of(matchKeyConfigId,
+        LocalDateTime.now(ZoneOffset.UTC)));
+    // a transaction writing cluster_meta may commit datestamps as old as its start; it
+    // holds a write lock on the table until it ends
+    StringBuilder q = new StringBuilder("SELECT cluster_id, datestamp, merged_into,"
+        + " NOT EXISTS (SELECT 1 FROM " + clusterRecordTable + " AS r"
+        + " WHERE r.cluster_id IN (" + getClusterMembersSql("m.cluster_id") + ")) AS deleted"
+        + " FROM " + clusterMetaTable + " AS m"
+        + " WHERE match_key_config_id = $1 AND datestamp < LEAST($2,"
+        + " (SELECT min(a.xact_start) FROM pg_locks AS l"
+        + " JOIN pg_stat_activity AS a ON a.pid = l.pid"
+        + " WHERE a.datname = current_database() AND l.locktype = 'relation'"
+        + " AND l.relation = '" + clusterMetaTable + "'::regclass"
+        + " AND l.mode IN ('RowExclusiveLock', 'ShareRowExclusiveLock', 'ExclusiveLock',"
+        + " 'AccessExclusiveLock'))"
+        + " AT TIME ZONE 'UTC') - INTERVAL '" + changesDelay + " milliseconds'");
+    if (cursor != null) {
+      tupleList.add(cursor.getDatestamp());
+      tupleList.add(cursor.getClusterId());
+      q.append(" AND (datestamp, cluster_id) > ($3, $4)");
+    }
+    q.append(" ORDER BY datestamp, cluster_id LIMIT ").append(limit);
+    return pool.preparedQuery(q.toString())
+        .execute(Tuple.from(tupleList))
         .map(rowSet -> {
-          JsonArray records = new JsonArray();
-          rowSet.forEach(row -> records.add(handleRecord(row)));
-          JsonObject o = new JsonObject()
-              .put("clusterId", clusterId.toString())
-              .put("records", records);
-          RowIterator<Row> iterator = rowSet.iterator();
-          if (iterator.hasNext()) {
-            Row row = iterator.next();
-            o.put("datestamp", row.getLocalDateTime("datestamp").atZone(ZoneOffset.UTC).toString());
+          JsonArray items = new JsonArray();
+          ChangeCursor last = cursor;
+          for (Row row : rowSet) {
+            last = new ChangeCursor(row.getLocalDateTime("datestamp"),
+                row.getUUID("cluster_id"));
+            JsonObject item = new JsonObject()
+                .put("clusterId", last.getClusterId().toString())
+                .put("datestamp", last.getDatestamp().atZone(ZoneOffset.UTC).toString())
+                .put("deleted", row.getBoolean("deleted"));
+            UUID mergedInto = row.getUUID("merged_into");
+            if (mergedInto != null) {
+              item.put("mergedInto", mergedInto.toString());
+            }
+            items.add(item);
           }
-          return o;
-        })
-        .compose(object -> connection.preparedQuery("SELECT * FROM " + clusterValueTable
-              + " WHERE cluster_id = $1")
-            .execute(Tuple.of(clusterId))
-            .map(rowSet -> {
-              JsonArray values = new JsonArray();
-              rowSet.forEach(row -> values.add(row.getString("match_value")));
-              object.put("matchValues", values);
-              return object;
-            }));
+          JsonObject res = new JsonObject().put("items", items);
+          if (last != null) {
+            res.put("cursor", last.encode());
+          }
+          return res;
+        });
   }
 
   /**
    * return all clusters as streaming result.
    * @param ctx routing context
    * @param matchKeyId match ke config to use
+   * @param fields fields of clusters to return
+   * @param keywords full-text search of records; NULL for none. Clusters are then ranked by
+   *     relevance and sqlOrderBy is ignored
    * @return async result
    */
   public Future<Void> getClusters(RoutingContext ctx, String matchKeyId,
-      String sqlWhere, String sqlOrderBy) {
-    String from = clusterRecordTable + " LEFT JOIN " + clusterValueTable + " ON "
+      String sqlWhere, String sqlOrderBy, ClusterFields fields, String keywords) {
+    if (keywords != null) {
+      return searchClusters(ctx, matchKeyId, sqlWhere, fields, keywords);
+    }
+    String from = clusterRecordTable
+        + " LEFT JOIN " + clusterMetaTable + " ON "
+        + clusterMetaTable + ".cluster_id = " + clusterRecordTable + ".cluster_id"
+        + " LEFT JOIN " + clusterValueTable + " ON "
         + clusterValueTable + ".cluster_id = " + clusterRecordTable + ".cluster_id"
         + " WHERE " + clusterRecordTable + ".match_key_config_id = $1";
     if (sqlWhere != null) {
       from = from + " AND (" + sqlWhere + ")";
     }
-    return streamResult(ctx, clusterRecordTable + ".cluster_id", Tuple.of(matchKeyId),
+    return streamResult(ctx, CLUSTER_ID_RESOLVED, Tuple.of(matchKeyId),
         from, sqlOrderBy, "items",
-        row -> getClusterById(row.getUUID("cluster_id")));
+        row -> {
+          UUID mergedInto = row.getUUID("merged_into");
+          return getClusterById(mergedInto != null ? mergedInto : row.getUUID("cluster_id"),
+              fields);
+        });
+  }
+
+  /**
+   * Return clusters with records matching keywords as streaming result.
+   *
+   * <p>Clusters are ranked by their best matching record.
+   */
+  Future<Void> searchClusters(RoutingContext ctx, String matchKeyId,
+      String sqlWhere, ClusterFields fields, String keywords) {
+    String from = "(SELECT " + CLUSTER_ID_RESOLVED + " AS cluster_id,"
+        + " MAX(" + fulltextRankSql("$2") + ") AS rank"
+        + " FROM " + clusterRecordTable
+        + " JOIN " + bibRecordTable + " ON id = " + clusterRecordTable + ".record_id"
+        + " LEFT JOIN " + clusterMetaTable + " ON "
+        + clusterMetaTable + ".cluster_id = " + clusterRecordTable + ".cluster_id"
+        + " LEFT JOIN " + clusterValueTable + " ON "
+        + clusterValueTable + ".cluster_id = " + clusterRecordTable + ".cluster_id"
+        + " WHERE " + clusterRecordTable + ".match_key_config_id = $1"
+        + " AND " + fulltextMatchSql("$2")
+        + (sqlWhere != null ? " AND (" + sqlWhere + ")" : "")
+        + " GROUP BY 1) AS hits";
+    return streamResult(ctx, null, null, "cluster_id", Tuple.of(matchKeyId, keywords), from,
+        Facets.NONE, "rank DESC, cluster_id", "items",
+        row -> getClusterById(row.getUUID("cluster_id"), fields));
   }
 
   /**
    * Get global record given global identifier.
    * @param id global identifier
-   * @return global record response as JSON object
+   * @param fields fields of record to return
+   * @return global record as JSON text; null if not found
    */
-  public Future<JsonObject> getGlobalRecord(String id) {
-    return pool.preparedQuery(
-            "SELECT * FROM " + bibRecordTable + " WHERE id = $1")
-        .execute(Tuple.of(id))
-        .map(res -> {
-          RowIterator<Row> iterator = res.iterator();
-          if (!iterator.hasNext()) {
-            return null;
+  public Future<String> getGlobalRecord(UUID id, RecordFields fields) {
+    return getCachedResponse(id, fields.getKey(), () ->
+        pool.preparedQuery("SELECT " + fields.getJsonSql() + " AS record"
+                + " FROM " + bibRecordTable + " WHERE id = $1")
+            .execute(Tuple.of(id))
+            .map(res -> {
+              RowIterator<Row> iterator = res.iterator();
+              if (!iterator.hasNext()) {
+                return null;
+              }
+              return iterator.next().getString("record");
+            }));
+  }
+
+  /**
+   * Look up global records by global identifiers and by local identifiers in one query.
+   * @param globalIds global identifiers
+   * @param sourceIds source identifiers of local identifiers
+   * @param localIds local identifiers; same size as sourceIds
+   * @param fields fields of records to return
+   * @return records as JSON text with property items; records that are not found are
+   *     omitted; otherwise records by global identifier come first, each in the order given
+   */
+  public Future<String> lookupGlobalRecords(List<UUID> globalIds, List<UUID> sourceIds,
+      List<String> localIds, RecordFields fields) {
+    String q = "SELECT 1 AS k, n, " + fields.getJsonSql() + " AS record FROM " + bibRecordTable
+        + " JOIN unnest($1::uuid[]) WITH ORDINALITY AS q(id, n) USING (id)"
+        + " UNION ALL"
+        + " SELECT 2 AS k, n, " + fields.getJsonSql() + " AS record FROM " + bibRecordTable
+        + " JOIN unnest($2::uuid[], $3::varchar[]) WITH ORDINALITY"
+        + " AS q(source_id, local_id, n) USING (source_id, local_id)"
+        + " ORDER BY k, n";
+    return pool.preparedQuery(q)
+        .execute(Tuple.of(globalIds.toArray(new UUID[0]), sourceIds.toArray(new UUID[0]),
+            localIds.toArray(new String[0])))
+        .map(rowSet -> {
+          StringBuilder items = new StringBuilder("{\"items\":[");
+          String sep = "";
+          for (Row row : rowSet) {
+            items.append(sep).append(row.getString("record"));
+            sep = ",";
           }
-          return handleRecord(iterator.next());
+          return items.append("]}").toString();
         });
   }
 
@@ -551,6 +2052,7 @@ public class Storage {
         "INSERT INTO " + matchKeyConfigTable + " (id, method, params, update)"
             + " VALUES ($1, $2, $3, $4)")
         .execute(Tuple.of(id, method, params, update))
+        .onComplete(x -> invalidateMatchKeyConfigs())
         .mapEmpty();
   }
 
@@ -569,6 +2071,7 @@ public class Storage {
             "UPDATE " + matchKeyConfigTable
                 + " SET method = $2, params = $3, update = $4 WHERE id = $1")
         .execute(Tuple.of(id, method, params, update))
+        .onComplete(x -> invalidateMatchKeyConfigs())
         .map(res -> res.rowCount() > 0);
   }
 
@@ -606,10 +2109,14 @@ public class Storage {
    * @return TRUE if deleted; FALSE if not found
    */
   public Future<Boolean> deleteMatchKeyConfig(String id) {
-    return pool.withConnection(connection ->
+    return withConnection(connection ->
         connection.preparedQuery(
                 "DELETE FROM " + matchKeyConfigTable + " WHERE id = $1")
             .execute(Tuple.of(id))
+            .onComplete(x -> {
+              invalidateMatchKeyConfigs();
+              invalidateResponses();
+            })
             .map(res -> res.rowCount() > 0));
   }
 
@@ -618,26 +2125,154 @@ public class Storage {
    * @param ctx routing context
    * @param sqlWhere the SQL WHERE clause
    * @param sqlOrderBy the SQL ORDER BY clause
+   * @param facets facets of match keys; see {@link #MATCH_KEY_FACETS}
    * @return async result
    */
-  public Future<Void> getMatchKeyConfigs(RoutingContext ctx, String sqlWhere, String sqlOrderBy) {
+  public Future<Void> getMatchKeyConfigs(RoutingContext ctx, String sqlWhere, String sqlOrderBy,
+      Facets facets) {
     String from = matchKeyConfigTable;
     if (sqlWhere != null) {
       from = from + " WHERE " + sqlWhere;
     }
-    return streamResult(ctx, null, from, sqlOrderBy, "matchKeys",
-        row -> Future.succeededFuture(new JsonObject()
+    return streamResult(ctx, null, null, "*", Tuple.tuple(), from, facets, sqlOrderBy,
+        "matchKeys",
+        row -> Future.succeededFuture(encodeWithoutNulls(new JsonObject()
             .put("id", row.getString("id"))
             .put("method", row.getString("method"))
             .put("params", row.getJsonObject("params"))
             .put("update", row.getString("update"))
-        ));
+        )));
   }
 
-  Future<JsonObject> recalculateMatchKeyValueTable(SqlConnection connection, MatchKeyMethod method,
-      String matchKeyConfigId) {
+  /**
+   * Create search field with its index.
+   *
+   * <p>The index is built concurrently, so that ingest is not blocked while it is built.
+   * If the build fails, the search field is removed again.
+   * @param searchField search field
+   * @return async result
+   */
+  public Future<Void> insertSearchField(SearchField searchField) {
+    String indexName = pool.getSchema() + "." + searchField.getIndexName();
+    return pool.preparedQuery("INSERT INTO " + searchFieldTable + " (id, payload, path)"
+            + " VALUES ($1, $2, $3)")
+        .execute(Tuple.of(searchField.getId(), searchField.getPayload(),
+            searchField.getPath()))
+        .compose(x -> pool.query("CREATE INDEX CONCURRENTLY IF NOT EXISTS "
+                + searchField.getIndexName() + " ON " + bibRecordTable
+                + " (" + searchField.getSql() + ")")
+            .execute()
+            .recover(e -> pool.query("DROP INDEX CONCURRENTLY IF EXISTS " + indexName)
+                .execute()
+                .compose(y -> pool.preparedQuery("DELETE FROM " + searchFieldTable
+                    + " WHERE id = $1").execute(Tuple.of(searchField.getId())))
+                .transform(y -> Future.failedFuture(e))))
+        .onComplete(x -> invalidateSearchFields())
+        .mapEmpty();
+  }
+
+  /**
+   * Select search field.
+   * @param id search field identifier
+   * @return search field; null if not found
+   */
+  public Future<SearchField> selectSearchField(String id) {
+    return pool.preparedQuery("SELECT * FROM " + searchFieldTable + " WHERE id = $1")
+        .execute(Tuple.of(id))
+        .map(res -> {
+          RowIterator<Row> iterator = res.iterator();
+          return iterator.hasNext() ? searchField(iterator.next()) : null;
+        });
+  }
+
+  /**
+   * Delete search field and its index.
+   *
+   * <p>The index is dropped first, so that if that fails the search field is still there
+   * to delete again.
+   * @param id search field identifier
+   * @return TRUE if deleted; FALSE if not found
+   */
+  public Future<Boolean> deleteSearchField(String id) {
+    return selectSearchField(id)
+        .compose(searchField -> {
+          if (searchField == null) {
+            return Future.succeededFuture(Boolean.FALSE);
+          }
+          return pool.query("DROP INDEX CONCURRENTLY IF EXISTS " + pool.getSchema() + "."
+                  + searchField.getIndexName())
+              .execute()
+              .compose(x -> pool.preparedQuery("DELETE FROM " + searchFieldTable
+                      + " WHERE id = $1")
+                  .execute(Tuple.of(id)))
+              .map(res -> res.rowCount() > 0);
+        })
+        .onComplete(x -> invalidateSearchFields());
+  }
+
+  /**
+   * Get search fields.
+   * @param ctx routing context
+   * @param sqlWhere the SQL WHERE clause
+   * @param sqlOrderBy the SQL ORDER BY clause
+   * @return async result
+   */
+  public Future<Void> getSearchFields(RoutingContext ctx, String sqlWhere, String sqlOrderBy) {
+    String from = searchFieldTable;
+    if (sqlWhere != null) {
+      from = from + " WHERE " + sqlWhere;
+    }
+    return streamResult(ctx, null, from, sqlOrderBy, "searchFields",
+        row -> Future.succeededFuture(searchField(row).toJson().encode()));
+  }
+
+  /**
+   * Get all search fields, cached for {@link #matchKeyConfigsTtl} milliseconds.
+   * @return async result with search fields
+   */
+  public Future<List<SearchField>> getSearchFieldList() {
+    List<SearchField> list = searchFields;
+    if (list != null && System.currentTimeMillis() < searchFieldsExpiry) {
+      return Future.succeededFuture(list);
+    }
+    long generation = searchFieldsGeneration.get();
+    long expiry = System.currentTimeMillis() + matchKeyConfigsTtl;
+    return pool.query("SELECT * FROM " + searchFieldTable).execute()
+        .map(res -> {
+          List<SearchField> fields = new ArrayList<>();
+          res.forEach(row -> fields.add(searchField(row)));
+          return Collections.unmodifiableList(fields);
+        })
+        .onSuccess(res -> {
+          synchronized (this) {
+            // do not cache if search fields were changed while reading them
+            if (generation == searchFieldsGeneration.get()) {
+              searchFieldsExpiry = expiry;
+              searchFields = res;
+            }
+          }
+        });
+  }
 
-    String query = "SELECT * FROM " + bibRecordTable;
+  void invalidateSearchFields() {
+    dropSearchFields();
+    cacheNotifier.publish(pool.getSchema(), CacheNotifier.SEARCH_FIELDS);
+  }
+
+  private synchronized void dropSearchFields() {
+    searchFieldsGeneration.incrementAndGet();
+    searchFields = null;
+  }
+
+  private static SearchField searchField(Row row) {
+    return new SearchField(row.getString("id"), row.getString("payload"),
+        row.getString("path"));
+  }
+
+  Future<JsonObject> recalculateMatchKeyValueTable(SqlConnection connection,
+      MatchKeyExtractor extractor, String matchKeyConfigId) {
+
+    String query = "SELECT id, marc_payload, inventory_payload FROM " + bibRecordTable;
     AtomicInteger count = new AtomicInteger();
     return connection.prepare(query).compose(pq ->
         connection.begin().compose(tx -> {
@@ -649,7 +2284,7 @@ public class Storage {
 
             UUID globalId = row.getUUID("id");
             Set<String> keys = new HashSet<>();
-            method.getKeys(row.getJsonObject("marc_payload"),
+            extractor.getKeys(row.getJsonObject("marc_payload"),
                 row.getJsonObject("inventory_payload"), keys);
             updateMatchKeyValues(connection, globalId, matchKeyConfigId, keys)
                 .onFailure(e -> log.error(e.getMessage(), e))
@@ -675,7 +2310,7 @@ public class Storage {
    * @return statistics
    */
   public Future<JsonObject> initializeMatchKey(String id) {
-    return pool.withConnection(connection ->
+    return withConnection(connection ->
         connection.preparedQuery(
                 "SELECT * FROM " + matchKeyConfigTable + " WHERE id = $1")
             .execute(Tuple.of(id))
@@ -685,77 +2320,253 @@ public class Storage {
                 return Future.succeededFuture();
               }
               Row row = iterator.next();
-              String method = row.getString("method");
-              JsonObject params = row.getJsonObject("params");
-              MatchKeyMethod matchKeyMethod = MatchKeyMethod.get(method);
-              if (matchKeyMethod == null) {
-                return Future.failedFuture("Unknown match key method: " + method);
-              }
-              matchKeyMethod.configure(params);
-              return recalculateMatchKeyValueTable(connection, matchKeyMethod, id);
+              MatchKeyExtractor extractor = compileMatchKeyConfig(row.getString("method"),
+                  row.getJsonObject("params"));
+              return recalculateMatchKeyValueTable(connection, extractor, id);
             })
-    );
+    ).onComplete(x -> {
+      invalidateResultInfo();
+      invalidateResponses();
+    });
+  }
+
+  /**
+   * Re-cluster all records for a match key configuration in bulk.
+   *
+   * <p>Match values of all records are computed in one pass over bib_record and clusters
+   * are found in memory with {@link ClusterBuilder}. The cluster rows of this match key
+   * configuration are then replaced; rows of other configurations are not touched. Ingest and
+   * other re-clustering are blocked meanwhile; reads are served from the rows as they were
+   * until the transaction commits. Only clusters whose records changed get a new datestamp.
+   * Clusters that no longer exist, including clusters merged into others, remain in
+   * cluster_meta with a new datestamp, so that OAI-PMH reports them as deleted.
+   * @param id match key config identifier
+   * @return async result with statistics; NULL if match key config is not found
+   */
+  public Future<JsonObject> reclusterMatchKey(String id) {
+    return withTransaction(conn -> conn.preparedQuery(
+                "SELECT * FROM " + matchKeyConfigTable + " WHERE id = $1")
+        .execute(Tuple.of(id))
+        .compose(res -> {
+          RowIterator<Row> iterator = res.iterator();
+          if (!iterator.hasNext()) {
+            return Future.succeededFuture();
+          }
+          Row row = iterator.next();
+          MatchKeyExtractor extractor = compileMatchKeyConfig(row.getString("method"),
+              row.getJsonObject("params"));
+          // SHARE ROW EXCLUSIVE conflicts with itself and with writers, but not with readers
+          return conn.query("LOCK TABLE " + bibRecordTable + ", " + clusterMetaTable + ", "
+                  + clusterRecordTable + ", " + clusterValueTable + " IN SHARE ROW EXCLUSIVE MODE")
+              .execute()
+              .compose(x -> readClusters(conn, extractor, id))
+              // finding clusters is CPU bound
+              .compose(builder -> vertx.<ClusterBuilder>executeBlocking(promise -> {
+                builder.build();
+                promise.complete(builder);
+              }))
+              .compose(builder -> writeClusters(conn, builder, id)
+                  .map(x -> new JsonObject()
+                      .put("totalRecords", builder.getRecordCount())
+                      .put("totalClusters", builder.getClusterCount())));
+        })).onComplete(x -> {
+          invalidateResultInfo();
+          invalidateResponses();
+        });
+  }
+
+  Future<ClusterBuilder> readClusters(SqlConnection conn, MatchKeyExtractor extractor,
+      String matchKeyConfigId) {
+
+    String query = "SELECT id, marc_payload, inventory_payload,"
+        + " COALESCE(m.merged_into, r.cluster_id) AS cluster_id FROM " + bibRecordTable
+        + " LEFT JOIN " + clusterRecordTable + " AS r"
+        + " ON r.record_id = id AND r.match_key_config_id = $1"
+        + " LEFT JOIN " + clusterMetaTable + " AS m ON m.cluster_id = r.cluster_id";
+    ClusterBuilder builder = new ClusterBuilder();
+    return conn.prepare(query).compose(pq -> {
+      Promise<ClusterBuilder> promise = Promise.promise();
+      RowStream<Row> stream = pq.createStream(bulkFetchSize, Tuple.of(matchKeyConfigId));
+      List<Row> rows = new ArrayList<>();
+      // match key methods may be slow; keep them off the event loop
+      stream.handler(row -> {
+        rows.add(row);
+        if (rows.size() < bulkFetchSize) {
+          return;
+        }
+        stream.pause();
+        addRecords(builder, extractor, new ArrayList<>(rows))
+            .onSuccess(x -> stream.resume())
+            .onFailure(e -> {
+              promise.tryFail(e);
+              stream.close();
+            });
+        rows.clear();
+      });
+      stream.endHandler(end -> addRecords(builder, extractor, rows)
+          .onSuccess(x -> promise.tryComplete(builder))
+          .onFailure(promise::tryFail));
+      stream.exceptionHandler(promise::tryFail);
+      return promise.future();
+    });
+  }
+
+  private Future<Void> addRecords(ClusterBuilder builder, MatchKeyExtractor extractor,
+      List<Row> rows) {
+
+    return vertx.executeBlocking(promise -> {
+      for (Row row : rows) {
+        Set<String> keys = new HashSet<>();
+        extractor.getKeys(row.getJsonObject("marc_payload"),
+            row.getJsonObject("inventory_payload"), keys);
+        builder.add(row.getUUID("id"), row.getUUID("cluster_id"), keys);
+      }
+      promise.complete();
+    });
+  }
+
+  Future<Void> writeClusters(SqlConnection conn, ClusterBuilder builder,
+      String matchKeyConfigId) {
+
+    final LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+    Tuple id = Tuple.of(matchKeyConfigId);
+    return conn.preparedQuery("DELETE FROM " + clusterValueTable
+            + " WHERE match_key_config_id = $1")
+        .execute(id)
+        .compose(x -> conn.preparedQuery("DELETE FROM " + clusterRecordTable
+                + " WHERE match_key_config_id = $1")
+            .execute(id))
+        // merged clusters are no longer redirected; they are reported as deleted
+        .compose(x -> conn.preparedQuery("UPDATE " + clusterMetaTable
+                + " SET datestamp = $2, merged_into = NULL"
+                + " WHERE match_key_config_id = $1 AND merged_into IS NOT NULL")
+            .execute(Tuple.of(matchKeyConfigId, now)))
+        .compose(x -> executeBatches(conn, "UPDATE " + clusterMetaTable
+                + " SET datestamp = $2 WHERE cluster_id = $1",
+            builder.getRemovedClusterCount(),
+            i -> Tuple.of(builder.getRemovedClusterId(i), now)))
+        // only clusters with other records than before get a new datestamp
+        .compose(x -> executeBatches(conn, "INSERT INTO " + clusterMetaTable
+                + " (cluster_id, match_key_config_id, datestamp) VALUES ($1, $2, $3)"
+                + " ON CONFLICT (cluster_id) DO UPDATE SET datestamp = $3 WHERE $4",
+            builder.getClusterCount(),
+            i -> Tuple.of(builder.getClusterId(i), matchKeyConfigId, now,
+                builder.isClusterChanged(i))))
+        .compose(x -> executeBatches(conn, "INSERT INTO " + clusterRecordTable
+                + " (record_id, match_key_config_id, cluster_id, match_values)"
+                + " VALUES ($1, $2, $3, $4)",
+            builder.getRecordCount(),
+            i -> Tuple.of(builder.getRecordId(i), matchKeyConfigId, builder.getRecordCluster(i),
+                builder.getRecordValues(i))))
+        .compose(x -> executeBatches(conn, "INSERT INTO " + clusterValueTable
+                + " (cluster_id, match_key_config_id, match_value) VALUES ($1, $2, $3)",
+            builder.getValueCount(),
+            i -> Tuple.of(builder.getValueCluster(i), matchKeyConfigId, builder.getValue(i))));
+  }
+
+  /**
+   * Execute prepared statement for tuples in batches of {@link #bulkBatchSize}.
+   * @param conn connection
+   * @param sql prepared statement
+   * @param size number of tuples
+   * @param tuples tuple for each number 0..size-1
+   * @return async result
+   */
+  static Future<Void> executeBatches(SqlConnection conn, String sql, int size,
+      IntFunction<Tuple> tuples) {
+    return executeBatches(conn, sql, 0, size, tuples);
+  }
+
+  private static Future<Void> executeBatches(SqlConnection conn, String sql, int from,
+      int size, IntFunction<Tuple> tuples) {
+    if (from >= size) {
+      return Future.succeededFuture();
+    }
+    int to = Math.min(size, from + bulkBatchSize);
+    List<Tuple> batch = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      batch.add(tuples.apply(i));
+    }
+    return conn.preparedQuery(sql).executeBatch(batch)
+        .compose(x -> executeBatches(conn, sql, to, size, tuples));
   }
 
-  private static JsonObject copyWithoutNulls(JsonObject obj) {
+  private static String encodeWithoutNulls(JsonObject obj) {
     JsonObject n = new JsonObject();
     obj.getMap().forEach((key, value) -> {
       if (value != null) {
         n.put(key, value);
       }
     });
-    return n;
-  }
-
-  static void resultFooter(RoutingContext ctx, RowSet<Row> rowSet, List<String[]> facets,
-      String diagnostic) {
-
-    JsonObject resultInfo = new JsonObject();
-    int count = 0;
-    JsonArray facetArray = new JsonArray();
-    if (rowSet != null) {
-      int pos = 0;
-      Row row = rowSet.iterator().next();
-      count = row.getInteger(pos);
-      for (String [] facetEntry : facets) {
-        pos++;
-        JsonObject facetObj = null;
-        final String facetType = facetEntry[0];
-        final String facetValue = facetEntry[1];
-        for (int i = 0; i < facetArray.size(); i++) {
-          facetObj = facetArray.getJsonObject(i);
-          if (facetType.equals(facetObj.getString("type"))) {
-            break;
-          }
-          facetObj = null;
-        }
-        if (facetObj == null) {
-          facetObj = new JsonObject();
-          facetObj.put("type", facetType);
-          facetObj.put("facetValues", new JsonArray());
-          facetArray.add(facetObj);
-        }
-        JsonArray facetValues = facetObj.getJsonArray("facetValues");
-        facetValues.add(new JsonObject()
-            .put("value", facetValue)
-            .put("count", row.getInteger(pos)));
-      }
-    }
-    resultInfo.put("totalRecords", count);
+    return n.encode();
+  }
+
+  static void resultFooter(RoutingContext ctx, JsonObject resultInfo, String diagnostic) {
+    JsonObject footer = resultInfo != null ? resultInfo.copy()
+        : new JsonObject().put("totalRecords", 0).put("facets", new JsonArray());
     JsonArray diagnostics = new JsonArray();
     if (diagnostic != null) {
       diagnostics.add(new JsonObject().put("message", diagnostic));
     }
-    resultInfo.put("diagnostics", diagnostics);
-    resultInfo.put("facets", facetArray);
-    ctx.response().write("], \"resultInfo\": " + resultInfo.encode() + "}");
+    footer.put("diagnostics", diagnostics);
+    ctx.response().write("], \"resultInfo\": " + footer.encode() + "}");
     ctx.response().end();
   }
 
+  /**
+   * Get total count and facets of a result set, cached for {@link #resultInfoTtl}
+   * milliseconds or until the tenant's data is changed by this module instance.
+   * @param conn connection
+   * @param cnt count query from {@link Facets#getCountSql}
+   * @param tuple parameters of count query
+   * @param facets facets of count query
+   * @return async result with totalRecords and facets
+   */
+  Future<JsonObject> getResultInfo(SqlConnection conn, String cnt, Tuple tuple, Facets facets) {
+    StringBuilder key = new StringBuilder(cnt);
+    for (int i = 0; i < tuple.size(); i++) {
+      key.append('\0').append(tuple.getValue(i));
+    }
+    String cacheKey = key.toString();
+    long now = System.currentTimeMillis();
+    CachedResultInfo cached = resultInfoCache.get(cacheKey);
+    if (cached != null && now < cached.expiry) {
+      return Future.succeededFuture(cached.resultInfo);
+    }
+    long generation = resultInfoGeneration.get();
+    return conn.preparedQuery(cnt).execute(tuple)
+        .map(facets::getResultInfo)
+        .onSuccess(resultInfo -> {
+          if (resultInfoTtl <= 0) {
+            return;
+          }
+          if (resultInfoCache.size() >= RESULT_INFO_CACHE_SIZE) {
+            resultInfoCache.values().removeIf(entry -> now >= entry.expiry);
+            if (resultInfoCache.size() >= RESULT_INFO_CACHE_SIZE) {
+              resultInfoCache.clear();
+            }
+          }
+          CachedResultInfo entry = new CachedResultInfo(now + resultInfoTtl, resultInfo);
+          resultInfoCache.put(cacheKey, entry);
+          // do not cache if data was changed while counting
+          if (generation != resultInfoGeneration.get()) {
+            resultInfoCache.remove(cacheKey, entry);
+          }
+        });
+  }
+
+  /**
+   * Drop cached counts and facets; called when this instance has changed the tenant's data.
+   */
+  void invalidateResultInfo() {
+    resultInfoGeneration.incrementAndGet();
+    resultInfoCache.clear();
+  }
+
   @java.lang.SuppressWarnings({"squid:S107"})  // too many arguments
   Future<Void> streamResult(RoutingContext ctx, SqlConnection sqlConnection,
-      String query, String cnt, Tuple tuple, String property, List<String[]> facets,
-      Function<Row, Future<JsonObject>> handler) {
+      String query, String cnt, Tuple tuple, String property, Facets facets,
+      Function<Row, Future<String>> handler) {
 
     return sqlConnection.prepare(query)
         .compose(pq ->
@@ -767,29 +2578,32 @@ public class Storage {
               RowStream<Row> stream = pq.createStream(sqlStreamFetchSize, tuple);
               stream.handler(row -> {
                 stream.pause();
-                Future<JsonObject> f = handler.apply(row);
-                f.onSuccess(response -> {
-                  if (!first.getAndSet(false)) {
-                    ctx.response().write(",");
+                Timer.Sample paused = Timer.start();
+                Future<String> f = handler.apply(row);
+                f.onSuccess(encoded -> {
+                  // one write per row; many small writes compress poorly
+                  if (encoded != null) {
+                    ctx.response().write(first.getAndSet(false) ? encoded : "," + encoded);
                   }
-                  ctx.response().write(copyWithoutNulls(response).encode());
+                  paused.stop(metrics.getStreamPauseTimer());
                   stream.resume();
                 });
                 f.onFailure(e -> {
                   log.info("failure {}", e.getMessage(), e);
+                  paused.stop(metrics.getStreamPauseTimer());
                   stream.resume();
                 });
               });
-              stream.endHandler(end -> sqlConnection.preparedQuery(cnt).execute(tuple)
-                  .onSuccess(cntRes -> resultFooter(ctx, cntRes, facets, null))
+              stream.endHandler(end -> getResultInfo(sqlConnection, cnt, tuple, facets)
+                  .onSuccess(resultInfo -> resultFooter(ctx, resultInfo, null))
                   .onFailure(f -> {
                     log.error(f.getMessage(), f);
-                    resultFooter(ctx, null, facets, f.getMessage());
+                    resultFooter(ctx, null, f.getMessage());
                   })
                   .eventually(x -> tx.commit().compose(y -> sqlConnection.close())));
               stream.exceptionHandler(e -> {
                 log.error("stream error {}", e.getMessage(), e);
-                resultFooter(ctx, null, facets, e.getMessage());
+                resultFooter(ctx, null, e.getMessage());
                 tx.commit().compose(y -> sqlConnection.close());
               });
               return Future.succeededFuture();
@@ -798,46 +2612,42 @@ public class Storage {
   }
 
   Future<Void> streamResult(RoutingContext ctx, String distinct, String from, String orderByClause,
-      String property, Function<Row, Future<JsonObject>> handler) {
+      String property, Function<Row, Future<String>> handler) {
 
-    return streamResult(ctx, distinct, distinct, Tuple.tuple(), List.of(from),
-        Collections.emptyList(), orderByClause, property, handler);
+    return streamResult(ctx, distinct, distinct, "*", Tuple.tuple(), from, Facets.NONE,
+        orderByClause, property, handler);
   }
 
   Future<Void> streamResult(RoutingContext ctx, String distinct, Tuple tuple, String from,
-      String orderByClause, String property, Function<Row, Future<JsonObject>> handler) {
+      String orderByClause, String property, Function<Row, Future<String>> handler) {
 
-    return streamResult(ctx, distinct, distinct, tuple, List.of(from), Collections.emptyList(),
+    return streamResult(ctx, distinct, distinct, "*", tuple, from, Facets.NONE,
         orderByClause, property, handler);
   }
 
+  /**
+   * Stream result with paging, total count and facets.
+   * @param facets facets of result set; {@link Facets#NONE} for none
+   * @param handler produces JSON text for a row; a NULL result omits the row
+   */
   @java.lang.SuppressWarnings({"squid:S107"})  // too many arguments
   Future<Void> streamResult(RoutingContext ctx, String distinctMain, String distinctCount,
-      Tuple tuple, List<String> fromList, List<String[]> facets, String orderByClause,
-      String property, Function<Row, Future<JsonObject>> handler) {
+      String columns, Tuple tuple, String from, Facets facets,
+      String orderByClause, String property, Function<Row, Future<String>> handler) {
 
     RequestParameters params = ctx.get(ValidationHandler.REQUEST_CONTEXT_KEY);
     Integer offset = params.queryParameter("offset").getInteger();
     Integer limit = params.queryParameter("limit").getInteger();
     String query = "SELECT " + (distinctMain != null ? "DISTINCT ON (" + distinctMain + ")" : "")
-        + " * FROM " + fromList.get(0)
+        + " " + columns + " FROM " + from
         + (orderByClause == null ?  "" : " ORDER BY " + orderByClause)
         + " LIMIT " + limit + " OFFSET " + offset;
-    log.info("query={}", query);
-    StringBuilder countQuery = new StringBuilder("SELECT");
-    int pos = 0;
-    for (String from : fromList) {
-      if (pos > 0) {
-        countQuery.append(",\n");
-      }
-      countQuery.append("(SELECT COUNT("
-          + (distinctCount != null ? "DISTINCT " + distinctCount : "*")
-          + ") FROM " + from + ") AS cnt" + pos);
-      pos++;
-    }
-    log.info("cnt={}", countQuery);
-    return pool.getConnection()
-        .compose(sqlConnection -> streamResult(ctx, sqlConnection, query, countQuery.toString(),
+    log.debug("query={}", query);
+    // total count and all facets in one query
+    String countQuery = facets.getCountSql(distinctCount, from);
+    log.debug("cnt={}", countQuery);
+    return getConnection()
+        .compose(sqlConnection -> streamResult(ctx, sqlConnection, query, countQuery,
             tuple, property, facets, handler)
             .onFailure(x -> sqlConnection.close()));
   }
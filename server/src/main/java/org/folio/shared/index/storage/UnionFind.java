@@ -0,0 +1,85 @@
+package org.folio.shared.index.storage;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets of elements 0..size-1, kept in primitive arrays.
+ *
+ * <p>Union by size with path halving, so that find is close to O(1) amortized.
+ * Not thread safe.
+ */
+final class UnionFind {
+  private int[] parent;
+  private int[] size;
+  private int count;
+
+  UnionFind(int capacity) {
+    parent = new int[Math.max(capacity, 16)];
+    size = new int[parent.length];
+  }
+
+  /**
+   * Add a new element in a set of its own.
+   * @return the element
+   */
+  int add() {
+    if (count == parent.length) {
+      parent = Arrays.copyOf(parent, count * 2);
+      size = Arrays.copyOf(size, count * 2);
+    }
+    parent[count] = count;
+    size[count] = 1;
+    return count++;
+  }
+
+  /**
+   * Number of elements added.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Find the representative element of the set that an element is in.
+   * @param e element
+   * @return representative element
+   */
+  int find(int e) {
+    while (parent[e] != e) {
+      parent[e] = parent[parent[e]];
+      e = parent[e];
+    }
+    return e;
+  }
+
+  /**
+   * Join the sets of two elements.
+   * @param a element
+   * @param b element
+   * @return representative element of the joined set
+   */
+  int union(int a, int b) {
+    a = find(a);
+    b = find(b);
+    if (a == b) {
+      return a;
+    }
+    if (size[a] < size[b]) {
+      int t = a;
+      a = b;
+      b = t;
+    }
+    parent[b] = a;
+    size[a] += size[b];
+    return a;
+  }
+
+  /**
+   * Number of elements in the set of an element.
+   * @param e element
+   * @return set size
+   */
+  int setSize(int e) {
+    return size[find(e)];
+  }
+}
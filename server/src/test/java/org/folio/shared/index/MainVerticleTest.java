@@ -9,19 +9,25 @@ import io.restassured.response.Response;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
@@ -32,6 +38,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.xml.XMLConstants;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -46,6 +54,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.shared.index.api.ResumptionToken;
+import org.folio.shared.index.metrics.SharedIndexMetrics;
+import org.folio.shared.index.storage.Storage;
 import org.folio.tlib.postgres.testing.TenantPgPoolContainer;
 import org.hamcrest.Matchers;
 import org.junit.AfterClass;
@@ -57,10 +67,13 @@ import org.junit.runner.RunWith;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.xml.sax.SAXException;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 @RunWith(VertxUnitRunner.class)
 public class MainVerticleTest {
@@ -108,7 +121,11 @@ public class MainVerticleTest {
     // deploy this module
     f = f.compose(e -> {
       DeploymentOptions deploymentOptions = new DeploymentOptions();
-      deploymentOptions.setConfig(new JsonObject().put("port", Integer.toString(MODULE_PORT)));
+      deploymentOptions.setConfig(new JsonObject()
+          .put("port", Integer.toString(MODULE_PORT))
+          .put("instances", "2")
+          .put("clusterCompactInterval", "0")
+          .put("changesDelay", "0"));
       return vertx.deployVerticle(new MainVerticle(), deploymentOptions).mapEmpty();
     });
 
@@ -206,6 +223,32 @@ public class MainVerticleTest {
         .header("Content-Type", is("text/plain"));
   }
 
+  @Test
+  public void testAdminMetrics() {
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "HTD")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("1")))
+        );
+    ingestRecords(records, sourceId);
+
+    RestAssured.given()
+        .baseUri(MODULE_URL)
+        .get("/admin/metrics")
+        .then().statusCode(200)
+        .header("Content-Type", containsString("text/plain"))
+        .body(containsString("sharedindex_records_ingested_total{operation=\"upsert\",tenant=\"tenant1\""))
+        .body(containsString("sharedindex_http_response_bytes_count{operation=\"putGlobalRecords\",tenant=\"tenant1\""));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+  }
+
   @Test
   public void testGetSharedRecordsUnknownTenant() {
     String tenant = "unknowntenant";
@@ -216,6 +259,13 @@ public class MainVerticleTest {
         .then().statusCode(400)
         .header("Content-Type", is("text/plain"))
         .body(is("ERROR: relation \"unknowntenant_mod_shared_index.bib_record\" does not exist (42P01)"));
+
+    // the tenant header is given by the client, so it does not create meters
+    RestAssured.given()
+        .baseUri(MODULE_URL)
+        .get("/admin/metrics")
+        .then().statusCode(200)
+        .body(Matchers.not(containsString("tenant=\"" + tenant + "\"")));
   }
 
   @Test
@@ -296,6 +346,35 @@ public class MainVerticleTest {
         .body(Matchers.is("Non-existing method 'other'"));
   }
 
+  @Test
+  public void matchKeysBadParams() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "xx")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject());
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(Matchers.is("jsonpath: either \"marc\" or \"inventory\" must be given"));
+
+    matchKey.put("method", "goldrush")
+        .put("params", new JsonObject().put("components", new JsonArray().add("isbn")));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(Matchers.is("goldrush: unknown component \"isbn\""));
+  }
+
   @Test
   public void matchKeysOK() {
     RestAssured.given()
@@ -358,6 +437,28 @@ public class MainVerticleTest {
         // should really check that params are same
         .body("resultInfo.totalRecords", is(1));
 
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("facets", "method,update")
+        .get("/shared-index/config/matchkeys")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("resultInfo.totalRecords", is(1))
+        .body("resultInfo.facets", hasSize(2))
+        .body("resultInfo.facets[0].type", is("method"))
+        .body("resultInfo.facets[0].facetValues[0].value", is("jsonpath"))
+        .body("resultInfo.facets[0].facetValues[0].count", is(1))
+        .body("resultInfo.facets[1].type", is("update"))
+        .body("resultInfo.facets[1].facetValues[0].value", is("ingest"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("facets", "params")
+        .get("/shared-index/config/matchkeys")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Unsupported facet: params"));
+
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .get("/shared-index/config/matchkeys?query=method=" + matchKey.getString("method"))
@@ -518,6 +619,63 @@ public class MainVerticleTest {
     }
   }
 
+  @Test
+  public void testExportRecords() {
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray();
+    for (int i = 0; i < 3; i++) {
+      JsonObject globalRecord = new JsonObject()
+          .put("localId", "E" + i)
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "));
+      if (i > 0) {
+        globalRecord.put("inventoryPayload", new JsonObject().put("isbn", "" + i));
+      }
+      records.add(globalRecord);
+    }
+    ingestRecords(records, sourceId);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId + " sortBy localId")
+        .get("/shared-index/export/records")
+        .then().statusCode(200)
+        .contentType("application/x-ndjson")
+        .extract().body().asString();
+    String[] lines = s.split("\n");
+    Assert.assertEquals(s, 3, lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      JsonObject globalRecord = new JsonObject(lines[i]);
+      Assert.assertEquals("E" + i, globalRecord.getString("localId"));
+      Assert.assertEquals(sourceId, globalRecord.getString("sourceId"));
+      Assert.assertNotNull(globalRecord.getString("globalId"));
+      Assert.assertEquals(records.getJsonObject(i).getJsonObject("marcPayload"),
+          globalRecord.getJsonObject("marcPayload"));
+      Assert.assertEquals(records.getJsonObject(i).getJsonObject("inventoryPayload"),
+          globalRecord.getJsonObject("inventoryPayload"));
+      Assert.assertEquals(i == 0, !globalRecord.containsKey("inventoryPayload"));
+    }
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + UUID.randomUUID())
+        .get("/shared-index/export/records")
+        .then().statusCode(200)
+        .body(is(""));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "foo=bar")
+        .get("/shared-index/export/records")
+        .then().statusCode(400);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+  }
+
   static String verifyOaiResponse(String s, String envelope, List<String> identifiers, int length)
       throws XMLStreamException, IOException, SAXException {
     InputStream stream = new ByteArrayInputStream(s.getBytes());
@@ -812,200 +970,1687 @@ public class MainVerticleTest {
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .header("Content-Type", "application/json")
-        .param("query", "cql.allRecords=true")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/issn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testClustersGoldRush() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "goldrush")
+        .put("method", "goldrush")
+        .put("params", new JsonObject().put("components", new JsonArray()
+            .add("title").add("dateOfPublication")));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201)
+        .contentType("application/json")
+        .body(Matchers.is(matchKey.encode()));
+
+    String sourceId1 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "S101")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject()
+                .put("title", "The Computer Bible")
+                .put("publication", new JsonArray()
+                    .add(new JsonObject().put("dateOfPublication", "1971")))
+            )
+        )
+        .add(new JsonObject()
+            .put("localId", "S102")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject()
+                .put("title", "Computer bible.")
+                .put("publication", new JsonArray()
+                    .add(new JsonObject().put("dateOfPublication", "c1971")))
+            )
+        )
+        .add(new JsonObject()
+            .put("localId", "S103")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject()
+                .put("title", "The Computer Bible")
+                .put("publication", new JsonArray()
+                    .add(new JsonObject().put("dateOfPublication", "1972")))
+            )
+        );
+    ingestRecords(records1, sourceId1);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "goldrush")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102"), List.of("S103"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/goldrush")
+        .then().statusCode(204);
+  }
+
+  static JsonObject marcIsbn(String isbn) {
+    return new JsonObject()
+        .put("leader", "00914naa  2200337   450 ")
+        .put("fields", new JsonArray()
+            .add(new JsonObject().put("020", new JsonObject()
+                .put("ind1", " ")
+                .put("ind2", " ")
+                .put("subfields", new JsonArray().add(new JsonObject().put("a", isbn))))));
+  }
+
+  @Test
+  public void testClustersIsbn() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn13")
+        .put("method", "isbn")
+        .put("params", new JsonObject());
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201)
+        .contentType("application/json")
+        .body(Matchers.is(matchKey.encode()));
+
+    String sourceId1 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "S101")
+            .put("marcPayload", marcIsbn("0-19-852663-6 (pbk.)"))
+            .put("inventoryPayload", new JsonObject())
+        )
+        .add(new JsonObject()
+            .put("localId", "S102")
+            .put("marcPayload", marcIsbn("9780198526636"))
+            .put("inventoryPayload", new JsonObject())
+        )
+        .add(new JsonObject()
+            .put("localId", "S103")
+            .put("marcPayload", marcIsbn("080442957X"))
+            .put("inventoryPayload", new JsonObject())
+        );
+    ingestRecords(records1, sourceId1);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn13")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102"), List.of("S103"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "matchValue=9780804429573")
+        .param("matchkeyid", "isbn13")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(1))
+        .body("items[0].records[0].localId", is("S103"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn13")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testClustersMove() throws XMLStreamException {
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .get("/shared-index/clusters")
+        .then().statusCode(400);
+
+    JsonObject matchKey1 = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        // update = ingest is the default
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey1.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201)
+        .contentType("application/json")
+        .body(Matchers.is(matchKey1.encode()));
+
+    JsonObject matchKey2 = new JsonObject()
+        .put("id", "issn")
+        .put("method", "jsonpath")
+        // update = ingest is the default
+        .put("params", new JsonObject().put("inventory", "$.issn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey2.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201)
+        .contentType("application/json")
+        .body(Matchers.is(matchKey2.encode()));
+
+    String sourceId1 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "S101")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject()
+                .put("isbn", new JsonArray().add("1"))
+                .put("issn", new JsonArray().add("01"))
+            )
+        )
+        .add(new JsonObject()
+            .put("localId", "S102")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject()
+                .put("isbn", new JsonArray().add("2").add("3"))
+                .put("issn", new JsonArray().add("01"))
+            )
+        );
+    log.info("phase 1: insert two separate isbn recs, but one with issn");
+    ingestRecords(records1, sourceId1);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "issn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(1))
+        .body("items[0].records", hasSize(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .body("items[0].records", hasSize(1))
+        .body("items[1].records", hasSize(1))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+
+    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0).getString("clusterId");
+    String datestamp = new JsonObject(s).getJsonArray("items").getJsonObject(0).getString("datestamp");
+    Assert.assertNotNull(datestamp);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "clusterId=" + clusterId)
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(1))
+        .body("items[0].records", hasSize(1))
+        .body("items[0].clusterId", is(clusterId))
+        .body("items[0].datestamp", is(datestamp));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("records", hasSize(1))
+        .body("clusterId", is(clusterId));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .get("/shared-index/clusters/" + UUID.randomUUID())
+        .then().statusCode(404);
+
+    log.info("phase 2: S101 from 1 to 4");
+    records1 = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "S101")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("4")))
+        );
+    ingestRecords(records1, sourceId1);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "issn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .body("items[0].records", hasSize(1))
+        .body("items[1].records", hasSize(1))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+
+    log.info("phase 3: S101 from 4 to 3");
+    records1 = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "S101")
+            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("3")))
+        );
+    ingestRecords(records1, sourceId1);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/issn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testClustersMergeCompaction() throws Exception {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId1 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray();
+    for (String [] rec : new String[][] { {"S101", "1"}, {"S102", "2"}, {"S103", "3"}}) {
+      records1.add(new JsonObject()
+          .put("localId", rec[0])
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add(rec[1]))));
+    }
+    ingestRecords(records1, sourceId1);
+    log.info("merge three clusters, in two steps");
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "S104")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("1").add("2")))), sourceId1);
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "S105")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("2").add("3")))), sourceId1);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(1))
+        .body("items[0].matchValues", hasSize(3))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102", "S103", "S104", "S105"));
+    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .param("query", "clusterId=" + clusterId)
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].records", hasSize(5));
+
+    // merged clusters are deleted records in OAI-PMH
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("verb", "ListIdentifiers")
+        .param("set", "isbn")
+        .get("/shared-index/oai")
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertEquals(2, s.split("status=\"deleted\"", -1).length - 1);
+
+    Storage storage = Storage.get(vertx, tenant1);
+    JsonObject res = storage.compactClusters(1, null)
+        .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    // other tests of tenant may have left merged clusters behind
+    assertThat(res.getInteger("compacted"), greaterThanOrEqualTo(2));
+    assertThat(res.getInteger("pruned"), is(0));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(200)
+        .body("records", hasSize(5))
+        .body("matchValues", hasSize(3));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("verb", "ListIdentifiers")
+        .param("set", "isbn")
+        .get("/shared-index/oai")
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertEquals(2, s.split("status=\"deleted\"", -1).length - 1);
+
+    res = storage.compactClusters(1, Duration.ZERO)
+        .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    assertThat(res.getInteger("compacted"), is(0));
+    assertThat(res.getInteger("pruned"), greaterThanOrEqualTo(2));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("verb", "ListIdentifiers")
+        .param("set", "isbn")
+        .get("/shared-index/oai")
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertFalse(s, s.contains("status=\"deleted\""));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testClustersSplit() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId1 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray();
+    for (String [] rec : new String[][] { {"S101", "1"}, {"S102", "1", "2"}, {"S103", "2"},
+        {"S104", "3"}}) {
+      JsonArray isbn = new JsonArray();
+      for (int i = 1; i < rec.length; i++) {
+        isbn.add(rec[i]);
+      }
+      records1.add(new JsonObject()
+          .put("localId", rec[0])
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject().put("isbn", isbn)));
+    }
+    ingestRecords(records1, sourceId1);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102", "S103"), List.of("S104"));
+
+    log.info("S102 no longer links S101 and S103; S102 joins S104");
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "S102")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("3")))), sourceId1);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(3))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101"), List.of("S103"), List.of("S102", "S104"));
+    JsonArray items = new JsonObject(s).getJsonArray("items");
+    for (int i = 0; i < items.size(); i++) {
+      Assert.assertEquals(1, items.getJsonObject(i).getJsonArray("matchValues").size());
+    }
+
+    log.info("delete S104; value 3 is still held by S102");
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "S104")
+        .put("delete", true)), sourceId1);
+    log.info("S105 with value 2 joins S103 only");
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "S105")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("2")))), sourceId1);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(3))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101"), List.of("S103", "S105"), List.of("S102"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "cql.allRecords=true")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testSearchFields() {
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/config/searchfields")
+        .then().statusCode(200)
+        .body("searchFields", is(empty()))
+        .body("resultInfo.totalRecords", is(0));
+
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray();
+    for (int i = 0; i < 3; i++) {
+      records.add(new JsonObject()
+          .put("localId", "H" + i)
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject()
+              .put("instance", new JsonObject().put("title", i < 2 ? "Rings" : "Hobbit"))));
+    }
+    ingestRecords(records, sourceId);
+
+    JsonObject searchField = new JsonObject()
+        .put("id", "title")
+        .put("payload", "inventory")
+        .put("path", "instance.title");
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "title=Rings")
+        .get("/shared-index/records")
+        .then().statusCode(400);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(searchField.encode())
+        .post("/shared-index/config/searchfields")
+        .then().statusCode(201)
+        .contentType("application/json")
+        .body(is(searchField.encode()));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(searchField.encode())
+        .post("/shared-index/config/searchfields")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(containsString("duplicate key value violates unique constraint"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(searchField.copy().put("id", "localId").encode())
+        .post("/shared-index/config/searchfields")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Bad search field id: localId"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(searchField.copy().put("id", "x").put("path", "a.'b").encode())
+        .post("/shared-index/config/searchfields")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Bad search field path: a.'b"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/config/searchfields/title")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body(is(searchField.encode()));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "payload=inventory")
+        .get("/shared-index/config/searchfields")
+        .then().statusCode(200)
+        .body("searchFields", hasSize(1))
+        .body("searchFields[0].path", is("instance.title"))
+        .body("resultInfo.totalRecords", is(1));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId + " and title=Rings sortBy localId")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .body("items[0].localId", is("H0"))
+        .body("items[1].localId", is("H1"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "title=Hobbit")
+        .get("/shared-index/export/records")
+        .then().statusCode(200)
+        .body(containsString("\"H2\""));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId + " and title=Hobbit")
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId)
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("resultInfo.totalRecords", is(2));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/searchfields/title")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/searchfields/title")
+        .then().statusCode(404);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/config/searchfields/title")
+        .then().statusCode(404);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "title=Rings")
+        .get("/shared-index/records")
+        .then().statusCode(400);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testKeywords() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId = UUID.randomUUID().toString();
+    String[][] instances = {
+        {"K1", "1", "The Lord of the Rings", "Tolkien, J. R. R.", "Fantasy"},
+        {"K2", "1", "Lord of the rings", "Tolkien, John", "Middle Earth"},
+        {"K3", "2", "The Hobbit", "Tolkien, J. R. R.", "Rings"},
+        {"K4", "3", "Silmarillion", "Tolkien, Christopher", "Fantasy"},
+    };
+    JsonArray records = new JsonArray();
+    for (String[] instance : instances) {
+      records.add(new JsonObject()
+          .put("localId", instance[0])
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject()
+              .put("isbn", new JsonArray().add(instance[1]))
+              .put("instance", new JsonObject()
+                  .put("title", instance[2])
+                  .put("contributors", new JsonArray()
+                      .add(new JsonObject().put("name", instance[3])))
+                  .put("subjects", new JsonArray()
+                      .add(instance[0].equals("K4")
+                          ? instance[4] : new JsonObject().put("value", instance[4]))))));
+    }
+    ingestRecords(records, sourceId);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("keywords", "rings")
+        .param("query", "sourceId=" + sourceId)
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(3))
+        .body("resultInfo.totalRecords", is(3))
+        .extract().body().asString();
+    JsonArray items = new JsonObject(s).getJsonArray("items");
+    // title matches rank above subject matches
+    Assert.assertEquals("K3", items.getJsonObject(2).getString("localId"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("keywords", "tolkien fantasy")
+        .param("query", "sourceId=" + sourceId + " sortBy localId")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .body("items[0].localId", is("K1"))
+        .body("items[1].localId", is("K4"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("keywords", "\"lord rings\"")
+        .param("query", "sourceId=" + sourceId)
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("resultInfo.totalRecords", is(0));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("keywords", "christopher -rings")
+        .param("query", "sourceId=" + sourceId)
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].localId", is("K4"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("keywords", "rings")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .body("resultInfo.totalRecords", is(2))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("K1", "K2"), List.of("K3"));
+    Assert.assertEquals(2, new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getJsonArray("records").size());
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("keywords", "tolkien")
+        .param("query", "matchValue=3")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].records[0].localId", is("K4"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testFacets() {
+    String sourceId1 = UUID.randomUUID().toString();
+    String sourceId2 = UUID.randomUUID().toString();
+    JsonArray records1 = new JsonArray();
+    for (int i = 0; i < 5; i++) {
+      JsonObject instance = new JsonObject().put("title", "t" + i);
+      if (i < 4) {
+        instance.put("instanceTypeId", i < 3 ? "text" : "score");
+      }
+      records1.add(new JsonObject()
+          .put("localId", "G" + i)
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject().put("instance", instance)));
+    }
+    ingestRecords(records1, sourceId1);
+    ingestRecords(new JsonArray().add(records1.getJsonObject(0)), sourceId2);
+
+    String query = "sourceId=" + sourceId1 + " or sourceId=" + sourceId2;
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", query)
+        .param("limit", "2")
+        .param("facets", "instanceTypeId, sourceId:1")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .body("resultInfo.totalRecords", is(6))
+        .extract().body().asString();
+    JsonArray facets = new JsonObject(s).getJsonObject("resultInfo").getJsonArray("facets");
+    Assert.assertEquals(new JsonArray()
+        .add(new JsonObject()
+            .put("type", "instanceTypeId")
+            .put("facetValues", new JsonArray()
+                .add(new JsonObject().put("value", "text").put("count", 4))
+                .add(new JsonObject().put("value", "score").put("count", 1))))
+        .add(new JsonObject()
+            .put("type", "sourceId")
+            .put("facetValues", new JsonArray()
+                .add(new JsonObject().put("value", sourceId1).put("count", 5)))),
+        facets);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", query)
+        .param("facets", "sourceId:x")
+        .get("/shared-index/records")
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Bad facet limit: sourceId:x"));
+
+    log.info("counts are recomputed after ingest");
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "G0")
+        .put("delete", true)), sourceId1);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", query)
+        .param("limit", "2")
+        .param("facets", "instanceTypeId, sourceId:1")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("resultInfo.totalRecords", is(5))
+        .body("resultInfo.facets[0].facetValues[0].count", is(3))
+        .body("resultInfo.facets[1].facetValues[0].count", is(4));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", query)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", query)
+        .param("facets", "sourceId")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("resultInfo.totalRecords", is(0))
+        .body("resultInfo.facets[0].type", is("sourceId"))
+        .body("resultInfo.facets[0].facetValues", is(empty()));
+  }
+
+  @Test
+  public void testFields() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray();
+    records.add(new JsonObject()
+        .put("localId", "F1")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("1"))
+            .put("title", "t1")));
+    ingestRecords(records, sourceId);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId)
+        .param("fields", "localId, inventoryPayload.isbn")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("resultInfo.totalRecords", is(1))
+        .extract().body().asString();
+    JsonObject globalRecord = new JsonObject(s).getJsonArray("items").getJsonObject(0);
+    Assert.assertEquals(new JsonObject()
+        .put("localId", "F1")
+        .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("1"))),
+        globalRecord);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId)
+        .param("fields", "globalId")
+        .get("/shared-index/export/records")
+        .then().statusCode(200)
+        .extract().body().asString();
+    String globalId = new JsonObject(s.trim()).getString("globalId");
+    Assert.assertEquals(new JsonObject().put("globalId", globalId), new JsonObject(s.trim()));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("fields", "sourceId,marcPayload.foo")
+        .get("/shared-index/records/" + globalId)
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertEquals(new JsonObject().put("sourceId", sourceId), new JsonObject(s));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("fields", "localId.foo")
+        .get("/shared-index/records/" + globalId)
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Unsupported field: localId.foo"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("query", "matchValue=1")
+        .param("fields", "clusterId,records.localId")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    JsonObject cluster = new JsonObject(s).getJsonArray("items").getJsonObject(0);
+    String clusterId = cluster.getString("clusterId");
+    Assert.assertEquals(new JsonObject()
+        .put("clusterId", clusterId)
+        .put("records", new JsonArray().add(new JsonObject().put("localId", "F1"))),
+        cluster);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("fields", "matchValues")
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertEquals(new JsonObject().put("matchValues", new JsonArray().add("1")),
+        new JsonObject(s));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("fields", "records.foo")
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(400)
+        .contentType("text/plain")
+        .body(is("Unsupported field: foo"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("fields", "clusterId")
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(404);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testLookup() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray();
+    String[][] instances = {{"L1", "1"}, {"L2", "2"}, {"L3", "1"}};
+    for (String[] instance : instances) {
+      records.add(new JsonObject()
+          .put("localId", instance[0])
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject()
+              .put("isbn", new JsonArray().add(instance[1]))));
+    }
+    ingestRecords(records, sourceId);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("query", "sourceId=" + sourceId + " sortBy localId")
+        .param("fields", "globalId")
+        .get("/shared-index/records")
+        .then().statusCode(200)
+        .body("items", hasSize(3))
+        .extract().body().asString();
+    JsonArray items = new JsonObject(s).getJsonArray("items");
+    String globalId1 = items.getJsonObject(0).getString("globalId");
+    String globalId3 = items.getJsonObject(2).getString("globalId");
+
+    JsonObject lookup = new JsonObject()
+        .put("globalIds", new JsonArray()
+            .add(globalId3)
+            .add(UUID.randomUUID().toString())
+            .add(globalId1))
+        .put("localIds", new JsonArray()
+            .add(new JsonObject().put("sourceId", sourceId).put("localId", "L2"))
+            .add(new JsonObject().put("sourceId", sourceId).put("localId", "L4")));
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("fields", "localId,inventoryPayload")
+        .body(lookup.encode())
+        .post("/shared-index/lookup/records")
+        .then().statusCode(200)
+        .body("items", hasSize(3))
+        .body("items[0].localId", is("L3"))
+        .body("items[1].localId", is("L1"))
+        .body("items[2].localId", is("L2"))
+        .body("items[2].inventoryPayload.isbn[0]", is("2"))
+        .body("items[2].globalId", is(nullValue()));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(new JsonObject().encode())
+        .post("/shared-index/lookup/records")
+        .then().statusCode(200)
+        .body("items", hasSize(0));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(new JsonObject().put("globalIds", new JsonArray().add("x")).encode())
+        .post("/shared-index/lookup/records")
+        .then().statusCode(400);
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("query", "matchValue=1")
+        .param("fields", "clusterId")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    String clusterId1 = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("query", "matchValue=2")
+        .param("fields", "clusterId")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    String clusterId2 = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
+
+    lookup = new JsonObject().put("clusterIds", new JsonArray()
+        .add(clusterId2)
+        .add(UUID.randomUUID().toString())
+        .add(clusterId1));
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(lookup.encode())
+        .post("/shared-index/lookup/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .body("items[0].clusterId", is(clusterId2))
+        .body("items[0].records", hasSize(1))
+        .body("items[0].matchValues", is(List.of("2")))
+        .body("items[1].clusterId", is(clusterId1))
+        .body("items[1].records", hasSize(2))
+        .body("items[1].matchValues", is(List.of("1")))
+        .extract().body().asString();
+    // same clusters as when retrieved one by one
+    JsonObject cluster = new JsonObject(s).getJsonArray("items").getJsonObject(1);
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/clusters/" + clusterId1)
+        .then().statusCode(200)
+        .extract().body().asString();
+    Assert.assertEquals(new JsonObject(s).getJsonArray("records").size(),
+        cluster.getJsonArray("records").size());
+    Assert.assertEquals(new JsonObject(s).getString("datestamp"),
+        cluster.getString("datestamp"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("fields", "clusterId,datestamp")
+        .body(lookup.encode())
+        .post("/shared-index/lookup/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(2))
+        .extract().body().asString();
+    Assert.assertEquals(Set.of("clusterId", "datestamp"),
+        new JsonObject(s).getJsonArray("items").getJsonObject(0).fieldNames());
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(new JsonObject().encode())
+        .post("/shared-index/lookup/clusters")
+        .then().statusCode(400);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  @Test
+  public void testClusterChanges() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(0))
+        .body("cursor", is(nullValue()));
+
+    String sourceId = UUID.randomUUID().toString();
+    JsonArray records = new JsonArray();
+    String[][] instances = {{"L1", "1"}, {"L2", "2"}};
+    for (String[] instance : instances) {
+      records.add(new JsonObject()
+          .put("localId", instance[0])
+          .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+          .put("inventoryPayload", new JsonObject()
+              .put("isbn", new JsonArray().add(instance[1]))));
+    }
+    ingestRecords(records, sourceId);
+
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("limit", "1")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    String cursor = new JsonObject(s).getString("cursor");
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    cursor = new JsonObject(s).getString("cursor");
+
+    // nothing changed: waits and returns same cursor
+    long start = System.currentTimeMillis();
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .param("wait", "1")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(0))
+        .body("cursor", is(cursor));
+    Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+
+    // cluster of L2 changes
+    records = new JsonArray().add(new JsonObject()
+        .put("localId", "L2")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("2"))
+            .put("title", "t")));
+    ingestRecords(records, sourceId);
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("query", "matchValue=2")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .extract().body().asString();
+    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .param("wait", "5")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].clusterId", is(clusterId))
+        .body("items[0].deleted", is(false))
+        .body("items[0].mergedInto", is(nullValue()))
+        .extract().body().asString();
+    cursor = new JsonObject(s).getString("cursor");
+
+    // cluster of L2 loses its only record
+    records = new JsonArray().add(new JsonObject()
+        .put("localId", "L2")
+        .put("delete", true));
+    ingestRecords(records, sourceId);
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .param("wait", "5")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].clusterId", is(clusterId))
+        .body("items[0].deleted", is(true));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", "x")
+        .get("/shared-index/changes")
+        .then().statusCode(400)
+        .body(is("Bad cursor"));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "foo")
+        .get("/shared-index/changes")
+        .then().statusCode(404);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  static <T> T await(Future<T> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  static JsonObject isbnRecord(String localId, String... isbns) {
+    JsonArray isbn = new JsonArray();
+    for (String value : isbns) {
+      isbn.add(value);
+    }
+    return new JsonObject()
+        .put("localId", localId)
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject().put("isbn", isbn));
+  }
+
+  static String getChangesCursor(String matchKeyId) {
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", matchKeyId)
+        .param("limit", "10000")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .extract().body().asString();
+    return new JsonObject(s).getString("cursor");
+  }
+
+  @Test
+  public void testClusterChangesMerged() throws Exception {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId = UUID.randomUUID().toString();
+    ingestRecords(new JsonArray().add(isbnRecord("M1", "1")).add(isbnRecord("M2", "2")),
+        sourceId);
+    // merges the clusters of M1 and M2
+    ingestRecords(new JsonArray().add(isbnRecord("M3", "1", "2")), sourceId);
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("query", "matchValue=1")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .body("items[0].records", hasSize(3))
+        .extract().body().asString();
+    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
+    String cursor = getChangesCursor("isbn");
+
+    // delete the records filed under the cluster itself; the one left is still filed
+    // under the cluster merged into it, as there has been no compaction
+    Storage storage = Storage.get(vertx, tenant1);
+    String schema = storage.getPool().getSchema();
+    JsonArray deletes = new JsonArray();
+    await(storage.getPool().preparedQuery("SELECT local_id FROM " + schema + ".bib_record"
+            + " JOIN " + schema + ".cluster_records ON id = record_id WHERE cluster_id = $1")
+        .execute(Tuple.of(UUID.fromString(clusterId))))
+        .forEach(row -> deletes.add(new JsonObject()
+            .put("localId", row.getString("local_id"))
+            .put("delete", true)));
+    assertThat(deletes.size(), Matchers.both(greaterThanOrEqualTo(1))
+        .and(Matchers.lessThan(3)));
+    ingestRecords(deletes, sourceId);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(200)
+        .body("records", hasSize(3 - deletes.size()));
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .param("wait", "5")
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items.find { it.clusterId == '" + clusterId + "' }.deleted", is(false));
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
+
+  static String getClusterId(String matchKeyId, String matchValue) {
+    String s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", matchKeyId)
+        .param("query", "matchValue=" + matchValue)
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .body("items", hasSize(1))
+        .extract().body().asString();
+    return new JsonObject(s).getJsonArray("items").getJsonObject(0).getString("clusterId");
+  }
+
+  @Test
+  public void testGetMergedCluster() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
+
+    String sourceId = UUID.randomUUID().toString();
+    ingestRecords(new JsonArray().add(isbnRecord("G1", "1")).add(isbnRecord("G2", "2")),
+        sourceId);
+    List<String> clusterIds = List.of(getClusterId("isbn", "1"), getClusterId("isbn", "2"));
+    for (String clusterId : clusterIds) {
+      // cached before the merge
+      RestAssured.given()
+          .header(XOkapiHeaders.TENANT, tenant1)
+          .get("/shared-index/clusters/" + clusterId)
+          .then().statusCode(200)
+          .body("records", hasSize(1));
+    }
+    ingestRecords(new JsonArray().add(isbnRecord("G3", "1", "2")), sourceId);
+    String liveId = getClusterId("isbn", "1");
+    Assert.assertTrue(clusterIds.contains(liveId));
+    for (String clusterId : clusterIds) {
+      // the merged cluster is resolved as cluster lists do
+      RestAssured.given()
+          .header(XOkapiHeaders.TENANT, tenant1)
+          .get("/shared-index/clusters/" + clusterId)
+          .then().statusCode(200)
+          .body("clusterId", is(liveId))
+          .body("records", hasSize(3));
+    }
+    // changes of the live cluster are seen through the merged one
+    ingestRecords(new JsonArray().add(isbnRecord("G4", "2")), sourceId);
+    for (String clusterId : clusterIds) {
+      RestAssured.given()
+          .header(XOkapiHeaders.TENANT, tenant1)
+          .get("/shared-index/clusters/" + clusterId)
+          .then().statusCode(200)
+          .body("clusterId", is(liveId))
+          .body("records", hasSize(4));
+    }
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("query", "sourceId=" + sourceId)
         .delete("/shared-index/records")
         .then().statusCode(204);
-
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .delete("/shared-index/config/matchkeys/issn")
+        .delete("/shared-index/config/matchkeys/isbn")
         .then().statusCode(204);
   }
 
   @Test
-  public void testClustersMove() throws XMLStreamException {
-
+  public void testClusterChangesOtherTenantTransaction() throws Exception {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
+        .put("method", "jsonpath")
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .header("Content-Type", "application/json")
-        .get("/shared-index/clusters")
-        .then().statusCode(400);
+        .body(matchKey.encode())
+        .post("/shared-index/config/matchkeys")
+        .then().statusCode(201);
 
-    JsonObject matchKey1 = new JsonObject()
-        .put("id", "isbn")
-        .put("method", "jsonpath")
-        // update = ingest is the default
-        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
+    // a write transaction of another tenant stays open meanwhile
+    SqlConnection conn = await(Storage.get(vertx, tenant1).getPool().getConnection());
+    Transaction tx = await(conn.begin());
+    String sourceId = UUID.randomUUID().toString();
+    try {
+      await(conn.query("CREATE SCHEMA other_mod_shared_index").execute());
+      await(conn.query("CREATE TABLE other_mod_shared_index.cluster_meta (cluster_id uuid)")
+          .execute());
+      await(conn.query("INSERT INTO other_mod_shared_index.cluster_meta VALUES (NULL)")
+          .execute());
+
+      ingestRecords(new JsonArray().add(isbnRecord("O1", "1")), sourceId);
+      RestAssured.given()
+          .header(XOkapiHeaders.TENANT, tenant1)
+          .param("matchkeyid", "isbn")
+          .param("wait", "5")
+          .get("/shared-index/changes")
+          .then().statusCode(200)
+          .body("items", hasSize(1));
+    } finally {
+      await(tx.rollback());
+      await(conn.close());
+    }
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .header("Content-Type", "application/json")
-        .body(matchKey1.encode())
-        .post("/shared-index/config/matchkeys")
-        .then().statusCode(201)
-        .contentType("application/json")
-        .body(Matchers.is(matchKey1.encode()));
+        .param("query", "sourceId=" + sourceId)
+        .delete("/shared-index/records")
+        .then().statusCode(204);
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .delete("/shared-index/config/matchkeys/isbn")
+        .then().statusCode(204);
+  }
 
-    JsonObject matchKey2 = new JsonObject()
-        .put("id", "issn")
+  static double cacheGets(String result) {
+    return SharedIndexMetrics.getRegistry().get("sharedindex.cache.gets")
+        .tag("tenant", tenant1).tag("result", result).counter().count();
+  }
+
+  @Test
+  public void testResponseCache() {
+    JsonObject matchKey = new JsonObject()
+        .put("id", "isbn")
         .put("method", "jsonpath")
-        // update = ingest is the default
-        .put("params", new JsonObject().put("inventory", "$.issn[*]"));
+        .put("params", new JsonObject().put("inventory", "$.isbn[*]"));
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .header("Content-Type", "application/json")
-        .body(matchKey2.encode())
+        .body(matchKey.encode())
         .post("/shared-index/config/matchkeys")
-        .then().statusCode(201)
-        .contentType("application/json")
-        .body(Matchers.is(matchKey2.encode()));
+        .then().statusCode(201);
 
-    String sourceId1 = UUID.randomUUID().toString();
-    JsonArray records1 = new JsonArray()
-        .add(new JsonObject()
-            .put("localId", "S101")
-            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
-            .put("inventoryPayload", new JsonObject()
-                .put("isbn", new JsonArray().add("1"))
-                .put("issn", new JsonArray().add("01"))
-            )
-        )
-        .add(new JsonObject()
-            .put("localId", "S102")
-            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
-            .put("inventoryPayload", new JsonObject()
-                .put("isbn", new JsonArray().add("2").add("3"))
-                .put("issn", new JsonArray().add("01"))
-            )
-        );
-    log.info("phase 1: insert two separate isbn recs, but one with issn");
-    ingestRecords(records1, sourceId1);
+    String sourceId = UUID.randomUUID().toString();
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "C1")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("1"))
+            .put("title", "t1"))), sourceId);
 
     String s = RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("matchkeyid", "issn")
-        .get("/shared-index/clusters")
+        .param("query", "sourceId=" + sourceId)
+        .get("/shared-index/records")
         .then().statusCode(200)
-        .contentType("application/json")
         .body("items", hasSize(1))
-        .body("items[0].records", hasSize(2))
         .extract().body().asString();
-    verifyClusterResponse(s, List.of("S101", "S102"));
+    String globalId = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("globalId");
 
-    s = RestAssured.given()
-        .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("matchkeyid", "isbn")
-        .get("/shared-index/clusters")
-        .then().statusCode(200)
-        .contentType("application/json")
-        .body("items", hasSize(2))
-        .body("items[0].records", hasSize(1))
-        .body("items[1].records", hasSize(1))
-        .extract().body().asString();
-    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+    double hits = cacheGets("hit");
+    for (int i = 0; i < 2; i++) {
+      RestAssured.given()
+          .header(XOkapiHeaders.TENANT, tenant1)
+          .get("/shared-index/records/" + globalId)
+          .then().statusCode(200)
+          .body("inventoryPayload.title", is("t1"));
+    }
+    assertThat(cacheGets("hit"), greaterThanOrEqualTo(hits + 1));
 
-    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0).getString("clusterId");
-    String datestamp = new JsonObject(s).getJsonArray("items").getJsonObject(0).getString("datestamp");
-    Assert.assertNotNull(datestamp);
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "C1")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("1"))
+            .put("title", "t2"))), sourceId);
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("query", "clusterId=" + clusterId)
+        .get("/shared-index/records/" + globalId)
+        .then().statusCode(200)
+        .body("inventoryPayload.title", is("t2"));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
         .param("matchkeyid", "isbn")
+        .param("query", "matchValue=1")
         .get("/shared-index/clusters")
         .then().statusCode(200)
-        .contentType("application/json")
         .body("items", hasSize(1))
         .body("items[0].records", hasSize(1))
-        .body("items[0].clusterId", is(clusterId))
-        .body("items[0].datestamp", is(datestamp));
+        .extract().body().asString();
+    String clusterId = new JsonObject(s).getJsonArray("items").getJsonObject(0)
+        .getString("clusterId");
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
         .get("/shared-index/clusters/" + clusterId)
         .then().statusCode(200)
-        .contentType("application/json")
-        .body("records", hasSize(1))
-        .body("clusterId", is(clusterId));
+        .body("records", hasSize(1));
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .get("/shared-index/clusters/" + UUID.randomUUID())
-        .then().statusCode(404);
+        .param("verb", "GetRecord")
+        .param("metadataPrefix", "marcxml")
+        .param("identifier", "oai:" + clusterId)
+        .get("/shared-index/oai")
+        .then().statusCode(200)
+        .body(containsString("C1"));
 
-    log.info("phase 2: S101 from 1 to 4");
-    records1 = new JsonArray()
-        .add(new JsonObject()
-            .put("localId", "S101")
-            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
-            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("4")))
-        );
-    ingestRecords(records1, sourceId1);
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "C2")
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject()
+            .put("isbn", new JsonArray().add("1").add("2")))), sourceId);
 
-    s = RestAssured.given()
+    RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("matchkeyid", "issn")
-        .get("/shared-index/clusters")
+        .get("/shared-index/clusters/" + clusterId)
         .then().statusCode(200)
-        .contentType("application/json")
-        .body("items", hasSize(2))
-        .body("items[0].records", hasSize(1))
-        .body("items[1].records", hasSize(1))
-        .extract().body().asString();
-    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+        .body("records", hasSize(2))
+        .body("matchValues", hasSize(2));
 
-    s = RestAssured.given()
+    RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("matchkeyid", "isbn")
-        .get("/shared-index/clusters")
+        .param("verb", "GetRecord")
+        .param("metadataPrefix", "marcxml")
+        .param("identifier", "oai:" + clusterId)
+        .get("/shared-index/oai")
         .then().statusCode(200)
-        .contentType("application/json")
-        .body("items", hasSize(2))
-        .extract().body().asString();
-    verifyClusterResponse(s, List.of("S101"), List.of("S102"));
+        .body(containsString("C2"));
 
-    log.info("phase 3: S101 from 4 to 3");
-    records1 = new JsonArray()
-        .add(new JsonObject()
-            .put("localId", "S101")
-            .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
-            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("3")))
-        );
-    ingestRecords(records1, sourceId1);
+    ingestRecords(new JsonArray().add(new JsonObject()
+        .put("localId", "C1")
+        .put("delete", true)), sourceId);
 
-    s = RestAssured.given()
+    RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .header("Content-Type", "application/json")
-        .param("matchkeyid", "isbn")
-        .get("/shared-index/clusters")
+        .get("/shared-index/records/" + globalId)
+        .then().statusCode(404);
+
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .get("/shared-index/clusters/" + clusterId)
         .then().statusCode(200)
-        .contentType("application/json")
-        .body("items", hasSize(1))
-        .extract().body().asString();
-    verifyClusterResponse(s, List.of("S101", "S102"));
+        .body("records", hasSize(1))
+        .body("records[0].localId", is("C2"));
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .header("Content-Type", "application/json")
-        .param("query", "cql.allRecords=true")
+        .param("query", "sourceId=" + sourceId)
         .delete("/shared-index/records")
         .then().statusCode(204);
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .delete("/shared-index/config/matchkeys/isbn")
-        .then().statusCode(204);
+        .get("/shared-index/clusters/" + clusterId)
+        .then().statusCode(404);
+
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
-        .delete("/shared-index/config/matchkeys/issn")
+        .delete("/shared-index/config/matchkeys/isbn")
         .then().statusCode(204);
   }
 
@@ -1321,6 +2966,54 @@ public class MainVerticleTest {
         .extract().body().asString();
 
     verifyClusterResponse(s, List.of("S101", "S102", "S201", "S202", "S205"), List.of("S203", "S204"));
+    Set<String> clusterIds = new HashSet<>();
+    JsonArray items = new JsonObject(s).getJsonArray("items");
+    for (int i = 0; i < items.size(); i++) {
+      clusterIds.add(items.getJsonObject(i).getString("clusterId"));
+    }
+
+    // bulk re-clustering yields the same clusters
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("bulk", "true")
+        .put("/shared-index/config/matchkeys/" + matchKey.getString("id") + "/initialize")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("totalRecords", is(7))
+        .body("totalClusters", is(2));
+
+    s = RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("matchkeyid", "isbn")
+        .get("/shared-index/clusters")
+        .then().statusCode(200)
+        .contentType("application/json")
+        .body("items", hasSize(2))
+        .body("items[0].matchValues", hasSize(Matchers.greaterThan(0)))
+        .extract().body().asString();
+    verifyClusterResponse(s, List.of("S101", "S102", "S201", "S202", "S205"), List.of("S203", "S204"));
+    items = new JsonObject(s).getJsonArray("items");
+    for (int i = 0; i < items.size(); i++) {
+      Assert.assertTrue(s, clusterIds.contains(items.getJsonObject(i).getString("clusterId")));
+    }
+
+    // clusters with the same records keep their datestamp
+    String cursor = getChangesCursor("isbn");
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("bulk", "true")
+        .put("/shared-index/config/matchkeys/" + matchKey.getString("id") + "/initialize")
+        .then().statusCode(200);
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .param("matchkeyid", "isbn")
+        .param("cursor", cursor)
+        .get("/shared-index/changes")
+        .then().statusCode(200)
+        .body("items", hasSize(0));
 
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
@@ -1359,6 +3052,15 @@ public class MainVerticleTest {
         .contentType("text/plain")
         .body(is("MatchKey isbn not found"));
 
+    RestAssured.given()
+        .header(XOkapiHeaders.TENANT, tenant1)
+        .header("Content-Type", "application/json")
+        .param("bulk", "true")
+        .put("/shared-index/config/matchkeys/" + matchKey.getString("id") + "/initialize")
+        .then().statusCode(404)
+        .contentType("text/plain")
+        .body(is("MatchKey isbn not found"));
+
     RestAssured.given()
         .header(XOkapiHeaders.TENANT, tenant1)
         .param("query", "cql.allRecords=true")
@@ -1869,6 +3571,58 @@ public class MainVerticleTest {
 
   }
 
+  @Test
+  public void testCompression(TestContext context) throws IOException {
+    String sourceId = UUID.randomUUID().toString();
+    JsonObject request = new JsonObject()
+        .put("sourceId", sourceId)
+        .put("records", new JsonArray()
+            .add(new JsonObject()
+                .put("localId", "C01")
+                .put("marcPayload", new JsonObject().put("leader", "00914naa  0101   450 "))
+                .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("1")))
+            ));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(request.encode().getBytes());
+    }
+    WebClient webClient = WebClient.create(vertx);
+    webClient.putAbs(MODULE_URL + "/shared-index/records")
+        .putHeader(XOkapiHeaders.TENANT, tenant1)
+        .putHeader("Content-Type", "application/json")
+        .putHeader("Content-Encoding", "gzip")
+        .expect(ResponsePredicate.SC_OK)
+        .sendBuffer(Buffer.buffer(out.toByteArray()))
+        .compose(x -> webClient.getAbs(MODULE_URL + "/shared-index/records")
+            .putHeader(XOkapiHeaders.TENANT, tenant1)
+            .putHeader("Accept-Encoding", "gzip")
+            .addQueryParam("query", "sourceId=" + sourceId)
+            .expect(ResponsePredicate.SC_OK)
+            .send())
+        .compose(res -> {
+          context.assertEquals("gzip", res.getHeader("Content-Encoding"));
+          try (GZIPInputStream gzip = new GZIPInputStream(
+              new ByteArrayInputStream(res.bodyAsBuffer().getBytes()))) {
+            JsonObject body = new JsonObject(new String(gzip.readAllBytes()));
+            context.assertEquals(1, body.getJsonArray("items").size());
+            context.assertEquals("C01",
+                body.getJsonArray("items").getJsonObject(0).getString("localId"));
+          } catch (IOException e) {
+            return Future.failedFuture(e);
+          }
+          return webClient.deleteAbs(MODULE_URL + "/shared-index/records")
+              .putHeader(XOkapiHeaders.TENANT, tenant1)
+              .addQueryParam("query", "sourceId=" + sourceId)
+              .expect(ResponsePredicate.SC_NO_CONTENT)
+              .send();
+        })
+        .eventually(x -> {
+          webClient.close();
+          return Future.succeededFuture();
+        })
+        .onComplete(context.asyncAssertSuccess());
+  }
+
   @Test
   public void upgradeDb(TestContext context) {
     String tenant = "tenant2";
@@ -0,0 +1,60 @@
+package org.folio.shared.index.api;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MatchKeyTest {
+
+  static JsonArray golden() throws IOException {
+    try (InputStream stream = MatchKeyTest.class.getResourceAsStream("/matchkey/golden.json")) {
+      return new JsonArray(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Keys in golden.json were produced by the regular expression based implementation;
+   * they must not change.
+   */
+  @Test
+  public void goldenCorpus() throws IOException {
+    JsonArray corpus = golden();
+    Assert.assertTrue(corpus.size() > 200);
+    for (int i = 0; i < corpus.size(); i++) {
+      JsonObject entry = corpus.getJsonObject(i);
+      JsonObject instance = entry.getJsonObject("instance");
+      Assert.assertEquals(instance.encode(), entry.getString("key"),
+          new MatchKey(instance).getKey());
+    }
+  }
+
+  @Test
+  public void get5chars() {
+    Assert.assertEquals("_____", MatchKey.get5chars(null));
+    Assert.assertEquals("_____", MatchKey.get5chars(""));
+    Assert.assertEquals("elect", MatchKey.get5chars("[electronic resource]"));
+    Assert.assertEquals("soun_", MatchKey.get5chars("a soun d"));
+    Assert.assertEquals("ab___", MatchKey.get5chars("a ab c"));
+    Assert.assertEquals("_____", MatchKey.get5chars("electronic\nresource"));
+  }
+
+  @Test
+  public void pad() {
+    Assert.assertEquals("a_b__", MatchKey.pad("a b", 5));
+    Assert.assertEquals("a_bcdef", MatchKey.pad("a bcdef", 5));
+    Assert.assertEquals("___", MatchKey.pad("", 3));
+  }
+
+  @Test
+  public void dateDigits() {
+    MatchKey matchKey = new MatchKey(new JsonObject());
+    Assert.assertEquals("0000", matchKey.makeDateDigits("n.d."));
+    Assert.assertEquals("2003", matchKey.makeDateDigits("c1999, printed 2003"));
+    Assert.assertEquals("5678", matchKey.makeDateDigits("12345678"));
+    Assert.assertEquals("1234", matchKey.makeDateDigits("1234567"));
+  }
+}
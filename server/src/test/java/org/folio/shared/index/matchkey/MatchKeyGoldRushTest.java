@@ -0,0 +1,100 @@
+package org.folio.shared.index.matchkey;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.folio.shared.index.api.MatchKey;
+import org.folio.shared.index.matchkey.impl.MatchKeyGoldRush;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class MatchKeyGoldRushTest {
+
+  static JsonObject instance = new JsonObject()
+      .put("title", "The Computer Bible")
+      .put("publication", new JsonArray()
+          .add(new JsonObject()
+              .put("publisher", "Biblical Research Associates")
+              .put("dateOfPublication", "1971")))
+      .put("physicalDescriptions", new JsonArray().add("x, 123 p."));
+
+  @Test
+  public void matchKeyGoldRushRegistry() {
+    MatchKeyMethod matchKeyMethod = MatchKeyMethod.get("goldrush");
+    assertThat(matchKeyMethod, is(instanceOf(MatchKeyGoldRush.class)));
+    assertThat(matchKeyMethod.getName(), is("goldrush"));
+  }
+
+  @Test
+  public void matchKeyGoldRushConfigureBad() {
+    MatchKeyMethod matchKeyMethod = new MatchKeyGoldRush();
+    JsonObject configuration = new JsonObject()
+        .put("components", new JsonArray().add("title").add("isbn"));
+    Exception e = Assert.assertThrows(
+        MatchKeyException.class,
+        () -> matchKeyMethod.compile(configuration));
+    assertThat(e.getMessage(), is("goldrush: unknown component \"isbn\""));
+
+    JsonObject empty = new JsonObject().put("components", new JsonArray());
+    e = Assert.assertThrows(
+        MatchKeyException.class,
+        () -> matchKeyMethod.compile(empty));
+    assertThat(e.getMessage(), is("goldrush: \"components\" must not be empty"));
+  }
+
+  @Test
+  public void matchKeyGoldRushAll() {
+    MatchKeyExtractor matchKeyMethod = MatchKeyMethod.get("goldrush").compile(new JsonObject());
+    Set<String> keys = new HashSet<>();
+    matchKeyMethod.getKeys(new JsonObject(), instance, keys);
+    assertThat(keys, contains(new MatchKey(instance).getKey()));
+
+    keys.clear();
+    matchKeyMethod.getKeys(new JsonObject(), null, keys);
+    assertThat(keys, is(empty()));
+  }
+
+  @Test
+  public void matchKeyGoldRushComponents() {
+    MatchKeyExtractor matchKeyMethod = MatchKeyMethod.get("goldrush")
+        .compile(new JsonObject().put("components", new JsonArray()
+            .add("dateOfPublication").add("title").add("physicalDescription")));
+    Set<String> keys = new HashSet<>();
+    matchKeyMethod.getKeys(new JsonObject(), instance, keys);
+    // components appear in key order, not configuration order
+    assertThat(keys, contains("computer_bible" + "_".repeat(56) + "1971123_"));
+  }
+
+  @Test
+  public void matchKeyGoldRushProvided() {
+    MatchKeyExtractor matchKeyMethod = MatchKeyMethod.get("goldrush")
+        .compile(new JsonObject().put("components", new JsonArray().add("title")));
+    Set<String> keys = new HashSet<>();
+    matchKeyMethod.getKeys(new JsonObject(), new JsonObject().put("matchKey", "a b"), keys);
+    assertThat(keys, contains("a_b"));
+
+    keys.clear();
+    matchKeyMethod.getKeys(new JsonObject(), new JsonObject().put("matchKey", ""), keys);
+    assertThat(keys, is(empty()));
+  }
+
+  @Test
+  public void matchKeyGoldRushBatch() {
+    MatchKeyExtractor matchKeyMethod = MatchKeyMethod.get("goldrush")
+        .compile(new JsonObject().put("components", new JsonArray().add("title")));
+    JsonObject other = new JsonObject().put("title", "Other");
+    List<Set<String>> keys = matchKeyMethod.getKeys(
+        List.of(new JsonObject(), new JsonObject()), List.of(instance, other));
+    assertThat(keys.size(), is(2));
+    assertThat(keys.get(0), contains("computer_bible" + "_".repeat(56)));
+    assertThat(keys.get(1), contains("other" + "_".repeat(65)));
+  }
+}
@@ -13,19 +13,21 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class MatchKeyJsonPathTest {
 
   @Test
-  public void matchKeyJsonPathNonConfigured() {
-    MatchKeyMethod matchKeyMethod = new MatchKeyJsonPath();
-    JsonObject payload = new JsonObject();
-    Set<String> keys = new HashSet<>();
-    Exception e = Assert.assertThrows(
-        MatchKeyException.class,
-        () -> matchKeyMethod.getKeys(payload, payload, keys));
-    assertThat(e.getMessage(), is("Not configured"));
+  public void matchKeyJsonPathRegistry() {
+    MatchKeyMethod matchKeyMethod = MatchKeyMethod.get("jsonpath");
+    assertThat(matchKeyMethod, is(instanceOf(MatchKeyJsonPath.class)));
+    assertThat(matchKeyMethod.getName(), is("jsonpath"));
+    assertThat(MatchKeyMethod.get("jsonpath"), is(sameInstance(matchKeyMethod)));
+    assertThat(MatchKeyMethod.get("other"), is(nullValue()));
+    assertThat(MatchKeyMethod.get(null), is(nullValue()));
   }
 
   @Test
@@ -34,7 +36,7 @@ public class MatchKeyJsonPathTest {
     JsonObject jsonObject = new JsonObject();
     Exception e = Assert.assertThrows(
         MatchKeyException.class,
-        () ->     matchKeyMethod.configure(jsonObject));
+        () ->     matchKeyMethod.compile(jsonObject));
     assertThat(e.getMessage(), is("jsonpath: either \"marc\" or \"inventory\" must be given"));
   }
 
@@ -43,13 +45,13 @@ public class MatchKeyJsonPathTest {
     MatchKeyMethod matchKeyMethod = new MatchKeyJsonPath();
     JsonObject configuration = new JsonObject().put("marc", "$.fields.010.subfields[x");
     Assert.assertThrows(InvalidPathException.class,
-        () -> matchKeyMethod.configure(configuration));
+        () -> matchKeyMethod.compile(configuration));
   }
 
   @Test
   public void matchKeyJsonPathConfigureMarc() {
-    MatchKeyMethod matchKeyMethod = new MatchKeyJsonPath();
-    matchKeyMethod.configure(new JsonObject().put("marc", "$.fields.010.subfields[*].a"));
+    MatchKeyExtractor matchKeyMethod = new MatchKeyJsonPath()
+        .compile(new JsonObject().put("marc", "$.fields.010.subfields[*].a"));
 
     JsonObject marc = new JsonObject()
         .put("leader", "00942nam  22002531a 4504")
@@ -95,8 +97,8 @@ public class MatchKeyJsonPathTest {
 
   @Test
   public void matchKeyJsonPathConfigureInventory() {
-    MatchKeyMethod matchKeyMethod = new MatchKeyJsonPath();
-    matchKeyMethod.configure(new JsonObject().put("inventory", "$.inventory.isbn[*]"));
+    MatchKeyExtractor matchKeyMethod = new MatchKeyJsonPath()
+        .compile(new JsonObject().put("inventory", "$.inventory.isbn[*]"));
     JsonObject inventory = new JsonObject()
         .put("inventory", new JsonObject()
             .put("isbn", new JsonArray().add("73209622")));
@@ -113,8 +115,8 @@ public class MatchKeyJsonPathTest {
   }
 
   void matchKeyVerify(String pattern, Set<String> expectedKeys, JsonObject inventoryPayload) {
-    MatchKeyMethod matchKeyMethod = new MatchKeyJsonPath();
-    matchKeyMethod.configure(new JsonObject().put("inventory", pattern));
+    MatchKeyExtractor matchKeyMethod = new MatchKeyJsonPath()
+        .compile(new JsonObject().put("inventory", pattern));
     Set<String> keys = new HashSet<>();
     matchKeyMethod.getKeys(new JsonObject(), inventoryPayload, keys);
     Assert.assertEquals(expectedKeys, keys);
@@ -143,4 +145,93 @@ public class MatchKeyJsonPathTest {
     matchKeyVerify("$.matchKey[?(@.title)]", Set.of(), inventory);
   }
 
+  static final JsonObject MARC = new JsonObject()
+      .put("leader", "00942nam  22002531a 4504")
+      .put("fields", new JsonArray()
+          .add(new JsonObject().put("001", "73209622"))
+          .add(new JsonObject().put("020", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "0910394080")))))
+          .add(new JsonObject().put("020", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "9780910394086")))))
+          .add(new JsonObject().put("245", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "The Computer Bible /"))))));
+
+  static final JsonObject INVENTORY = new JsonObject()
+      .put("title", "The Computer Bible")
+      .put("publication", new JsonArray()
+          .add(new JsonObject().put("dateOfPublication", "1971")));
+
+  static Set<String> keys(JsonObject configuration) {
+    Set<String> keys = new HashSet<>();
+    new MatchKeyJsonPath().compile(configuration).getKeys(MARC, INVENTORY, keys);
+    return keys;
+  }
+
+  @Test
+  public void matchKeyJsonPathMulti() {
+    assertThat(keys(new JsonObject()
+            .put("marc", new JsonArray()
+                .add("$.fields[*].020.subfields[*].a")
+                .add("$.fields[*].001"))),
+        containsInAnyOrder("0910394080", "9780910394086", "73209622"));
+
+    assertThat(keys(new JsonObject()
+            .put("marc", "$.fields[*].001")
+            .put("inventory", new JsonArray().add("$.title").add("$.isbn[*]"))),
+        containsInAnyOrder("73209622", "The Computer Bible"));
+
+    Set<String> keys = new HashSet<>();
+    new MatchKeyJsonPath().compile(new JsonObject().put("marc", "$.fields[*].001"))
+        .getKeys(null, INVENTORY, keys);
+    assertThat(keys, is(empty()));
+  }
+
+  @Test
+  public void matchKeyJsonPathCompound() {
+    assertThat(keys(new JsonObject()
+            .put("compound", new JsonArray()
+                .add(new JsonObject().put("inventory", "$.title"))
+                .add(new JsonObject().put("inventory", "$.publication[*].dateOfPublication")))),
+        contains("The Computer Bible 1971"));
+
+    assertThat(keys(new JsonObject()
+            .put("separator", "|")
+            .put("compound", new JsonArray()
+                .add(new JsonObject().put("marc", "$.fields[*].020.subfields[*].a"))
+                .add(new JsonObject().put("inventory", "$.publication[*].dateOfPublication")))),
+        containsInAnyOrder("0910394080|1971", "9780910394086|1971"));
+
+    assertThat(keys(new JsonObject()
+            .put("compound", new JsonArray()
+                .add(new JsonObject().put("inventory", "$.title"))
+                .add(new JsonObject().put("inventory", "$.edition")))),
+        is(empty()));
+  }
+
+  static void assertBad(JsonObject configuration, String message) {
+    Exception e = Assert.assertThrows(MatchKeyException.class,
+        () -> new MatchKeyJsonPath().compile(configuration));
+    assertThat(e.getMessage(), is(message));
+  }
+
+  @Test
+  public void matchKeyJsonPathConfigureBadMulti() {
+    assertBad(new JsonObject().put("marc", new JsonArray()),
+        "jsonpath: \"marc\" must be a string or a non-empty array of strings");
+    assertBad(new JsonObject().put("inventory", new JsonArray().add("$.title").add(1)),
+        "jsonpath: \"inventory\" must be a string or a non-empty array of strings");
+    assertBad(new JsonObject().put("compound", new JsonArray()),
+        "jsonpath: \"compound\" must not be empty");
+    assertBad(new JsonObject().put("compound", new JsonArray().add("$.title")),
+        "jsonpath: \"compound\" part must have one of \"marc\" or \"inventory\"");
+    assertBad(new JsonObject().put("compound", new JsonArray()
+            .add(new JsonObject().put("marc", "$.a").put("inventory", "$.b"))),
+        "jsonpath: \"compound\" part must have one of \"marc\" or \"inventory\"");
+    assertBad(new JsonObject().put("marc", "$.a")
+            .put("compound", new JsonArray().add(new JsonObject().put("marc", "$.a"))),
+        "jsonpath: \"compound\" can not be combined with \"marc\" or \"inventory\"");
+  }
 }
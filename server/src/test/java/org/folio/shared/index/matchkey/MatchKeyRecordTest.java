@@ -0,0 +1,69 @@
+package org.folio.shared.index.matchkey;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class MatchKeyRecordTest {
+
+  @Test
+  public void fieldsArray() {
+    JsonObject f020a = new JsonObject().put("subfields", new JsonArray()
+        .add(new JsonObject().put("a", "1")));
+    JsonObject f020b = new JsonObject().put("subfields", new JsonArray()
+        .add(new JsonObject().put("a", "2")));
+    JsonObject marc = new JsonObject().put("fields", new JsonArray()
+        .add(new JsonObject().put("001", "a1"))
+        .add(new JsonObject().put("020", f020a))
+        .add("bad")
+        .add(new JsonObject().put("020", f020b)));
+    MatchKeyRecord matchKeyRecord = new MatchKeyRecord(marc, null);
+    assertThat(matchKeyRecord.getMarcFields("001"), contains("a1"));
+    assertThat(matchKeyRecord.getMarcFields("020"), contains(f020a, f020b));
+    assertThat(matchKeyRecord.getMarcFields("245"), is(empty()));
+    assertThat(matchKeyRecord.getMarcPayload(), is(sameInstance(marc)));
+    assertThat(matchKeyRecord.getInventoryPayload(), is(nullValue()));
+  }
+
+  @Test
+  public void fieldsObject() {
+    JsonObject marc = new JsonObject().put("fields", new JsonObject()
+        .put("001", "a1")
+        .put("245", new JsonObject()));
+    MatchKeyRecord matchKeyRecord = new MatchKeyRecord(marc, new JsonObject());
+    assertThat(matchKeyRecord.getMarcFields("001"), contains("a1"));
+    assertThat(matchKeyRecord.getMarcFields("245"), contains(new JsonObject()));
+    assertThat(matchKeyRecord.getMarcFields("020"), is(empty()));
+  }
+
+  @Test
+  public void noFields() {
+    assertThat(new MatchKeyRecord(null, null).getMarcFields("001"), is(empty()));
+    assertThat(new MatchKeyRecord(new JsonObject(), null).getMarcFields("001"), is(empty()));
+    assertThat(new MatchKeyRecord(new JsonObject().put("fields", "x"), null)
+        .getMarcFields("001"), is(empty()));
+  }
+
+  @Test
+  public void contexts() {
+    MatchKeyRecord matchKeyRecord = new MatchKeyRecord(
+        new JsonObject().put("leader", "x"), new JsonObject().put("title", "t"));
+    assertThat(matchKeyRecord.getMarcContext().read("$.leader"), is("x"));
+    assertThat(matchKeyRecord.getMarcContext(),
+        is(sameInstance(matchKeyRecord.getMarcContext())));
+    assertThat(matchKeyRecord.getInventoryContext().read("$.title"), is("t"));
+    assertThat(matchKeyRecord.getInventoryContext(),
+        is(sameInstance(matchKeyRecord.getInventoryContext())));
+
+    matchKeyRecord = new MatchKeyRecord(null, null);
+    assertThat(matchKeyRecord.getMarcContext(), is(nullValue()));
+    assertThat(matchKeyRecord.getInventoryContext(), is(nullValue()));
+  }
+}
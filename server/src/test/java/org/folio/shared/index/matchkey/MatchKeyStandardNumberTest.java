@@ -0,0 +1,102 @@
+package org.folio.shared.index.matchkey;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class MatchKeyStandardNumberTest {
+
+  static JsonObject marc = new JsonObject()
+      .put("leader", "00914nam  2200337   450 ")
+      .put("fields", new JsonArray()
+          .add(new JsonObject().put("001", "123"))
+          .add(new JsonObject().put("020", new JsonObject()
+              .put("ind1", " ")
+              .put("ind2", " ")
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "0-19-852663-6 (pbk.)"))
+                  .add(new JsonObject().put("c", "$12.00")))))
+          .add(new JsonObject().put("020", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "9780198526636"))
+                  .add(new JsonObject().put("z", "080442957X")))))
+          .add(new JsonObject().put("020", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "0198526637")))))
+          .add(new JsonObject().put("022", new JsonObject()
+              .put("subfields", new JsonArray()
+                  .add(new JsonObject().put("a", "0317-8471"))))));
+
+  static JsonObject inventory = new JsonObject()
+      .put("identifiers", new JsonArray()
+          .add(new JsonObject()
+              .put("value", "080442957X")
+              .put("identifierTypeId", "8261054f-be78-422d-bd51-4ed9f33c3422"))
+          .add(new JsonObject()
+              .put("value", "978-0-19-852663-6")
+              .put("identifierTypeDeref", "ISBN"))
+          .add(new JsonObject()
+              .put("value", "0198526636")
+              .put("identifierTypeDeref", "LCCN"))
+          .add(new JsonObject()
+              .put("value", "2434-561X")
+              .put("identifierTypeId", "913300b2-03ed-469a-8179-c1092c991227")));
+
+  static Set<String> keys(String method, JsonObject configuration) {
+    MatchKeyExtractor extractor = MatchKeyMethod.get(method).compile(configuration);
+    Set<String> keys = new HashSet<>();
+    extractor.getKeys(marc, inventory, keys);
+    return keys;
+  }
+
+  @Test
+  public void isbnMarc() {
+    assertThat(keys("isbn", new JsonObject()), containsInAnyOrder("9780198526636"));
+    assertThat(keys("isbn", new JsonObject().put("subfields", "az")),
+        containsInAnyOrder("9780198526636", "9780804429573"));
+  }
+
+  @Test
+  public void isbnInventory() {
+    assertThat(keys("isbn", new JsonObject().put("source", "inventory")),
+        containsInAnyOrder("9780198526636", "9780804429573"));
+  }
+
+  @Test
+  public void issn() {
+    assertThat(keys("issn", new JsonObject()), containsInAnyOrder("0317-8471"));
+    assertThat(keys("issn", new JsonObject().put("source", "inventory")),
+        containsInAnyOrder("2434-561X"));
+  }
+
+  @Test
+  public void missingPayload() {
+    MatchKeyExtractor extractor = MatchKeyMethod.get("isbn").compile(new JsonObject());
+    Set<String> keys = new HashSet<>();
+    extractor.getKeys(null, null, keys);
+    extractor.getKeys(new JsonObject(), new JsonObject(), keys);
+    extractor.getKeys(new JsonObject().put("fields", new JsonArray().add("x")),
+        new JsonObject(), keys);
+    assertThat(keys, is(empty()));
+  }
+
+  @Test
+  public void badConfiguration() {
+    MatchKeyMethod method = MatchKeyMethod.get("isbn");
+    JsonObject source = new JsonObject().put("source", "other");
+    Exception e = Assert.assertThrows(MatchKeyException.class, () -> method.compile(source));
+    assertThat(e.getMessage(), is("isbn: \"source\" must be \"marc\" or \"inventory\""));
+
+    JsonObject subfields = new JsonObject().put("subfields", "");
+    e = Assert.assertThrows(MatchKeyException.class, () -> method.compile(subfields));
+    assertThat(e.getMessage(), is("isbn: \"subfields\" must not be empty"));
+  }
+}
@@ -0,0 +1,142 @@
+package org.folio.shared.index.matchkey.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.HashSet;
+import java.util.Set;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.shared.index.matchkey.MatchKeyMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class MatchKeyMinHashTest {
+
+  static JsonObject instance(String title, String author, String date) {
+    return new JsonObject()
+        .put("title", title)
+        .put("contributors", new JsonArray().add(new JsonObject()
+            .put("name", author)
+            .put("contributorNameTypeId", "2b94c631-fca9-4892-a730-03ee529ffe2a")))
+        .put("publication", new JsonArray().add(new JsonObject()
+            .put("dateOfPublication", date)));
+  }
+
+  static Set<String> keys(MatchKeyExtractor extractor, JsonObject instance) {
+    Set<String> keys = new HashSet<>();
+    extractor.getKeys(new JsonObject(), instance, keys);
+    return keys;
+  }
+
+  static boolean overlaps(Set<String> a, Set<String> b) {
+    Set<String> c = new HashSet<>(a);
+    c.retainAll(b);
+    return !c.isEmpty();
+  }
+
+  @Test
+  public void registry() {
+    MatchKeyMethod matchKeyMethod = MatchKeyMethod.get("minhash");
+    assertThat(matchKeyMethod, is(instanceOf(MatchKeyMinHash.class)));
+    assertThat(matchKeyMethod.getName(), is("minhash"));
+  }
+
+  @Test
+  public void rows() {
+    assertThat(MatchKeyMinHash.rows(8, 0.8), is(9));
+    assertThat(MatchKeyMinHash.rows(16, 0.5), is(4));
+    assertThat(MatchKeyMinHash.rows(1, 0.5), is(1));
+    assertThat(MatchKeyMinHash.rows(32, 0.99), is(MatchKeyMinHash.MAX_ROWS));
+  }
+
+  @Test
+  public void normalize() {
+    assertThat(MatchKeyMinHash.normalize("__computer_bible___1971_"), is("computer bible 1971"));
+    assertThat(MatchKeyMinHash.normalize("___"), is(""));
+  }
+
+  @Test
+  public void configure() {
+    MatchKeyMethod method = new MatchKeyMinHash();
+    MatchKeyMinHash.Extractor extractor =
+        (MatchKeyMinHash.Extractor) method.compile(new JsonObject());
+    assertThat(extractor.getBands(), is(8));
+    assertThat(extractor.getRows(), is(9));
+
+    extractor = (MatchKeyMinHash.Extractor) method.compile(new JsonObject()
+        .put("bands", 4).put("rows", 2));
+    assertThat(extractor.getBands(), is(4));
+    assertThat(extractor.getRows(), is(2));
+
+    extractor = (MatchKeyMinHash.Extractor) method.compile(new JsonObject()
+        .put("bands", 16).put("threshold", 0.5));
+    assertThat(extractor.getRows(), is(4));
+  }
+
+  static void assertBad(JsonObject configuration, String message) {
+    Exception e = Assert.assertThrows(MatchKeyException.class,
+        () -> new MatchKeyMinHash().compile(configuration));
+    assertThat(e.getMessage(), is(message));
+  }
+
+  @Test
+  public void configureBad() {
+    assertBad(new JsonObject().put("bands", 0),
+        "minhash: \"bands\" must be an integer in range 1-32");
+    assertBad(new JsonObject().put("bands", 33),
+        "minhash: \"bands\" must be an integer in range 1-32");
+    assertBad(new JsonObject().put("rows", 1.5),
+        "minhash: \"rows\" must be an integer in range 1-16");
+    assertBad(new JsonObject().put("shingle", "3"),
+        "minhash: \"shingle\" must be a number");
+    assertBad(new JsonObject().put("threshold", 1),
+        "minhash: \"threshold\" must be between 0 and 1");
+    assertBad(new JsonObject().put("rows", 2).put("threshold", 0.5),
+        "minhash: \"rows\" and \"threshold\" are mutually exclusive");
+    assertBad(new JsonObject().put("components", new JsonArray()),
+        "minhash: \"components\" must not be empty");
+    assertBad(new JsonObject().put("components", new JsonArray().add("isbn")),
+        "minhash: unknown component \"isbn\"");
+  }
+
+  @Test
+  public void keys() {
+    MatchKeyExtractor extractor = new MatchKeyMinHash().compile(new JsonObject());
+    JsonObject a = instance("Introduction to the theory of computation",
+        "Sipser, Michael", "1997");
+    Set<String> keysA = keys(extractor, a);
+    assertThat(keysA, hasSize(8));
+    assertThat(keys(extractor, a.copy()), is(keysA));
+
+    // small cataloging differences
+    assertThat(overlaps(keysA, keys(extractor, instance(
+        "Introduction to the theory of computations", "Sipser, Michael", "1997"))), is(true));
+    assertThat(overlaps(keysA, keys(extractor, instance(
+        "Introduction to the theory of computation /", "Sipser, Michael.", "c1997"))), is(true));
+
+    // different works
+    assertThat(overlaps(keysA, keys(extractor, instance(
+        "Elements of the theory of computation", "Lewis, Harry R.", "1981"))), is(false));
+    assertThat(overlaps(keysA, keys(extractor, instance(
+        "Introduction to automata theory", "Hopcroft, John E.", "1979"))), is(false));
+
+    assertThat(keys(extractor, null), is(empty()));
+    assertThat(keys(extractor, new JsonObject()), is(empty()));
+  }
+
+  @Test
+  public void shortText() {
+    MatchKeyExtractor extractor = new MatchKeyMinHash().compile(new JsonObject()
+        .put("components", new JsonArray().add("title")).put("shingle", 5).put("bands", 2));
+    Set<String> keys = keys(extractor, new JsonObject().put("title", "Ab"));
+    assertThat(keys, hasSize(2));
+    assertThat(keys, is(not(keys(extractor, new JsonObject().put("title", "Ac")))));
+  }
+}
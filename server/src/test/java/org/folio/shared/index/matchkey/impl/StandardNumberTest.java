@@ -0,0 +1,52 @@
+package org.folio.shared.index.matchkey.impl;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class StandardNumberTest {
+
+  @Test
+  public void isbn10() {
+    assertThat(StandardNumber.isbn13("0198526636"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("0-19-852663-6"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("0 19 852663 6 (pbk.)"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("ISBN 0-19-852663-6"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("080442957X"), is("9780804429573"));
+    assertThat(StandardNumber.isbn13("0-8044-2957-x : $12.00"), is("9780804429573"));
+    assertThat(StandardNumber.isbn13("0198526637"), is(nullValue())); // check digit
+    assertThat(StandardNumber.isbn13("019852663X"), is(nullValue()));
+  }
+
+  @Test
+  public void isbn13() {
+    assertThat(StandardNumber.isbn13("9780198526636"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("978-0-19-852663-6 (hardback)"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("979-10-90636-07-1"), is("9791090636071"));
+    assertThat(StandardNumber.isbn13("9780198526637"), is(nullValue())); // check digit
+    assertThat(StandardNumber.isbn13("9770198526636"), is(nullValue())); // prefix
+  }
+
+  @Test
+  public void isbnBad() {
+    assertThat(StandardNumber.isbn13(""), is(nullValue()));
+    assertThat(StandardNumber.isbn13("(pbk.)"), is(nullValue()));
+    assertThat(StandardNumber.isbn13("019852663"), is(nullValue()));
+    assertThat(StandardNumber.isbn13("01985266361234"), is(nullValue()));
+    assertThat(StandardNumber.isbn13("0-19-8526636-"), is("9780198526636"));
+    assertThat(StandardNumber.isbn13("0-19--852663-6"), is(nullValue()));
+    assertThat(StandardNumber.isbn13("X198526636"), is(nullValue()));
+  }
+
+  @Test
+  public void issn() {
+    assertThat(StandardNumber.issn("0317-8471"), is("0317-8471"));
+    assertThat(StandardNumber.issn("03178471"), is("0317-8471"));
+    assertThat(StandardNumber.issn("2434-561x (Print)"), is("2434-561X"));
+    assertThat(StandardNumber.issn("0317-8472"), is(nullValue())); // check digit
+    assertThat(StandardNumber.issn("0317-847"), is(nullValue()));
+    assertThat(StandardNumber.issn("0317-84711"), is(nullValue()));
+  }
+}
@@ -0,0 +1,39 @@
+package org.folio.shared.index.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class CacheNotifierTest {
+
+  @Test
+  public void payloads() {
+    assertThat(CacheNotifier.payloads(List.of()), is(empty()));
+    assertThat(CacheNotifier.payloads(List.of(CacheNotifier.MATCH_KEY_CONFIGS)),
+        contains("m"));
+    assertThat(CacheNotifier.payloads(List.of("m", "s", "*")), contains("m,s,*"));
+  }
+
+  @Test
+  public void payloadsSplit() {
+    List<String> tokens = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      tokens.add(UUID.randomUUID().toString());
+    }
+    List<String> payloads = CacheNotifier.payloads(tokens);
+    assertThat(payloads.size(), is(5));
+    List<String> received = new ArrayList<>();
+    for (String payload : payloads) {
+      assertThat(payload.length(), lessThanOrEqualTo(CacheNotifier.MAX_PAYLOAD));
+      received.addAll(List.of(payload.split(",")));
+    }
+    assertThat(received, is(tokens));
+  }
+}
@@ -0,0 +1,48 @@
+package org.folio.shared.index.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+
+public class ChangeCursorTest {
+
+  static String encode(String s) {
+    return Base64.getUrlEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void encodeDecode() {
+    LocalDateTime datestamp = LocalDateTime.of(2022, 3, 4, 5, 6, 7, 123456000);
+    UUID clusterId = UUID.randomUUID();
+    String coded = new ChangeCursor(datestamp, clusterId).encode();
+    assertThat(coded, matchesPattern("[A-Za-z0-9_-]+"));
+    ChangeCursor cursor = new ChangeCursor(coded);
+    assertThat(cursor.getDatestamp(), is(datestamp));
+    assertThat(cursor.getClusterId(), is(clusterId));
+  }
+
+  @Test
+  public void decodePadded() {
+    UUID clusterId = UUID.randomUUID();
+    ChangeCursor cursor = new ChangeCursor(encode("2022-03-04T05:06:07 " + clusterId));
+    assertThat(cursor.getDatestamp(), is(LocalDateTime.of(2022, 3, 4, 5, 6, 7)));
+    assertThat(cursor.getClusterId(), is(clusterId));
+  }
+
+  @Test
+  public void badCursor() {
+    for (String coded : new String[] {"x", "%%", "", encode("2022-03-04T05:06:07"),
+        encode("2022-03-04 " + UUID.randomUUID()), encode("2022-03-04T05:06:07 x")}) {
+      Exception e = Assert.assertThrows(IllegalArgumentException.class,
+          () -> new ChangeCursor(coded));
+      assertThat(e.getMessage(), is("Bad cursor"));
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package org.folio.shared.index.storage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class ClusterBuilderTest {
+
+  @Test
+  public void build() {
+    UUID oldCluster = UUID.randomUUID();
+    UUID[] records = new UUID[3000];
+    ClusterBuilder builder = new ClusterBuilder();
+    for (int i = 0; i < records.length; i++) {
+      records[i] = UUID.randomUUID();
+      // records 0..999 linked by chain of values; 1000..1999 singletons; 2000.. no values
+      List<String> keys = i < 1000 ? List.of("a" + i, "a" + (i + 1))
+          : i < 2000 ? List.of("b" + i) : List.of();
+      builder.add(records[i], i == 500 ? oldCluster : null, keys);
+    }
+    builder.build();
+    assertThat(builder.getRecordCount(), is(3000));
+    assertThat(builder.getClusterCount(), is(2001));
+    assertThat(builder.getValueCount(), is(2001));
+    assertThat(builder.getRecordId(42), is(records[42]));
+    assertThat(builder.getRecordValues(42), arrayContainingInAnyOrder("a42", "a43"));
+    assertThat(builder.getRecordCluster(0), is(oldCluster));
+    assertThat(builder.getRecordCluster(999), is(oldCluster));
+    assertThat(builder.getRecordCluster(1000), is(notNullValue()));
+    assertThat(builder.getRecordCluster(1000), is(not(builder.getRecordCluster(1001))));
+    assertThat(builder.getRecordCluster(2000), is(not(builder.getRecordCluster(2001))));
+    for (int i = 0; i < builder.getValueCount(); i++) {
+      String value = builder.getValue(i);
+      int record = Integer.parseInt(value.substring(1));
+      if (value.startsWith("a")) {
+        record = Math.min(record, 999);
+      }
+      assertThat(builder.getValueCluster(i), is(builder.getRecordCluster(record)));
+    }
+  }
+
+  @Test
+  public void changedClusters() {
+    UUID same = UUID.randomUUID();
+    UUID grown = UUID.randomUUID();
+    UUID split = UUID.randomUUID();
+    UUID gone = UUID.randomUUID();
+    ClusterBuilder builder = new ClusterBuilder();
+    builder.add(UUID.randomUUID(), same, List.of("s1"));
+    builder.add(UUID.randomUUID(), same, List.of("s1"));
+    builder.add(UUID.randomUUID(), grown, List.of("g1"));
+    builder.add(UUID.randomUUID(), null, List.of("g1"));
+    builder.add(UUID.randomUUID(), split, List.of("p1"));
+    builder.add(UUID.randomUUID(), split, List.of("p2"));
+    // the record of gone joins the cluster named after grown
+    builder.add(UUID.randomUUID(), gone, List.of("g1"));
+    builder.build();
+    assertThat(builder.getClusterCount(), is(4));
+    Map<UUID, Boolean> changed = new HashMap<>();
+    for (int i = 0; i < builder.getClusterCount(); i++) {
+      changed.put(builder.getClusterId(i), builder.isClusterChanged(i));
+    }
+    assertThat(changed.get(same), is(false));
+    assertThat(changed.get(grown), is(true));
+    assertThat(changed.get(split), is(true));
+    assertThat(changed.values(), containsInAnyOrder(false, true, true, true));
+    assertThat(builder.getRemovedClusterCount(), is(1));
+    assertThat(builder.getRemovedClusterId(0), is(gone));
+  }
+
+  @Test
+  public void unchangedClusters() {
+    UUID old1 = UUID.randomUUID();
+    UUID old2 = UUID.randomUUID();
+    ClusterBuilder builder = new ClusterBuilder();
+    builder.add(UUID.randomUUID(), old1, List.of("a", "b"));
+    builder.add(UUID.randomUUID(), old1, List.of("b"));
+    builder.add(UUID.randomUUID(), old2, List.of());
+    builder.build();
+    assertThat(builder.getClusterCount(), is(2));
+    assertThat(builder.isClusterChanged(0), is(false));
+    assertThat(builder.isClusterChanged(1), is(false));
+    assertThat(builder.getRemovedClusterCount(), is(0));
+  }
+}
@@ -0,0 +1,39 @@
+package org.folio.shared.index.storage;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FacetsTest {
+  static final Map<String, String> SUPPORTED = Map.of("a", "x", "b", "y->>'b'");
+
+  @Test
+  public void countSql() {
+    assertThat(Facets.parse(null, SUPPORTED).isEmpty(), is(true));
+    assertThat(Facets.parse(" ", SUPPORTED).getCountSql(null, "t WHERE z"),
+        is("SELECT COUNT(*) FROM t WHERE z"));
+    assertThat(Facets.NONE.getCountSql("id", "t"), is("SELECT COUNT(DISTINCT id) FROM t"));
+    assertThat(Facets.parse("b:10, a", SUPPORTED).getCountSql(null, "t"),
+        is("SELECT COUNT(*), GROUPING(y->>'b'), (y->>'b')::text, GROUPING(x), (x)::text"
+            + " FROM t GROUP BY GROUPING SETS ((), (y->>'b'), (x))"));
+    assertThat(Facets.parse("a,a:2", SUPPORTED).getCountSql(null, "t"),
+        is("SELECT COUNT(*), GROUPING(x), (x)::text FROM t GROUP BY GROUPING SETS ((), (x))"));
+  }
+
+  @Test
+  public void parseErrors() {
+    for (String bad : new String[] {"c", "a.b", "b:1,c"}) {
+      IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+          () -> Facets.parse(bad, SUPPORTED));
+      assertThat(e.getMessage(), is("Unsupported facet: " + bad.replace("b:1,", "")));
+    }
+    for (String bad : new String[] {"a:", "a:-1", "a:x"}) {
+      IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+          () -> Facets.parse(bad, SUPPORTED));
+      assertThat(e.getMessage(), is("Bad facet limit: " + bad));
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package org.folio.shared.index.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RecordFieldsTest {
+
+  @Test
+  public void recordFields() {
+    String all = RecordFields.ALL.getJsonSql();
+    assertThat(RecordFields.parse("").getJsonSql(), is(all));
+    assertThat(all, containsString("marc_payload"));
+    assertThat(all, containsString("inventory_payload"));
+
+    String sql = RecordFields.parse("globalId, localId").getJsonSql();
+    assertThat(sql, containsString("'localId', local_id"));
+    assertThat(sql, not(containsString("payload")));
+
+    sql = RecordFields.parse("inventoryPayload.isbn,inventoryPayload.issn").getJsonSql();
+    assertThat(sql, containsString("key IN ('isbn', 'issn')"));
+    assertThat(sql, not(containsString("marc_payload")));
+
+    sql = RecordFields.parse("inventoryPayload.isbn,inventoryPayload").getJsonSql();
+    assertThat(sql, not(containsString("jsonb_each")));
+    assertThat(RecordFields.parse("inventoryPayload,inventoryPayload.isbn").getJsonSql(),
+        is(sql));
+
+    for (String bad : new String[] {"foo", "localId.x", "marcPayload.a'b", "marcPayload."}) {
+      IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+          () -> RecordFields.parse(bad));
+      assertThat(e.getMessage(), is("Unsupported field: " + bad));
+    }
+  }
+
+  @Test
+  public void clusterFields() {
+    ClusterFields fields = ClusterFields.parse(null);
+    assertThat(fields.hasClusterId(), is(true));
+    assertThat(fields.hasDatestamp(), is(true));
+    assertThat(fields.hasMatchValues(), is(true));
+    assertThat(fields.getRecords(), is(RecordFields.ALL));
+
+    fields = ClusterFields.parse("clusterId");
+    assertThat(fields.hasClusterId(), is(true));
+    assertThat(fields.hasDatestamp(), is(false));
+    assertThat(fields.hasMatchValues(), is(false));
+    assertThat(fields.getRecords(), is(nullValue()));
+
+    fields = ClusterFields.parse("clusterId,records.localId");
+    assertThat(fields.getRecords().getJsonSql(),
+        is(RecordFields.parse("localId").getJsonSql()));
+
+    Assert.assertThrows(IllegalArgumentException.class, () -> ClusterFields.parse("foo"));
+    Assert.assertThrows(IllegalArgumentException.class,
+        () -> ClusterFields.parse("records.foo"));
+  }
+}
@@ -0,0 +1,122 @@
+package org.folio.shared.index.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ResponseCacheTest {
+  static final UUID A = UUID.randomUUID();
+  static final UUID B = UUID.randomUUID();
+  static final UUID C = UUID.randomUUID();
+
+  AtomicLong clock;
+  Counter evictions;
+
+  @Before
+  public void setUp() {
+    clock = new AtomicLong(1000);
+    evictions = Counter.builder("evictions").register(new SimpleMeterRegistry());
+  }
+
+  ResponseCache cache(int maxEntries, long maxWeight, long ttl) {
+    return new ResponseCache(maxEntries, maxWeight, ttl, evictions, clock::get);
+  }
+
+  @Test
+  public void variants() {
+    ResponseCache cache = cache(10, 100, 10);
+    assertThat(cache.get(A, "x"), is(nullValue()));
+    cache.put(A, "x", "ax", cache.stamp(A));
+    cache.put(A, "y", "ay", cache.stamp(A));
+    cache.put(B, "x", "bx", cache.stamp(B));
+    assertThat(cache.get(A, "x"), is("ax"));
+    assertThat(cache.get(A, "y"), is("ay"));
+    assertThat(cache.get(A, "z"), is(nullValue()));
+    assertThat(cache.size(), is(2));
+    assertThat(cache.weight(), is(6L));
+    cache.put(A, "x", "ax2", cache.stamp(A));
+    assertThat(cache.get(A, "x"), is("ax2"));
+    assertThat(cache.weight(), is(7L));
+  }
+
+  @Test
+  public void invalidate() {
+    ResponseCache cache = cache(10, 100, 10);
+    cache.put(A, "x", "ax", cache.stamp(A));
+    cache.put(B, "x", "bx", cache.stamp(B));
+    long stamp = cache.stamp(A);
+    cache.invalidate(A);
+    assertThat(cache.get(A, "x"), is(nullValue()));
+    assertThat(cache.get(B, "x"), is("bx"));
+    // computed before invalidation
+    cache.put(A, "x", "old", stamp);
+    assertThat(cache.get(A, "x"), is(nullValue()));
+    cache.put(A, "x", "new", cache.stamp(A));
+    assertThat(cache.get(A, "x"), is("new"));
+
+    stamp = cache.stamp(B);
+    cache.invalidateAll();
+    assertThat(cache.size(), is(0));
+    assertThat(cache.weight(), is(0L));
+    cache.put(B, "x", "old", stamp);
+    assertThat(cache.get(B, "x"), is(nullValue()));
+  }
+
+  @Test
+  public void expiry() {
+    ResponseCache cache = cache(10, 100, 10);
+    cache.put(A, "x", "ax", cache.stamp(A));
+    clock.addAndGet(9);
+    assertThat(cache.get(A, "x"), is("ax"));
+    clock.addAndGet(1);
+    assertThat(cache.get(A, "x"), is(nullValue()));
+    assertThat(cache.size(), is(0));
+
+    cache = cache(10, 100, 0);
+    cache.put(A, "x", "ax", cache.stamp(A));
+    assertThat(cache.get(A, "x"), is(nullValue()));
+  }
+
+  @Test
+  public void evictByWeight() {
+    ResponseCache cache = cache(10, 10, 10);
+    cache.put(A, "x", "aaaa", cache.stamp(A));
+    cache.put(B, "x", "bbbb", cache.stamp(B));
+    // A is hit again, so B is evicted first
+    assertThat(cache.get(A, "x"), is("aaaa"));
+    cache.put(C, "x", "cccc", cache.stamp(C));
+    assertThat(cache.get(B, "x"), is(nullValue()));
+    assertThat(cache.get(A, "x"), is("aaaa"));
+    assertThat(cache.get(C, "x"), is("cccc"));
+    assertThat(evictions.count(), is(1.0));
+    assertThat(cache.weight(), is(8L));
+
+    // too large for the cache
+    cache.put(B, "x", "bbbbbbbbbbb", cache.stamp(B));
+    assertThat(cache.get(B, "x"), is(nullValue()));
+    assertThat(cache.size(), is(2));
+  }
+
+  @Test
+  public void evictByEntries() {
+    ResponseCache cache = cache(2, 100, 10);
+    cache.put(A, "x", "a", cache.stamp(A));
+    cache.put(B, "x", "b", cache.stamp(B));
+    assertThat(cache.get(A, "x"), is("a"));
+    assertThat(cache.get(B, "x"), is("b"));
+    // both protected; the new one is evicted from probation
+    cache.put(C, "x", "c", cache.stamp(C));
+    cache.put(B, "y", "b", cache.stamp(B));
+    assertThat(cache.size(), is(2));
+    assertThat(cache.get(C, "x"), is(nullValue()));
+    assertThat(cache.get(A, "x"), is("a"));
+    assertThat(evictions.count(), is(1.0));
+  }
+}
@@ -0,0 +1,45 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SearchFieldTest {
+
+  @Test
+  public void searchField() {
+    JsonObject json = new JsonObject()
+        .put("id", "title")
+        .put("payload", "inventory")
+        .put("path", "instance.title");
+    SearchField searchField = SearchField.fromJson(json);
+    assertThat(searchField.getId(), is("title"));
+    assertThat(searchField.toJson(), is(json));
+    assertThat(searchField.getSql(), is("(inventory_payload #>> '{instance,title}')"));
+    assertThat(searchField.getIndexName(), is("\"bib_record_search_title_idx\""));
+    assertThat(SearchField.fromJson(json.copy().put("payload", "marc").put("path", "leader"))
+        .getSql(), is("(marc_payload #>> '{leader}')"));
+  }
+
+  @Test
+  public void badSearchField() {
+    String[][] bad = {
+        {null, "inventory", "a", "Bad search field id: null"},
+        {"sourceId", "inventory", "a", "Bad search field id: sourceId"},
+        {"a_b", "inventory", "a", "Bad search field id: a_b"},
+        {"a", "other", "a", "Bad search field payload: other"},
+        {"a", "marc", null, "Bad search field path: null"},
+        {"a", "marc", "a..b", "Bad search field path: a..b"},
+        {"a", "marc", "a}", "Bad search field path: a}"},
+    };
+    for (String[] b : bad) {
+      JsonObject json = new JsonObject().put("id", b[0]).put("payload", b[1]).put("path", b[2]);
+      IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+          () -> SearchField.fromJson(json));
+      assertThat(e.getMessage(), is(b[3]));
+    }
+  }
+}
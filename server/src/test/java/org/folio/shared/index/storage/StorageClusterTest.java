@@ -0,0 +1,131 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.Tuple;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.folio.tlib.postgres.TenantPgPool;
+import org.folio.tlib.postgres.testing.TenantPgPoolContainer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+@RunWith(VertxUnitRunner.class)
+public class StorageClusterTest {
+  static final String TENANT = "cluster1";
+  static final String MATCH_KEY = "isbn";
+  static Vertx vertx;
+  static Storage storage;
+
+  @ClassRule
+  public static PostgreSQLContainer<?> postgresSQLContainer = TenantPgPoolContainer.create();
+
+  @BeforeClass
+  public static void beforeClass(TestContext context) {
+    TenantPgPool.setModule("mod-shared-index");
+    vertx = Vertx.vertx();
+    storage = Storage.create(vertx, TENANT);
+    storage.init()
+        .compose(x -> storage.insertMatchKeyConfig(MATCH_KEY, "jsonpath",
+            new JsonObject().put("inventory", "$.isbn[*]"), "ingest"))
+        .onComplete(context.asyncAssertSuccess());
+  }
+
+  @AfterClass
+  public static void afterClass(TestContext context) {
+    storage.close();
+    vertx.close().onComplete(context.asyncAssertSuccess());
+  }
+
+  static JsonObject record(String localId, String... isbns) {
+    return new JsonObject()
+        .put("localId", localId)
+        .put("marcPayload", new JsonObject().put("leader", "00914naa  2200337   450 "))
+        .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray(List.of(isbns))));
+  }
+
+  static Future<Void> upsert(UUID sourceId, String localId, String... isbns) {
+    Map<String, Collection<String>> matchKeyValues = Map.of(MATCH_KEY, List.of(isbns));
+    return storage.upsertGlobalRecord(sourceId, record(localId, isbns), matchKeyValues);
+  }
+
+  static Future<UUID> clusterOfValue(String value) {
+    return storage.getPool().preparedQuery("SELECT cluster_id FROM "
+            + storage.getPool().getSchema() + ".cluster_values"
+            + " WHERE match_key_config_id = $1 AND match_value = $2")
+        .execute(Tuple.of(MATCH_KEY, value))
+        .map(rowSet -> {
+          RowIterator<Row> iterator = rowSet.iterator();
+          return iterator.hasNext() ? iterator.next().getUUID("cluster_id") : null;
+        });
+  }
+
+  static Future<UUID> clusterOfRecord(String localId) {
+    String schema = storage.getPool().getSchema();
+    return storage.getPool().preparedQuery("SELECT cluster_id"
+            + " FROM " + schema + ".cluster_records"
+            + " JOIN " + schema + ".bib_record ON id = record_id"
+            + " WHERE match_key_config_id = $1 AND local_id = $2")
+        .execute(Tuple.of(MATCH_KEY, localId))
+        .map(rowSet -> rowSet.iterator().next().getUUID("cluster_id"));
+  }
+
+  static Future<Void> waitForLock() {
+    return storage.getPool().query("SELECT 1 FROM pg_locks WHERE NOT granted").execute()
+        .compose(rowSet -> {
+          if (rowSet.size() > 0) {
+            return Future.succeededFuture();
+          }
+          Promise<Void> promise = Promise.promise();
+          vertx.setTimer(25L, id -> waitForLock().onComplete(promise));
+          return promise.future();
+        });
+  }
+
+  @Test
+  public void addValuesWhileClusterSplits(TestContext context) {
+    UUID sourceId = UUID.randomUUID();
+    upsert(sourceId, "R1", "a")
+        .compose(x -> upsert(sourceId, "R2", "a", "b"))
+        .compose(x -> clusterOfValue("b"))
+        .compose(clusterId -> storage.getPool().getConnection().compose(conn -> conn.begin()
+            // hold the cluster as a split of it does
+            .compose(tx -> storage.lockClusters(conn, Set.of(clusterId))
+                .compose(x -> {
+                  // finds value b in the cluster and waits for it
+                  Future<Void> ingest = upsert(sourceId, "R3", "b");
+                  return waitForLock()
+                      // value b leaves the cluster with R2
+                      .compose(y -> storage.deleteBibRecord(conn, "R2", sourceId))
+                      .compose(y -> tx.commit())
+                      .compose(y -> ingest);
+                }))
+            .eventually(x -> conn.close())))
+        .compose(x -> clusterOfValue("b"))
+        .compose(valueCluster -> clusterOfRecord("R3").map(recordCluster -> {
+          assertThat(valueCluster, is(not(nullValue())));
+          assertThat(recordCluster, is(valueCluster));
+          return null;
+        }))
+        .onComplete(context.asyncAssertSuccess());
+  }
+}
@@ -0,0 +1,189 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.folio.tlib.postgres.TenantPgPool;
+import org.folio.tlib.postgres.testing.TenantPgPoolContainer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+@RunWith(VertxUnitRunner.class)
+public class StorageNotifyTest {
+  static final String TENANT = "notify1";
+  static Vertx vertx;
+  // another module instance
+  static Vertx vertx2;
+  static long reconnectDelay;
+
+  @ClassRule
+  public static PostgreSQLContainer<?> postgresSQLContainer = TenantPgPoolContainer.create();
+
+  @BeforeClass
+  public static void beforeClass() {
+    TenantPgPool.setModule("mod-shared-index");
+    vertx = Vertx.vertx();
+    vertx2 = Vertx.vertx();
+    reconnectDelay = CacheNotifier.reconnectDelay;
+    CacheNotifier.reconnectDelay = 10L;
+  }
+
+  @AfterClass
+  public static void afterClass(TestContext context) {
+    CacheNotifier.reconnectDelay = reconnectDelay;
+    vertx2.close()
+        .compose(x -> vertx.close())
+        .onComplete(context.asyncAssertSuccess());
+  }
+
+  /**
+   * Complete when check returns true, trying for a few seconds.
+   */
+  static Future<Void> eventually(Supplier<Future<Boolean>> check) {
+    Promise<Void> promise = Promise.promise();
+    poll(check, 200, promise);
+    return promise.future();
+  }
+
+  private static void poll(Supplier<Future<Boolean>> check, int attempts,
+      Promise<Void> promise) {
+    check.get().onComplete(res -> {
+      if (res.succeeded() && Boolean.TRUE.equals(res.result())) {
+        promise.complete();
+      } else if (attempts <= 1) {
+        promise.fail("Condition not met in time");
+      } else {
+        vertx.setTimer(25L, x -> poll(check, attempts - 1, promise));
+      }
+    });
+  }
+
+  static Future<String> getResponse(Storage storage, UUID id, String computed) {
+    return storage.getCachedResponse(id, "v", () -> Future.succeededFuture(computed));
+  }
+
+  @Test
+  public void changeReachesOtherStorage(TestContext context) {
+    Storage storage1 = new Storage(vertx, TENANT);
+    Storage storage2 = new Storage(vertx2, TENANT);
+    UUID id = UUID.randomUUID();
+    storage1.listen()
+        .compose(x -> storage2.listen())
+        .compose(x -> getResponse(storage1, id, "old"))
+        .compose(x -> getResponse(storage1, id, "new"))
+        .compose(response -> {
+          assertThat(response, is("old"));
+          return storage2.withTransaction(conn -> {
+            storage2.invalidateResponses(conn, id);
+            return Future.<Void>succeededFuture();
+          });
+        })
+        .compose(x -> eventually(() -> getResponse(storage1, id, "new").map("new"::equals)))
+        .onComplete(x -> {
+          storage1.close();
+          storage2.close();
+        })
+        .onComplete(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void burstSentAsAll(TestContext context) {
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    TenantPgPool pool = TenantPgPool.pool(vertx, TENANT);
+    CacheNotifier notifier = new CacheNotifier(vertx, pool);
+    List<String> few = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+    List<String> many = new ArrayList<>();
+    for (int i = 0; i <= CacheNotifier.maxTokens; i++) {
+      many.add(UUID.randomUUID().toString());
+    }
+    notifier.listen(pool.getSchema(), received::addAll)
+        .compose(x -> {
+          received.clear();
+          notifier.publish(pool.getSchema(), few);
+          return eventually(() -> Future.succeededFuture(received.size() >= few.size()));
+        })
+        .compose(x -> {
+          assertThat(received, containsInAnyOrder(few.toArray()));
+          received.clear();
+          notifier.publish(pool.getSchema(), many);
+          return eventually(() -> Future.succeededFuture(!received.isEmpty()));
+        })
+        .map(x -> {
+          assertThat(received, contains(CacheNotifier.ALL));
+          return x;
+        })
+        .onComplete(x -> notifier.close())
+        .onComplete(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void connectionLost(TestContext context) {
+    List<Collection<String>> received = Collections.synchronizedList(new ArrayList<>());
+    TenantPgPool pool = TenantPgPool.pool(vertx, TENANT);
+    CacheNotifier notifier = new CacheNotifier(vertx, pool);
+    String id = UUID.randomUUID().toString();
+    notifier.listen(pool.getSchema(), received::add)
+        .compose(x -> {
+          received.clear();
+          return pool.query("SELECT pg_terminate_backend(pid) FROM pg_stat_activity"
+              + " WHERE query = 'LISTEN \"" + pool.getSchema() + "\"'").execute();
+        })
+        // flushed when lost and again when listening once more
+        .compose(x -> eventually(() -> Future.succeededFuture(
+            received.stream().filter(CacheNotifier.FLUSH::equals).count() >= 2)))
+        .compose(x -> {
+          notifier.publish(pool.getSchema(), id);
+          return eventually(() -> Future.succeededFuture(received.contains(List.of(id))));
+        })
+        .onComplete(x -> notifier.close())
+        .onComplete(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void oneConnectionForAllTenants(TestContext context) {
+    List<String> received1 = Collections.synchronizedList(new ArrayList<>());
+    List<String> received2 = Collections.synchronizedList(new ArrayList<>());
+    TenantPgPool pool = TenantPgPool.pool(vertx, TENANT);
+    CacheNotifier notifier = new CacheNotifier(vertx, pool);
+    String count = "SELECT count(*) AS cnt FROM pg_stat_activity WHERE query LIKE 'LISTEN %'";
+    pool.query(count).execute()
+        .map(rowSet -> rowSet.iterator().next().getLong("cnt"))
+        .compose(before -> notifier.listen("channel1", received1::addAll)
+            .compose(x -> notifier.listen("channel2", received2::addAll))
+            .compose(x -> pool.query(count).execute())
+            .map(rowSet -> {
+              assertThat(rowSet.iterator().next().getLong("cnt"), is(before + 1));
+              return null;
+            }))
+        .compose(x -> {
+          received1.clear();
+          received2.clear();
+          notifier.publish("channel2", "x");
+          return eventually(() -> Future.succeededFuture(received2.contains("x")));
+        })
+        .map(x -> {
+          assertThat(received1, is(empty()));
+          return x;
+        })
+        .onComplete(x -> notifier.close())
+        .onComplete(context.asyncAssertSuccess());
+  }
+}
@@ -0,0 +1,102 @@
+package org.folio.shared.index.storage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.folio.shared.index.matchkey.MatchKeyException;
+import org.folio.shared.index.matchkey.MatchKeyExtractor;
+import org.folio.tlib.postgres.TenantPgPool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class StorageTest {
+  static Vertx vertx;
+
+  @BeforeClass
+  public static void beforeClass() {
+    TenantPgPool.setModule("mod-shared-index");
+    vertx = Vertx.vertx();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    vertx.close();
+  }
+
+  @Test
+  public void storageRegistry() {
+    // schema of tenant is not known to exist: nothing is kept for it
+    Storage storage = Storage.get(vertx, "registry1");
+    assertThat(Storage.isInitialized("registry1"), is(false));
+    assertThat(Storage.get(vertx, "registry1"), is(not(sameInstance(storage))));
+
+    Storage created = Storage.create(vertx, "registry1");
+    assertThat(created, is(not(sameInstance(storage))));
+    assertThat(Storage.get(vertx, "registry1"), is(sameInstance(created)));
+    assertThat(Storage.get(vertx, "registry2"), is(not(sameInstance(created))));
+  }
+
+  @Test
+  public void getMatchKeyValues() {
+    JsonObject inventoryPayload = new JsonObject()
+        .put("isbn", new JsonArray().add("1").add("2"))
+        .put("issn", new JsonArray().add("3"));
+    JsonArray matchKeyConfigs = new JsonArray()
+        .add(new JsonObject()
+            .put("id", "isbn")
+            .put("method", "jsonpath")
+            .put("params", new JsonObject().put("inventory", "$.isbn[*]"))
+            .put("update", "ingest"))
+        .add(new JsonObject()
+            .put("id", "issn")
+            .put("method", "jsonpath")
+            .put("params", new JsonObject().put("inventory", "$.issn[*]"))
+            .put("update", "manual"));
+    Map<String, MatchKeyExtractor> extractors = Storage.compileMatchKeyConfigs(matchKeyConfigs);
+    assertThat(extractors.keySet(), containsInAnyOrder("isbn"));
+    Map<String, Collection<String>> matchKeyValues =
+        Storage.getMatchKeyValues(new JsonObject(), inventoryPayload, extractors);
+    assertThat(matchKeyValues.keySet(), containsInAnyOrder("isbn"));
+    assertThat(matchKeyValues.get("isbn"), containsInAnyOrder("1", "2"));
+
+    JsonArray records = new JsonArray()
+        .add(new JsonObject()
+            .put("localId", "1")
+            .put("inventoryPayload", inventoryPayload))
+        .add(new JsonObject()
+            .put("localId", "2")
+            .put("delete", true))
+        .add(new JsonObject()
+            .put("localId", "3")
+            .put("inventoryPayload", new JsonObject().put("isbn", new JsonArray().add("4"))));
+    List<Map<String, Collection<String>>> batch = Storage.getMatchKeyValues(records, extractors);
+    assertThat(batch.size(), is(3));
+    assertThat(batch.get(0).get("isbn"), containsInAnyOrder("1", "2"));
+    assertThat(batch.get(1), is(nullValue()));
+    assertThat(batch.get(2).get("isbn"), containsInAnyOrder("4"));
+  }
+
+  @Test
+  public void getMatchKeyValuesUnknownMethod() {
+    JsonArray matchKeyConfigs = new JsonArray()
+        .add(new JsonObject()
+            .put("id", "other")
+            .put("method", "other")
+            .put("update", "ingest"));
+    Exception e = Assert.assertThrows(MatchKeyException.class,
+        () -> Storage.compileMatchKeyConfigs(matchKeyConfigs));
+    assertThat(e.getMessage(), is("Unknown match key method: other"));
+  }
+}
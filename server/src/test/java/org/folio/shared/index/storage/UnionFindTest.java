@@ -0,0 +1,31 @@
+package org.folio.shared.index.storage;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class UnionFindTest {
+
+  @Test
+  public void unionFind() {
+    UnionFind unionFind = new UnionFind(0);
+    for (int i = 0; i < 100; i++) {
+      assertThat(unionFind.add(), is(i));
+    }
+    assertThat(unionFind.size(), is(100));
+    for (int i = 2; i < 100; i += 2) {
+      unionFind.union(i - 2, i);
+    }
+    assertThat(unionFind.find(98), is(unionFind.find(0)));
+    assertThat(unionFind.find(1), is(not(unionFind.find(0))));
+    assertThat(unionFind.setSize(42), is(50));
+    assertThat(unionFind.setSize(1), is(1));
+    int root = unionFind.union(1, 0);
+    assertThat(root, is(unionFind.find(0)));
+    assertThat(unionFind.find(1), is(root));
+    assertThat(unionFind.setSize(3), is(1));
+    assertThat(unionFind.setSize(1), is(51));
+  }
+}